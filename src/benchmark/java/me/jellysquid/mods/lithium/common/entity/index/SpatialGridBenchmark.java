@@ -0,0 +1,311 @@
+package me.jellysquid.mods.lithium.common.entity.index;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.SectionPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the entity queries of the spatial grid against a scan of the chunk sections around the queried box, as
+ * vanilla does, using dense clusters of mob-sized boxes without a world. The clusters model mob farms, where each
+ * cluster packs many mobs into a pen a few blocks wide.
+ *
+ * Each invocation is one tick of entity pushing: every mob moves a little within its pen, the structure under test is
+ * updated for the move, and then the mobs intersecting the mob's box are collected.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialGridBenchmark {
+    // [VanillaCopy] World#getMaxEntityRadius
+    private static final double MAX_ENTITY_RADIUS = 2.0D;
+
+    private static final double MOB_WIDTH = 0.6D;
+    private static final double MOB_HEIGHT = 1.8D;
+
+    private static final double PEN_WIDTH = 6.0D;
+    private static final double PEN_HEIGHT = 3.0D;
+
+    private static final int AREA_RADIUS = 256;
+
+    @Param({ "sections", "grid" })
+    public String implementation;
+
+    @Param({ "500", "3000" })
+    public int mobs;
+
+    @Param({ "1", "16" })
+    public int clusters;
+
+    private Mob[] mobArray;
+    private EntityQueries queries;
+
+    private final Random random = new Random(42L);
+
+    @Setup
+    public void setup() {
+        this.mobArray = createMobs(new Random(1234L), this.mobs, this.clusters);
+        this.queries = createQueries(this.implementation, this.mobArray);
+
+        this.checkAgainstReference();
+    }
+
+    @Benchmark
+    public int tick() {
+        int found = 0;
+
+        for (Mob mob : this.mobArray) {
+            mob.wander(this.random);
+
+            this.queries.onMoved(mob);
+
+            found += this.queries.getIntersecting(mob).size();
+        }
+
+        return found;
+    }
+
+    /**
+     * Makes sure that the structure under test finds the same mobs as scanning the sections, before and after the mobs
+     * have moved around for a while. The section scan is the reference, so there is nothing to check for it.
+     */
+    private void checkAgainstReference() {
+        if (this.implementation.equals("sections")) {
+            return;
+        }
+
+        Mob[] mobs = createMobs(new Random(1234L), this.mobs, this.clusters);
+
+        EntityQueries actual = createQueries(this.implementation, mobs);
+        EntityQueries reference = createQueries("sections", mobs);
+
+        Random random = new Random(5678L);
+
+        for (int tick = 0; tick < 20; tick++) {
+            for (Mob mob : mobs) {
+                if (!new HashSet<>(actual.getIntersecting(mob)).equals(new HashSet<>(reference.getIntersecting(mob)))) {
+                    throw new IllegalStateException("Implementation '" + this.implementation + "' found different mobs than " +
+                            "the section scan at tick " + tick);
+                }
+            }
+
+            for (Mob mob : mobs) {
+                mob.wander(random);
+
+                actual.onMoved(mob);
+                reference.onMoved(mob);
+            }
+        }
+    }
+
+    private static EntityQueries createQueries(String implementation, Mob[] mobs) {
+        EntityQueries queries;
+
+        switch (implementation) {
+            case "sections":
+                queries = new SectionScanQueries();
+                break;
+            case "grid":
+                queries = new GridQueries();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+
+        for (Mob mob : mobs) {
+            queries.onAdded(mob);
+        }
+
+        return queries;
+    }
+
+    private static Mob[] createMobs(Random random, int count, int clusters) {
+        double[][] pens = new double[clusters][];
+
+        for (int i = 0; i < clusters; i++) {
+            pens[i] = new double[] {
+                    random.nextInt(AREA_RADIUS * 2) - AREA_RADIUS, 64.0D + random.nextInt(64),
+                    random.nextInt(AREA_RADIUS * 2) - AREA_RADIUS
+            };
+        }
+
+        Mob[] mobs = new Mob[count];
+
+        for (int i = 0; i < count; i++) {
+            double[] pen = pens[i % clusters];
+
+            mobs[i] = new Mob(pen[0], pen[1], pen[2], random);
+        }
+
+        return mobs;
+    }
+
+    /**
+     * A mob-sized box which wanders around within its pen.
+     */
+    private static class Mob {
+        private final double penX, penY, penZ;
+
+        private double x, y, z;
+        private AxisAlignedBB box;
+
+        // The cell and section which the mob is currently stored in, so that both structures can be checked together
+        private long cell;
+        private long section;
+
+        private Mob(double penX, double penY, double penZ, Random random) {
+            this.penX = penX;
+            this.penY = penY;
+            this.penZ = penZ;
+
+            this.setPos(penX + random.nextDouble() * PEN_WIDTH, penY + random.nextDouble() * PEN_HEIGHT,
+                    penZ + random.nextDouble() * PEN_WIDTH);
+        }
+
+        private void wander(Random random) {
+            this.setPos(this.clamp(this.x + (random.nextDouble() - 0.5D) * 0.2D, this.penX, PEN_WIDTH),
+                    this.clamp(this.y + (random.nextDouble() - 0.5D) * 0.2D, this.penY, PEN_HEIGHT),
+                    this.clamp(this.z + (random.nextDouble() - 0.5D) * 0.2D, this.penZ, PEN_WIDTH));
+        }
+
+        private double clamp(double value, double min, double size) {
+            return MathHelper.clamp(value, min, min + size);
+        }
+
+        private void setPos(double x, double y, double z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+
+            double r = MOB_WIDTH / 2.0D;
+            this.box = new AxisAlignedBB(x - r, y, z - r, x + r, y + MOB_HEIGHT, z + r);
+        }
+
+        private AxisAlignedBB getBoundingBox() {
+            return this.box;
+        }
+    }
+
+    private interface EntityQueries {
+        void onAdded(Mob mob);
+
+        void onMoved(Mob mob);
+
+        /**
+         * @return The other mobs whose boxes intersect the box of the given mob
+         */
+        List<Mob> getIntersecting(Mob mob);
+    }
+
+    /**
+     * [VanillaCopy] World#getEntities(Entity, AxisAlignedBB, Predicate)
+     * Mobs are stored in the section containing their position, and a query scans every section which a mob
+     * intersecting the box could be stored in.
+     */
+    private static class SectionScanQueries implements EntityQueries {
+        private final Long2ObjectOpenHashMap<List<Mob>> sections = new Long2ObjectOpenHashMap<>();
+
+        @Override
+        public void onAdded(Mob mob) {
+            mob.section = getSection(mob);
+
+            this.sections.computeIfAbsent(mob.section, key -> new ArrayList<>())
+                    .add(mob);
+        }
+
+        @Override
+        public void onMoved(Mob mob) {
+            long section = getSection(mob);
+
+            if (section != mob.section) {
+                this.sections.get(mob.section).remove(mob);
+                this.onAdded(mob);
+            }
+        }
+
+        @Override
+        public List<Mob> getIntersecting(Mob except) {
+            AxisAlignedBB box = except.getBoundingBox();
+            List<Mob> out = new ArrayList<>();
+
+            int minX = MathHelper.floor((box.minX - MAX_ENTITY_RADIUS) / 16.0D);
+            int maxX = MathHelper.floor((box.maxX + MAX_ENTITY_RADIUS) / 16.0D);
+            int minY = MathHelper.floor((box.minY - MAX_ENTITY_RADIUS) / 16.0D);
+            int maxY = MathHelper.floor((box.maxY + MAX_ENTITY_RADIUS) / 16.0D);
+            int minZ = MathHelper.floor((box.minZ - MAX_ENTITY_RADIUS) / 16.0D);
+            int maxZ = MathHelper.floor((box.maxZ + MAX_ENTITY_RADIUS) / 16.0D);
+
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        List<Mob> mobs = this.sections.get(SectionPos.asLong(x, y, z));
+
+                        if (mobs == null) {
+                            continue;
+                        }
+
+                        for (Mob mob : mobs) {
+                            if (mob != except && mob.getBoundingBox().intersects(box)) {
+                                out.add(mob);
+                            }
+                        }
+                    }
+                }
+            }
+
+            return out;
+        }
+
+        private static long getSection(Mob mob) {
+            return SectionPos.asLong(MathHelper.floor(mob.x) >> 4, MathHelper.floor(mob.y) >> 4,
+                    MathHelper.floor(mob.z) >> 4);
+        }
+    }
+
+    private static class GridQueries implements EntityQueries {
+        private final SpatialGrid<Mob> grid = new SpatialGrid<>(Mob::getBoundingBox);
+
+        @Override
+        public void onAdded(Mob mob) {
+            mob.cell = this.grid.add(mob);
+        }
+
+        @Override
+        public void onMoved(Mob mob) {
+            mob.cell = this.grid.move(mob, mob.cell);
+        }
+
+        @Override
+        public List<Mob> getIntersecting(Mob except) {
+            List<Mob> out = new ArrayList<>();
+
+            this.grid.forEachIntersecting(except.getBoundingBox(), mob -> {
+                if (mob != except) {
+                    out.add(mob);
+                }
+            });
+
+            return out;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.NextTickListEntry;
+import net.minecraft.world.TickPriority;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Measures the throughput of the tick scheduler without a world, by driving it with a set of synthetic redstone clocks.
+ * Each invocation is one game tick: the due ticks are selected, and executing each tick checks whether it is scheduled
+ * (as redstone components do) and then schedules it again after the delay of its clock. The number of scheduled ticks
+ * therefore stays the same across invocations.
+ *
+ * With {@link TickSchedulerBenchmark#delays} set to "near", every clock has a delay of a few ticks, so all ticks are held
+ * by the timing wheel. With "mixed", a tenth of the clocks are scheduled further ahead than the wheel can hold, so
+ * selection also has to merge the ticks from the sorted map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickSchedulerBenchmark {
+    private static final int AREA_RADIUS = 512;
+
+    @Param({ "1000", "100000" })
+    public int clocks;
+
+    @Param({ "near", "mixed" })
+    public String delays;
+
+    private LithiumServerTickScheduler<Clock> scheduler;
+    private long time;
+    private int executed;
+
+    @Setup
+    public void setup() {
+        checkAgainstReference();
+
+        Random random = new Random(42L);
+
+        Clock[] types = new Clock[] { new Clock(1), new Clock(2), new Clock(4), new Clock(300), new Clock(1200) };
+
+        this.scheduler = createScheduler();
+        this.time = 0L;
+
+        for (BlockPos pos : createPositions(random, this.clocks)) {
+            Clock clock;
+
+            if (this.delays.equals("mixed") && random.nextInt(10) == 0) {
+                clock = types[3 + random.nextInt(2)];
+            } else {
+                clock = types[random.nextInt(3)];
+            }
+
+            // Spread the clocks over their period, so that the same number of ticks is due in every game tick
+            this.scheduler.addScheduledTick(new NextTickListEntry<>(pos, clock, 1 + random.nextInt(clock.delay),
+                    TickPriority.NORMAL));
+        }
+    }
+
+    @Benchmark
+    public int tick() {
+        long time = ++this.time;
+
+        this.executed = 0;
+
+        this.scheduler.selectTicks(pos -> true, time);
+        this.scheduler.executeTicks(tick -> {
+            Clock clock = tick.getType();
+
+            if (!this.scheduler.hasScheduledTick(tick.pos, clock)) {
+                this.scheduler.addScheduledTick(new NextTickListEntry<>(tick.pos, clock, time + clock.delay, tick.priority));
+            }
+
+            this.executed++;
+        });
+
+        return this.executed;
+    }
+
+    /**
+     * Makes sure that the scheduler executes ticks in vanilla's order, which is by time, then priority, then the order
+     * they were scheduled in. New ticks are scheduled during every game tick with delays which cover both the timing
+     * wheel and the sorted map, so ticks held by either are due at the same time. The ticks in some chunks can't be
+     * executed for a while, so that they are left behind and have to be selected first later on.
+     */
+    private static void checkAgainstReference() {
+        Random random = new Random(1234L);
+        TickPriority[] priorities = TickPriority.values();
+        Clock type = new Clock(0);
+
+        LithiumServerTickScheduler<Clock> scheduler = createScheduler();
+
+        List<BlockPos> positions = createPositions(random, 8000);
+        List<NextTickListEntry<Clock>> scheduled = new ArrayList<>();
+
+        // The indices of the ticks which haven't been executed yet, in vanilla's order
+        TreeSet<Integer> pending = new TreeSet<>(Comparator.<Integer>comparingLong(i -> scheduled.get(i).triggerTick)
+                .thenComparing(i -> scheduled.get(i).priority)
+                .thenComparingInt(i -> i));
+
+        List<BlockPos> executed = new ArrayList<>();
+        List<BlockPos> expected = new ArrayList<>();
+
+        for (long time = 1; time <= 1800; time++) {
+            long now = time;
+
+            // Chunks with an odd X coordinate aren't ticking for a while
+            Predicate<BlockPos> isTicking = pos -> (now < 300 || now > 700) || ((pos.getX() >> 4) & 1) == 0;
+
+            scheduler.selectTicks(isTicking, time);
+            scheduler.executeTicks(tick -> executed.add(tick.pos));
+
+            for (Iterator<Integer> it = pending.iterator(); it.hasNext(); ) {
+                NextTickListEntry<Clock> tick = scheduled.get(it.next());
+
+                if (tick.triggerTick > time) {
+                    break;
+                }
+
+                if (isTicking.test(tick.pos)) {
+                    expected.add(tick.pos);
+                    it.remove();
+                }
+            }
+
+            if (!executed.equals(expected)) {
+                throw new IllegalStateException("Scheduler executed " + executed.size() + " ticks by time " + time +
+                        " in a different order than the " + expected.size() + " ticks expected");
+            }
+
+            for (int i = 0; i < 8 && scheduled.size() < positions.size(); i++) {
+                NextTickListEntry<Clock> tick = new NextTickListEntry<>(positions.get(scheduled.size()), type,
+                        time + 1 + random.nextInt(600), priorities[random.nextInt(priorities.length)]);
+
+                scheduler.addScheduledTick(tick);
+
+                scheduled.add(tick);
+                pending.add(scheduled.size() - 1);
+            }
+        }
+
+        if (!pending.isEmpty() || scheduler.size() != 0) {
+            throw new IllegalStateException("Scheduler didn't execute every tick");
+        }
+    }
+
+    private static LithiumServerTickScheduler<Clock> createScheduler() {
+        // The world is only needed by the methods which read the time or chunks from it, which aren't used here
+        return new LithiumServerTickScheduler<>(null, clock -> false, clock -> null, tick -> { });
+    }
+
+    private static List<BlockPos> createPositions(Random random, int count) {
+        LongOpenHashSet used = new LongOpenHashSet();
+        List<BlockPos> positions = new ArrayList<>();
+
+        while (positions.size() < count) {
+            BlockPos pos = new BlockPos(random.nextInt(AREA_RADIUS * 2) - AREA_RADIUS, random.nextInt(256),
+                    random.nextInt(AREA_RADIUS * 2) - AREA_RADIUS);
+
+            if (used.add(pos.asLong())) {
+                positions.add(pos);
+            }
+        }
+
+        return positions;
+    }
+
+    /**
+     * A type of scheduled tick which is scheduled again with a fixed delay every time it is executed.
+     */
+    private static class Clock {
+        private final int delay;
+
+        private Clock(int delay) {
+            this.delay = delay;
+        }
+    }
+}
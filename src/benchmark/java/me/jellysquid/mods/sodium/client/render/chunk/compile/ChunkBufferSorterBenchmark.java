@@ -0,0 +1,126 @@
+package me.jellysquid.mods.sodium.client.render.chunk.compile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the radix sorter against the merge sort and in-place permutation it replaced, using synthetic translucent
+ * meshes in the standard (SFP) vertex format. The camera moves between a fixed set of positions on every invocation,
+ * so that each sort starts from the order produced by the previous one and not from an already sorted mesh.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkBufferSorterBenchmark {
+    // The vertex stride and model scale of the standard vertex format, whose positions are stored as floats
+    private static final int VERTEX_STRIDE = 32;
+    private static final float MODEL_SCALE = 1.0f;
+
+    private static final int CAMERA_POSITIONS = 16;
+
+    @Param({ "64", "1024", "16384" })
+    public int quadCount;
+
+    private ByteBuffer buffer;
+    private int bufferLen;
+
+    private float[] centroids;
+    private float[] cameras;
+    private int camera;
+
+    private final ChunkBufferSorter sorter = new ChunkBufferSorter();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+
+        this.bufferLen = this.quadCount * VERTEX_STRIDE * 4;
+        this.buffer = ByteBuffer.allocateDirect(this.bufferLen)
+                .order(ByteOrder.nativeOrder());
+
+        for (int quad = 0; quad < this.quadCount; quad++) {
+            // Axis-aligned unit faces at random block positions within the chunk
+            float x = random.nextInt(16);
+            float y = random.nextInt(16);
+            float z = random.nextInt(16);
+
+            for (int vertex = 0; vertex < 4; vertex++) {
+                int base = ((quad * 4) + vertex) * VERTEX_STRIDE;
+
+                this.buffer.putFloat(base, x + ((vertex & 1) != 0 ? 1.0f : 0.0f));
+                this.buffer.putFloat(base + 4, y + ((vertex & 2) != 0 ? 1.0f : 0.0f));
+                this.buffer.putFloat(base + 8, z);
+                this.buffer.putInt(base + 12, random.nextInt());
+            }
+        }
+
+        this.centroids = this.sorter.computeCentroids(VERTEX_STRIDE, this.buffer, this.bufferLen);
+
+        this.cameras = new float[CAMERA_POSITIONS * 3];
+
+        for (int i = 0; i < this.cameras.length; i++) {
+            this.cameras[i] = (random.nextFloat() * 64.0f) - 24.0f;
+        }
+    }
+
+    private int nextCamera() {
+        int camera = this.camera;
+        this.camera = (camera + 1) % CAMERA_POSITIONS;
+
+        return camera * 3;
+    }
+
+    /**
+     * The sort performed when a mesh is first built, which also computes the centroids of its quads.
+     */
+    @Benchmark
+    public ByteBuffer radixSortBuild() {
+        int camera = this.nextCamera();
+
+        float[] centroids = this.sorter.computeCentroids(VERTEX_STRIDE, this.buffer, this.bufferLen);
+        this.sorter.sort(VERTEX_STRIDE, MODEL_SCALE, this.buffer, this.buffer, centroids,
+                this.cameras[camera], this.cameras[camera + 1], this.cameras[camera + 2]);
+
+        return this.buffer;
+    }
+
+    /**
+     * The sort performed when the camera moves, which re-uses the centroids kept alongside the mesh.
+     */
+    @Benchmark
+    public ByteBuffer radixSortResort() {
+        int camera = this.nextCamera();
+
+        this.sorter.sort(VERTEX_STRIDE, MODEL_SCALE, this.buffer, this.buffer, this.centroids,
+                this.cameras[camera], this.cameras[camera + 1], this.cameras[camera + 2]);
+
+        return this.buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer legacySort() {
+        int camera = this.nextCamera();
+
+        LegacyChunkBufferSorter.sortStandardFormat(VERTEX_STRIDE, MODEL_SCALE, this.buffer, this.bufferLen,
+                this.cameras[camera], this.cameras[camera + 1], this.cameras[camera + 2]);
+
+        return this.buffer;
+    }
+}
@@ -0,0 +1,235 @@
+package me.jellysquid.mods.sodium.client.render.chunk.cull.graph;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import me.jellysquid.mods.sodium.client.render.chunk.cull.ChunkCuller;
+import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+import net.minecraft.client.renderer.chunk.SetVisibility;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the graph search of the chunk cullers over a synthetic world, without a client or a graphics context. The
+ * world is a square of fully loaded columns around the origin, where the sections near the surface are mostly open and
+ * the sections below are a seeded mix of solid sections and sections with a few separate cave-like openings.
+ *
+ * Each invocation renders one frame from the next step of a fixed camera path. The camera turns a little every frame,
+ * and when {@link ChunkGraphCullerBenchmark#moving} is set it also moves into another section, which forces a new
+ * search even in incremental mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkGraphCullerBenchmark {
+    private static final int COLUMN_HEIGHT = 16;
+    private static final int SURFACE_SECTION = 4;
+
+    private static final int CAMERA_PATH_LENGTH = 16;
+    private static final int CAMERA_PATH_RADIUS = 64;
+    private static final int CAMERA_Y = (SURFACE_SECTION << 4) + 8;
+
+    @Param({ "linked", "linked_incremental", "flat" })
+    public String implementation;
+
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    @Param({ "12", "32" })
+    public int renderDistance;
+
+    @Param({ "false", "true" })
+    public boolean moving;
+
+    private ChunkCuller culler;
+
+    private final BlockPos[] cameraPath = new BlockPos[CAMERA_PATH_LENGTH];
+    private final FrustumExtended[] frustums = new FrustumExtended[CAMERA_PATH_LENGTH];
+
+    // The frustums of a camera which stays at the first position of the path and only turns
+    private final FrustumExtended[] turningFrustums = new FrustumExtended[CAMERA_PATH_LENGTH];
+
+    private int frame;
+
+    @Setup
+    public void setup() {
+        this.culler = createCuller(this.implementation, this.renderDistance, this.parallel);
+        loadSyntheticWorld(this.culler, this.renderDistance);
+
+        for (int i = 0; i < CAMERA_PATH_LENGTH; i++) {
+            double angle = (Math.PI * 2.0D * i) / CAMERA_PATH_LENGTH;
+
+            this.cameraPath[i] = new BlockPos((int) (Math.cos(angle) * CAMERA_PATH_RADIUS), CAMERA_Y,
+                    (int) (Math.sin(angle) * CAMERA_PATH_RADIUS));
+            this.frustums[i] = createFrustum(this.cameraPath[i], angle);
+        }
+
+        for (int i = 0; i < CAMERA_PATH_LENGTH; i++) {
+            this.turningFrustums[i] = createFrustum(this.cameraPath[0], (Math.PI * 2.0D * i) / CAMERA_PATH_LENGTH);
+        }
+
+        this.checkAgainstReference();
+
+        this.frame = CAMERA_PATH_LENGTH;
+    }
+
+    /**
+     * Makes sure that the culler under test finds the same sections as the linked culler without incremental search.
+     * Incremental search isn't bounded by the frustum, so sections can be reached through different neighbors and
+     * the result is expected to differ slightly, in which case nothing is checked.
+     */
+    private void checkAgainstReference() {
+        if (this.implementation.equals("linked_incremental")) {
+            return;
+        }
+
+        ChunkCuller reference = createCuller("linked", this.renderDistance, false);
+        loadSyntheticWorld(reference, this.renderDistance);
+
+        for (int i = 0; i < CAMERA_PATH_LENGTH; i++) {
+            IntOpenHashSet expected = new IntOpenHashSet(reference.computeVisible(this.cameraPath[i], this.frustums[i], i, false, true));
+            IntOpenHashSet actual = new IntOpenHashSet(this.culler.computeVisible(this.cameraPath[i], this.frustums[i], i, false, true));
+
+            if (!actual.equals(expected)) {
+                throw new IllegalStateException("Culler '" + this.implementation + "' found " + actual.size() +
+                        " visible sections at step " + i + ", but the reference search found " + expected.size());
+            }
+        }
+    }
+
+    @Benchmark
+    public IntArrayList computeVisible() {
+        int frame = this.frame++;
+        int step = frame % CAMERA_PATH_LENGTH;
+
+        BlockPos origin = this.moving ? this.cameraPath[step] : this.cameraPath[0];
+        FrustumExtended frustum = this.moving ? this.frustums[step] : this.turningFrustums[step];
+
+        return this.culler.computeVisible(origin, frustum, frame, false, true);
+    }
+
+    private static FrustumExtended createFrustum(BlockPos origin, double yaw) {
+        return new SyntheticFrustum(origin, yaw, Math.toRadians(55.0D), Math.toRadians(40.0D));
+    }
+
+    private static ChunkCuller createCuller(String implementation, int renderDistance, boolean parallel) {
+        switch (implementation) {
+            case "linked":
+                return new ChunkGraphCuller(null, renderDistance, false, parallel);
+            case "linked_incremental":
+                return new ChunkGraphCuller(null, renderDistance, true, parallel);
+            case "flat":
+                return new FlatChunkGraphCuller(null, renderDistance, parallel);
+            default:
+                throw new IllegalArgumentException("Unknown culler: " + implementation);
+        }
+    }
+
+    private static void loadSyntheticWorld(ChunkCuller culler, int renderDistance) {
+        Random random = new Random(1234L);
+        int id = 0;
+
+        for (int x = -renderDistance; x <= renderDistance; x++) {
+            for (int z = -renderDistance; z <= renderDistance; z++) {
+                for (int y = 0; y < COLUMN_HEIGHT; y++) {
+                    culler.onSectionLoaded(x, y, z, id++);
+                    culler.onSectionStateChanged(x, y, z, createOcclusionData(random, y));
+                }
+            }
+        }
+    }
+
+    private static SetVisibility createOcclusionData(Random random, int y) {
+        SetVisibility data = new SetVisibility();
+
+        float roll = random.nextFloat();
+
+        if (y >= SURFACE_SECTION ? roll < 0.9f : roll < 0.3f) {
+            // Sections which are mostly air connect every face to every other face
+            data.add(EnumSet.allOf(Direction.class));
+        } else if (roll < 0.6f) {
+            // Solid sections leave every face unconnected
+            return data;
+        } else {
+            // Otherwise, the faces are split between a few separate openings
+            List<Set<Direction>> openings = new ArrayList<>();
+
+            for (int i = 0; i < 3; i++) {
+                openings.add(EnumSet.noneOf(Direction.class));
+            }
+
+            for (Direction dir : Direction.values()) {
+                openings.get(random.nextInt(openings.size())).add(dir);
+            }
+
+            for (Set<Direction> opening : openings) {
+                data.add(opening);
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * A frustum without near or far planes, looking horizontally in the direction of the given yaw from the center of
+     * the given block.
+     */
+    private static class SyntheticFrustum implements FrustumExtended {
+        private final float originX, originY, originZ;
+        private final float[][] planes;
+
+        private SyntheticFrustum(BlockPos origin, double yaw, double halfFovX, double halfFovY) {
+            this.originX = origin.getX() + 0.5f;
+            this.originY = origin.getY() + 0.5f;
+            this.originZ = origin.getZ() + 0.5f;
+
+            double dirX = Math.cos(yaw);
+            double dirZ = Math.sin(yaw);
+
+            double sideAngle = (Math.PI / 2.0D) - halfFovX;
+
+            this.planes = new float[][] {
+                    { (float) Math.cos(yaw + sideAngle), 0.0f, (float) Math.sin(yaw + sideAngle) },
+                    { (float) Math.cos(yaw - sideAngle), 0.0f, (float) Math.sin(yaw - sideAngle) },
+                    { (float) (dirX * Math.sin(halfFovY)), (float) -Math.cos(halfFovY), (float) (dirZ * Math.sin(halfFovY)) },
+                    { (float) (dirX * Math.sin(halfFovY)), (float) Math.cos(halfFovY), (float) (dirZ * Math.sin(halfFovY)) }
+            };
+        }
+
+        @Override
+        public boolean fastAabbTest(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+            for (float[] plane : this.planes) {
+                // The corner of the box which lies furthest along the plane's normal
+                float x = (plane[0] >= 0.0f ? maxX : minX) - this.originX;
+                float y = (plane[1] >= 0.0f ? maxY : minY) - this.originY;
+                float z = (plane[2] >= 0.0f ? maxZ : minZ) - this.originZ;
+
+                if ((plane[0] * x) + (plane[1] * y) + (plane[2] * z) < 0.0f) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
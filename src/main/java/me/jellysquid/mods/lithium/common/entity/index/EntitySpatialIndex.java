@@ -0,0 +1,119 @@
+package me.jellysquid.mods.lithium.common.entity.index;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A {@link SpatialGrid} over the entities of a world, which is kept up to date whenever an entity's bounding box
+ * changes. In dense clusters of entities, the vanilla entity lookup tests the bounding box of every entity in each
+ * nearby chunk section, while the grid only needs to test those in the few cells around the queried box.
+ * <p>
+ * The grid only holds the entities which are stored in the entity sections of a loaded chunk, and the chunk section
+ * which holds each entity is still checked when querying, so that exactly the same entities are found as vanilla
+ * would. Only the order of the returned entities differs.
+ */
+public class EntitySpatialIndex {
+    private final SpatialGrid<Entity> grid = new SpatialGrid<>(Entity::getBoundingBox);
+
+    /**
+     * Called when an entity is added to the entity sections of a chunk.
+     */
+    public void onEntityAdded(Entity entity) {
+        SpatialIndexedEntity indexed = (SpatialIndexedEntity) entity;
+
+        if (indexed.isSpatiallyIndexed()) {
+            this.grid.remove(entity, indexed.getSpatialIndexCell());
+        }
+
+        indexed.setSpatialIndexCell(this.grid.add(entity));
+        indexed.setSpatiallyIndexed(true);
+    }
+
+    /**
+     * Called when an entity is removed from the entity sections of a chunk, or when its chunk is unloaded.
+     */
+    public void onEntityRemoved(Entity entity) {
+        SpatialIndexedEntity indexed = (SpatialIndexedEntity) entity;
+
+        if (!indexed.isSpatiallyIndexed()) {
+            return;
+        }
+
+        this.grid.remove(entity, indexed.getSpatialIndexCell());
+
+        indexed.setSpatiallyIndexed(false);
+    }
+
+    /**
+     * Called when the bounding box of an indexed entity has changed.
+     */
+    public void onEntityMoved(Entity entity) {
+        SpatialIndexedEntity indexed = (SpatialIndexedEntity) entity;
+        indexed.setSpatialIndexCell(this.grid.move(entity, indexed.getSpatialIndexCell()));
+    }
+
+    /**
+     * [VanillaCopy] World#getEntities(Entity, AxisAlignedBB, Predicate)
+     * Collects the entities which the vanilla implementation would return, except for their order.
+     *
+     * @return False if the box is too large to be efficiently queried through the grid, in which case nothing is added
+     * to the list and the vanilla implementation should be used instead
+     */
+    public boolean getEntities(World world, Entity except, AxisAlignedBB box, Predicate<? super Entity> predicate, List<Entity> out) {
+        // The range of chunk sections which vanilla would scan
+        double radius = world.getMaxEntityRadius();
+
+        SectionRange range = new SectionRange(
+                MathHelper.floor((box.minX - radius) / 16.0D), MathHelper.floor((box.maxX + radius) / 16.0D),
+                MathHelper.clamp(MathHelper.floor((box.minY - radius) / 16.0D), 0, 15), MathHelper.clamp(MathHelper.floor((box.maxY + radius) / 16.0D), 0, 15),
+                MathHelper.floor((box.minZ - radius) / 16.0D), MathHelper.floor((box.maxZ + radius) / 16.0D));
+
+        return this.grid.forEachIntersecting(box, entity -> collect(entity, except, box, predicate, range, out));
+    }
+
+    private static void collect(Entity entity, Entity except, AxisAlignedBB box, Predicate<? super Entity> predicate, SectionRange range, List<Entity> out) {
+        if (entity == except || !range.contains(entity)) {
+            return;
+        }
+
+        if (predicate == null || predicate.test(entity)) {
+            out.add(entity);
+        }
+
+        if (entity.isMultipartEntity()) {
+            for (Entity part : entity.getParts()) {
+                if (part != except && part.getBoundingBox().intersects(box) && (predicate == null || predicate.test(part))) {
+                    out.add(part);
+                }
+            }
+        }
+    }
+
+    /**
+     * The chunk sections which vanilla scans for a query, used to exclude entities which vanilla would not find because
+     * they are still stored in a section away from their current position.
+     */
+    private static class SectionRange {
+        private final int minX, maxX, minY, maxY, minZ, maxZ;
+
+        private SectionRange(int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+            this.minX = minX;
+            this.maxX = maxX;
+            this.minY = minY;
+            this.maxY = maxY;
+            this.minZ = minZ;
+            this.maxZ = maxZ;
+        }
+
+        private boolean contains(Entity entity) {
+            return entity.xChunk >= this.minX && entity.xChunk <= this.maxX &&
+                    entity.yChunk >= this.minY && entity.yChunk <= this.maxY &&
+                    entity.zChunk >= this.minZ && entity.zChunk <= this.maxZ;
+        }
+    }
+}
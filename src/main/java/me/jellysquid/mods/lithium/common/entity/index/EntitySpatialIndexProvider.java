@@ -0,0 +1,9 @@
+package me.jellysquid.mods.lithium.common.entity.index;
+
+public interface EntitySpatialIndexProvider {
+    EntitySpatialIndex getEntitySpatialIndex();
+
+    static EntitySpatialIndex getEntitySpatialIndex(Object world) {
+        return world instanceof EntitySpatialIndexProvider ? ((EntitySpatialIndexProvider) world).getEntitySpatialIndex() : null;
+    }
+}
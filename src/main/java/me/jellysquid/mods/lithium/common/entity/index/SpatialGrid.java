@@ -0,0 +1,157 @@
+package me.jellysquid.mods.lithium.common.entity.index;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A sparse uniform grid of 8-block cells over a set of objects with bounding boxes, which finds the objects intersecting
+ * a box by only testing those in the few cells around it.
+ * <p>
+ * Objects are placed into the cell containing the minimum corner of their bounding box. As long as an object is no
+ * larger than a cell, it can only intersect a box if that corner lies within one cell's length before the box. Larger
+ * objects are kept in a separate list which is always scanned.
+ * <p>
+ * The grid doesn't keep track of which cell each object is in, so callers need to store the cell returned when adding
+ * or moving an object and pass it back in when the object is moved or removed.
+ *
+ * @param <T> The type of object held by the grid
+ */
+public class SpatialGrid<T> {
+    // The length of each cell in blocks, as a power of two
+    private static final int CELL_SHIFT = 3;
+    private static final double CELL_SIZE = 1 << CELL_SHIFT;
+
+    // Queries spanning more cells than this are rejected, as scanning whole chunks will be faster
+    private static final int MAX_QUERY_CELLS = 64;
+
+    private static final long OVERSIZED_CELL = Long.MIN_VALUE;
+
+    private final Long2ObjectOpenHashMap<ReferenceLinkedOpenHashSet<T>> cells = new Long2ObjectOpenHashMap<>();
+    private final ReferenceLinkedOpenHashSet<T> oversized = new ReferenceLinkedOpenHashSet<>();
+
+    private final Function<T, AxisAlignedBB> boxes;
+
+    /**
+     * @param boxes The function used to get the current bounding box of an object
+     */
+    public SpatialGrid(Function<T, AxisAlignedBB> boxes) {
+        this.boxes = boxes;
+    }
+
+    /**
+     * Adds the object to the cell for its current bounding box.
+     * @return The cell which the object was added to
+     */
+    public long add(T obj) {
+        long cell = getCell(this.boxes.apply(obj));
+
+        this.addToCell(obj, cell);
+
+        return cell;
+    }
+
+    /**
+     * Removes the object from the given cell, which must be the last cell returned for it.
+     */
+    public void remove(T obj, long cell) {
+        if (cell == OVERSIZED_CELL) {
+            this.oversized.remove(obj);
+
+            return;
+        }
+
+        ReferenceLinkedOpenHashSet<T> objects = this.cells.get(cell);
+
+        if (objects != null && objects.remove(obj) && objects.isEmpty()) {
+            this.cells.remove(cell);
+        }
+    }
+
+    /**
+     * Moves the object from the given cell, which must be the last cell returned for it, into the cell for its current
+     * bounding box.
+     * @return The cell which now holds the object
+     */
+    public long move(T obj, long prevCell) {
+        long cell = getCell(this.boxes.apply(obj));
+
+        if (prevCell != cell) {
+            this.remove(obj, prevCell);
+            this.addToCell(obj, cell);
+        }
+
+        return cell;
+    }
+
+    /**
+     * Passes every object whose bounding box intersects the given box to the action, in no particular order.
+     *
+     * @return False if the box is too large to be efficiently queried through the grid, in which case nothing is passed
+     * to the action
+     */
+    public boolean forEachIntersecting(AxisAlignedBB box, Consumer<? super T> action) {
+        int minCellX = MathHelper.floor(box.minX - CELL_SIZE) >> CELL_SHIFT;
+        int minCellY = MathHelper.floor(box.minY - CELL_SIZE) >> CELL_SHIFT;
+        int minCellZ = MathHelper.floor(box.minZ - CELL_SIZE) >> CELL_SHIFT;
+
+        int maxCellX = MathHelper.floor(box.maxX) >> CELL_SHIFT;
+        int maxCellY = MathHelper.floor(box.maxY) >> CELL_SHIFT;
+        int maxCellZ = MathHelper.floor(box.maxZ) >> CELL_SHIFT;
+
+        long cellCount = (long) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1) * (maxCellZ - minCellZ + 1);
+
+        if (cellCount > MAX_QUERY_CELLS || cellCount <= 0) {
+            return false;
+        }
+
+        for (int x = minCellX; x <= maxCellX; x++) {
+            for (int y = minCellY; y <= maxCellY; y++) {
+                for (int z = minCellZ; z <= maxCellZ; z++) {
+                    ReferenceLinkedOpenHashSet<T> cell = this.cells.get(BlockPos.asLong(x, y, z));
+
+                    if (cell != null) {
+                        this.forEachIntersecting(cell, box, action);
+                    }
+                }
+            }
+        }
+
+        if (!this.oversized.isEmpty()) {
+            this.forEachIntersecting(this.oversized, box, action);
+        }
+
+        return true;
+    }
+
+    private void forEachIntersecting(Iterable<T> objects, AxisAlignedBB box, Consumer<? super T> action) {
+        for (T obj : objects) {
+            if (this.boxes.apply(obj).intersects(box)) {
+                action.accept(obj);
+            }
+        }
+    }
+
+    private void addToCell(T obj, long cell) {
+        if (cell == OVERSIZED_CELL) {
+            this.oversized.add(obj);
+        } else {
+            this.cells.computeIfAbsent(cell, key -> new ReferenceLinkedOpenHashSet<>())
+                    .add(obj);
+        }
+    }
+
+    private static long getCell(AxisAlignedBB box) {
+        // Also catches boxes with non-finite coordinates, which compare false against everything
+        if (!(box.getXsize() <= CELL_SIZE && box.getYsize() <= CELL_SIZE && box.getZsize() <= CELL_SIZE)) {
+            return OVERSIZED_CELL;
+        }
+
+        return BlockPos.asLong(MathHelper.floor(box.minX) >> CELL_SHIFT, MathHelper.floor(box.minY) >> CELL_SHIFT, MathHelper.floor(box.minZ) >> CELL_SHIFT);
+    }
+}
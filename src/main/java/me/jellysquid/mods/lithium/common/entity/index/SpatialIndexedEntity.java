@@ -0,0 +1,14 @@
+package me.jellysquid.mods.lithium.common.entity.index;
+
+/**
+ * Stores the state of an entity within the {@link EntitySpatialIndex} of its world.
+ */
+public interface SpatialIndexedEntity {
+    boolean isSpatiallyIndexed();
+
+    void setSpatiallyIndexed(boolean indexed);
+
+    long getSpatialIndexCell();
+
+    void setSpatialIndexCell(long cell);
+}
@@ -22,10 +22,13 @@ import static me.jellysquid.mods.lithium.common.entity.LithiumEntityCollisions.E
 /**
  * ChunkAwareBlockCollisionSweeper iterates over blocks in one chunk section at a time. Together with the chunk
  * section keeping track of the amount of oversized blocks inside the number of iterations can often be reduced.
+ * When the chunk section also keeps a {@link SectionCollisionBitmap}, blocks without a collision shape are skipped
+ * without looking up their state and full cubes are resolved without asking the block for its shape.
  */
 @Log4j2
 public class ChunkAwareBlockCollisionSweeper {
     private static final boolean OVERSIZED_BLOCK_COUNTING_ENABLED = OversizedBlocksCounter.class.isAssignableFrom(ChunkSection.class);
+    private static final boolean COLLISION_BITMAPS_ENABLED = SectionCollisionBitmap.Provider.class.isAssignableFrom(ChunkSection.class);
 
     private final BlockPos.Mutable pos = new BlockPos.Mutable();
 
@@ -62,6 +65,7 @@ public class ChunkAwareBlockCollisionSweeper {
     private boolean sectionOversizedBlocks;
     private IChunk cachedChunk;
     private ChunkSection cachedChunkSection;
+    private SectionCollisionBitmap cachedCollisionBitmap;
     private boolean needEntityCollisionCheck;
 
     public ChunkAwareBlockCollisionSweeper(ICollisionReader view, Entity entity, AxisAlignedBB box, BlockCollisionPredicate collisionPredicate) {
@@ -128,6 +132,7 @@ public class ChunkAwareBlockCollisionSweeper {
             } while (this.cachedChunk == null || ChunkSection.isEmpty(this.cachedChunkSection));
 
             this.sectionOversizedBlocks = hasChunkSectionOversizedBlocks(this.cachedChunk, this.chunkY);
+            this.cachedCollisionBitmap = COLLISION_BITMAPS_ENABLED ? ((SectionCollisionBitmap.Provider) this.cachedChunkSection).getCollisionBitmap() : null;
 
             int sizeExtension = this.sectionOversizedBlocks ? 1 : 0;
 
@@ -213,19 +218,38 @@ public class ChunkAwareBlockCollisionSweeper {
                 continue;
             }
 
-            final BlockState state = this.cachedChunkSection.getBlockState(x & 15, y & 15, z & 15);
+            final int collisionType = this.cachedCollisionBitmap != null ?
+                    this.cachedCollisionBitmap.get(x & 15, y & 15, z & 15) : SectionCollisionBitmap.IRREGULAR;
 
-            if (!canInteractWithBlock(state, edgesHit)) {
+            //full cubes never extend past their voxel and can only be collided with inside the box itself
+            if (collisionType == SectionCollisionBitmap.EMPTY || (collisionType == SectionCollisionBitmap.FULL_CUBE && edgesHit != 0)) {
                 continue;
             }
 
             this.pos.set(x, y, z);
 
-            if (!this.collisionPredicate.test(this.view, this.pos, state)) {
-                continue;
-            }
+            VoxelShape collisionShape;
+
+            if (collisionType == SectionCollisionBitmap.FULL_CUBE) {
+                if (this.collisionPredicate != BlockCollisionPredicate.ANY &&
+                        !this.collisionPredicate.test(this.view, this.pos, this.cachedChunkSection.getBlockState(x & 15, y & 15, z & 15))) {
+                    continue;
+                }
+
+                collisionShape = VoxelShapes.block();
+            } else {
+                final BlockState state = this.cachedChunkSection.getBlockState(x & 15, y & 15, z & 15);
 
-            VoxelShape collisionShape = state.getCollisionShape(this.view, this.pos, this.context);
+                if (!canInteractWithBlock(state, edgesHit)) {
+                    continue;
+                }
+
+                if (!this.collisionPredicate.test(this.view, this.pos, state)) {
+                    continue;
+                }
+
+                collisionShape = state.getCollisionShape(this.view, this.pos, this.context);
+            }
 
             if (collisionShape != VoxelShapes.empty()) {
                 VoxelShape collidedShape = getCollidedShape(this.box, this.shape, collisionShape, x, y, z);
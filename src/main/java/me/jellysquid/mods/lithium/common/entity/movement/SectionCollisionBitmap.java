@@ -0,0 +1,145 @@
+package me.jellysquid.mods.lithium.common.entity.movement;
+
+import lombok.extern.log4j.Log4j2;
+import me.jellysquid.mods.lithium.common.entity.EntityClassGroup;
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.shapes.ISelectionContext;
+import net.minecraft.util.math.shapes.VoxelShape;
+import net.minecraft.util.math.shapes.VoxelShapes;
+import net.minecraft.world.EmptyBlockReader;
+import net.minecraft.world.IBlockReader;
+import net.minecraftforge.fml.common.ObfuscationReflectionHelper;
+
+/**
+ * Stores the kind of collision shape of every block in a chunk section as two bit-fields, so that collision code can
+ * skip blocks without a collision shape and resolve full cubes without asking the block state for its shape.
+ * <p>
+ * A block state is only considered to be empty or a full cube if its block doesn't override how its collision shape
+ * is determined, as the shape could otherwise depend on the position or the colliding entity. Every other block is
+ * irregular and needs to have its shape queried as usual.
+ */
+@Log4j2
+public class SectionCollisionBitmap {
+    public static final int EMPTY = 0;
+    public static final int FULL_CUBE = 1;
+    public static final int IRREGULAR = 2;
+
+    private static final Class<?>[] SHAPE_METHOD_ARGS = new Class<?>[] { BlockState.class, IBlockReader.class, BlockPos.class, ISelectionContext.class };
+
+    // The remapped names of AbstractBlock#getCollisionShape and AbstractBlock#getShape, or null if they couldn't be found
+    private static final String COLLISION_SHAPE_METHOD, SHAPE_METHOD;
+
+    static {
+        String collisionShapeMethod = null, shapeMethod = null;
+
+        try {
+            collisionShapeMethod = ObfuscationReflectionHelper.findMethod(AbstractBlock.class, "func_220071_b", SHAPE_METHOD_ARGS).getName();
+            shapeMethod = ObfuscationReflectionHelper.findMethod(AbstractBlock.class, "func_220053_a", SHAPE_METHOD_ARGS).getName();
+        } catch (Exception e) {
+            log.warn("Could not find the block shape methods, all blocks will be treated as having irregular collision shapes", e);
+
+            collisionShapeMethod = null;
+            shapeMethod = null;
+        }
+
+        COLLISION_SHAPE_METHOD = collisionShapeMethod;
+        SHAPE_METHOD = shapeMethod;
+    }
+
+    private final long[] fullCubes = new long[64];
+    private final long[] irregular = new long[64];
+
+    public int get(int x, int y, int z) {
+        int index = getIndex(x, y, z);
+        int word = index >>> 6;
+        long bit = 1L << index;
+
+        if ((this.fullCubes[word] & bit) != 0) {
+            return FULL_CUBE;
+        }
+
+        if ((this.irregular[word] & bit) != 0) {
+            return IRREGULAR;
+        }
+
+        return EMPTY;
+    }
+
+    public void set(int x, int y, int z, BlockState state) {
+        int index = getIndex(x, y, z);
+        int word = index >>> 6;
+        long bit = 1L << index;
+
+        this.fullCubes[word] &= ~bit;
+        this.irregular[word] &= ~bit;
+
+        switch (getCollisionType(state)) {
+            case FULL_CUBE:
+                this.fullCubes[word] |= bit;
+                break;
+            case IRREGULAR:
+                this.irregular[word] |= bit;
+                break;
+        }
+    }
+
+    public static int getCollisionType(BlockState state) {
+        if (state instanceof CollisionTypeHolder) {
+            return ((CollisionTypeHolder) state).getCollisionType();
+        }
+
+        return IRREGULAR;
+    }
+
+    /**
+     * Determines the kind of collision shape a block state has. Should only be called once for each block state.
+     */
+    public static int computeCollisionType(BlockState state, boolean hasCollision) {
+        Block block = state.getBlock();
+
+        if (COLLISION_SHAPE_METHOD == null || block.hasDynamicShape()) {
+            return IRREGULAR;
+        }
+
+        Class<?> blockClass = block.getClass();
+
+        // [VanillaCopy] AbstractBlock#getCollisionShape
+        // Without overrides, the collision shape is either empty or the result of AbstractBlock#getShape
+        if (EntityClassGroup.isMethodFromSuperclassOverwritten(blockClass, AbstractBlock.class, COLLISION_SHAPE_METHOD, SHAPE_METHOD_ARGS)) {
+            return IRREGULAR;
+        }
+
+        if (!hasCollision) {
+            return EMPTY;
+        }
+
+        if (EntityClassGroup.isMethodFromSuperclassOverwritten(blockClass, AbstractBlock.class, SHAPE_METHOD, SHAPE_METHOD_ARGS)) {
+            return IRREGULAR;
+        }
+
+        VoxelShape shape = state.getCollisionShape(EmptyBlockReader.INSTANCE, BlockPos.ZERO, ISelectionContext.empty());
+
+        return shape == VoxelShapes.block() ? FULL_CUBE : IRREGULAR;
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return (y << 8) | (z << 4) | x;
+    }
+
+    public interface CollisionTypeHolder {
+        /**
+         * @return One of {@link #EMPTY}, {@link #FULL_CUBE} or {@link #IRREGULAR}
+         */
+        int getCollisionType();
+    }
+
+    public interface Provider {
+        /**
+         * @return The collision bit-fields of the chunk section, building them first if needed
+         */
+        SectionCollisionBitmap getCollisionBitmap();
+    }
+}
@@ -0,0 +1,9 @@
+package me.jellysquid.mods.lithium.common.entity.parallel;
+
+public interface EntityExtended {
+    /**
+     * @return True if the entity was inside a portal block during its last tick, in which case its next tick may try
+     * to change its dimension
+     */
+    boolean isInsidePortal();
+}
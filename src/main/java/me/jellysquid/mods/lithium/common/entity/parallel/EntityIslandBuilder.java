@@ -0,0 +1,140 @@
+package me.jellysquid.mods.lithium.common.entity.parallel;
+
+import it.unimi.dsi.fastutil.booleans.BooleanArrayList;
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.List;
+
+/**
+ * Joins regions which share a cell of a coarse grid into islands, using a union-find structure over the regions in the
+ * order they were added. Regions can also be added as blockers, which keep every region joined with them out of the
+ * islands, as they belong to something which can't be ticked in parallel.
+ */
+class EntityIslandBuilder {
+    private final int cellShift;
+    private final int maxRegionCells;
+
+    // The parent of each region in the union-find structure, and whether the island of each root contains a blocker
+    private final IntArrayList parents = new IntArrayList();
+    private final BooleanArrayList blocked = new BooleanArrayList();
+
+    private final BooleanArrayList blockers = new BooleanArrayList();
+
+    private final Long2IntOpenHashMap cellOwners = new Long2IntOpenHashMap();
+
+    /**
+     * @param cellShift The length of each cell in blocks, as a power of two
+     * @param maxRegionCells The number of cells a region may span before it is rejected
+     */
+    EntityIslandBuilder(int cellShift, int maxRegionCells) {
+        this.cellShift = cellShift;
+        this.maxRegionCells = maxRegionCells;
+
+        this.cellOwners.defaultReturnValue(-1);
+    }
+
+    /**
+     * Adds a region, which is identified by the number of regions added before it.
+     * @return False if the region spans too many cells or has non-finite bounds, in which case it wasn't added
+     */
+    boolean add(AxisAlignedBB region, boolean blocker) {
+        // Also catches non-finite bounds, which compare false against everything
+        if (!(region.getXsize() < Integer.MAX_VALUE && region.getYsize() < Integer.MAX_VALUE && region.getZsize() < Integer.MAX_VALUE)) {
+            return false;
+        }
+
+        int minX = MathHelper.floor(region.minX) >> this.cellShift;
+        int minY = MathHelper.floor(region.minY) >> this.cellShift;
+        int minZ = MathHelper.floor(region.minZ) >> this.cellShift;
+
+        int maxX = MathHelper.floor(region.maxX) >> this.cellShift;
+        int maxY = MathHelper.floor(region.maxY) >> this.cellShift;
+        int maxZ = MathHelper.floor(region.maxZ) >> this.cellShift;
+
+        long cellCount = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+
+        if (cellCount > this.maxRegionCells || cellCount <= 0) {
+            return false;
+        }
+
+        int node = this.parents.size();
+
+        this.parents.add(node);
+        this.blocked.add(blocker);
+        this.blockers.add(blocker);
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    int owner = this.cellOwners.putIfAbsent(BlockPos.asLong(x, y, z), node);
+
+                    if (owner != -1) {
+                        this.union(owner, node);
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The regions of every island which isn't joined with a blocker, each in the order the regions were added
+     * in. The islands are ordered by the first region added to each.
+     */
+    List<IntArrayList> build() {
+        Int2ObjectLinkedOpenHashMap<IntArrayList> islands = new Int2ObjectLinkedOpenHashMap<>();
+
+        for (int node = 0; node < this.parents.size(); node++) {
+            int root = this.find(node);
+
+            if (this.blockers.getBoolean(node) || this.blocked.getBoolean(root)) {
+                continue;
+            }
+
+            IntArrayList island = islands.get(root);
+
+            if (island == null) {
+                islands.put(root, island = new IntArrayList());
+            }
+
+            island.add(node);
+        }
+
+        return new ObjectArrayList<>(islands.values());
+    }
+
+    private int find(int node) {
+        int root = node;
+
+        while (this.parents.getInt(root) != root) {
+            root = this.parents.getInt(root);
+        }
+
+        // Compress the path so that later lookups are direct
+        while (this.parents.getInt(node) != root) {
+            node = this.parents.set(node, root);
+        }
+
+        return root;
+    }
+
+    private void union(int a, int b) {
+        int rootA = this.find(a);
+        int rootB = this.find(b);
+
+        if (rootA != rootB) {
+            this.parents.set(rootB, rootA);
+
+            if (this.blocked.getBoolean(rootB)) {
+                this.blocked.set(rootA, true);
+            }
+        }
+    }
+}
@@ -0,0 +1,566 @@
+package me.jellysquid.mods.lithium.common.entity.parallel;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import lombok.extern.log4j.Log4j2;
+import me.jellysquid.mods.lithium.common.entity.EntityClassGroup;
+import me.jellysquid.mods.lithium.common.entity.index.EntitySpatialIndexProvider;
+import me.jellysquid.mods.lithium.common.world.WorldHelper;
+import me.jellysquid.mods.lithium.common.world.chunk.ClassGroupFilterableList;
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.item.ExperienceOrbEntity;
+import net.minecraft.entity.item.ItemEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.profiler.EmptyProfiler;
+import net.minecraft.util.ClassInheritanceMultiMap;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.common.extensions.IForgeItem;
+import net.minecraftforge.fml.common.ObfuscationReflectionHelper;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Ticks item entities and experience orbs on a pool of worker threads before the server thread ticks the rest of a
+ * world's entities. These entities only ever modify themselves and, when items merge, the item entities right next to
+ * them, so groups of them which are far enough apart can be ticked at the same time.
+ * <p>
+ * Each entity is given a region covering every block it could reach during its tick, and entities whose regions (grown
+ * by the distance at which items merge) share a cell of a coarse grid are joined into an island. Anything which could
+ * reach outside of its island is left to the serial tick loop: entities in fluids, on fire, in portals, next to blocks
+ * which react to entities or about to expire. Every entity left to the serial loop is added as a blocker, covering the
+ * region in which it could read or modify other entities, and islands joined with a blocker are ticked serially too.
+ * <p>
+ * The entities of an island are ticked in the same order as the serial loop would. All islands are ticked before any
+ * other entity of the world, but as none of those entities can reach an island, the result is the same as ticking
+ * every entity serially.
+ * <p>
+ * The server's chunk provider may only be used from the server thread, so workers read chunks from a snapshot taken
+ * beforehand. Chunks outside of the snapshot are requested from the server thread, which runs these requests while it
+ * waits for the islands to be ticked. This relies on the chunk lookup of the world.chunk_access mixins, without which
+ * workers would wait on the server thread's task queue, which isn't run while it waits for them.
+ */
+@Log4j2
+public class EntityIslandTicker {
+    // Worlds with fewer entities which could be ticked in parallel are ticked serially, as the overhead would outweigh the gains
+    private static final int MIN_PARALLEL_ENTITIES = 128;
+
+    // The number of batches handed out for each worker, so that workers with cheap islands can take on more of them
+    private static final int BATCHES_PER_WORKER = 4;
+
+    // The length of each cell used to find overlapping regions in blocks, as a power of two
+    private static final int CELL_SHIFT = 4;
+
+    // Entities spanning more cells than this are too large or too fast to be reasoned about, and nothing is ticked in parallel
+    private static final int MAX_ENTITY_CELLS = 64;
+
+    // How far beyond its velocity an entity may move in a tick, covering gravity and being pushed out of blocks
+    private static final double MOVEMENT_MARGIN = 0.5D;
+
+    // Entities moving faster than this are ticked serially
+    private static final double MAX_MOVEMENT = 8.0D;
+
+    // The distance at which item entities look for other items to merge with
+    private static final double MERGE_RANGE = 0.5D;
+
+    // How far entities ticked by the serial loop may look for items and experience orbs, covering the item goals and
+    // sensors of vanilla mobs
+    private static final double SERIAL_ENTITY_REACH = 8.0D;
+
+    // How far beyond an entity's region chunks are included in the snapshot, covering the margin used by entity lookups
+    private static final double SNAPSHOT_MARGIN = 3.0D;
+
+    private static final EntityClassGroup ISOLATED_ENTITIES = new EntityClassGroup(entityClass ->
+            entityClass == ItemEntity.class || entityClass == ExperienceOrbEntity.class);
+
+    private static final int PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM, pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("Entity Island Worker #" + thread.getPoolIndex());
+        thread.setContextClassLoader(EntityIslandTicker.class.getClassLoader());
+        thread.setDaemon(true);
+
+        return thread;
+    }, null, false);
+
+    private static final ThreadLocal<EntityIslandTicker> CURRENT = new ThreadLocal<>();
+
+    // The methods through which a block reacts to entities moving into, onto or through it, or null if they couldn't be found
+    private static final BlockCallback[] BLOCK_CALLBACKS;
+
+    static {
+        BlockCallback[] callbacks;
+
+        try {
+            callbacks = new BlockCallback[] {
+                    // AbstractBlock#entityInside
+                    new BlockCallback(AbstractBlock.class, "func_196262_a", BlockState.class, World.class, BlockPos.class, Entity.class),
+                    // Block#fallOn
+                    new BlockCallback(Block.class, "func_180658_a", World.class, BlockPos.class, Entity.class, float.class),
+                    // Block#updateEntityAfterFallOn
+                    new BlockCallback(Block.class, "func_176216_a", IBlockReader.class, Entity.class),
+                    // Block#stepOn
+                    new BlockCallback(Block.class, "func_176199_a", World.class, BlockPos.class, Entity.class)
+            };
+        } catch (Exception e) {
+            log.warn("Could not find the block methods which react to entities, entities will not be ticked in parallel", e);
+
+            callbacks = null;
+        }
+
+        BLOCK_CALLBACKS = callbacks;
+    }
+
+    // Whether the blocks and items of each class can be ticked against off the server thread. Only used on the server thread.
+    private static final Reference2BooleanOpenHashMap<Class<?>> PASSIVE_BLOCKS = new Reference2BooleanOpenHashMap<>();
+    private static final Reference2BooleanOpenHashMap<Class<?>> PASSIVE_ITEMS = new Reference2BooleanOpenHashMap<>();
+
+    private final ServerWorld world;
+
+    // The chunks which workers can access, including those which weren't loaded (as null)
+    private final Long2ObjectOpenHashMap<Chunk> chunks = new Long2ObjectOpenHashMap<>();
+
+    private final ReferenceOpenHashSet<Entity> tickedEntities = new ReferenceOpenHashSet<>();
+
+    private final ConcurrentLinkedQueue<Runnable> serverTasks = new ConcurrentLinkedQueue<>();
+
+    private final BlockPos.Mutable pos = new BlockPos.Mutable();
+
+    private Thread serverThread;
+
+    public EntityIslandTicker(ServerWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * @return The ticker whose islands are being ticked by the current thread in the given world, or null if the
+     * current thread isn't ticking an island of that world
+     */
+    public static EntityIslandTicker getWorkerTicker(World world) {
+        EntityIslandTicker ticker = CURRENT.get();
+
+        return ticker != null && ticker.world == world ? ticker : null;
+    }
+
+    /**
+     * Finds the islands among the given entities and ticks them in parallel, returning once all of them have been
+     * ticked. Must be called on the server thread at the start of the entity tick loop. Nothing is ticked if there are
+     * too few entities which could be ticked in parallel, or if the world is being profiled.
+     */
+    public void tickIslands(Iterable<Entity> entities) {
+        this.tickedEntities.clear();
+
+        // The spatial index is updated whenever an entity moves, and profilers are not thread-safe
+        if (BLOCK_CALLBACKS == null || this.world.getProfiler() != EmptyProfiler.INSTANCE ||
+                EntitySpatialIndexProvider.getEntitySpatialIndex(this.world) != null) {
+            return;
+        }
+
+        try {
+            List<Batch> batches = this.createBatches(entities);
+
+            if (batches != null) {
+                this.prepareSnapshot();
+                this.tickBatches(batches);
+            }
+        } finally {
+            this.chunks.clear();
+        }
+    }
+
+    /**
+     * @return True if the entity has already been ticked by {@link #tickIslands(Iterable)} during this world tick
+     */
+    public boolean wasTickedInParallel(Entity entity) {
+        return !this.tickedEntities.isEmpty() && this.tickedEntities.contains(entity);
+    }
+
+    /**
+     * @return The chunk at the given position if it is part of the snapshot, otherwise null
+     */
+    public Chunk getSnapshotChunk(int x, int z) {
+        return this.chunks.get(ChunkPos.asLong(x, z));
+    }
+
+    /**
+     * Runs a task on the server thread while it waits for the islands to be ticked, blocking the calling worker until
+     * the task has completed.
+     */
+    public <T> T callOnServerThread(Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        this.serverTasks.add(() -> {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+
+        LockSupport.unpark(this.serverThread);
+
+        return future.join();
+    }
+
+    private List<Batch> createBatches(Iterable<Entity> entities) {
+        EntityIslandBuilder builder = new EntityIslandBuilder(CELL_SHIFT, MAX_ENTITY_CELLS);
+
+        ObjectArrayList<Entity> nodes = new ObjectArrayList<>();
+        ObjectArrayList<AxisAlignedBB> regions = new ObjectArrayList<>();
+
+        int candidates = 0;
+
+        for (Entity entity : entities) {
+            AxisAlignedBB region = this.getIsolatedTickRegion(entity);
+            boolean isIsolated = region != null;
+
+            if (isIsolated) {
+                candidates++;
+            } else {
+                // Entities ticked serially run after the islands, so they may not see or touch any entity of an island
+                region = getSerialTickRegion(entity);
+            }
+
+            if (!builder.add(region.inflate(MERGE_RANGE), !isIsolated)) {
+                return null;
+            }
+
+            nodes.add(entity);
+            regions.add(region);
+        }
+
+        if (candidates < MIN_PARALLEL_ENTITIES) {
+            return null;
+        }
+
+        List<IntArrayList> islands = builder.build();
+        int count = 0;
+
+        for (IntArrayList island : islands) {
+            for (int i = 0; i < island.size(); i++) {
+                this.addSnapshotChunks(regions.get(island.getInt(i)).inflate(SNAPSHOT_MARGIN));
+            }
+
+            count += island.size();
+        }
+
+        if (count < MIN_PARALLEL_ENTITIES || islands.size() < 2) {
+            return null;
+        }
+
+        // Islands don't interact with each other, so any number of them can be ticked one after another in a batch
+        int batchSize = Math.max(1, count / (PARALLELISM * BATCHES_PER_WORKER));
+
+        List<Batch> batches = new ObjectArrayList<>();
+        Batch batch = null;
+
+        for (IntArrayList island : islands) {
+            if (batch == null || batch.entities.size() >= batchSize) {
+                batches.add(batch = new Batch());
+            }
+
+            for (int i = 0; i < island.size(); i++) {
+                batch.entities.add(nodes.get(island.getInt(i)));
+            }
+        }
+
+        return batches;
+    }
+
+    /**
+     * @return The region in which an entity ticked by the serial loop could read or modify other entities
+     */
+    private static AxisAlignedBB getSerialTickRegion(Entity entity) {
+        // Items and experience orbs only reach other entities through merging, which is covered for every region
+        double reach = MOVEMENT_MARGIN + (ISOLATED_ENTITIES.contains(entity.getClass()) ? 0.0D : SERIAL_ENTITY_REACH);
+
+        Vector3d motion = entity.getDeltaMovement();
+
+        return entity.getBoundingBox().inflate(Math.abs(motion.x) + reach, Math.abs(motion.y) + reach, Math.abs(motion.z) + reach);
+    }
+
+    /**
+     * @return The region of blocks which the entity could reach during its next tick, or null if the entity cannot be
+     * ticked in parallel
+     */
+    private AxisAlignedBB getIsolatedTickRegion(Entity entity) {
+        if (!ISOLATED_ENTITIES.contains(entity.getClass())) {
+            return null;
+        }
+
+        if (entity.removed || !entity.inChunk || !entity.canUpdate() || entity.isPassenger() || entity.isVehicle() ||
+                entity.getRemainingFireTicks() > 0 || ((EntityExtended) entity).isInsidePortal()) {
+            return null;
+        }
+
+        if (entity instanceof ItemEntity && !isPassiveItem((ItemEntity) entity)) {
+            return null;
+        }
+
+        if (!this.world.getChunkSource().isEntityTickingChunk(entity)) {
+            return null;
+        }
+
+        Vector3d motion = entity.getDeltaMovement();
+
+        double x = Math.abs(motion.x) + MOVEMENT_MARGIN;
+        double y = Math.abs(motion.y) + MOVEMENT_MARGIN;
+        double z = Math.abs(motion.z) + MOVEMENT_MARGIN;
+
+        // Also catches non-finite velocities, which compare false against everything
+        if (!(x <= MAX_MOVEMENT && y <= MAX_MOVEMENT && z <= MAX_MOVEMENT)) {
+            return null;
+        }
+
+        AxisAlignedBB region = entity.getBoundingBox().inflate(x, y, z);
+
+        return this.isPassiveRegion(region) ? region : null;
+    }
+
+    /**
+     * @return True if none of the blocks in the region contain fluids or react to entities
+     */
+    private boolean isPassiveRegion(AxisAlignedBB box) {
+        int minX = MathHelper.floor(box.minX);
+        int minY = MathHelper.floor(box.minY);
+        int minZ = MathHelper.floor(box.minZ);
+
+        int maxX = MathHelper.floor(box.maxX);
+        int maxY = MathHelper.floor(box.maxY);
+        int maxZ = MathHelper.floor(box.maxZ);
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                Chunk chunk = this.takeSnapshotChunk(x >> 4, z >> 4);
+
+                if (chunk == null) {
+                    return false;
+                }
+
+                for (int y = minY; y <= maxY; y++) {
+                    if (!isPassiveBlock(chunk.getBlockState(this.pos.set(x, y, z)))) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isPassiveBlock(BlockState state) {
+        if (!state.getFluidState().isEmpty()) {
+            return false;
+        }
+
+        Class<?> blockClass = state.getBlock().getClass();
+
+        if (PASSIVE_BLOCKS.containsKey(blockClass)) {
+            return PASSIVE_BLOCKS.getBoolean(blockClass);
+        }
+
+        boolean passive = true;
+
+        for (BlockCallback callback : BLOCK_CALLBACKS) {
+            if (EntityClassGroup.isMethodFromSuperclassOverwritten(blockClass, callback.owner, callback.name, callback.args)) {
+                passive = false;
+                break;
+            }
+        }
+
+        PASSIVE_BLOCKS.put(blockClass, passive);
+
+        return passive;
+    }
+
+    private static boolean isPassiveItem(ItemEntity entity) {
+        // Expiring items fire an event which could be handled by anything
+        if (((ItemEntityExtended) entity).getItemAge() + 1 >= entity.lifespan) {
+            return false;
+        }
+
+        Class<?> itemClass = entity.getItem().getItem().getClass();
+
+        if (PASSIVE_ITEMS.containsKey(itemClass)) {
+            return PASSIVE_ITEMS.getBoolean(itemClass);
+        }
+
+        boolean passive;
+
+        try {
+            // Items can run arbitrary logic every tick through IForgeItem#onEntityItemUpdate
+            passive = itemClass.getMethod("onEntityItemUpdate", ItemStack.class, ItemEntity.class)
+                    .getDeclaringClass() == IForgeItem.class;
+        } catch (NoSuchMethodException e) {
+            passive = false;
+        }
+
+        PASSIVE_ITEMS.put(itemClass, passive);
+
+        return passive;
+    }
+
+    private Chunk takeSnapshotChunk(int x, int z) {
+        long key = ChunkPos.asLong(x, z);
+        Chunk chunk = this.chunks.get(key);
+
+        if (chunk == null && !this.chunks.containsKey(key)) {
+            chunk = this.world.getChunkSource().getChunkNow(x, z);
+
+            this.chunks.put(key, chunk);
+        }
+
+        return chunk;
+    }
+
+    private void addSnapshotChunks(AxisAlignedBB box) {
+        int minX = MathHelper.floor(box.minX) >> 4;
+        int minZ = MathHelper.floor(box.minZ) >> 4;
+
+        int maxX = MathHelper.floor(box.maxX) >> 4;
+        int maxZ = MathHelper.floor(box.maxZ) >> 4;
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                this.takeSnapshotChunk(x, z);
+            }
+        }
+    }
+
+    /**
+     * Builds the lazily created entity lists of every chunk section in the snapshot which the workers will query, so
+     * that they are only ever read from the workers.
+     */
+    private void prepareSnapshot() {
+        for (Chunk chunk : this.chunks.values()) {
+            if (chunk == null) {
+                continue;
+            }
+
+            for (ClassInheritanceMultiMap<Entity> section : chunk.getEntitySections()) {
+                section.find(ItemEntity.class);
+
+                if (!WorldHelper.CUSTOM_TYPE_FILTERABLE_LIST_DISABLED) {
+                    //noinspection unchecked
+                    ((ClassGroupFilterableList<Entity>) section).getAllOfGroupType(EntityClassGroup.BOAT_SHULKER_LIKE_COLLISION);
+                }
+            }
+        }
+    }
+
+    private void tickBatches(List<Batch> batches) {
+        this.serverThread = Thread.currentThread();
+
+        AtomicInteger remaining = new AtomicInteger(batches.size());
+
+        for (Batch batch : batches) {
+            POOL.execute(() -> {
+                CURRENT.set(this);
+
+                try {
+                    batch.tick();
+                } finally {
+                    CURRENT.remove();
+
+                    if (remaining.decrementAndGet() == 0) {
+                        LockSupport.unpark(this.serverThread);
+                    }
+                }
+            });
+        }
+
+        // Run the requests of the workers until all of them are done
+        while (remaining.get() > 0) {
+            Runnable task = this.serverTasks.poll();
+
+            if (task != null) {
+                task.run();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+
+        for (Batch batch : batches) {
+            this.tickedEntities.addAll(batch.ticked);
+        }
+
+        // Report failures through the usual handler, which either crashes the server or removes the entity
+        for (Batch batch : batches) {
+            for (int i = 0; i < batch.failedEntities.size(); i++) {
+                Throwable failure = batch.failures.get(i);
+
+                this.world.guardEntityTick(entity -> {
+                    if (failure instanceof Error) {
+                        throw (Error) failure;
+                    }
+
+                    throw failure instanceof RuntimeException ? (RuntimeException) failure : new RuntimeException(failure);
+                }, batch.failedEntities.get(i));
+            }
+        }
+    }
+
+    private static class Batch {
+        private final ObjectArrayList<Entity> entities = new ObjectArrayList<>();
+        private final ObjectArrayList<Entity> ticked = new ObjectArrayList<>();
+
+        private final ObjectArrayList<Entity> failedEntities = new ObjectArrayList<>();
+        private final ObjectArrayList<Throwable> failures = new ObjectArrayList<>();
+
+        private void tick() {
+            for (Entity entity : this.entities) {
+                // The entity has already been merged into another item of its island
+                if (entity.removed) {
+                    continue;
+                }
+
+                try {
+                    // [VanillaCopy] ServerWorld#tickNonPassenger, without profiling and moving the entity between chunks
+                    entity.setPosAndOldPos(entity.getX(), entity.getY(), entity.getZ());
+                    entity.yRotO = entity.yRot;
+                    entity.xRotO = entity.xRot;
+                    entity.tickCount++;
+                    entity.tick();
+                } catch (Throwable t) {
+                    this.failedEntities.add(entity);
+                    this.failures.add(t);
+                }
+
+                this.ticked.add(entity);
+            }
+        }
+    }
+
+    private static class BlockCallback {
+        private final Class<?> owner;
+        private final String name;
+        private final Class<?>[] args;
+
+        private BlockCallback(Class<?> owner, String srgName, Class<?>... args) {
+            this.owner = owner;
+            this.name = ObfuscationReflectionHelper.findMethod(owner, srgName, args).getName();
+            this.args = args;
+        }
+    }
+}
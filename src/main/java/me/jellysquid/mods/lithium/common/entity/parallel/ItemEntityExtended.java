@@ -0,0 +1,8 @@
+package me.jellysquid.mods.lithium.common.entity.parallel;
+
+public interface ItemEntityExtended {
+    /**
+     * @return The number of ticks the item entity has existed for, which is compared against its lifespan
+     */
+    int getItemAge();
+}
@@ -0,0 +1,190 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MutableBoundingBox;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The scheduled ticks of a single chunk, indexed by their position. Ticks of different types at the same position are
+ * chained together through {@link TickEntry#nextAtPos}, so looking up a tick does not need to allocate a key.
+ * <p>
+ * Ticks within {@link #BORDER_WIDTH} blocks of the chunk's edges are additionally kept in their own set. When the
+ * ticks around a neighboring chunk are fetched (such as when it is saved or unloaded), only these ticks can be within
+ * range, so the rest of the chunk's ticks do not need to be scanned.
+ */
+public class ChunkTickIndex<T> {
+    // The number of blocks around a chunk which are included when fetching the ticks of the chunk
+    public static final int BORDER_WIDTH = 2;
+
+    private final long pos;
+
+    private final Long2ObjectOpenHashMap<TickEntry<T>> ticksByPos = new Long2ObjectOpenHashMap<>(8);
+    private final Set<TickEntry<T>> borderTicks = new ObjectOpenHashSet<>(4);
+
+    private int size;
+
+    public ChunkTickIndex(long pos) {
+        this.pos = pos;
+    }
+
+    public void add(TickEntry<T> tick) {
+        tick.nextAtPos = this.ticksByPos.put(tick.pos.asLong(), tick);
+
+        if (isBorder(tick.pos)) {
+            this.borderTicks.add(tick);
+        }
+
+        this.size++;
+    }
+
+    public void remove(TickEntry<T> tick) {
+        long pos = tick.pos.asLong();
+        TickEntry<T> head = this.ticksByPos.get(pos);
+
+        if (head == null) {
+            return;
+        }
+
+        if (head == tick) {
+            if (tick.nextAtPos != null) {
+                this.ticksByPos.put(pos, tick.nextAtPos);
+            } else {
+                this.ticksByPos.remove(pos);
+            }
+        } else {
+            TickEntry<T> prev = head;
+
+            while (prev.nextAtPos != tick) {
+                if (prev.nextAtPos == null) {
+                    return;
+                }
+
+                prev = prev.nextAtPos;
+            }
+
+            prev.nextAtPos = tick.nextAtPos;
+        }
+
+        tick.nextAtPos = null;
+
+        if (isBorder(tick.pos)) {
+            this.borderTicks.remove(tick);
+        }
+
+        this.size--;
+    }
+
+    public TickEntry<T> get(BlockPos pos, T obj) {
+        TickEntry<T> entry = this.ticksByPos.get(pos.asLong());
+
+        while (entry != null && entry.getType() != obj) {
+            entry = entry.nextAtPos;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Adds the ticks of this chunk which are inside the box and match the predicate to the list.
+     * @return The number of ticks which were added
+     */
+    public int collect(MutableBoundingBox box, Predicate<TickEntry<?>> predicate, List<? super TickEntry<T>> out) {
+        int count = 0;
+
+        if (this.isBoxInBorder(box)) {
+            for (TickEntry<T> tick : this.borderTicks) {
+                if (box.isInside(tick.pos) && predicate.test(tick)) {
+                    out.add(tick);
+                    count++;
+                }
+            }
+        } else {
+            for (TickEntry<T> head : this.ticksByPos.values()) {
+                for (TickEntry<T> tick = head; tick != null; tick = tick.nextAtPos) {
+                    if (box.isInside(tick.pos) && predicate.test(tick)) {
+                        out.add(tick);
+                        count++;
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Removes every tick from this chunk at once, marking them as consumed.
+     */
+    public void clear() {
+        for (TickEntry<T> head : this.ticksByPos.values()) {
+            TickEntry<T> tick = head;
+
+            while (tick != null) {
+                TickEntry<T> next = tick.nextAtPos;
+
+                tick.scheduled = false;
+                tick.consumed = true;
+                tick.nextAtPos = null;
+
+                tick = next;
+            }
+        }
+
+        this.ticksByPos.clear();
+        this.borderTicks.clear();
+
+        this.size = 0;
+    }
+
+    public int countScheduled() {
+        int count = 0;
+
+        for (TickEntry<T> head : this.ticksByPos.values()) {
+            for (TickEntry<T> tick = head; tick != null; tick = tick.nextAtPos) {
+                if (tick.scheduled) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public long getPos() {
+        return this.pos;
+    }
+
+    /**
+     * @return True if the part of this chunk covered by the box is entirely within the border of the chunk
+     */
+    private boolean isBoxInBorder(MutableBoundingBox box) {
+        int minX = (ChunkPos.getX(this.pos) << 4) + BORDER_WIDTH;
+        int minZ = (ChunkPos.getZ(this.pos) << 4) + BORDER_WIDTH;
+
+        int maxX = minX + 15 - (BORDER_WIDTH * 2);
+        int maxZ = minZ + 15 - (BORDER_WIDTH * 2);
+
+        return box.x1 < minX || box.x0 > maxX || box.z1 < minZ || box.z0 > maxZ;
+    }
+
+    private static boolean isBorder(BlockPos pos) {
+        int x = pos.getX() & 15;
+        int z = pos.getZ() & 15;
+
+        return x < BORDER_WIDTH || x > 15 - BORDER_WIDTH || z < BORDER_WIDTH || z > 15 - BORDER_WIDTH;
+    }
+}
@@ -1,9 +1,9 @@
 package me.jellysquid.mods.lithium.common.world.scheduler;
 
 import it.unimi.dsi.fastutil.longs.Long2ObjectAVLTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.minecraft.crash.CrashReport;
 import net.minecraft.crash.CrashReportCategory;
 import net.minecraft.crash.ReportedException;
@@ -30,26 +30,52 @@ import java.util.function.Predicate;
  * unnecessary elements. Integer bucket keys are much faster to sort against (as they are logically sorted) and
  * are computationally trivial to slice.
  * <p>
+ * - Most ticks are scheduled only a few ticks ahead, so the buckets for the near future are kept in a timing wheel
+ * which is indexed directly by time and priority. Only ticks scheduled further ahead than the wheel can hold, or
+ * which could not be executed at their scheduled time, are kept in the sorted map. Both are merged by bucket key
+ * when selecting ticks, so ticks are still selected in vanilla's order.
+ * <p>
  * - A single single collection is used for storing ticks in the pipeline and execution flags are set on the scheduled
  * objects directly. This eliminates the need to move ticks between multiple queues and sets constantly.
  * <p>
  * - We avoid repeatedly asking if a chunk is available by trying to re-use the previous computation if it involves the
  * same chunk, reducing a lot of map operations elsewhere.
  * <p>
- * - Ticks are stored in a HashMap with their execution state, meaning that redstone gates and other blocks which check
- * to see if something is scheduled/executing will not have to scan a potentially very large array (which can occur
- * when many ticks have been scheduled.)
+ * - Ticks are indexed by their chunk and position with their execution state, meaning that redstone gates and other
+ * blocks which check to see if something is scheduled/executing will not have to scan a potentially very large array
+ * (which can occur when many ticks have been scheduled.)
+ * <p>
+ * - Fetching the ticks of a chunk when it is saved or unloaded only needs to scan the ticks near the borders of its
+ * neighbors, and a chunk whose ticks are all being removed is detached from the scheduler at once. See
+ * {@link ChunkTickIndex}.
  */
 public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
     private static final Predicate<TickEntry<?>> PREDICATE_ANY_TICK = entry -> true;
     private static final Predicate<TickEntry<?>> PREDICATE_ACTIVE_TICKS = entry -> !entry.consumed;
 
-    private final Long2ObjectSortedMap<TickEntryQueue<T>> scheduledTicksOrdered = new Long2ObjectAVLTreeMap<>();
-    private final Long2ObjectOpenHashMap<Set<TickEntry<T>>> scheduledTicksByChunk = new Long2ObjectOpenHashMap<>();
+    // The number of ticks ahead of the next selection which the timing wheel can hold, must be a power of two
+    private static final int WHEEL_SIZE = 256;
+    private static final int PRIORITY_COUNT = TickPriority.values().length;
+
+    // [VanillaCopy] ServerTickScheduler#tick
+    private static final int MAX_TICKS_PER_SELECTION = 65536;
+
+    // The buckets of the timing wheel, indexed by time and then priority
+    private final TickEntryQueue<T>[] wheel;
+
+    // The earliest time which can be held by the timing wheel
+    private long wheelTime = Long.MAX_VALUE;
 
-    private final Map<NextTickListEntry<T>, TickEntry<T>> scheduledTicks = new HashMap<>();
+    // The buckets of ticks which are not held by the timing wheel
+    private final Long2ObjectSortedMap<TickEntryQueue<T>> scheduledTicksOrdered = new Long2ObjectAVLTreeMap<>();
+    private final Long2ObjectOpenHashMap<ChunkTickIndex<T>> scheduledTicksByChunk = new Long2ObjectOpenHashMap<>();
     private final ArrayList<TickEntry<T>> executingTicks = new ArrayList<>();
 
+    // The state of the current selection, see selectTicks
+    private int selectLimit;
+    private long selectPrevChunk;
+    private boolean selectCanTick;
+
     private final Predicate<T> invalidObjPredicate;
     private final ServerWorld world;
     private final Consumer<NextTickListEntry<T>> tickConsumer;
@@ -60,6 +86,9 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
         this.invalidObjPredicate = invalidPredicate;
         this.world = world;
         this.tickConsumer = tickConsumer;
+
+        //noinspection unchecked
+        this.wheel = (TickEntryQueue<T>[]) new TickEntryQueue[WHEEL_SIZE * PRIORITY_COUNT];
     }
 
     @Override
@@ -77,7 +106,7 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
 
     @Override
     public boolean willTickThisTick(BlockPos pos, T obj) {
-        TickEntry<T> entry = this.scheduledTicks.get(new NextTickListEntry<>(pos, obj));
+        TickEntry<T> entry = this.getTickEntry(pos, obj);
 
         if (entry == null) {
             return false;
@@ -88,7 +117,7 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
 
     @Override
     public boolean hasScheduledTick(BlockPos pos, T obj) {
-        TickEntry<T> entry = this.scheduledTicks.get(new NextTickListEntry<>(pos, obj));
+        TickEntry<T> entry = this.getTickEntry(pos, obj);
 
         if (entry == null) {
             return false;
@@ -99,7 +128,9 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
 
     @Override
     public List<NextTickListEntry<T>> fetchTicksInChunk(ChunkPos chunkPos, boolean mutates, boolean getStaleTicks) {
-        MutableBoundingBox box = new MutableBoundingBox(chunkPos.getMinBlockX() - 2, chunkPos.getMinBlockZ() - 2, chunkPos.getMaxBlockX() + 2, chunkPos.getMaxBlockZ() + 2);
+        int border = ChunkTickIndex.BORDER_WIDTH;
+
+        MutableBoundingBox box = new MutableBoundingBox(chunkPos.getMinBlockX() - border, chunkPos.getMinBlockZ() - border, chunkPos.getMaxBlockX() + border, chunkPos.getMaxBlockZ() + border);
 
         return this.fetchTicksInArea(box, mutates, getStaleTicks);
     }
@@ -132,10 +163,8 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
     public int size() {
         int count = 0;
 
-        for (TickEntry<T> entry : this.scheduledTicks.values()) {
-            if (entry.scheduled) {
-                count += 1;
-            }
+        for (ChunkTickIndex<T> chunkIdx : this.scheduledTicksByChunk.values()) {
+            count += chunkIdx.countScheduled();
         }
 
         return count;
@@ -145,75 +174,139 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
      * Enqueues all scheduled ticks before the specified time and prepares them for execution.
      */
     public void selectTicks(ServerChunkProvider chunkManager, long time) {
+        this.selectTicks(chunkManager::isTickingChunk, time);
+    }
+
+    /**
+     * Enqueues all scheduled ticks before the specified time whose chunks can be ticked and prepares them for execution.
+     * @param isTickingChunk Tests whether the chunk containing a position can be ticked
+     */
+    void selectTicks(Predicate<BlockPos> isTickingChunk, long time) {
         // Calculates the maximum key value which includes all ticks scheduled before the specified time
         long headKey = getBucketKey(time + 1, TickPriority.EXTREMELY_HIGH) - 1;
 
         // [VanillaCopy] ServerTickScheduler#tick
         // In order to fulfill the promise of not breaking vanilla behaviour, we keep the vanilla artifact of
         // tick suppression.
-        int limit = 65536;
-
-        boolean canTick = true;
-        long prevChunk = Long.MIN_VALUE;
+        this.selectLimit = MAX_TICKS_PER_SELECTION;
+        this.selectPrevChunk = Long.MIN_VALUE;
+        this.selectCanTick = true;
 
-        // Create an iterator over only
-        Iterator<TickEntryQueue<T>> it = this.scheduledTicksOrdered.headMap(headKey).values().iterator();
+        // The last time held by the timing wheel which is due, or a time before the wheel if none are
+        long wheelEndTime = this.wheelTime <= time ? Math.min(time, this.wheelTime + WHEEL_SIZE - 1) : this.wheelTime - 1;
 
-        // Iterate over all scheduled ticks and enqueue them for until we exceed our budget
-        while (limit > 0 && it.hasNext()) {
-            TickEntryQueue<T> list = it.next();
+        // Create an iterator over only the buckets which are due
+        Iterator<Long2ObjectMap.Entry<TickEntryQueue<T>>> it = this.scheduledTicksOrdered.headMap(headKey)
+                .long2ObjectEntrySet().iterator();
+        Long2ObjectMap.Entry<TickEntryQueue<T>> next = it.hasNext() ? it.next() : null;
 
-            // Pointer for writing scheduled ticks back into the queue
-            int w = 0;
+        // Merge the due buckets of the timing wheel and the sorted map by their keys
+        for (long slotTime = this.wheelTime; slotTime <= wheelEndTime; slotTime++) {
+            for (int priority = 0; priority < PRIORITY_COUNT; priority++) {
+                TickEntryQueue<T> list = this.wheel[getWheelIndex(slotTime, priority)];
 
-            // Re-builds the scheduled tick queue in-place
-            for (int i = 0; i < list.size(); i++) {
-                TickEntry<T> tick = list.getTickAtIndex(i);
-
-                if (!tick.scheduled) {
+                if (list == null || list.isEmpty()) {
                     continue;
                 }
 
-                // If no more ticks can be scheduled for execution this phase, then we leave it in its current time
-                // bucket and skip it. This deliberately introduces a bug where backlogged ticks will not be re-scheduled
-                // properly, re-producing the vanilla issue of tick suppression.
-                if (limit > 0) {
-                    long chunk = ChunkPos.asLong(tick.pos.getX() >> 4, tick.pos.getZ() >> 4);
-
-                    // Take advantage of the fact that if any position in a chunk can be updated, then all other positions
-                    // in the same chunk can be updated. This avoids the more expensive check to the chunk manager.
-                    if (prevChunk != chunk) {
-                        prevChunk = chunk;
-                        canTick = chunkManager.isTickingChunk(tick.pos);
+                long key = getBucketKey(slotTime, priority);
+
+                // Ticks in the sorted map with the same key were scheduled before any in the timing wheel
+                while (next != null && next.getLongKey() <= key) {
+                    this.selectTicks(isTickingChunk, next.getValue());
+
+                    if (next.getValue().isEmpty()) {
+                        it.remove();
                     }
 
-                    // If the tick can be executed right now, then add it to the executing list and decrement our
-                    // budget limit.
-                    if (canTick) {
-                        tick.scheduled = false;
-                        tick.executing = true;
+                    next = it.hasNext() ? it.next() : null;
+                }
 
-                        this.executingTicks.add(tick);
+                this.selectTicks(isTickingChunk, list);
+            }
+        }
 
-                        limit--;
+        while (next != null) {
+            this.selectTicks(isTickingChunk, next.getValue());
 
-                        // Avoids the tick being kept in the scheduled queue
-                        continue;
-                    }
+            if (next.getValue().isEmpty()) {
+                it.remove();
+            }
+
+            next = it.hasNext() ? it.next() : null;
+        }
+
+        // The timing wheel can only hold future ticks, so any due ticks which were skipped are moved into the sorted map
+        // where they will be selected first on the next tick. They are added after any skipped ticks of the same bucket
+        // which were already in the map, as those were scheduled earlier.
+        for (long slotTime = this.wheelTime; slotTime <= wheelEndTime; slotTime++) {
+            for (int priority = 0; priority < PRIORITY_COUNT; priority++) {
+                TickEntryQueue<T> list = this.wheel[getWheelIndex(slotTime, priority)];
+
+                if (list == null || list.isEmpty()) {
+                    continue;
                 }
 
-                // Nothing happened to this tick, so re-add it to the queue
-                list.setTickAtIndex(w++, tick);
+                this.scheduledTicksOrdered.computeIfAbsent(getBucketKey(slotTime, priority), key -> new TickEntryQueue<>())
+                        .pushAll(list);
+
+                list.resize(0);
             }
+        }
 
-            // Finalize our changes to the queue and notify it of the new length
-            list.resize(w);
+        this.wheelTime = time + 1;
+    }
 
-            // If the queue is empty, remove it from the map
-            if (list.isEmpty()) {
-                it.remove();
+    /**
+     * Selects the scheduled ticks of a bucket for execution until the selection limit has been reached. The bucket is
+     * left with only the ticks which were skipped, in their original order.
+     */
+    private void selectTicks(Predicate<BlockPos> isTickingChunk, TickEntryQueue<T> list) {
+        // Pointer for writing scheduled ticks back into the queue
+        int w = 0;
+
+        // Re-builds the scheduled tick queue in-place
+        for (int i = 0; i < list.size(); i++) {
+            TickEntry<T> tick = list.getTickAtIndex(i);
+
+            if (!tick.scheduled) {
+                continue;
             }
+
+            // If no more ticks can be scheduled for execution this phase, then we leave it in its current time
+            // bucket and skip it. This deliberately introduces a bug where backlogged ticks will not be re-scheduled
+            // properly, re-producing the vanilla issue of tick suppression.
+            if (this.selectLimit > 0) {
+                long chunk = ChunkPos.asLong(tick.pos.getX() >> 4, tick.pos.getZ() >> 4);
+
+                // Take advantage of the fact that if any position in a chunk can be updated, then all other positions
+                // in the same chunk can be updated. This avoids the more expensive check to the chunk manager.
+                if (this.selectPrevChunk != chunk) {
+                    this.selectPrevChunk = chunk;
+                    this.selectCanTick = isTickingChunk.test(tick.pos);
+                }
+
+                // If the tick can be executed right now, then add it to the executing list and decrement our
+                // budget limit.
+                if (this.selectCanTick) {
+                    tick.scheduled = false;
+                    tick.executing = true;
+
+                    this.executingTicks.add(tick);
+
+                    this.selectLimit--;
+
+                    // Avoids the tick being kept in the scheduled queue
+                    continue;
+                }
+            }
+
+            // Nothing happened to this tick, so re-add it to the queue
+            list.setTickAtIndex(w++, tick);
         }
+
+        // Finalize our changes to the queue and notify it of the new length
+        list.resize(w);
     }
 
     public void executeTicks(Consumer<NextTickListEntry<T>> consumer) {
@@ -258,27 +351,31 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
             for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
                 long chunk = ChunkPos.asLong(chunkX, chunkZ);
 
-                Set<TickEntry<T>> set = this.scheduledTicksByChunk.get(chunk);
+                ChunkTickIndex<T> chunkIdx = this.scheduledTicksByChunk.get(chunk);
 
-                if (set == null) {
+                if (chunkIdx == null) {
                     continue;
                 }
 
-                for (TickEntry<T> tick : set) {
-                    if (!box.isInside(tick.pos) || !predicate.test(tick)) {
-                        continue;
-                    }
+                int start = ret.size();
+                int count = chunkIdx.collect(box, predicate, ret);
 
-                    ret.add(tick);
+                if (!remove || count == 0) {
+                    continue;
                 }
-            }
-        }
 
-        if (remove) {
-            for (NextTickListEntry<T> tick : ret) {
-                // It's not possible to downcast a collection, so we have to upcast here
-                // This will always succeed
-                this.removeTickEntry((TickEntry<T>) tick);
+                if (count == chunkIdx.size()) {
+                    // Every tick in the chunk is being removed, so the whole index can be detached at once
+                    chunkIdx.clear();
+
+                    this.scheduledTicksByChunk.remove(chunk);
+                } else {
+                    for (int i = start; i < ret.size(); i++) {
+                        // It's not possible to downcast a collection, so we have to upcast here
+                        // This will always succeed
+                        this.removeTickEntry((TickEntry<T>) ret.get(i));
+                    }
+                }
             }
         }
 
@@ -289,19 +386,52 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
      * Schedules a tick for execution if it has not already been. To match vanilla, we do not re-schedule matching
      * scheduled ticks which are set to execute at a different time.
      */
-    private void addScheduledTick(NextTickListEntry<T> tick) {
-        TickEntry<T> entry = this.scheduledTicks.computeIfAbsent(tick, this::createTickEntry);
+    void addScheduledTick(NextTickListEntry<T> tick) {
+        TickEntry<T> entry = this.getTickEntry(tick.pos, tick.getType());
+
+        if (entry == null) {
+            entry = this.createTickEntry(tick);
+        }
 
         if (!entry.scheduled) {
-            TickEntryQueue<T> timeIdx = this.scheduledTicksOrdered.computeIfAbsent(getBucketKey(tick.triggerTick, tick.priority), key -> new TickEntryQueue<>());
-            timeIdx.push(entry);
+            this.getBucket(tick.triggerTick, tick.priority)
+                    .push(entry);
 
             entry.scheduled = true;
         }
     }
 
+    /**
+     * Returns the bucket for ticks scheduled at the given time and priority, which is in the timing wheel if the time
+     * is close enough to the next selection.
+     */
+    private TickEntryQueue<T> getBucket(long time, TickPriority priority) {
+        if (time >= this.wheelTime && time - this.wheelTime < WHEEL_SIZE) {
+            int index = getWheelIndex(time, priority.ordinal());
+            TickEntryQueue<T> list = this.wheel[index];
+
+            if (list == null) {
+                this.wheel[index] = list = new TickEntryQueue<>();
+            }
+
+            return list;
+        }
+
+        return this.scheduledTicksOrdered.computeIfAbsent(getBucketKey(time, priority), key -> new TickEntryQueue<>());
+    }
+
+    private TickEntry<T> getTickEntry(BlockPos pos, T obj) {
+        ChunkTickIndex<T> chunkIdx = this.scheduledTicksByChunk.get(getChunkKey(pos));
+
+        if (chunkIdx == null) {
+            return null;
+        }
+
+        return chunkIdx.get(pos, obj);
+    }
+
     private TickEntry<T> createTickEntry(NextTickListEntry<T> tick) {
-        Set<TickEntry<T>> chunkIdx = this.scheduledTicksByChunk.computeIfAbsent(getChunkKey(tick.pos), LithiumServerTickScheduler::createChunkIndex);
+        ChunkTickIndex<T> chunkIdx = this.scheduledTicksByChunk.computeIfAbsent(getChunkKey(tick.pos), ChunkTickIndex::new);
 
         return new TickEntry<>(tick, chunkIdx);
     }
@@ -310,17 +440,13 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
         tick.scheduled = false;
         tick.consumed = true;
 
-        tick.chunkIdx.remove(tick);
+        ChunkTickIndex<T> chunkIdx = tick.chunkIdx;
+        chunkIdx.remove(tick);
 
-        if (tick.chunkIdx.isEmpty()) {
-            this.scheduledTicksByChunk.remove(getChunkKey(tick.pos));
+        // The tick may belong to an index which was already detached, in which case the chunk may have a new one
+        if (chunkIdx.isEmpty()) {
+            this.scheduledTicksByChunk.remove(chunkIdx.getPos(), chunkIdx);
         }
-
-        this.scheduledTicks.remove(tick);
-    }
-
-    private static <T> Set<TickEntry<T>> createChunkIndex(long pos) {
-        return new ObjectOpenHashSet<>(8);
     }
 
     // Computes a chunk key from a block position
@@ -328,10 +454,19 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
         return ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
     }
 
+    // Computes the index of a bucket in the timing wheel
+    private static int getWheelIndex(long time, int priority) {
+        return ((int) time & (WHEEL_SIZE - 1)) * PRIORITY_COUNT + priority;
+    }
+
     // Computes a timestamped key including the tick's priority
     // Keys can be sorted in descending order to find what should be executed first
     // 60 time bits, 4 priority bits
     private static long getBucketKey(long time, TickPriority priority) {
-        return (time << 4L) | (priority.ordinal() & 15);
+        return getBucketKey(time, priority.ordinal());
+    }
+
+    private static long getBucketKey(long time, int priority) {
+        return (time << 4L) | (priority & 15);
     }
 }
\ No newline at end of file
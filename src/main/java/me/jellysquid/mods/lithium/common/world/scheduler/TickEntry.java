@@ -2,8 +2,6 @@ package me.jellysquid.mods.lithium.common.world.scheduler;
 
 import net.minecraft.world.NextTickListEntry;
 
-import java.util.Set;
-
 /**
  * A wrapper type for {@link ScheduledTick} which adds fields to mark the state of the tick in the scheduler's pipeline.
  */
@@ -32,9 +30,14 @@ public class TickEntry<T> extends NextTickListEntry<T> {
     /**
      * A pointer to the chunk index belonging to this scheduled tick.
      */
-    public final Set<TickEntry<T>> chunkIdx;
+    public final ChunkTickIndex<T> chunkIdx;
+
+    /**
+     * The next tick of a different type scheduled at the same position, or null if there is none.
+     */
+    public TickEntry<T> nextAtPos;
 
-    public TickEntry(NextTickListEntry<T> tick, Set<TickEntry<T>> chunkIdx) {
+    public TickEntry(NextTickListEntry<T> tick, ChunkTickIndex<T> chunkIdx) {
         super(tick.pos, tick.getType(), tick.triggerTick, tick.priority);
 
         this.chunkIdx = chunkIdx;
@@ -33,6 +33,12 @@ public class TickEntryQueue<T> {
         this.arr[this.size++] = tick;
     }
 
+    public void pushAll(TickEntryQueue<T> queue) {
+        for (int i = 0; i < queue.size; i++) {
+            this.push(queue.arr[i]);
+        }
+    }
+
     public int size() {
         return this.size;
     }
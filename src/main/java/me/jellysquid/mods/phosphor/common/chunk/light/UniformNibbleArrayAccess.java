@@ -0,0 +1,13 @@
+package me.jellysquid.mods.phosphor.common.chunk.light;
+
+public interface UniformNibbleArrayAccess {
+    /**
+     * @return True if every nibble of the array is known to have the same value
+     */
+    boolean isUniform();
+
+    /**
+     * @return The value of every nibble of the array, only meaningful if {@link UniformNibbleArrayAccess#isUniform()}
+     */
+    int getUniformValue();
+}
@@ -1,14 +1,56 @@
 package me.jellysquid.mods.phosphor.common.util.chunk.light;
 
 import me.jellysquid.mods.phosphor.common.chunk.light.IReadonly;
+import me.jellysquid.mods.phosphor.common.chunk.light.UniformNibbleArrayAccess;
 import net.minecraft.world.chunk.NibbleArray;
 
-public class ReadonlyChunkNibbleArray extends NibbleArray implements IReadonly {
+import java.util.Arrays;
+
+public class ReadonlyChunkNibbleArray extends NibbleArray implements IReadonly, UniformNibbleArrayAccess {
+    // The data of an array with every nibble set to each value, shared by all read-only arrays which inherit that value.
+    // These must never be handed out by getData(), as callers may write to the returned array.
+    private static final byte[][] UNIFORM_DATA = new byte[16][];
+
+    static {
+        for (int value = 0; value < UNIFORM_DATA.length; value++) {
+            byte[] data = new byte[2048];
+            Arrays.fill(data, (byte) (value | (value << 4)));
+
+            UNIFORM_DATA[value] = data;
+        }
+    }
+
+    // The value of every nibble if this array inherited a uniform value, or -1 otherwise
+    private final int uniformValue;
+
     public ReadonlyChunkNibbleArray() {
+        this.uniformValue = 0;
     }
 
     public ReadonlyChunkNibbleArray(byte[] bs) {
         super(bs);
+
+        this.uniformValue = -1;
+    }
+
+    /**
+     * Creates an array which shares the data of the given array. If every nibble of the given array has the same value,
+     * only that value is inherited, without asking the given array for its data.
+     */
+    protected ReadonlyChunkNibbleArray(NibbleArray inherited) {
+        this(inherited, getUniformValue(inherited));
+    }
+
+    private ReadonlyChunkNibbleArray(NibbleArray inherited, int uniformValue) {
+        super(uniformValue < 0 ? inherited.getData() : UNIFORM_DATA[uniformValue]);
+
+        this.uniformValue = uniformValue;
+    }
+
+    private static int getUniformValue(NibbleArray array) {
+        UniformNibbleArrayAccess access = (UniformNibbleArrayAccess) array;
+
+        return access.isUniform() ? access.getUniformValue() : -1;
     }
 
     @Override
@@ -20,4 +62,14 @@ public class ReadonlyChunkNibbleArray extends NibbleArray implements IReadonly {
     public boolean isReadonly() {
         return true;
     }
+
+    @Override
+    public boolean isUniform() {
+        return this.uniformValue >= 0;
+    }
+
+    @Override
+    public int getUniformValue() {
+        return this.uniformValue;
+    }
 }
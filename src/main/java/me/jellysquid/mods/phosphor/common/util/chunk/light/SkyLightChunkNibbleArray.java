@@ -4,7 +4,7 @@ import net.minecraft.world.chunk.NibbleArray;
 
 public class SkyLightChunkNibbleArray extends ReadonlyChunkNibbleArray {
     public SkyLightChunkNibbleArray(final NibbleArray inheritedLightmap) {
-        super(inheritedLightmap.getData());
+        super(inheritedLightmap);
     }
 
     @Override
@@ -0,0 +1,203 @@
+package me.jellysquid.mods.sodium.client.gl.arena;
+
+import it.unimi.dsi.fastutil.ints.Int2IntRBTreeMap;
+import it.unimi.dsi.fastutil.ints.Int2IntSortedMap;
+import it.unimi.dsi.fastutil.longs.LongRBTreeSet;
+import it.unimi.dsi.fastutil.longs.LongSortedSet;
+
+/**
+ * Manages the free space within an arena of a fixed capacity. This class only tracks offsets and contains no graphics
+ * state of its own.
+ *
+ * Free ranges are indexed both by their offset, which allows neighbouring free ranges to be merged together when
+ * space is released, and by their length, which allows the best-fitting free range for an allocation to be found in
+ * logarithmic time.
+ */
+public class ArenaAllocator {
+    // The start offset of each free range, mapped to its length
+    private final Int2IntRBTreeMap freeByOffset = new Int2IntRBTreeMap();
+
+    // Each free range packed as (length << 32 | offset), ordered by length and then offset
+    private final LongRBTreeSet freeByLength = new LongRBTreeSet();
+
+    private int capacity;
+    private int used;
+
+    public ArenaAllocator(int capacity) {
+        this.reset(capacity, 0);
+    }
+
+    /**
+     * Allocates a range of the arena using the smallest free range which can hold it.
+     * @param length The number of bytes to allocate
+     * @return The offset of the allocated range, or -1 if no free range is large enough
+     */
+    public int allocate(int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Allocation length must be positive");
+        }
+
+        LongSortedSet candidates = this.freeByLength.tailSet(pack(length, 0));
+
+        if (candidates.isEmpty()) {
+            return -1;
+        }
+
+        long key = candidates.firstLong();
+
+        int offset = unpackOffset(key);
+        int available = unpackLength(key);
+
+        this.removeFreeRange(offset, available);
+
+        if (available > length) {
+            this.addFreeRange(offset + length, available - length);
+        }
+
+        this.used += length;
+
+        return offset;
+    }
+
+    /**
+     * Releases a previously allocated range, merging it with any free ranges directly before or after it.
+     */
+    public void free(int offset, int length) {
+        this.insertFreeRange(offset, length);
+        this.used -= length;
+    }
+
+    /**
+     * Extends the arena to the given capacity. The new space is merged with any free range at the end of the arena.
+     */
+    public void grow(int capacity) {
+        if (capacity < this.capacity) {
+            throw new IllegalArgumentException("Arena cannot be shrunk by growing");
+        }
+
+        if (capacity > this.capacity) {
+            int prevCapacity = this.capacity;
+
+            this.capacity = capacity;
+            this.insertFreeRange(prevCapacity, capacity - prevCapacity);
+        }
+    }
+
+    /**
+     * Resets the arena to the given capacity with the first {@code used} bytes allocated and the rest free. This is
+     * used after all live allocations have been packed together at the start of the arena.
+     */
+    public void reset(int capacity, int used) {
+        if (used < 0 || used > capacity) {
+            throw new IllegalArgumentException("Used bytes must be within the arena");
+        }
+
+        this.freeByOffset.clear();
+        this.freeByLength.clear();
+
+        this.capacity = capacity;
+        this.used = used;
+
+        if (capacity > used) {
+            this.addFreeRange(used, capacity - used);
+        }
+    }
+
+    private void insertFreeRange(int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+
+        Int2IntSortedMap before = this.freeByOffset.headMap(offset);
+        Int2IntSortedMap after = this.freeByOffset.tailMap(offset);
+
+        int prevStart = before.isEmpty() ? -1 : before.lastIntKey();
+        int prevEnd = before.isEmpty() ? -1 : prevStart + this.freeByOffset.get(prevStart);
+        int nextStart = after.isEmpty() ? Integer.MAX_VALUE : after.firstIntKey();
+
+        // Check both neighbours before modifying anything, so that a bad range leaves the arena untouched
+        if (prevEnd > offset || nextStart < end) {
+            throw new IllegalArgumentException("Range overlaps with free space");
+        }
+
+        if (prevEnd == offset) {
+            this.removeFreeRange(prevStart, prevEnd - prevStart);
+            start = prevStart;
+        }
+
+        if (nextStart == end) {
+            int nextLength = this.freeByOffset.get(nextStart);
+
+            this.removeFreeRange(nextStart, nextLength);
+            end += nextLength;
+        }
+
+        this.addFreeRange(start, end - start);
+    }
+
+    private void addFreeRange(int offset, int length) {
+        if (this.freeByOffset.put(offset, length) != this.freeByOffset.defaultReturnValue()) {
+            throw new IllegalArgumentException("Range overlaps with free space");
+        }
+
+        this.freeByLength.add(pack(length, offset));
+    }
+
+    private void removeFreeRange(int offset, int length) {
+        this.freeByOffset.remove(offset);
+        this.freeByLength.remove(pack(length, offset));
+    }
+
+    /**
+     * @return The offset after which all space in the arena is free
+     */
+    public int getHighWaterMark() {
+        if (!this.freeByOffset.isEmpty()) {
+            int lastStart = this.freeByOffset.lastIntKey();
+
+            if (lastStart + this.freeByOffset.get(lastStart) == this.capacity) {
+                return lastStart;
+            }
+        }
+
+        return this.capacity;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public int getUsedBytes() {
+        return this.used;
+    }
+
+    public int getFreeBytes() {
+        return this.capacity - this.used;
+    }
+
+    /**
+     * @return The number of free bytes which lie in holes between allocations, and not at the end of the arena
+     */
+    public int getFragmentedBytes() {
+        return this.getFreeBytes() - (this.capacity - this.getHighWaterMark());
+    }
+
+    public int getFreeRangeCount() {
+        return this.freeByOffset.size();
+    }
+
+    public int getLargestFreeRange() {
+        return this.freeByLength.isEmpty() ? 0 : unpackLength(this.freeByLength.lastLong());
+    }
+
+    private static long pack(int length, int offset) {
+        return ((long) length << 32) | ((long) offset & 0xffffffffL);
+    }
+
+    private static int unpackLength(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int unpackOffset(long key) {
+        return (int) key;
+    }
+}
@@ -1,6 +1,7 @@
 package me.jellysquid.mods.sodium.client.gl.arena;
 
-import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import me.jellysquid.mods.sodium.client.gl.buffer.GlBuffer;
 import me.jellysquid.mods.sodium.client.gl.buffer.GlBufferTarget;
 import me.jellysquid.mods.sodium.client.gl.buffer.GlBufferUsage;
@@ -8,22 +9,32 @@ import me.jellysquid.mods.sodium.client.gl.buffer.GlMutableBuffer;
 import me.jellysquid.mods.sodium.client.gl.device.CommandList;
 import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
 
+import java.util.Comparator;
 import java.util.Set;
 
 public class GlBufferArena {
     private static final GlBufferUsage BUFFER_USAGE = GlBufferUsage.GL_DYNAMIC_DRAW;
 
+    /**
+     * The minimum number of bytes which must be lost to holes between segments before the arena will be compacted.
+     */
+    private static final int COMPACTION_MIN_FRAGMENTED_BYTES = 256 * 1024;
+
+    /**
+     * The fraction of the arena's capacity which must be lost to holes between segments before the arena will be
+     * compacted.
+     */
+    private static final float COMPACTION_FRAGMENTATION_THRESHOLD = 0.25f;
+
     private final RenderDevice device;
+    private final int initialSize;
     private final int resizeIncrement;
 
-    private final Set<GlBufferSegment> freeRegions = new ObjectLinkedOpenHashSet<>();
+    private final ArenaAllocator allocator;
+    private final Set<GlBufferSegment> liveSegments = new ReferenceOpenHashSet<>();
 
     private GlMutableBuffer vertexBuffer;
 
-    private int position;
-    private int capacity;
-    private int allocCount;
-
     public GlBufferArena(RenderDevice device, int initialSize, int resizeIncrement) {
         this.device = device;
 
@@ -32,8 +43,9 @@ public class GlBufferArena {
             commands.allocateBuffer(GlBufferTarget.COPY_WRITE_BUFFER, this.vertexBuffer, initialSize);
         }
 
+        this.initialSize = initialSize;
         this.resizeIncrement = resizeIncrement;
-        this.capacity = initialSize;
+        this.allocator = new ArenaAllocator(initialSize);
     }
 
     private void resize(CommandList commandList, int newCapacity) {
@@ -41,23 +53,25 @@ public class GlBufferArena {
         GlMutableBuffer dst = commandList.createMutableBuffer(BUFFER_USAGE);
 
         commandList.allocateBuffer(GlBufferTarget.COPY_WRITE_BUFFER, dst, newCapacity);
-        commandList.copyBufferSubData(src, dst, 0, 0, this.position);
+        commandList.copyBufferSubData(src, dst, 0, 0, this.allocator.getHighWaterMark());
         commandList.deleteBuffer(src);
 
         this.vertexBuffer = dst;
-        this.capacity = newCapacity;
+        this.allocator.grow(newCapacity);
     }
 
+    /**
+     * Ensures that the arena has at least the given number of free bytes, growing it ahead of time if needed. This
+     * avoids resizing the arena repeatedly when a batch of segments is about to be uploaded.
+     */
     public void prepareBuffer(CommandList commandList, int bytes) {
-        if (this.position + bytes >= this.capacity) {
+        if (this.allocator.getFreeBytes() < bytes) {
             this.resize(commandList, this.getNextSize(bytes));
         }
     }
 
     public GlBufferSegment uploadBuffer(CommandList commandList, GlBuffer readBuffer, int readOffset, int byteCount) {
-        this.prepareBuffer(commandList, byteCount);
-
-        GlBufferSegment segment = this.alloc(byteCount);
+        GlBufferSegment segment = this.alloc(commandList, byteCount);
 
         commandList.copyBufferSubData(readBuffer, this.vertexBuffer, readOffset, segment.getStart(), byteCount);
 
@@ -65,57 +79,93 @@ public class GlBufferArena {
     }
 
     private int getNextSize(int len) {
-        return Math.max(this.capacity + this.resizeIncrement, this.capacity + len);
+        return Math.max(this.allocator.getCapacity() + this.resizeIncrement, this.allocator.getCapacity() + len);
     }
 
     public void free(GlBufferSegment segment) {
-        if (!this.freeRegions.add(segment)) {
+        if (!this.liveSegments.remove(segment)) {
             throw new IllegalArgumentException("Segment already freed");
         }
 
-        this.allocCount--;
+        this.allocator.free(segment.getStart(), segment.getLength());
     }
 
-    private GlBufferSegment alloc(int len) {
-        GlBufferSegment segment = this.allocReuse(len);
+    private GlBufferSegment alloc(CommandList commandList, int len) {
+        int offset = this.allocator.allocate(len);
 
-        if (segment == null) {
-            segment = new GlBufferSegment(this, this.position, len);
+        if (offset < 0) {
+            // No free range is large enough, so grow the arena, which always extends the free space at its end
+            this.resize(commandList, this.getNextSize(len));
 
-            this.position += len;
+            offset = this.allocator.allocate(len);
         }
 
-        this.allocCount++;
+        GlBufferSegment segment = new GlBufferSegment(this, offset, len);
+        this.liveSegments.add(segment);
 
         return segment;
     }
 
-    private GlBufferSegment allocReuse(int len) {
-        GlBufferSegment bestSegment = null;
+    /**
+     * @return True if enough space is lost to holes between segments that the arena should be compacted
+     */
+    public boolean shouldCompact() {
+        int fragmented = this.allocator.getFragmentedBytes();
 
-        for (GlBufferSegment segment : this.freeRegions) {
-            if (segment.getLength() < len) {
-                continue;
-            }
+        return fragmented >= COMPACTION_MIN_FRAGMENTED_BYTES &&
+                fragmented >= this.allocator.getCapacity() * COMPACTION_FRAGMENTATION_THRESHOLD;
+    }
+
+    /**
+     * Moves all live segments into a new buffer where they are packed together without any holes, and shrinks the
+     * arena to fit them. Segments which were adjacent before compaction are copied together.
+     *
+     * The backing buffer always changes after calling this, and the start offset of any segment may change.
+     */
+    public void compact(CommandList commandList) {
+        int used = this.allocator.getUsedBytes();
+        int newCapacity = Math.min(this.allocator.getCapacity(), Math.max(this.initialSize, used + this.resizeIncrement));
+
+        GlMutableBuffer src = this.vertexBuffer;
+        GlMutableBuffer dst = commandList.createMutableBuffer(BUFFER_USAGE);
+
+        commandList.allocateBuffer(GlBufferTarget.COPY_WRITE_BUFFER, dst, newCapacity);
+
+        ObjectArrayList<GlBufferSegment> segments = new ObjectArrayList<>(this.liveSegments);
+        segments.sort(Comparator.comparingInt(GlBufferSegment::getStart));
+
+        int writeOffset = 0;
+
+        int runReadStart = 0;
+        int runWriteStart = 0;
+        int runLength = 0;
 
-            if (bestSegment == null || bestSegment.getLength() > segment.getLength()) {
-                bestSegment = segment;
+        for (GlBufferSegment segment : segments) {
+            // If this segment doesn't directly follow the current run, copy the run and start a new one
+            if (runLength > 0 && runReadStart + runLength != segment.getStart()) {
+                commandList.copyBufferSubData(src, dst, runReadStart, runWriteStart, runLength);
+                runLength = 0;
             }
-        }
 
-        if (bestSegment == null) {
-            return null;
-        }
+            if (runLength == 0) {
+                runReadStart = segment.getStart();
+                runWriteStart = writeOffset;
+            }
 
-        this.freeRegions.remove(bestSegment);
+            runLength += segment.getLength();
 
-        int excess = bestSegment.getLength() - len;
+            segment.setStart(writeOffset);
+            writeOffset += segment.getLength();
+        }
 
-        if (excess > 0) {
-            this.freeRegions.add(new GlBufferSegment(this, bestSegment.getStart() + len, excess));
+        if (runLength > 0) {
+            commandList.copyBufferSubData(src, dst, runReadStart, runWriteStart, runLength);
         }
 
-        return new GlBufferSegment(this, bestSegment.getStart(), len);
+        commandList.deleteBuffer(src);
+
+        this.vertexBuffer = dst;
+        this.allocator.reset(newCapacity, used);
     }
 
     public void delete() {
@@ -125,10 +175,29 @@ public class GlBufferArena {
     }
 
     public boolean isEmpty() {
-        return this.allocCount <= 0;
+        return this.liveSegments.isEmpty();
     }
 
     public GlBuffer getBuffer() {
         return this.vertexBuffer;
     }
+
+    public int getCapacity() {
+        return this.allocator.getCapacity();
+    }
+
+    public int getUsedBytes() {
+        return this.allocator.getUsedBytes();
+    }
+
+    /**
+     * @return The number of free bytes in holes between segments which can only be re-used by smaller allocations
+     */
+    public int getFragmentedBytes() {
+        return this.allocator.getFragmentedBytes();
+    }
+
+    public int getFreeRangeCount() {
+        return this.allocator.getFreeRangeCount();
+    }
 }
@@ -2,7 +2,7 @@ package me.jellysquid.mods.sodium.client.gl.arena;
 
 public class GlBufferSegment {
     private final GlBufferArena arena;
-    private final int start;
+    private int start;
     private final int len;
 
     GlBufferSegment(GlBufferArena arena, int start, int len) {
@@ -15,6 +15,10 @@ public class GlBufferSegment {
         return this.start;
     }
 
+    void setStart(int start) {
+        this.start = start;
+    }
+
     public int getLength() {
         return this.len;
     }
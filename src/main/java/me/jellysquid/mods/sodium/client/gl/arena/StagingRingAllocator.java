@@ -0,0 +1,142 @@
+package me.jellysquid.mods.sodium.client.gl.arena;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Tracks allocations within a fixed-size ring of staging memory. Allocations are handed out in order, and the space
+ * they occupy is only re-used after every allocation made before a given fence has been released. This class contains
+ * no graphics state of its own, so the type of fence is left up to the caller.
+ *
+ * Allocations never wrap around the end of the ring. If an allocation doesn't fit in the space remaining before the
+ * end, that space is skipped and the allocation is placed at the start of the ring instead.
+ *
+ * @param <F> The type of fence used to guard allocations
+ */
+public class StagingRingAllocator<F> {
+    private final long capacity;
+
+    private final Deque<FencedRange<F>> pendingFences = new ArrayDeque<>();
+
+    // Positions are tracked as the total number of bytes which have passed through the ring, so they only ever increase
+    private long head;
+    private long tail;
+    private long fencedHead;
+
+    public StagingRingAllocator(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * Tries to allocate a range of the ring.
+     * @param bytes The number of bytes to allocate
+     * @return The offset of the allocated range within the ring, or -1 if not enough space is available
+     */
+    public long allocate(long bytes) {
+        if (bytes <= 0 || bytes > this.capacity) {
+            return -1L;
+        }
+
+        long offset = this.head % this.capacity;
+        long padding = 0L;
+
+        if (offset + bytes > this.capacity) {
+            padding = this.capacity - offset;
+            offset = 0L;
+        }
+
+        long end = this.head + padding + bytes;
+
+        if (end - this.tail > this.capacity) {
+            return -1L;
+        }
+
+        this.head = end;
+
+        return offset;
+    }
+
+    /**
+     * @return True if any allocations have been made since the last call to {@link StagingRingAllocator#fence(Object)}
+     */
+    public boolean hasUnfencedAllocations() {
+        return this.head != this.fencedHead;
+    }
+
+    /**
+     * Guards all allocations made since the last fence with the given fence. The allocations will be released once the
+     * fence has been signaled.
+     */
+    public void fence(F fence) {
+        if (!this.hasUnfencedAllocations()) {
+            throw new IllegalStateException("No allocations to fence");
+        }
+
+        this.pendingFences.addLast(new FencedRange<>(fence, this.head));
+        this.fencedHead = this.head;
+    }
+
+    /**
+     * Releases the allocations of every signaled fence, in the order they were submitted. Checking stops at the first
+     * fence which has not been signaled yet, as the ones following it can never complete earlier.
+     * @param isSignaled Tests whether or not a fence has been signaled
+     * @param release Called with each released fence, allowing the caller to delete it
+     */
+    public void reclaim(Predicate<F> isSignaled, Consumer<F> release) {
+        while (!this.pendingFences.isEmpty()) {
+            FencedRange<F> range = this.pendingFences.peekFirst();
+
+            if (!isSignaled.test(range.fence)) {
+                break;
+            }
+
+            this.pendingFences.removeFirst();
+            this.tail = range.end;
+
+            release.accept(range.fence);
+        }
+    }
+
+    /**
+     * Releases all fences and allocations without waiting for them to be signaled.
+     * @param release Called with each released fence, allowing the caller to delete it
+     */
+    public void reset(Consumer<F> release) {
+        for (FencedRange<F> range : this.pendingFences) {
+            release.accept(range.fence);
+        }
+
+        this.pendingFences.clear();
+
+        this.head = 0L;
+        this.tail = 0L;
+        this.fencedHead = 0L;
+    }
+
+    /**
+     * @return The number of bytes which are currently allocated, including any space skipped at the end of the ring
+     */
+    public long getUsedBytes() {
+        return this.head - this.tail;
+    }
+
+    public long getCapacity() {
+        return this.capacity;
+    }
+
+    private static class FencedRange<F> {
+        private final F fence;
+        private final long end;
+
+        private FencedRange(F fence, long end) {
+            this.fence = fence;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package me.jellysquid.mods.sodium.client.gl.buffer;
+
+import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An immutable buffer type which is supported with OpenGL 4.4+ or ARB_buffer_storage. The buffer's storage is allocated
+ * once and stays persistently mapped into client memory for its entire lifetime, which allows it to be written to at
+ * any time without re-specifying the buffer. Callers are responsible for making sure that the GPU has finished reading
+ * any range of the buffer before it is overwritten.
+ */
+public class GlMappedBuffer extends GlBuffer {
+    private final long size;
+    private ByteBuffer mapping;
+
+    public GlMappedBuffer(RenderDevice owner, long size) {
+        super(owner, GlBufferUsage.GL_STREAM_DRAW);
+
+        this.size = size;
+    }
+
+    public void setMapping(ByteBuffer mapping) {
+        this.mapping = mapping;
+    }
+
+    /**
+     * @return The client memory which the buffer's storage is mapped to
+     */
+    public ByteBuffer getMapping() {
+        if (this.mapping == null) {
+            throw new IllegalStateException("Buffer is not mapped");
+        }
+
+        return this.mapping;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+}
@@ -2,6 +2,7 @@ package me.jellysquid.mods.sodium.client.gl.device;
 
 import me.jellysquid.mods.sodium.client.gl.array.GlVertexArray;
 import me.jellysquid.mods.sodium.client.gl.buffer.*;
+import me.jellysquid.mods.sodium.client.gl.sync.GlFence;
 import me.jellysquid.mods.sodium.client.gl.tessellation.GlPrimitiveType;
 import me.jellysquid.mods.sodium.client.gl.tessellation.GlTessellation;
 import me.jellysquid.mods.sodium.client.gl.tessellation.TessellationBinding;
@@ -13,6 +14,12 @@ public interface CommandList extends AutoCloseable {
 
     GlMutableBuffer createMutableBuffer(GlBufferUsage usage);
 
+    /**
+     * Creates a buffer with immutable storage of the given size which is persistently mapped for writing. Requires
+     * {@link me.jellysquid.mods.sodium.client.gl.func.GlFunctions#isBufferStorageSupported()}.
+     */
+    GlMappedBuffer createMappedBuffer(long size);
+
     GlTessellation createTessellation(GlPrimitiveType primitiveType, TessellationBinding[] bindings);
 
     void bindVertexArray(GlVertexArray array);
@@ -39,6 +46,18 @@ public interface CommandList extends AutoCloseable {
 
     void deleteVertexArray(GlVertexArray vertexArray);
 
+    /**
+     * Inserts a fence into the command stream which is signaled once all previously submitted commands complete.
+     */
+    GlFence createFence();
+
+    /**
+     * @return True if the fence has been signaled, without waiting for it
+     */
+    boolean isFenceSignaled(GlFence fence);
+
+    void deleteFence(GlFence fence);
+
     void flush();
 
     DrawCommandList beginTessellating(GlTessellation tessellation);
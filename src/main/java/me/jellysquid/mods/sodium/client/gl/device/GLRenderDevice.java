@@ -4,9 +4,11 @@ import me.jellysquid.mods.sodium.client.gl.array.GlVertexArray;
 import me.jellysquid.mods.sodium.client.gl.buffer.GlBuffer;
 import me.jellysquid.mods.sodium.client.gl.buffer.GlBufferTarget;
 import me.jellysquid.mods.sodium.client.gl.buffer.GlBufferUsage;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlMappedBuffer;
 import me.jellysquid.mods.sodium.client.gl.buffer.GlMutableBuffer;
 import me.jellysquid.mods.sodium.client.gl.func.GlFunctions;
 import me.jellysquid.mods.sodium.client.gl.state.GlStateTracker;
+import me.jellysquid.mods.sodium.client.gl.sync.GlFence;
 import me.jellysquid.mods.sodium.client.gl.tessellation.*;
 import org.lwjgl.opengl.*;
 
@@ -140,6 +142,24 @@ public class GLRenderDevice implements RenderDevice {
             GlFunctions.VERTEX_ARRAY.glDeleteVertexArrays(handle);
         }
 
+        @Override
+        public GlFence createFence() {
+            return new GlFence(GL32C.glFenceSync(GL32C.GL_SYNC_GPU_COMMANDS_COMPLETE, 0));
+        }
+
+        @Override
+        public boolean isFenceSignaled(GlFence fence) {
+            return GL32C.glGetSynci(fence.handle(), GL32C.GL_SYNC_STATUS, null) == GL32C.GL_SIGNALED;
+        }
+
+        @Override
+        public void deleteFence(GlFence fence) {
+            long handle = fence.handle();
+            fence.invalidateHandle();
+
+            GL32C.glDeleteSync(handle);
+        }
+
         @Override
         public void flush() {
             // NO-OP
@@ -168,6 +188,20 @@ public class GLRenderDevice implements RenderDevice {
             return new GlMutableBuffer(GLRenderDevice.this, usage);
         }
 
+        @Override
+        public GlMappedBuffer createMappedBuffer(long size) {
+            int flags = GL30C.GL_MAP_WRITE_BIT | GL44C.GL_MAP_PERSISTENT_BIT | GL44C.GL_MAP_COHERENT_BIT;
+
+            GlMappedBuffer buffer = new GlMappedBuffer(GLRenderDevice.this, size);
+
+            this.bindBuffer(GlBufferTarget.COPY_READ_BUFFER, buffer);
+
+            GlFunctions.BUFFER_STORAGE.glBufferStorage(GlBufferTarget.COPY_READ_BUFFER.getTargetParameter(), size, flags);
+            buffer.setMapping(GL30C.glMapBufferRange(GlBufferTarget.COPY_READ_BUFFER.getTargetParameter(), 0, size, flags));
+
+            return buffer;
+        }
+
         @Override
         public GlTessellation createTessellation(GlPrimitiveType primitiveType, TessellationBinding[] bindings) {
             if (GlVertexArrayTessellation.isSupported()) {
@@ -11,6 +11,7 @@ public class GlFunctions {
     public static final GlIndirectMultiDrawFunctions INDIRECT_DRAW = GlIndirectMultiDrawFunctions.load(capabilities);
     public static final GlInstancedArrayFunctions INSTANCED_ARRAY = GlInstancedArrayFunctions.load(capabilities);
     public static final GlSamplerFunctions SAMPLER = GlSamplerFunctions.load(capabilities);
+    public static final GlBufferStorageFunctions BUFFER_STORAGE = GlBufferStorageFunctions.load(capabilities);
 
     public static boolean isVertexArraySupported() {
         return VERTEX_ARRAY != GlVertexArrayFunctions.UNSUPPORTED;
@@ -32,6 +33,10 @@ public class GlFunctions {
         return SAMPLER != GlSamplerFunctions.UNSUPPORTED;
     }
 
+    public static boolean isBufferStorageSupported() {
+        return BUFFER_STORAGE != GlBufferStorageFunctions.UNSUPPORTED;
+    }
+
     public static boolean isIndirectMultiDrawCountSupported() {
         return INDIRECT_DRAW == GlIndirectMultiDrawFunctions.CORE_46;
     }
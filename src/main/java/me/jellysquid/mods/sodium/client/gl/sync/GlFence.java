@@ -0,0 +1,26 @@
+package me.jellysquid.mods.sodium.client.gl.sync;
+
+/**
+ * A fence sync object which is signaled once the GPU has processed all commands submitted before it.
+ */
+public class GlFence {
+    private static final long INVALID_HANDLE = 0L;
+
+    private long handle;
+
+    public GlFence(long handle) {
+        this.handle = handle;
+    }
+
+    public long handle() {
+        if (this.handle == INVALID_HANDLE) {
+            throw new IllegalStateException("Handle is not valid");
+        }
+
+        return this.handle;
+    }
+
+    public void invalidateHandle() {
+        this.handle = INVALID_HANDLE;
+    }
+}
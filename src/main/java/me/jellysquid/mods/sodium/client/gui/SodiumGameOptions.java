@@ -41,6 +41,20 @@ public class SodiumGameOptions {
         public boolean useBlockFaceCulling = true;
         public boolean allowDirectMemoryAccess = true;
         public boolean ignoreDriverBlacklist = false;
+        public boolean useArenaCompaction = true;
+        public boolean useIncrementalGraphCulling = true;
+        public boolean useFlatChunkGraph = false;
+        public boolean useParallelCulling = true;
+        public boolean deferInvisibleRebuilds = true;
+        public boolean useDirectBlockAccess = true;
+        public boolean cullEnclosedBlocks = false;
+        public boolean useGreedyMeshing = false;
+        public boolean useSharedLightDataCache = true;
+        public boolean useSharedBiomeColors = true;
+
+        public int chunkUploadBudgetBytes = 16 * 1024 * 1024;
+        public int chunkUploadBudgetNanos = 2_000_000;
+        public int sectionCacheSizeMiB = 64;
     }
 
     public static class QualitySettings {
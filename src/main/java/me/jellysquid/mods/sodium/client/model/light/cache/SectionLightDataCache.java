@@ -0,0 +1,43 @@
+package me.jellysquid.mods.sodium.client.model.light.cache;
+
+import me.jellysquid.mods.sodium.client.model.light.data.LightDataAccess;
+import me.jellysquid.mods.sodium.client.world.WorldSlice;
+import me.jellysquid.mods.sodium.client.world.cloned.ClonedChunkSection;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A light data cache which stores the light data of each block in the copy of the chunk section containing it. Copies
+ * are shared by the world slices of all chunk builders and are replaced whenever the blocks or light of their section
+ * change, so the light data computed by one rebuild can be re-used by the rebuilds of neighboring chunks and never
+ * needs to be cleared.
+ */
+public class SectionLightDataCache extends LightDataAccess {
+    private final WorldSlice slice;
+
+    public SectionLightDataCache(WorldSlice slice) {
+        this.world = slice;
+        this.slice = slice;
+    }
+
+    @Override
+    public long get(int x, int y, int z) {
+        ClonedChunkSection section = this.slice.getSection(x, y, z);
+
+        if (section == null) {
+            return this.compute(x, y, z);
+        }
+
+        AtomicLongArray data = section.getPackedLightData();
+        int index = (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+
+        long word = data.get(index);
+
+        if (word == 0L) {
+            // Other builders may compute the same entry concurrently, but they will always arrive at the same value
+            data.lazySet(index, word = this.compute(x, y, z));
+        }
+
+        return word;
+    }
+}
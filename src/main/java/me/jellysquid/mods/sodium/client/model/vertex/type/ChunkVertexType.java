@@ -13,4 +13,12 @@ public interface ChunkVertexType extends BlittableVertexType<ModelVertexSink>, C
      * @return The scale to be applied to texture coordinates
      */
     float getTextureScale();
+
+    /**
+     * @return True if sinks of this vertex type can write quads with repeated textures
+     * @see ModelVertexSink#writeTiledQuad(float, float, float, int, float, float, int, int, int, float, float)
+     */
+    default boolean supportsTextureTiling() {
+        return false;
+    }
 }
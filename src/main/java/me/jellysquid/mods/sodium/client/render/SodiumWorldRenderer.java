@@ -41,6 +41,7 @@ import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.vector.Matrix4f;
 import net.minecraft.util.math.vector.Vector3d;
+import org.lwjgl.opengl.GL;
 
 import java.util.Set;
 import java.util.SortedSet;
@@ -59,8 +60,6 @@ public class SodiumWorldRenderer implements ChunkStatusListener {
     private double lastCameraX, lastCameraY, lastCameraZ;
     private double lastCameraPitch, lastCameraYaw;
 
-    private double lastCamPosX, lastCamPosY, lastCamPosZ;
-
     private boolean useEntityCulling;
 
     private final LongSet loadedChunkPositions = new LongOpenHashSet();
@@ -206,21 +205,12 @@ public class SodiumWorldRenderer implements ChunkStatusListener {
             this.chunkRenderManager.markDirty();
         }
 
-        BlockPos camBlockPos = camera.getBlockPosition();
-        if (camBlockPos.getX() != this.lastCamPosX || camBlockPos.getY() != this.lastCamPosY || camBlockPos.getZ() != this.lastCamPosZ) {
-            this.chunkRenderManager.markCameraPosChanged();
-        }
-
         this.lastCameraX = pos.x;
         this.lastCameraY = pos.y;
         this.lastCameraZ = pos.z;
         this.lastCameraPitch = pitch;
         this.lastCameraYaw = yaw;
 
-        this.lastCamPosX = camBlockPos.getX();
-        this.lastCamPosY = camBlockPos.getY();
-        this.lastCamPosZ = camBlockPos.getZ();
-
         profiler.popPush("chunk_update");
 
         this.chunkRenderManager.updateChunks();
@@ -288,7 +278,9 @@ public class SodiumWorldRenderer implements ChunkStatusListener {
 
         final ChunkVertexType vertexFormat;
 
-        if (opts.advanced.useCompactVertexFormat) {
+        if (opts.advanced.useCompactVertexFormat && opts.advanced.useGreedyMeshing && this.isFaceMergingSupported()) {
+            vertexFormat = DefaultModelVertexFormats.MODEL_VERTEX_HFP_TILED;
+        } else if (opts.advanced.useCompactVertexFormat) {
             vertexFormat = DefaultModelVertexFormats.MODEL_VERTEX_HFP;
         } else {
             vertexFormat = DefaultModelVertexFormats.MODEL_VERTEX_SFP;
@@ -301,6 +293,15 @@ public class SodiumWorldRenderer implements ChunkStatusListener {
         this.chunkRenderManager.restoreChunks(this.loadedChunkPositions);
     }
 
+    /**
+     * Merged faces repeat their sprite by wrapping the texture coordinates in the fragment shader, which only selects
+     * the right mip level at the edges of each tile when the shader can sample with explicit gradients. Without them,
+     * faces are only merged when mipmaps are disabled.
+     */
+    private boolean isFaceMergingSupported() {
+        return this.client.options.mipmapLevels == 0 || GL.getCapabilities().GL_ARB_shader_texture_lod;
+    }
+
     private static ChunkRenderBackend<?> createChunkRenderBackend(RenderDevice device,
                                                                   SodiumGameOptions options,
                                                                   ChunkVertexType vertexFormat) {
@@ -427,9 +428,17 @@ public class SodiumWorldRenderer implements ChunkStatusListener {
     }
 
     public String getChunksDebugString() {
-        // C: visible/total
+        // C: visible/total U: deferred uploads G: sections visited by the graph search
         // TODO: add dirty and queued counts
-        return String.format("C: %s/%s", this.chunkRenderManager.getVisibleChunkCount(), this.chunkRenderManager.getTotalSections());
+        return String.format("C: %s/%s U: %s G: %s", this.chunkRenderManager.getVisibleChunkCount(), this.chunkRenderManager.getTotalSections(),
+                this.chunkRenderManager.getDeferredUploadCount(), this.chunkRenderManager.getVisitedNodeCount());
+    }
+
+    /**
+     * @return A description of the section cache's effectiveness, or null if there is nothing to describe
+     */
+    public String getSectionCacheDebugString() {
+        return this.chunkRenderManager != null ? this.chunkRenderManager.getSectionCacheDebugString() : null;
     }
 
     /**
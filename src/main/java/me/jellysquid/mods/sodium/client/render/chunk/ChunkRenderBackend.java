@@ -5,6 +5,7 @@ import me.jellysquid.mods.sodium.client.gl.device.CommandList;
 import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
 import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkUploadBudget;
 import me.jellysquid.mods.sodium.client.render.chunk.lists.ChunkRenderListIterator;
 import net.minecraft.util.math.vector.Matrix4f;
 
@@ -23,7 +24,16 @@ public interface ChunkRenderBackend<T extends ChunkGraphicsState> {
      * Drains the iterator of items and processes each build task's result serially. After this method returns, all
      * drained results should be processed.
      */
-    void upload(CommandList commandList, Iterator<ChunkBuildResult<T>> queue);
+    default void upload(CommandList commandList, Iterator<ChunkBuildResult<T>> queue) {
+        this.upload(commandList, queue, ChunkUploadBudget.unlimited());
+    }
+
+    /**
+     * Processes build task results from the iterator serially until either the iterator or the budget is exhausted.
+     * Any results which have not been taken from the iterator when this method returns are left for the caller.
+     * After this method returns, all drained results should be processed.
+     */
+    void upload(CommandList commandList, Iterator<ChunkBuildResult<T>> queue, ChunkUploadBudget budget);
 
     /**
      * Renders the given chunk render list to the active framebuffer.
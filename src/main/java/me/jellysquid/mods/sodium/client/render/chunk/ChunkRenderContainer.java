@@ -3,6 +3,7 @@ package me.jellysquid.mods.sodium.client.render.chunk;
 import lombok.Setter;
 import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
 import me.jellysquid.mods.sodium.client.render.SodiumWorldRenderer;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshSortData;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderBounds;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
@@ -27,16 +28,28 @@ public class ChunkRenderContainer<T extends ChunkGraphicsState> {
 
     private ChunkRenderData data = ChunkRenderData.ABSENT;
     private CompletableFuture<Void> rebuildTask = null;
+    private CompletableFuture<?> occlusionTask = null;
+
+    // The block data which the newest occlusion update was computed from, or zero if there was none since the last rebuild
+    private long occlusionBlockDataId;
+
+    // The version of the newest rebuild task created for this render, and of the newest rebuild which was uploaded
+    private int rebuildVersion;
+    private int uploadedVersion;
 
     private boolean needsRebuild;
     private boolean needsImportantRebuild;
 
     private boolean tickable;
+    private boolean disposed;
     private int id;
 
     @Setter
     private boolean rebuildableForTranslucents;
 
+    // True while a task to re-sort this render's translucent meshes is in flight, written by worker threads on failure
+    private volatile boolean resortPending;
+
     public ChunkRenderContainer(ChunkRenderBackend<T> backend, SodiumWorldRenderer worldRenderer, int chunkX, int chunkY, int chunkZ, ChunkRenderColumn<T> column) {
         this.worldRenderer = worldRenderer;
 
@@ -63,6 +76,57 @@ public class ChunkRenderContainer<T extends ChunkGraphicsState> {
             this.rebuildTask.cancel(false);
             this.rebuildTask = null;
         }
+
+        // A rebuild will also replace the occlusion data
+        this.setOcclusionTask(null, 0L);
+    }
+
+    /**
+     * Sets the pending task which updates the occlusion data of this render, cancelling any previous task as its result
+     * would be out of date.
+     * @param task The new task, or null if there is none
+     * @param blockDataId The block data of the snapshot which the task works on, see
+     * {@link me.jellysquid.mods.sodium.client.world.cloned.ClonedChunkSection#getBlockDataId()}
+     */
+    public void setOcclusionTask(CompletableFuture<?> task, long blockDataId) {
+        if (this.occlusionTask != null) {
+            this.occlusionTask.cancel(false);
+        }
+
+        this.occlusionTask = task;
+        this.occlusionBlockDataId = blockDataId;
+    }
+
+    /**
+     * @return True if an occlusion update for the given block data is still pending or has already been applied since
+     * this render was last rebuilt, in which case another update would produce the same occlusion data
+     */
+    public boolean hasOcclusionUpdateFor(long blockDataId) {
+        if (this.occlusionBlockDataId != blockDataId) {
+            return false;
+        }
+
+        // A failed update never produced any data, so it has to be tried again
+        return this.occlusionTask == null || !this.occlusionTask.isCompletedExceptionally();
+    }
+
+    /**
+     * Returns a new version for a rebuild of this render, which is greater than that of any previous rebuild. Results
+     * of rebuilds can finish out of order, so this is used to discard results which are older than the render's data.
+     */
+    public int nextRebuildVersion() {
+        return ++this.rebuildVersion;
+    }
+
+    /**
+     * @return The version of the newest rebuild whose result has been uploaded for this render
+     */
+    public int getUploadedVersion() {
+        return this.uploadedVersion;
+    }
+
+    public void setUploadedVersion(int version) {
+        this.uploadedVersion = version;
     }
 
     public ChunkRenderData getData() {
@@ -89,6 +153,8 @@ public class ChunkRenderContainer<T extends ChunkGraphicsState> {
      * be used.
      */
     public void delete() {
+        this.disposed = true;
+
         this.cancelRebuildTask();
         this.setData(ChunkRenderData.ABSENT);
         this.deleteGraphicsState();
@@ -107,10 +173,52 @@ public class ChunkRenderContainer<T extends ChunkGraphicsState> {
         }
     }
 
+    /**
+     * @return True if this render has been deleted and can no longer be used
+     */
+    public boolean isDisposed() {
+        return this.disposed;
+    }
+
     public boolean shouldRebuildForTranslucents() {
         return this.rebuildableForTranslucents;
     }
 
+    /**
+     * Checks whether the translucent meshes of this render should be re-sorted for the given camera position. This is
+     * only the case if the meshes were kept in a sortable state and the camera has moved far enough from the position
+     * they were last sorted from.
+     * @param distanceSq The squared distance the camera must move before the meshes are re-sorted
+     * @return True if at least one translucent mesh should be re-sorted, otherwise false
+     */
+    public boolean needsTranslucentResort(double x, double y, double z, float distanceSq) {
+        if (this.resortPending) {
+            return false;
+        }
+
+        float relX = (float) (x - this.getRenderX());
+        float relY = (float) (y - this.getRenderY());
+        float relZ = (float) (z - this.getRenderZ());
+
+        for (BlockRenderPass pass : BlockRenderPass.TRANSLUCENTS) {
+            ChunkMeshSortData sortData = this.data.getMesh(pass).getSortData();
+
+            if (sortData != null && sortData.getSquaredCameraDistance(relX, relY, relZ) > distanceSq) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public boolean isResortPending() {
+        return this.resortPending;
+    }
+
+    public void setResortPending(boolean resortPending) {
+        this.resortPending = resortPending;
+    }
+
     public void setData(ChunkRenderData info) {
         if (info == null) {
             throw new NullPointerException("Mesh information must not be null");
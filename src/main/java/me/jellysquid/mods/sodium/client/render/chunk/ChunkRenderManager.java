@@ -9,6 +9,7 @@ import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectList;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
 import lombok.Setter;
 import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.gl.compat.LegacyFogHelper;
@@ -21,6 +22,7 @@ import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuilder;
 import me.jellysquid.mods.sodium.client.render.chunk.cull.ChunkCuller;
 import me.jellysquid.mods.sodium.client.render.chunk.cull.ChunkFaceFlags;
 import me.jellysquid.mods.sodium.client.render.chunk.cull.graph.ChunkGraphCuller;
+import me.jellysquid.mods.sodium.client.render.chunk.cull.graph.FlatChunkGraphCuller;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderBounds;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.lists.ChunkRenderList;
@@ -28,10 +30,10 @@ import me.jellysquid.mods.sodium.client.render.chunk.lists.ChunkRenderListIterat
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPassManager;
 import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+import me.jellysquid.mods.sodium.client.util.task.ParallelSlices;
 import me.jellysquid.mods.sodium.client.world.ChunkStatusListener;
 import me.jellysquid.mods.sodium.common.util.DirectionUtil;
 import me.jellysquid.mods.sodium.common.util.IdTable;
-import me.jellysquid.mods.sodium.common.util.TranslucentPoolUtil;
 import me.jellysquid.mods.sodium.common.util.collections.FutureDequeDrain;
 import net.minecraft.client.renderer.ActiveRenderInfo;
 import net.minecraft.client.world.ClientWorld;
@@ -67,6 +69,23 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
      */
     private static final float FOG_PLANE_OFFSET = 12.0f;
 
+    /**
+     * The squared distance the camera must move away from the position a chunk's translucent geometry was last sorted
+     * from before it will be re-sorted.
+     */
+    private static final float TRANSLUCENT_RESORT_DISTANCE = 1.0f;
+
+    /**
+     * The smallest number of visible chunks which will be prepared for the render lists by a single thread when
+     * parallel culling is enabled.
+     */
+    private static final int MIN_RENDERS_PER_SLICE = 512;
+
+    /**
+     * The value of a chunk's visible faces when it will not be added to the render lists at all.
+     */
+    private static final int NOT_DRAWN = -1;
+
     private final ChunkBuilder<T> builder;
     private final ChunkRenderBackend<T> backend;
 
@@ -76,6 +95,11 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
     private final ObjectArrayFIFOQueue<ChunkRenderContainer<T>> importantRebuildQueue = new ObjectArrayFIFOQueue<>();
     private final ObjectArrayFIFOQueue<ChunkRenderContainer<T>> rebuildQueue = new ObjectArrayFIFOQueue<>();
     private final ObjectArrayFIFOQueue<ChunkRenderContainer<T>> unloadQueue = new ObjectArrayFIFOQueue<>();
+    private final ObjectArrayFIFOQueue<ChunkRenderContainer<T>> resortQueue = new ObjectArrayFIFOQueue<>();
+
+    // Chunks which can't be seen and are waiting for their occlusion data to be updated. Unlike the other queues, this
+    // isn't rebuilt every frame, so it is kept across frames until the builder has room for the updates.
+    private final ReferenceLinkedOpenHashSet<ChunkRenderContainer<T>> occlusionUpdateQueue = new ReferenceLinkedOpenHashSet<>();
 
     @SuppressWarnings("unchecked")
     private final ChunkRenderList<T>[] chunkRenderLists = new ChunkRenderList[BlockRenderPass.COUNT];
@@ -88,13 +112,15 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
 
     private final ChunkCuller culler;
     private final boolean useBlockFaceCulling;
+    private final boolean useParallelCulling;
+    private final boolean deferInvisibleRebuilds;
+
+    // The visible faces of each chunk returned by the culler, by their position in the list
+    private int[] visibleFaces = new int[0];
 
     private float cameraX, cameraY, cameraZ;
     private boolean dirty;
 
-    @Setter
-    private boolean cameraPosChanged;
-
     private final boolean translucencySorting;
 
     private int visibleChunkCount;
@@ -125,12 +151,17 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
             this.chunkRenderLists[i] = new ChunkRenderList<>();
         }
 
-        this.culler = new ChunkGraphCuller(world, renderDistance);
+        if (SodiumClientMod.options().advanced.useFlatChunkGraph) {
+            this.culler = new FlatChunkGraphCuller(world, renderDistance);
+        } else {
+            this.culler = new ChunkGraphCuller(world, renderDistance);
+        }
         this.translucencySorting = SodiumClientMod.options().advanced.translucencySorting;
         this.translucencyBlockRenderDistance = Math.min(9216, (renderDistance << 4) * (renderDistance << 4));
 
-        TranslucentPoolUtil.resetTranslucentRebuilds();
         this.useBlockFaceCulling = SodiumClientMod.options().advanced.useBlockFaceCulling;
+        this.useParallelCulling = SodiumClientMod.options().advanced.useParallelCulling;
+        this.deferInvisibleRebuilds = SodiumClientMod.options().advanced.deferInvisibleRebuilds;
     }
 
     public void update(ActiveRenderInfo camera, FrustumExtended frustum, int frame, boolean spectator) {
@@ -140,6 +171,7 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
         this.setup(camera);
 
         this.currFrustum = frustum;
+        this.builder.setFrustum(frustum);
 
         this.iterateChunks(camera, frustum, frame, spectator);
 
@@ -148,44 +180,92 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
 
     private void iterateChunks(ActiveRenderInfo camera, FrustumExtended frustum, int frame, boolean spectator) {
         IntList list = this.culler.computeVisible(camera, frustum, frame, spectator);
-        IntIterator it = list.iterator();
 
-        int translucentBudget = Math.max(1, builder.getSchedulingBudget()/4);
+        if (this.useParallelCulling) {
+            this.iterateChunksParallel(list);
+            return;
+        }
+
+        IntIterator it = list.iterator();
 
         while (it.hasNext()) {
             ChunkRenderContainer<T> render = this.renders.get(it.nextInt());
 
-            this.addChunk(render, translucentBudget);
+            this.addChunk(render, this.getVisibleFaces(render));
         }
     }
 
-    private void addChunk(ChunkRenderContainer<T> render, int translucentBudget) {
-        boolean rebuild = render.needsRebuild() && render.canRebuild();
+    /**
+     * Computes the visible faces of each chunk in parallel, and then adds the chunks to the queues and render lists in
+     * the order they were returned by the culler. The ordering of the render lists is therefore the same as when the
+     * chunks are processed on a single thread.
+     */
+    private void iterateChunksParallel(IntList list) {
+        int count = list.size();
 
-        if (!rebuild && this.translucencySorting && render.shouldRebuildForTranslucents() && this.cameraPosChanged
-                && TranslucentPoolUtil.getTranslucentRebuilds() <= translucentBudget
-                && !render.isOutsideFrustum(this.currFrustum)
-                && render.getSquaredDistance(cameraX, cameraY, cameraZ) < translucencyBlockRenderDistance) {
-            TranslucentPoolUtil.incrementTranslucentRebuilds();
-            rebuild = true;
+        if (this.visibleFaces.length < count) {
+            this.visibleFaces = new int[Math.max(count, this.visibleFaces.length * 2)];
         }
 
+        int[] visibleFaces = this.visibleFaces;
+
+        ParallelSlices.forEach(count, MIN_RENDERS_PER_SLICE, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                visibleFaces[i] = this.getVisibleFaces(this.renders.get(list.getInt(i)));
+            }
+        });
+
+        for (int i = 0; i < count; i++) {
+            this.addChunk(this.renders.get(list.getInt(i)), visibleFaces[i]);
+        }
+    }
+
+    /**
+     * @param visibleFaces The faces of the chunk which are visible, or {@link ChunkRenderManager#NOT_DRAWN} if the chunk
+     *                     should not be added to the render lists
+     */
+    private void addChunk(ChunkRenderContainer<T> render, int visibleFaces) {
+        boolean rebuild = render.needsRebuild() && render.canRebuild();
+
         if (rebuild) {
             if (render.needsImportantRebuild()) {
                 this.importantRebuildQueue.enqueue(render);
             } else {
                 this.rebuildQueue.enqueue(render);
             }
+        } else if (this.translucencySorting && render.needsTranslucentResort(this.cameraX, this.cameraY, this.cameraZ, TRANSLUCENT_RESORT_DISTANCE)
+                && render.getSquaredDistance(this.cameraX, this.cameraY, this.cameraZ) < this.translucencyBlockRenderDistance
+                && !render.isOutsideFrustum(this.currFrustum)) {
+            // The culler visits chunks outwards from the camera, so the closest chunks will be re-sorted first
+            this.resortQueue.enqueue(render);
         }
 
+        if (visibleFaces != NOT_DRAWN) {
+            this.addChunkToRenderLists(render, visibleFaces);
+            this.addEntitiesToRenderLists(render);
+        }
+    }
+
+    /**
+     * Only reads the state of the chunk and of this manager, so it can be safely called from multiple threads while the
+     * main thread is waiting on them.
+     *
+     * @return The faces of the chunk which should be rendered, or {@link ChunkRenderManager#NOT_DRAWN} if the chunk
+     *         should not be rendered at all
+     */
+    private int getVisibleFaces(ChunkRenderContainer<T> render) {
         if (this.useFogCulling && render.getSquaredDistanceXZ(this.cameraX, this.cameraZ) >= this.fogRenderCutoff) {
-            return;
+            return NOT_DRAWN;
         }
 
-        if (!render.isEmpty()) {
-            this.addChunkToRenderLists(render);
-            this.addEntitiesToRenderLists(render);
+        if (render.isEmpty()) {
+            return NOT_DRAWN;
         }
+
+        // Show all faces if we're doing translucency sorting, otherwise some faces will disappear and flicker around
+        return ((this.translucencySorting && render.shouldRebuildForTranslucents()) ? ChunkFaceFlags.ALL
+                : this.computeVisibleFaces(render))
+                    & render.getFacesWithData();
     }
 
     private void setup(ActiveRenderInfo camera) {
@@ -207,12 +287,7 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
         }
     }
 
-    private void addChunkToRenderLists(ChunkRenderContainer<T> render) {
-        // Show all faces if we're doing translucency sorting, otherwise some faces will disappear and flicker around
-        int visibleFaces = ((this.translucencySorting && render.shouldRebuildForTranslucents()) ? ChunkFaceFlags.ALL
-                : this.computeVisibleFaces(render))
-                    & render.getFacesWithData();
-
+    private void addChunkToRenderLists(ChunkRenderContainer<T> render, int visibleFaces) {
         if (visibleFaces == 0) {
             return;
         }
@@ -300,6 +375,7 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
     private void reset() {
         this.rebuildQueue.clear();
         this.importantRebuildQueue.clear();
+        this.resortQueue.clear();
 
         this.visibleBlockEntities.clear();
 
@@ -325,12 +401,14 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
 
     @Override
     public void onChunkAdded(int x, int z) {
+        this.builder.onChunkAdded(x, z);
         this.loadChunk(x, z);
     }
 
     @Override
     public void onChunkRemoved(int x, int z) {
         this.unloadChunk(x, z);
+        this.builder.onChunkRemoved(x, z);
     }
 
     private void loadChunk(int x, int z) {
@@ -381,6 +459,7 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
 
             if (render != null) {
                 this.unloadQueue.enqueue(render);
+                this.occlusionUpdateQueue.remove(render);
                 this.renders.remove(render.getId());
             }
 
@@ -492,6 +571,27 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
 
         this.dirty |= submitted > 0;
 
+        // Re-sorting translucent geometry has its own budget, so that it can't hold up chunks which need rebuilding
+        int resortBudget = this.builder.getResortBudget();
+        int resorted = 0;
+
+        while (resorted < resortBudget && !this.resortQueue.isEmpty()) {
+            this.builder.deferResort(this.resortQueue.dequeue());
+            resorted++;
+        }
+
+        // Occlusion updates of chunks which can't be seen are budgeted in the same way
+        int occlusionBudget = this.builder.getOcclusionUpdateBudget();
+
+        while (occlusionBudget > 0 && !this.occlusionUpdateQueue.isEmpty()) {
+            ChunkRenderContainer<T> render = this.occlusionUpdateQueue.removeFirst();
+
+            // Chunks which have been rebuilt since they were enqueued already have up-to-date occlusion data
+            if (render.needsRebuild() && this.builder.deferOcclusionUpdate(render)) {
+                occlusionBudget--;
+            }
+        }
+
         // Try to complete some other work on the main thread while we wait for rebuilds to complete
         this.dirty |= this.builder.performPendingUploads();
 
@@ -504,10 +604,6 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
         this.dirty = true;
     }
 
-    public void markCameraPosChanged() {
-        this.cameraPosChanged = true;
-    }
-
     public boolean isDirty() {
         return this.dirty;
     }
@@ -538,6 +634,7 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
         }
 
         this.columns.clear();
+        this.occlusionUpdateQueue.clear();
 
         this.builder.stopWorkers();
     }
@@ -553,22 +650,22 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
             // Nearby chunks are always rendered immediately
             important = important || this.isChunkPrioritized(render);
 
-            // Only enqueue chunks for updates if they aren't already enqueued for an update
-            //
-            // We should avoid rebuilding chunks that aren't visible by using data from the occlusion culler, however
-            // that is not currently feasible because occlusion culling data is only ever updated when chunks are
-            // rebuilt. Computation of occlusion data needs to be isolated from chunk rebuilds for that to be feasible.
-            //
-            // TODO: Avoid rebuilding chunks that aren't visible to the player
-            if (render.scheduleRebuild(important)) {
+            boolean changed = render.scheduleRebuild(important);
+
+            if (!important && this.deferInvisibleRebuilds && !this.culler.isSectionReachable(x, y, z)) {
+                // The chunk can't be seen through the occlusion graph from the camera's section, in any direction, so
+                // it is left marked for rebuilding and will be enqueued once it becomes visible. Its occlusion data is
+                // still kept up to date, as it decides which chunks the graph search can reach once the chunk itself
+                // is reached.
+                this.occlusionUpdateQueue.add(render);
+            } else if (changed) {
+                // Only enqueue chunks for updates if they aren't already enqueued for an update
                 (render.needsImportantRebuild() ? this.importantRebuildQueue : this.rebuildQueue)
                         .enqueue(render);
             }
 
             this.dirty = true;
         }
-
-        this.builder.onChunkDataChanged(x, y, z);
     }
 
     public boolean isChunkPrioritized(ChunkRenderContainer<T> render) {
@@ -579,6 +676,18 @@ public class ChunkRenderManager<T extends ChunkGraphicsState> implements ChunkSt
         return this.visibleChunkCount;
     }
 
+    public int getVisitedNodeCount() {
+        return this.culler.getVisitedNodeCount();
+    }
+
+    public int getDeferredUploadCount() {
+        return this.builder.getDeferredUploadCount();
+    }
+
+    public String getSectionCacheDebugString() {
+        return this.builder.getSectionCacheDebugString();
+    }
+
     public void onChunkRenderUpdates(int x, int y, int z, ChunkRenderData data) {
         this.culler.onSectionStateChanged(x, y, z, data.getOcclusionData());
     }
@@ -2,8 +2,10 @@ package me.jellysquid.mods.sodium.client.render.chunk.backends.multidraw;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.gl.arena.GlBufferArena;
 import me.jellysquid.mods.sodium.client.gl.arena.GlBufferSegment;
+import me.jellysquid.mods.sodium.client.gl.arena.StagingRingAllocator;
 import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexAttribute;
 import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexAttributeBinding;
 import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexAttributeFormat;
@@ -12,6 +14,7 @@ import me.jellysquid.mods.sodium.client.gl.device.CommandList;
 import me.jellysquid.mods.sodium.client.gl.device.DrawCommandList;
 import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
 import me.jellysquid.mods.sodium.client.gl.func.GlFunctions;
+import me.jellysquid.mods.sodium.client.gl.sync.GlFence;
 import me.jellysquid.mods.sodium.client.gl.tessellation.GlPrimitiveType;
 import me.jellysquid.mods.sodium.client.gl.tessellation.GlTessellation;
 import me.jellysquid.mods.sodium.client.gl.tessellation.TessellationBinding;
@@ -21,6 +24,7 @@ import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkCameraContext;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkRenderContainer;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkUploadBudget;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkMeshAttribute;
@@ -30,10 +34,10 @@ import me.jellysquid.mods.sodium.client.render.chunk.region.ChunkRegion;
 import me.jellysquid.mods.sodium.client.render.chunk.region.ChunkRegionManager;
 import me.jellysquid.mods.sodium.client.render.chunk.shader.ChunkRenderShaderBackend;
 import me.jellysquid.mods.sodium.client.render.chunk.shader.ChunkShaderBindingPoints;
-import me.jellysquid.mods.sodium.common.util.TranslucentPoolUtil;
 import net.minecraft.util.Util;
 import net.minecraft.util.text.TextFormatting;
 import org.lwjgl.opengl.GL20C;
+import org.lwjgl.system.MemoryUtil;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -75,17 +79,40 @@ import java.util.regex.Pattern;
  * you can copy the contents of the scratch buffer into the chunk region buffer, rise and repeat. I'm not happy with
  * this solution, but it performs surprisingly well across all hardware I tried.
  *
+ * Where persistently mapped buffers are available, the scratch buffer is replaced by a ring of staging memory which
+ * stays mapped for the lifetime of the renderer. Chunk data is copied directly into the ring and from there into the
+ * chunk region buffer, without re-specifying any buffer storage. Fences are used to track when the GPU has finished
+ * reading from a range of the ring so that it can be re-used. If the ring is full, the scratch buffer is used instead.
+ *
+ * Over time, the memory of each chunk region becomes fragmented as chunk meshes are freed and re-allocated with
+ * different sizes. Neighbouring free ranges are merged together, but holes between live meshes can remain unusable.
+ * When enough of a region's buffer is lost to these holes, the region is compacted by copying its live meshes into a
+ * new, tightly packed buffer. At most one region is compacted per frame to spread the cost out.
+ *
  * With both of these changes, the amount of CPU time taken by rendering chunks linearly decreases with the reduction
  * in buffer bind/setup/draw calls. Using the default settings of 4x2x4 chunk region buffers, the number of calls can be
  * reduced up to a factor of ~32x.
  */
 public class MultidrawChunkRenderBackend extends ChunkRenderShaderBackend<MultidrawGraphicsState> {
+    /**
+     * The amount of mesh data which is batched together before being uploaded. Between each of these rounds, the upload
+     * budget is checked again so that the time limit can be respected.
+     */
+    private static final int UPLOAD_ROUND_SIZE = 1024 * 1024;
+
+    /**
+     * The size of the persistently mapped staging ring. This should be able to hold a few frames worth of uploads.
+     */
+    private static final long STAGING_RING_SIZE = 32L * 1024L * 1024L;
+
     private final ChunkRegionManager<MultidrawGraphicsState> bufferManager;
 
     private final ObjectArrayList<ChunkRegion<MultidrawGraphicsState>> pendingBatches = new ObjectArrayList<>();
     private final ObjectArrayFIFOQueue<ChunkRegion<MultidrawGraphicsState>> pendingUploads = new ObjectArrayFIFOQueue<>();
 
     private final GlMutableBuffer uploadBuffer;
+    private final GlMappedBuffer stagingBuffer;
+    private final StagingRingAllocator<GlFence> stagingRing;
     private final GlMutableBuffer uniformBuffer;
     private final GlMutableBuffer commandBuffer;
     private final GlMutableBuffer drawCountBuffer;
@@ -95,31 +122,56 @@ public class MultidrawChunkRenderBackend extends ChunkRenderShaderBackend<Multid
     private final IndirectParameterBufferVector drawCountBufferBuilder;
 
     private final boolean supportsMultiDrawIndirectCount;
+    private final boolean useArenaCompaction;
 
     public MultidrawChunkRenderBackend(RenderDevice device, ChunkVertexType vertexType) {
         super(vertexType);
 
         this.bufferManager = new ChunkRegionManager<>(device);
         this.supportsMultiDrawIndirectCount = GlFunctions.isIndirectMultiDrawCountSupported();
+        this.useArenaCompaction = SodiumClientMod.options().advanced.useArenaCompaction;
 
         try (CommandList commands = device.createCommandList()) {
             this.uploadBuffer = commands.createMutableBuffer(GlBufferUsage.GL_STREAM_DRAW);
+            this.stagingBuffer = GlFunctions.isBufferStorageSupported() ? commands.createMappedBuffer(STAGING_RING_SIZE) : null;
             this.uniformBuffer = commands.createMutableBuffer(GlBufferUsage.GL_STATIC_DRAW);
             this.commandBuffer = isWindowsIntelDriver() ? null : commands.createMutableBuffer(GlBufferUsage.GL_STREAM_DRAW);
             this.drawCountBuffer = this.supportsMultiDrawIndirectCount ? commands.createMutableBuffer(GlBufferUsage.GL_STREAM_DRAW) : null;
         }
 
+        this.stagingRing = this.stagingBuffer != null ? new StagingRingAllocator<>(STAGING_RING_SIZE) : null;
+
         this.uniformBufferBuilder = ChunkDrawParamsVector.create(2048);
         this.commandClientBufferBuilder = IndirectCommandBufferVector.create(2048);
         this.drawCountBufferBuilder = this.supportsMultiDrawIndirectCount ? IndirectParameterBufferVector.create(512) : null;
     }
 
     @Override
-    public void upload(CommandList commandList, Iterator<ChunkBuildResult<MultidrawGraphicsState>> queue) {
-        this.setupUploadBatches(queue);
+    public void upload(CommandList commandList, Iterator<ChunkBuildResult<MultidrawGraphicsState>> queue, ChunkUploadBudget budget) {
+        if (this.stagingRing != null) {
+            // Release any ranges of the staging ring which the GPU has finished copying from
+            this.stagingRing.reclaim(commandList::isFenceSignaled, commandList::deleteFence);
+        }
 
         commandList.bindBuffer(GlBufferTarget.ARRAY_BUFFER, this.uploadBuffer);
 
+        while (!budget.isExhausted() && queue.hasNext()) {
+            this.setupUploadBatches(queue, budget);
+            this.uploadPendingBatches(commandList);
+        }
+
+        if (this.stagingRing != null && this.stagingRing.hasUnfencedAllocations()) {
+            this.stagingRing.fence(commandList.createFence());
+        }
+
+        if (this.useArenaCompaction) {
+            this.compactFragmentedRegion(commandList);
+        }
+
+        commandList.invalidateBuffer(this.uploadBuffer);
+    }
+
+    private void uploadPendingBatches(CommandList commandList) {
         while (!this.pendingUploads.isEmpty()) {
             ChunkRegion<MultidrawGraphicsState> region = this.pendingUploads.dequeue();
 
@@ -133,7 +185,12 @@ public class MultidrawChunkRenderBackend extends ChunkRenderShaderBackend<Multid
                 ChunkRenderContainer<MultidrawGraphicsState> render = result.render;
                 ChunkRenderData data = result.data;
 
-                for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+                // Results can become outdated by an earlier result for the same render in this batch
+                if (result.isStale()) {
+                    continue;
+                }
+
+                for (BlockRenderPass pass : result.passes) {
                     MultidrawGraphicsState graphics = render.getGraphicsState(pass);
 
                     // De-allocate the existing buffer arena for this render
@@ -147,9 +204,7 @@ public class MultidrawChunkRenderBackend extends ChunkRenderShaderBackend<Multid
                     if (meshData.hasVertexData()) {
                         VertexData upload = meshData.takeVertexData();
 
-                        commandList.uploadData(this.uploadBuffer, upload.buffer);
-
-                        GlBufferSegment segment = arena.uploadBuffer(commandList, this.uploadBuffer, 0, upload.buffer.capacity());
+                        GlBufferSegment segment = this.uploadVertexData(commandList, arena, upload);
 
                         render.setGraphicsState(pass, new MultidrawGraphicsState(render, region, segment, meshData, this.vertexFormat));
                     } else {
@@ -157,23 +212,57 @@ public class MultidrawChunkRenderBackend extends ChunkRenderShaderBackend<Multid
                     }
                 }
 
-                render.setData(data);
+                result.apply();
             }
 
             // Check if the tessellation needs to be updated
             // This happens whenever the backing buffer object for the arena changes, or if it hasn't already been created
             if (region.getTessellation() == null || buffer != arena.getBuffer()) {
-                if (region.getTessellation() != null) {
-                    commandList.deleteTessellation(region.getTessellation());
-                }
-
-                region.setTessellation(this.createRegionTessellation(commandList, arena.getBuffer()));
+                this.updateRegionTessellation(commandList, region);
             }
 
             uploadQueue.clear();
         }
+    }
 
-        commandList.invalidateBuffer(this.uploadBuffer);
+    /**
+     * Compacts the first region found with a fragmented arena, if any.
+     */
+    private void compactFragmentedRegion(CommandList commandList) {
+        ChunkRegion<MultidrawGraphicsState> region = this.bufferManager.findFragmentedRegion();
+
+        if (region != null) {
+            region.getBufferArena().compact(commandList);
+
+            this.updateRegionTessellation(commandList, region);
+        }
+    }
+
+    private void updateRegionTessellation(CommandList commandList, ChunkRegion<MultidrawGraphicsState> region) {
+        if (region.getTessellation() != null) {
+            commandList.deleteTessellation(region.getTessellation());
+        }
+
+        region.setTessellation(this.createRegionTessellation(commandList, region.getBufferArena().getBuffer()));
+    }
+
+    /**
+     * Copies the vertex data into the region's arena, staging it through the persistently mapped ring if there is
+     * space available, or the scratch buffer otherwise.
+     */
+    private GlBufferSegment uploadVertexData(CommandList commandList, GlBufferArena arena, VertexData upload) {
+        int length = upload.buffer.capacity();
+        long offset = this.stagingRing != null ? this.stagingRing.allocate(length) : -1L;
+
+        if (offset < 0) {
+            commandList.uploadData(this.uploadBuffer, upload.buffer);
+
+            return arena.uploadBuffer(commandList, this.uploadBuffer, 0, length);
+        }
+
+        MemoryUtil.memCopy(MemoryUtil.memAddress(upload.buffer, 0), MemoryUtil.memAddress(this.stagingBuffer.getMapping(), 0) + offset, length);
+
+        return arena.uploadBuffer(commandList, this.stagingBuffer, (int) offset, length);
     }
 
     private GlTessellation createRegionTessellation(CommandList commandList, GlBuffer buffer) {
@@ -255,16 +344,26 @@ public class MultidrawChunkRenderBackend extends ChunkRenderShaderBackend<Multid
         }
     }
 
-    private void setupUploadBatches(Iterator<ChunkBuildResult<MultidrawGraphicsState>> renders) {
-        while (renders.hasNext()) {
+    private void setupUploadBatches(Iterator<ChunkBuildResult<MultidrawGraphicsState>> renders, ChunkUploadBudget budget) {
+        int roundBytes = 0;
+
+        while (roundBytes < UPLOAD_ROUND_SIZE && !budget.isExhausted() && renders.hasNext()) {
             ChunkBuildResult<MultidrawGraphicsState> result = renders.next();
             ChunkRenderContainer<MultidrawGraphicsState> render = result.render;
 
+            int meshSize = result.data.getMeshSize();
+
+            budget.consume(meshSize);
+            roundBytes += meshSize;
+
             ChunkRegion<MultidrawGraphicsState> region = this.bufferManager.getRegion(render.getChunkX(), render.getChunkY(), render.getChunkZ());
 
             if (region == null) {
                 if (result.data.getMeshSize() <= 0) {
-                    render.setData(result.data);
+                    if (!result.isStale()) {
+                        result.apply();
+                    }
+
                     continue;
                 }
 
@@ -278,10 +377,6 @@ public class MultidrawChunkRenderBackend extends ChunkRenderShaderBackend<Multid
             }
 
             uploadQueue.add(result);
-
-            if (render.shouldRebuildForTranslucents()) {
-                TranslucentPoolUtil.decrementTranslucentRebuilds();
-            }
         }
     }
 
@@ -343,6 +438,11 @@ public class MultidrawChunkRenderBackend extends ChunkRenderShaderBackend<Multid
 
         try (CommandList commands = RenderDevice.INSTANCE.createCommandList()) {
             commands.deleteBuffer(this.uploadBuffer);
+
+            if (this.stagingBuffer != null) {
+                this.stagingRing.reset(commands::deleteFence);
+                commands.deleteBuffer(this.stagingBuffer);
+            }
             commands.deleteBuffer(this.uniformBuffer);
 
             if (this.commandBuffer != null) {
@@ -437,6 +537,12 @@ public class MultidrawChunkRenderBackend extends ChunkRenderShaderBackend<Multid
     public List<String> getDebugStrings() {
         List<String> list = new ArrayList<>();
         list.add(String.format("Active Buffers: %s", this.bufferManager.getAllocatedRegionCount()));
+        list.add(this.bufferManager.getArenaStatistics());
+
+        if (this.stagingRing != null) {
+            list.add(String.format("Staging Ring: %s/%s MB", this.stagingRing.getUsedBytes() / 1024 / 1024,
+                    this.stagingRing.getCapacity() / 1024 / 1024));
+        }
         list.add(String.format("Submission Mode: %s", this.commandBuffer != null ?
                 TextFormatting.AQUA + "Buffer" : TextFormatting.LIGHT_PURPLE + "Client Memory"));
 
@@ -16,6 +16,9 @@ public class MultidrawGraphicsState extends ChunkGraphicsState {
     private final ChunkRegion<MultidrawGraphicsState> region;
 
     private final GlBufferSegment segment;
+    private final int stride;
+
+    // The slices of each model part, relative to the start of the segment, as the segment can be moved by compaction
     private final long[] parts;
 
     public MultidrawGraphicsState(ChunkRenderContainer<?> container, ChunkRegion<MultidrawGraphicsState> region, GlBufferSegment segment, ChunkMeshData meshData, GlVertexFormat<?> vertexFormat) {
@@ -23,6 +26,7 @@ public class MultidrawGraphicsState extends ChunkGraphicsState {
 
         this.region = region;
         this.segment = segment;
+        this.stride = vertexFormat.getStride();
 
         this.parts = new long[ModelQuadFacing.COUNT];
 
@@ -30,8 +34,8 @@ public class MultidrawGraphicsState extends ChunkGraphicsState {
             ModelQuadFacing facing = entry.getKey();
             BufferSlice slice = entry.getValue();
 
-            int start = (segment.getStart() + slice.start) / vertexFormat.getStride();
-            int count = slice.len / vertexFormat.getStride();
+            int start = slice.start / this.stride;
+            int count = slice.len / this.stride;
 
             this.parts[facing.ordinal()] = BufferSlice.pack(start, count);
         }
@@ -47,7 +51,9 @@ public class MultidrawGraphicsState extends ChunkGraphicsState {
     }
 
     public long getModelPart(int facing) {
-        return this.parts[facing];
+        long part = this.parts[facing];
+
+        return BufferSlice.pack((this.segment.getStart() / this.stride) + BufferSlice.unpackStart(part), BufferSlice.unpackLength(part));
     }
 
 }
@@ -10,13 +10,13 @@ import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkCameraContext;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkRenderContainer;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkUploadBudget;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.lists.ChunkRenderListIterator;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 import me.jellysquid.mods.sodium.client.render.chunk.shader.ChunkRenderShaderBackend;
 import me.jellysquid.mods.sodium.client.render.chunk.shader.ChunkShaderBindingPoints;
-import me.jellysquid.mods.sodium.common.util.TranslucentPoolUtil;
 import org.lwjgl.opengl.GL20C;
 import org.lwjgl.system.MemoryStack;
 
@@ -31,14 +31,21 @@ public class ChunkRenderBackendOneshot extends ChunkRenderShaderBackend<ChunkOne
     }
 
     @Override
-    public void upload(CommandList commandList, Iterator<ChunkBuildResult<ChunkOneshotGraphicsState>> queue) {
-        while (queue.hasNext()) {
+    public void upload(CommandList commandList, Iterator<ChunkBuildResult<ChunkOneshotGraphicsState>> queue, ChunkUploadBudget budget) {
+        while (!budget.isExhausted() && queue.hasNext()) {
             ChunkBuildResult<ChunkOneshotGraphicsState> result = queue.next();
 
             ChunkRenderContainer<ChunkOneshotGraphicsState> render = result.render;
             ChunkRenderData data = result.data;
 
-            for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+            // Results can become outdated by an earlier result for the same render in this batch
+            if (result.isStale()) {
+                continue;
+            }
+
+            budget.consume(data.getMeshSize());
+
+            for (BlockRenderPass pass : result.passes) {
                 ChunkOneshotGraphicsState state = render.getGraphicsState(pass);
                 ChunkMeshData mesh = data.getMesh(pass);
 
@@ -59,11 +66,7 @@ public class ChunkRenderBackendOneshot extends ChunkRenderShaderBackend<ChunkOne
                 render.setGraphicsState(pass, state);
             }
 
-            render.setData(data);
-
-            if (render.shouldRebuildForTranslucents()) {
-                TranslucentPoolUtil.decrementTranslucentRebuilds();
-            }
+            result.apply();
         }
     }
 
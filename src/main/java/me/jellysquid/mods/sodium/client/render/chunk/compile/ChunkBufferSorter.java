@@ -1,115 +1,244 @@
 package me.jellysquid.mods.sodium.client.render.chunk.compile;
 
-import com.google.common.primitives.Floats;
-import it.unimi.dsi.fastutil.ints.IntArrays;
 import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
-import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
 
-import java.nio.Buffer;
 import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
-import java.util.BitSet;
-
+import java.util.Arrays;
+
+/**
+ * Sorts the quads of a translucent mesh from back to front relative to the camera. Each worker thread owns an instance
+ * of this class so that its scratch arrays can be re-used between meshes without any synchronization.
+ *
+ * The center of each quad is computed once and can be kept alongside the mesh, so that it can be sorted again later
+ * without rebuilding it. The squared distance of each quad to the camera is converted into an integer key which
+ * preserves ordering, allowing the quads to be ordered with a stable LSD radix sort. The quads are then copied in their
+ * sorted order in a single pass, instead of being permuted in place.
+ */
 public class ChunkBufferSorter {
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX_SIZE = 1 << RADIX_BITS;
+    private static final int RADIX_MASK = RADIX_SIZE - 1;
+
+    private final int[] counts = new int[RADIX_SIZE];
+
+    private float[] centroidsScratch = new float[0];
+
+    private int[] keys = new int[0];
+    private int[] keysScratch = new int[0];
+
+    private int[] indices = new int[0];
+    private int[] indicesScratch = new int[0];
+
+    private ByteBuffer scratch = null;
+
+    /**
+     * Computes the center of each quad in the buffer. Only vertex types which store positions as floats (such as the
+     * standard format) are supported.
+     *
+     * @param vertexType The vertex type of the buffer's data
+     * @param buffer The direct buffer containing the mesh's vertex data, starting at position zero
+     * @param bufferLen The number of bytes of vertex data in the buffer
+     * @return A new array containing the center of each quad as (x, y, z) triplets in model space
+     */
+    public float[] computeCentroids(ChunkVertexType vertexType, ByteBuffer buffer, int bufferLen) {
+        return this.computeCentroids(vertexType.getBufferVertexFormat().getStride(), buffer, bufferLen);
+    }
+
+    /**
+     * @param vertexStride The number of bytes between each vertex, with the position stored as three floats at the
+     *                     start of each vertex
+     * @see ChunkBufferSorter#computeCentroids(ChunkVertexType, ByteBuffer, int)
+     */
+    public float[] computeCentroids(int vertexStride, ByteBuffer buffer, int bufferLen) {
+        int quadCount = bufferLen / (vertexStride * 4);
+
+        float[] centroids = new float[quadCount * 3];
+
+        long ptr = MemoryUtil.memAddress(buffer, 0);
+
+        for (int quadIdx = 0; quadIdx < quadCount; quadIdx++) {
+            float xSum = 0.0f;
+            float ySum = 0.0f;
+            float zSum = 0.0f;
+
+            for (int vertexIdx = 0; vertexIdx < 4; vertexIdx++) {
+                xSum += MemoryUtil.memGetFloat(ptr);
+                ySum += MemoryUtil.memGetFloat(ptr + 4);
+                zSum += MemoryUtil.memGetFloat(ptr + 8);
+
+                ptr += vertexStride;
+            }
+
+            int base = quadIdx * 3;
+            centroids[base] = xSum * 0.25f;
+            centroids[base + 1] = ySum * 0.25f;
+            centroids[base + 2] = zSum * 0.25f;
+        }
+
+        return centroids;
+    }
+
+    /**
+     * Writes the quads of the source buffer into the destination buffer so that the quads furthest from the given
+     * camera position come first. The centroids are re-ordered alongside the quads, so they can be used again to sort
+     * the destination buffer later.
+     *
+     * @param vertexType The vertex type of the buffer's data
+     * @param src The direct buffer containing the mesh's vertex data, starting at position zero
+     * @param dst The direct buffer to write the sorted data into, which may be the same as the source buffer
+     * @param centroids The center of each quad in the source buffer, as computed by
+     *                  {@link ChunkBufferSorter#computeCentroids(ChunkVertexType, ByteBuffer, int)}
+     */
+    public void sort(ChunkVertexType vertexType, ByteBuffer src, ByteBuffer dst, float[] centroids, float x, float y, float z) {
+        this.sort(vertexType.getBufferVertexFormat().getStride(), vertexType.getModelScale(), src, dst, centroids, x, y, z);
+    }
+
+    /**
+     * @param vertexStride The number of bytes between each vertex
+     * @param scale The scale which is applied to the camera position to bring it into the model space of the quads
+     * @see ChunkBufferSorter#sort(ChunkVertexType, ByteBuffer, ByteBuffer, float[], float, float, float)
+     */
+    public void sort(int vertexStride, float scale, ByteBuffer src, ByteBuffer dst, float[] centroids, float x, float y, float z) {
+        int quadStride = vertexStride * 4;
+        int quadCount = centroids.length / 3;
+
+        long srcAddress = MemoryUtil.memAddress(src, 0);
+        long dstAddress = MemoryUtil.memAddress(dst, 0);
+
+        if (quadCount <= 1) {
+            if (srcAddress != dstAddress) {
+                MemoryUtil.memCopy(srcAddress, dstAddress, (long) quadCount * quadStride);
+            }
+
+            return;
+        }
 
-    public static void sortStandardFormat(ChunkVertexType vertexType, ByteBuffer buffer, int bufferLen, float x, float y, float z) {
-        x *= vertexType.getModelScale();
-        y *= vertexType.getModelScale();
-        z *= vertexType.getModelScale();
-        FloatBuffer floatBuffer = buffer.asFloatBuffer();
+        this.computeKeys(centroids, quadCount, x * scale, y * scale, z * scale);
 
-        // Quad stride by Float size
-        int quadStride = vertexType.getBufferVertexFormat().getStride();
+        int[] order = this.radixSort(quadCount);
 
-        int quadStart = ((Buffer)buffer).position();
-        int quadCount = bufferLen/quadStride/4;
-        int vertexSizeInteger = quadStride / 4;
+        this.permuteQuads(srcAddress, dstAddress, order, quadCount, quadStride);
+        this.permuteCentroids(centroids, order, quadCount);
+    }
+
+    private void computeKeys(float[] centroids, int quadCount, float x, float y, float z) {
+        int[] keys = this.keys = ensureCapacity(this.keys, quadCount);
+        int[] indices = this.indices = ensureCapacity(this.indices, quadCount);
+
+        for (int quadIdx = 0; quadIdx < quadCount; quadIdx++) {
+            int base = quadIdx * 3;
+
+            float xDist = centroids[base] - x;
+            float yDist = centroids[base + 1] - y;
+            float zDist = centroids[base + 2] - z;
 
-        float[] distanceArray = new float[quadCount];
-        int[] indicesArray = new int[quadCount];
+            float distance = (xDist * xDist) + (yDist * yDist) + (zDist * zDist);
 
-        for (int quadIdx = 0; quadIdx < quadCount; ++quadIdx) {
-            distanceArray[quadIdx] = getDistanceSq(floatBuffer, x, y, z, vertexSizeInteger, quadStart + (quadIdx * quadStride));
-            indicesArray[quadIdx] = quadIdx;
+            // The bits of a non-negative float sort in the same order as its value when treated as an unsigned
+            // integer, so inverting them gives a key which sorts the furthest quads first
+            keys[quadIdx] = ~Float.floatToRawIntBits(distance);
+            indices[quadIdx] = quadIdx;
         }
+    }
 
-        IntArrays.mergeSort(indicesArray, (a, b) -> Floats.compare(distanceArray[b], distanceArray[a]));
+    /**
+     * Sorts the quad indices by their keys, treated as unsigned integers. The sort is stable, so quads with equal
+     * distances keep their original order.
+     * @return The array containing the sorted quad indices
+     */
+    private int[] radixSort(int count) {
+        int[] keys = this.keys;
+        int[] indices = this.indices;
 
-        BitSet bits = new BitSet();
+        int[] keysDst = this.keysScratch = ensureCapacity(this.keysScratch, count);
+        int[] indicesDst = this.indicesScratch = ensureCapacity(this.indicesScratch, count);
 
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            FloatBuffer tmp = stack.mallocFloat(quadStride);
+        int[] counts = this.counts;
 
-            for (int l = bits.nextClearBit(0); l < indicesArray.length; l = bits.nextClearBit(l + 1)) {
-                int m = indicesArray[l];
+        for (int shift = 0; shift < Integer.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
 
-                if (m != l) {
-                    sliceQuad(floatBuffer, m, quadStride, quadStart);
-                    ((Buffer)tmp).clear();
-                    tmp.put(floatBuffer);
+            for (int i = 0; i < count; i++) {
+                counts[(keys[i] >>> shift) & RADIX_MASK]++;
+            }
 
-                    int n = m;
+            // If every key falls into the same bucket, this pass wouldn't change the order
+            if (counts[(keys[0] >>> shift) & RADIX_MASK] == count) {
+                continue;
+            }
 
-                    for (int o = indicesArray[m]; n != l; o = indicesArray[o]) {
-                        sliceQuad(floatBuffer, o, quadStride, quadStart);
-                        FloatBuffer floatBuffer3 = floatBuffer.slice();
+            int offset = 0;
 
-                        sliceQuad(floatBuffer, n, quadStride, quadStart);
-                        floatBuffer.put(floatBuffer3);
+            for (int bucket = 0; bucket < RADIX_SIZE; bucket++) {
+                int bucketCount = counts[bucket];
+                counts[bucket] = offset;
+                offset += bucketCount;
+            }
+
+            for (int i = 0; i < count; i++) {
+                int key = keys[i];
+                int dst = counts[(key >>> shift) & RADIX_MASK]++;
+
+                keysDst[dst] = key;
+                indicesDst[dst] = indices[i];
+            }
 
-                        bits.set(n);
-                        n = o;
-                    }
+            int[] tmpKeys = keys;
+            keys = keysDst;
+            keysDst = tmpKeys;
 
-                    sliceQuad(floatBuffer, l, quadStride, quadStart);
-                    ((Buffer)tmp).flip();
+            int[] tmpIndices = indices;
+            indices = indicesDst;
+            indicesDst = tmpIndices;
+        }
 
-                    floatBuffer.put(tmp);
-                }
+        return indices;
+    }
 
-                bits.set(l);
+    private void permuteQuads(long srcAddress, long dstAddress, int[] order, int quadCount, int quadStride) {
+        int length = quadCount * quadStride;
+
+        // When sorting in-place, the quads are first gathered into a scratch buffer and then copied back
+        long gatherAddress = dstAddress;
+
+        if (srcAddress == dstAddress) {
+            if (this.scratch == null || this.scratch.capacity() < length) {
+                this.scratch = ByteBuffer.allocateDirect(Math.max(length, this.scratch == null ? 0 : this.scratch.capacity() * 2));
             }
+
+            gatherAddress = MemoryUtil.memAddress(this.scratch, 0);
+        }
+
+        for (int i = 0; i < quadCount; i++) {
+            MemoryUtil.memCopy(srcAddress + ((long) order[i] * quadStride), gatherAddress + ((long) i * quadStride), quadStride);
+        }
+
+        if (gatherAddress != dstAddress) {
+            MemoryUtil.memCopy(gatherAddress, dstAddress, length);
         }
     }
 
-    private static void sliceQuad(FloatBuffer floatBuffer, int quadIdx, int quadStride, int quadStart) {
-        int base = quadStart + (quadIdx * quadStride);
+    private void permuteCentroids(float[] centroids, int[] order, int quadCount) {
+        float[] sorted = this.centroidsScratch = ensureCapacity(this.centroidsScratch, quadCount * 3);
+
+        for (int i = 0; i < quadCount; i++) {
+            int src = order[i] * 3;
+            int dst = i * 3;
+
+            sorted[dst] = centroids[src];
+            sorted[dst + 1] = centroids[src + 1];
+            sorted[dst + 2] = centroids[src + 2];
+        }
+
+        System.arraycopy(sorted, 0, centroids, 0, quadCount * 3);
+    }
 
-        ((Buffer)floatBuffer).limit(base + quadStride);
-        ((Buffer)floatBuffer).position(base);
+    private static float[] ensureCapacity(float[] array, int length) {
+        return array.length >= length ? array : new float[Math.max(length, array.length * 2)];
     }
 
-    private static float getDistanceSq(FloatBuffer buffer, float xCenter, float yCenter, float zCenter, int stride, int start) {
-        int vertexBase = start;
-        float x1 = buffer.get(vertexBase);
-        float y1 = buffer.get(vertexBase + 1);
-        float z1 = buffer.get(vertexBase + 2);
-
-        //System.out.println("camera: " + xCenter + "," + yCenter + "," + zCenter);
-        //System.out.println("buffer1: " + x1 + "," + y1 + "," + z1);
-
-        vertexBase += stride;
-        float x2 = buffer.get(vertexBase);
-        float y2 = buffer.get(vertexBase + 1);
-        float z2 = buffer.get(vertexBase + 2);
-        //System.out.println("buffer2: " + x2 + "," + y2 + "," + z2);
-
-        vertexBase += stride;
-        float x3 = buffer.get(vertexBase);
-        float y3 = buffer.get(vertexBase + 1);
-        float z3 = buffer.get(vertexBase + 2);
-        //System.out.println("buffer3: " + x3 + "," + y3 + "," + z3);
-
-        vertexBase += stride;
-        float x4 = buffer.get(vertexBase);
-        float y4 = buffer.get(vertexBase + 1);
-        float z4 = buffer.get(vertexBase + 2);
-        //System.out.println("buffer4: " + x4 + "," + y4 + "," + z4);
-
-        float xDist = ((x1 + x2 + x3 + x4) * 0.25F) - xCenter;
-        float yDist = ((y1 + y2 + y3 + y4) * 0.25F) - yCenter;
-        float zDist = ((z1 + z2 + z3 + z4) * 0.25F) - zCenter;
-
-        return (xDist * xDist) + (yDist * yDist) + (zDist * zDist);
+    private static int[] ensureCapacity(int[] array, int length) {
+        return array.length >= length ? array : new int[Math.max(length, array.length * 2)];
     }
 }
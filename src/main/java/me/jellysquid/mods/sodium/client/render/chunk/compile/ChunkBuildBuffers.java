@@ -9,6 +9,7 @@ import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.BakedChunkM
 import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.ChunkModelBuffers;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.ChunkModelVertexTransformer;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshSortData;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkModelOffset;
 import me.jellysquid.mods.sodium.client.render.chunk.format.sfp.SFPModelVertexType;
@@ -34,6 +35,7 @@ public class ChunkBuildBuffers {
 
     private final BlockRenderPassManager renderPassManager;
     private final ChunkModelOffset offset;
+    private final ChunkBufferSorter sorter = new ChunkBufferSorter();
 
     public ChunkBuildBuffers(ChunkVertexType vertexType, BlockRenderPassManager renderPassManager) {
         this.vertexType = vertexType;
@@ -118,9 +120,42 @@ public class ChunkBuildBuffers {
         ((Buffer)buffer).flip();
 
         if (pass.isTranslucent() && shouldSortBackwards && (vertexType instanceof SFPModelVertexType)) {
-            ChunkBufferSorter.sortStandardFormat(vertexType, buffer, bufferLen, x, y, z);
+            float[] centroids = this.sorter.computeCentroids(this.vertexType, buffer, bufferLen);
+            this.sorter.sort(this.vertexType, buffer, buffer, centroids, x, y, z);
+
+            // Keep the sorted data and quad centroids around so that the mesh can be re-sorted without a rebuild
+            meshData.setSortData(new ChunkMeshSortData(buffer, centroids, x, y, z));
+        }
+
+        meshData.setVertexData(new VertexData(buffer, this.vertexType.getCustomVertexFormat()));
+
+        return meshData;
+    }
+
+    /**
+     * Creates a copy of a previously built translucent mesh with its quads sorted for a new camera position. The given
+     * mesh is not modified.
+     * @param mesh The mesh to sort, which must have sort data attached
+     */
+    public ChunkMeshData sortMesh(ChunkMeshData mesh, float x, float y, float z) {
+        ChunkMeshSortData prevSortData = mesh.getSortData();
+
+        if (prevSortData == null) {
+            throw new IllegalArgumentException("Mesh cannot be sorted");
+        }
+
+        ByteBuffer buffer = GLAllocation.createByteBuffer(prevSortData.vertexData.capacity());
+        float[] centroids = prevSortData.centroids.clone();
+
+        this.sorter.sort(this.vertexType, prevSortData.vertexData, buffer, centroids, x, y, z);
+
+        ChunkMeshData meshData = new ChunkMeshData();
+
+        for (Map.Entry<ModelQuadFacing, BufferSlice> entry : mesh.getSlices()) {
+            meshData.setModelSlice(entry.getKey(), entry.getValue());
         }
 
+        meshData.setSortData(new ChunkMeshSortData(buffer, centroids, x, y, z));
         meshData.setVertexData(new VertexData(buffer, this.vertexType.getCustomVertexFormat()));
 
         return meshData;
@@ -3,6 +3,7 @@ package me.jellysquid.mods.sodium.client.render.chunk.compile;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkGraphicsState;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkRenderContainer;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 
 /**
  * The result of a chunk rebuild task which contains any and all data that needs to be processed or uploaded on
@@ -13,8 +14,66 @@ public class ChunkBuildResult<T extends ChunkGraphicsState> {
     public final ChunkRenderContainer<T> render;
     public final ChunkRenderData data;
 
-    public ChunkBuildResult(ChunkRenderContainer<T> render, ChunkRenderData data) {
+    /**
+     * The render passes whose meshes are replaced by this result. The graphics state of any other pass is left as-is.
+     */
+    public final BlockRenderPass[] passes;
+
+    /**
+     * The render data which this result was derived from, or null if the result replaces the render's data entirely.
+     */
+    private final ChunkRenderData base;
+
+    /**
+     * The rebuild version of the render which this result was built for, or zero if the result is partial.
+     * @see ChunkRenderContainer#nextRebuildVersion()
+     */
+    private final int version;
+
+    public ChunkBuildResult(ChunkRenderContainer<T> render, ChunkRenderData data, int version) {
+        this(render, data, BlockRenderPass.VALUES, null, version);
+    }
+
+    public ChunkBuildResult(ChunkRenderContainer<T> render, ChunkRenderData data, BlockRenderPass[] passes, ChunkRenderData base) {
+        this(render, data, passes, base, 0);
+    }
+
+    private ChunkBuildResult(ChunkRenderContainer<T> render, ChunkRenderData data, BlockRenderPass[] passes, ChunkRenderData base, int version) {
         this.render = render;
         this.data = data;
+        this.passes = passes;
+        this.base = base;
+        this.version = version;
+    }
+
+    /**
+     * @return True if uploading this result would revert newer data, either because it was derived from render data
+     *         which has since been replaced, or because the result of a newer rebuild has already been uploaded
+     */
+    public boolean isStale() {
+        if (this.base != null) {
+            return this.render.getData() != this.base;
+        }
+
+        return this.version < this.render.getUploadedVersion();
+    }
+
+    /**
+     * Replaces the data of the render with the data of this result. This should be called once the result's meshes
+     * have been uploaded.
+     */
+    public void apply() {
+        if (this.base == null) {
+            this.render.setUploadedVersion(this.version);
+        }
+
+        this.render.setData(this.data);
+    }
+
+    /**
+     * @return True if this result only updates some of the render's meshes
+     */
+    public boolean isPartial() {
+        return this.base != null;
     }
 }
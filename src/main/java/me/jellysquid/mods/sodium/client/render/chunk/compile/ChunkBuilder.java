@@ -1,34 +1,47 @@
 package me.jellysquid.mods.sodium.client.render.chunk.compile;
 
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectListIterator;
 import lombok.extern.log4j.Log4j2;
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
 import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkGraphicsState;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkRenderBackend;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkRenderContainer;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPassManager;
 import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderBuildTask;
 import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderEmptyBuildTask;
+import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderOcclusionTask;
 import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderRebuildTask;
+import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderResortTask;
 import me.jellysquid.mods.sodium.client.render.pipeline.context.ChunkRenderCacheLocal;
+import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
 import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
+import me.jellysquid.mods.sodium.client.util.task.WorkStealingQueue;
 import me.jellysquid.mods.sodium.client.world.WorldSlice;
+import me.jellysquid.mods.sodium.client.world.biome.BiomeColorColumnCache;
 import me.jellysquid.mods.sodium.client.world.cloned.ChunkRenderContext;
+import me.jellysquid.mods.sodium.client.world.cloned.ClonedChunkSection;
 import me.jellysquid.mods.sodium.client.world.cloned.ClonedChunkSectionCache;
-import me.jellysquid.mods.sodium.common.util.collections.DequeDrain;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.SectionPos;
 import net.minecraft.util.math.vector.Vector3d;
 import net.minecraft.world.World;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 @Log4j2
 public class ChunkBuilder<T extends ChunkGraphicsState> {
@@ -37,20 +50,55 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
      */
     private static final int TASK_QUEUE_LIMIT_PER_WORKER = 2;
 
+    /**
+     * The maximum number of translucent re-sort tasks that can be in flight for a given worker thread. These are
+     * budgeted separately from rebuilds, as they are much cheaper to perform.
+     */
+    private static final int RESORT_LIMIT_PER_WORKER = 4;
+
+    /**
+     * The maximum number of occlusion updates that can be queued for a given worker thread. Chunks which can't be seen
+     * can change far more often than the workers could keep up with, so their updates wait outside the build queue.
+     */
+    private static final int OCCLUSION_UPDATE_LIMIT_PER_WORKER = 4;
+
+    /**
+     * The priority bias applied to tasks for chunks outside the frustum. This is larger than the squared distance to
+     * any chunk within render distance, so that visible chunks are always built first.
+     */
+    private static final double OUT_OF_FRUSTUM_PRIORITY_BIAS = 1.0e12D;
+
     private static final Logger LOGGER = LogManager.getLogger("ChunkBuilder");
 
-    private final Deque<WrappedTask<T>> buildQueue = new ConcurrentLinkedDeque<>();
+    private final WorkStealingQueue<WrappedTask<T>> buildQueue;
     private final Deque<ChunkBuildResult<T>> uploadQueue = new ConcurrentLinkedDeque<>();
 
-    private final Object jobNotifier = new Object();
+    // The results of occlusion updates, which are applied on the main thread without uploading anything
+    private final Deque<ChunkBuildResult<T>> occlusionQueue = new ConcurrentLinkedDeque<>();
+
+    // The results which have been taken from the upload queue but not uploaded yet, only accessed on the main thread
+    private final ObjectArrayList<ChunkBuildResult<T>> pendingUploads = new ObjectArrayList<>();
+    private final ChunkUploadBudget uploadBudget;
+    private int deferredUploadCount;
+
+    // The number of re-sort tasks which have been scheduled and whose results haven't been processed yet
+    private final AtomicInteger pendingResorts = new AtomicInteger();
+
+    // The number of rebuild and occlusion tasks respectively which are waiting in the build queue and haven't been
+    // picked up by a worker yet
+    private final AtomicInteger queuedRebuilds = new AtomicInteger();
+    private final AtomicInteger queuedOcclusionUpdates = new AtomicInteger();
 
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final List<Thread> threads = new ArrayList<>();
+    private final List<WorkerRunnable> workers = new ArrayList<>();
 
     private ClonedChunkSectionCache sectionCache;
+    private BiomeColorColumnCache biomeColorColumnCache;
 
     private World world;
-    private Vector3d cameraPosition;
+    private volatile Vector3d cameraPosition;
+    private volatile FrustumExtended frustum;
     private BlockRenderPassManager renderPassManager;
 
     private final int limitThreads;
@@ -61,14 +109,32 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
         this.vertexType = vertexType;
         this.backend = backend;
         this.limitThreads = getOptimalThreadCount();
+        this.buildQueue = new WorkStealingQueue<>(this.limitThreads, this::getTaskPriority);
+        this.uploadBudget = new ChunkUploadBudget(SodiumClientMod.options().advanced.chunkUploadBudgetBytes,
+                SodiumClientMod.options().advanced.chunkUploadBudgetNanos);
     }
 
     /**
-     * Returns the remaining number of build tasks which should be scheduled this frame. If an attempt is made to
-     * spawn more tasks than the budget allows, it will block until resources become available.
+     * Returns the remaining number of rebuild tasks which should be scheduled this frame. If an attempt is made to
+     * spawn more tasks than the budget allows, it will block until resources become available. Re-sort and occlusion
+     * tasks share the build queue, but have budgets of their own.
      */
     public int getSchedulingBudget() {
-        return Math.max(0, (this.limitThreads * TASK_QUEUE_LIMIT_PER_WORKER) - this.buildQueue.size());
+        return Math.max(0, (this.limitThreads * TASK_QUEUE_LIMIT_PER_WORKER) - this.queuedRebuilds.get());
+    }
+
+    /**
+     * Returns the remaining number of occlusion updates which should be scheduled this frame.
+     */
+    public int getOcclusionUpdateBudget() {
+        return Math.max(0, (this.limitThreads * OCCLUSION_UPDATE_LIMIT_PER_WORKER) - this.queuedOcclusionUpdates.get());
+    }
+
+    /**
+     * Returns the remaining number of translucent re-sort tasks which should be scheduled this frame.
+     */
+    public int getResortBudget() {
+        return Math.max(0, (this.limitThreads * RESORT_LIMIT_PER_WORKER) - this.pendingResorts.get());
     }
 
     /**
@@ -88,15 +154,16 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
 
         for (int i = 0; i < this.limitThreads; i++) {
             ChunkBuildBuffers buffers = new ChunkBuildBuffers(this.vertexType, this.renderPassManager);
-            ChunkRenderCacheLocal pipeline = new ChunkRenderCacheLocal(client, this.world);
+            ChunkRenderCacheLocal pipeline = new ChunkRenderCacheLocal(client, this.world, this.vertexType, this.biomeColorColumnCache);
 
-            WorkerRunnable worker = new WorkerRunnable(buffers, pipeline);
+            WorkerRunnable worker = new WorkerRunnable(i, buffers, pipeline);
 
             Thread thread = new Thread(worker, "Chunk Render Task Executor #" + i);
             thread.setPriority(Math.max(0, Thread.NORM_PRIORITY - 2));
             thread.start();
 
             this.threads.add(thread);
+            this.workers.add(worker);
         }
 
         LOGGER.info("Started {} worker threads", this.threads.size());
@@ -119,8 +186,8 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
         LOGGER.info("Stopping worker threads");
 
         // Notify all worker threads to wake up, where they will then terminate
-        synchronized (this.jobNotifier) {
-            this.jobNotifier.notifyAll();
+        for (Thread thread : this.threads) {
+            LockSupport.unpark(thread);
         }
 
         // Wait for every remaining thread to terminate
@@ -132,55 +199,181 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
         }
 
         this.threads.clear();
+        this.workers.clear();
 
         // Drop any pending work queues and cancel futures
         this.uploadQueue.clear();
+        this.occlusionQueue.clear();
+        this.pendingUploads.clear();
+        this.deferredUploadCount = 0;
+        this.pendingResorts.set(0);
 
-        for (WrappedTask<?> job : this.buildQueue) {
+        this.buildQueue.drain(job -> {
             job.future.cancel(true);
-        }
-
-        this.buildQueue.clear();
+            job.task.releaseResources();
+        });
+        this.queuedRebuilds.set(0);
+        this.queuedOcclusionUpdates.set(0);
 
         this.world = null;
         this.sectionCache = null;
+        this.biomeColorColumnCache = null;
     }
 
     /**
-     * Processes all pending build task uploads using the chunk render backend.
+     * Processes pending build task uploads using the chunk render backend, nearest chunks first, until the per-frame
+     * upload budget is exhausted. Any results which could not be uploaded are carried over to the next frame.
      */
-    // TODO: Limit the amount of time this can take per frame
     public boolean performPendingUploads() {
-        if (this.uploadQueue.isEmpty()) {
+        ChunkBuildResult<T> result;
+
+        while ((result = this.occlusionQueue.poll()) != null) {
+            // Occlusion updates are outdated once the render has been rebuilt
+            if (!result.render.isDisposed() && !result.isStale()) {
+                result.apply();
+            }
+        }
+
+        while ((result = this.uploadQueue.poll()) != null) {
+            this.pendingUploads.add(result);
+        }
+
+        // Renders can be unloaded while their results are waiting to be uploaded, re-sorted meshes are outdated once
+        // the render has been rebuilt, and rebuilds are outdated once a newer rebuild (such as a blocking one which
+        // skipped this queue) has been uploaded
+        this.pendingUploads.removeIf(pending -> {
+            if (pending.render.isDisposed() || pending.isStale()) {
+                this.onResultProcessed(pending);
+                return true;
+            }
+
             return false;
+        });
+
+        if (this.pendingUploads.isEmpty()) {
+            this.deferredUploadCount = 0;
+
+            return false;
+        }
+
+        Vector3d camera = this.cameraPosition;
+
+        if (camera != null) {
+            // The sort is stable, so multiple results for the same render will still be uploaded in order
+            this.pendingUploads.sort(Comparator.comparingDouble(pending ->
+                    pending.render.getSquaredDistance(camera.x, camera.y, camera.z)));
+        }
+
+        ObjectListIterator<ChunkBuildResult<T>> it = this.pendingUploads.iterator();
+
+        this.uploadBudget.begin();
+        this.backend.upload(RenderDevice.INSTANCE.createCommandList(), it, this.uploadBudget);
+
+        for (int i = 0; i < it.nextIndex(); i++) {
+            this.onResultProcessed(this.pendingUploads.get(i));
         }
 
-        this.backend.upload(RenderDevice.INSTANCE.createCommandList(), new DequeDrain<>(this.uploadQueue));
+        this.pendingUploads.removeElements(0, it.nextIndex());
+        this.deferredUploadCount = this.pendingUploads.size();
 
         return true;
     }
 
-    public CompletableFuture<ChunkBuildResult<T>> schedule(ChunkRenderBuildTask<T> task) {
+    private void onResultProcessed(ChunkBuildResult<T> result) {
+        if (result.isPartial()) {
+            this.finishResort(result.render);
+        }
+    }
+
+    private void finishResort(ChunkRenderContainer<T> render) {
+        if (render.isResortPending()) {
+            render.setResortPending(false);
+            this.pendingResorts.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return The number of build results which were left over after the last call to
+     *         {@link ChunkBuilder#performPendingUploads()} because the upload budget was exhausted
+     */
+    public int getDeferredUploadCount() {
+        return this.deferredUploadCount;
+    }
+
+    /**
+     * Schedules the task for execution on the worker pool.
+     * @param task The task to execute
+     * @param blocking True if the caller will block on the task's completion, which causes it to be picked before
+     *                 any non-blocking tasks
+     */
+    public CompletableFuture<ChunkBuildResult<T>> schedule(ChunkRenderBuildTask<T> task, boolean blocking) {
+        return this.schedule(task, blocking, null);
+    }
+
+    /**
+     * @param queuedCounter The counter of queued tasks which the task is counted in until a worker picks it up, or null
+     *                      if it isn't counted
+     */
+    private CompletableFuture<ChunkBuildResult<T>> schedule(ChunkRenderBuildTask<T> task, boolean blocking, AtomicInteger queuedCounter) {
         if (!this.running.get()) {
             throw new IllegalStateException("Executor is stopped");
         }
 
-        WrappedTask<T> job = new WrappedTask<>(task);
+        WrappedTask<T> job = new WrappedTask<>(task, blocking, queuedCounter);
+
+        if (queuedCounter != null) {
+            queuedCounter.incrementAndGet();
+        }
 
-        this.buildQueue.add(job);
+        int worker = this.buildQueue.add(job);
 
-        synchronized (this.jobNotifier) {
-            this.jobNotifier.notify();
+        // The worker which received the job may be parked, so wake it up
+        LockSupport.unpark(this.threads.get(worker));
+
+        // If that worker is busy, wake up an idle worker so that it can steal the job
+        if (!this.workers.get(worker).idle) {
+            for (int i = 0; i < this.workers.size(); i++) {
+                if (this.workers.get(i).idle) {
+                    LockSupport.unpark(this.threads.get(i));
+                    break;
+                }
+            }
         }
 
         return job.future;
     }
 
+    /**
+     * Returns the priority of a task, where lower values are picked first. Tasks which are blocked on by the main
+     * thread come first, followed by those inside the current frustum, and then all others. Within each group, tasks
+     * are ordered by their distance to the camera.
+     *
+     * This is evaluated when the task is queued, and again for all queued tasks whenever the camera position or frustum
+     * is updated, so the ordering follows the most recent camera position and frustum.
+     */
+    private double getTaskPriority(WrappedTask<T> job) {
+        ChunkRenderContainer<T> render = job.task.getRender();
+
+        Vector3d camera = this.cameraPosition;
+        FrustumExtended frustum = this.frustum;
+
+        double priority = camera != null ? render.getSquaredDistance(camera.x, camera.y, camera.z) : 0.0D;
+
+        if (job.blocking) {
+            priority -= OUT_OF_FRUSTUM_PRIORITY_BIAS;
+        } else if (frustum != null && render.isOutsideFrustum(frustum)) {
+            priority += OUT_OF_FRUSTUM_PRIORITY_BIAS;
+        }
+
+        return priority;
+    }
+
     /**
      * Sets the current camera position of the player used for task prioritization.
      */
     public void setCameraPosition(double x, double y, double z) {
         this.cameraPosition = new Vector3d(x, y, z);
+        this.buildQueue.invalidatePriorities();
     }
 
     /**
@@ -190,6 +383,14 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
         return this.cameraPosition;
     }
 
+    /**
+     * Sets the current view frustum of the player used for task prioritization.
+     */
+    public void setFrustum(FrustumExtended frustum) {
+        this.frustum = frustum;
+        this.buildQueue.invalidatePriorities();
+    }
+
     /**
      * @return True if the build queue is empty
      */
@@ -212,8 +413,10 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
         this.stopWorkers();
 
         this.world = world;
+        this.frustum = null;
         this.renderPassManager = renderPassManager;
         this.sectionCache = new ClonedChunkSectionCache(this.world);
+        this.biomeColorColumnCache = SodiumClientMod.options().advanced.useSharedBiomeColors ? new BiomeColorColumnCache() : null;
 
         this.startWorkers();
     }
@@ -233,11 +436,66 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
      * @param render The render to rebuild
      */
     public void deferRebuild(ChunkRenderContainer<T> render) {
-        this.scheduleRebuildTaskAsync(render)
+        this.schedule(this.createRebuildTask(render), false, this.queuedRebuilds)
                 .thenAccept(this::enqueueUpload);
     }
 
 
+    /**
+     * Creates a task to re-sort the translucent meshes of a render for the current camera position and defers it to
+     * the work queue. The render will not be re-sorted again until the result has been processed on the main thread.
+     * @param render The render to re-sort
+     */
+    public void deferResort(ChunkRenderContainer<T> render) {
+        if (render.isResortPending()) {
+            return;
+        }
+
+        render.setResortPending(true);
+        this.pendingResorts.incrementAndGet();
+
+        this.schedule(new ChunkRenderResortTask<>(render, this.cameraPosition), false)
+                .whenComplete((result, error) -> {
+                    if (result != null) {
+                        this.enqueueUpload(result);
+                    } else {
+                        // The task failed, so allow the render to be re-sorted again later
+                        this.finishResort(render);
+                    }
+                });
+    }
+
+    /**
+     * Creates a task to update the occlusion data of a render without rebuilding its meshes and defers it to the work
+     * queue. Any previous occlusion update for the render which hasn't completed yet is cancelled. Renders which have
+     * never been built are skipped, as they will need to be rebuilt before they can be drawn anyways, and so are renders
+     * whose blocks haven't changed since their last occlusion update was scheduled.
+     * @param render The render to update
+     * @return True if a task was scheduled, which counts against {@link ChunkBuilder#getOcclusionUpdateBudget()}
+     */
+    public boolean deferOcclusionUpdate(ChunkRenderContainer<T> render) {
+        if (render.getData() == ChunkRenderData.ABSENT) {
+            return false;
+        }
+
+        SectionPos pos = render.getChunkPos();
+        ClonedChunkSection section = this.sectionCache.acquire(pos.getX(), pos.getY(), pos.getZ());
+
+        // Light updates also mark sections for rebuilding, but only a change to the blocks can change the occlusion data
+        if (render.hasOcclusionUpdateFor(section.getBlockDataId())) {
+            this.sectionCache.release(section);
+            return false;
+        }
+
+        CompletableFuture<ChunkBuildResult<T>> future = this.schedule(new ChunkRenderOcclusionTask<>(render, section), false,
+                this.queuedOcclusionUpdates);
+        future.thenAccept(this.occlusionQueue::add);
+
+        render.setOcclusionTask(future, section.getBlockDataId());
+
+        return true;
+    }
+
     /**
      * Enqueues the build task result to the pending result queue to be later processed during the next available
      * synchronization point on the main thread.
@@ -248,11 +506,12 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
     }
 
     /**
-     * Schedules the rebuild task asynchronously on the worker pool, returning a future wrapping the task.
+     * Schedules the rebuild task asynchronously on the worker pool, returning a future wrapping the task. The task is
+     * treated as blocking and will be picked before any deferred rebuilds.
      * @param render The render to rebuild
      */
     public CompletableFuture<ChunkBuildResult<T>> scheduleRebuildTaskAsync(ChunkRenderContainer<T> render) {
-        return this.schedule(this.createRebuildTask(render));
+        return this.schedule(this.createRebuildTask(render), true, this.queuedRebuilds);
     }
 
     /**
@@ -262,22 +521,53 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
     private ChunkRenderBuildTask<T> createRebuildTask(ChunkRenderContainer<T> render) {
         render.cancelRebuildTask();
 
-        ChunkRenderContext context = WorldSlice.prepare(this.world, render.getChunkPos(), this.sectionCache);
+        int version = render.nextRebuildVersion();
+        ChunkRenderContext context = WorldSlice.prepare(this.world, render.getChunkPos(), this.sectionCache, this.biomeColorColumnCache);
 
         if (context == null) {
-            return new ChunkRenderEmptyBuildTask<>(render);
+            return new ChunkRenderEmptyBuildTask<>(render, version);
         } else {
-            return new ChunkRenderRebuildTask<>(render, context, render.getRenderOrigin(), cameraPosition);
+            return new ChunkRenderRebuildTask<>(render, context, render.getRenderOrigin(), cameraPosition, version);
+        }
+    }
+
+    /**
+     * Notifies the builder that a chunk has been loaded, so that any shared data derived from its neighbors can be
+     * invalidated. This must be called before any of the chunk's sections are rebuilt.
+     */
+    public void onChunkAdded(int x, int z) {
+        if (this.biomeColorColumnCache != null) {
+            this.biomeColorColumnCache.onChunkAdded(x, z);
         }
     }
 
-    public void onChunkDataChanged(int x, int y, int z) {
-        this.sectionCache.invalidate(x, y, z);
+    /**
+     * Notifies the builder that a chunk has been unloaded, so that any shared data for it can be dropped.
+     */
+    public void onChunkRemoved(int x, int z) {
+        if (this.biomeColorColumnCache != null) {
+            this.biomeColorColumnCache.onChunkRemoved(x, z);
+        }
+    }
+
+    /**
+     * @return A description of the section cache's effectiveness, or null if the builder hasn't been initialized
+     */
+    public String getSectionCacheDebugString() {
+        ClonedChunkSectionCache sectionCache = this.sectionCache;
+
+        return sectionCache != null ? sectionCache.getDebugString() : null;
     }
 
     private class WorkerRunnable implements Runnable {
         private final AtomicBoolean running = ChunkBuilder.this.running;
 
+        // The index of this worker's queue in the build queue
+        private final int id;
+
+        // True while the worker is parked waiting for work
+        private volatile boolean idle;
+
         // The re-useable build buffers used by this worker for building chunk meshes
         private final ChunkBuildBuffers bufferCache;
 
@@ -285,7 +575,8 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
         // caches between different CPU cores
         private final ChunkRenderCacheLocal cache;
 
-        public WorkerRunnable(ChunkBuildBuffers bufferCache, ChunkRenderCacheLocal cache) {
+        public WorkerRunnable(int id, ChunkBuildBuffers bufferCache, ChunkRenderCacheLocal cache) {
+            this.id = id;
             this.bufferCache = bufferCache;
             this.cache = cache;
         }
@@ -296,8 +587,18 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
             while (this.running.get()) {
                 WrappedTask<T> job = this.getNextJob();
 
+                if (job != null && job.queuedCounter != null) {
+                    job.queuedCounter.decrementAndGet();
+                }
+
                 // If the job is null or no longer valid, keep searching for a task
-                if (job == null || job.isCancelled()) {
+                if (job == null) {
+                    continue;
+                }
+
+                // Jobs which were cancelled while queued still hold onto their section snapshots
+                if (job.isCancelled()) {
+                    job.task.releaseResources();
                     continue;
                 }
 
@@ -327,20 +628,26 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
         }
 
         /**
-         * Returns the next task which this worker can work on or blocks until one becomes available. If no tasks are
-         * currently available, it will wait on {@link ChunkBuilder#jobNotifier} field until notified.
+         * Returns the most urgent task in this worker's own queue, or if that queue is empty, the most urgent task
+         * stolen from another worker. If no tasks are available anywhere, the thread parks until a task is handed to it
+         * or the builder is stopped, in which case null is returned.
          */
         private WrappedTask<T> getNextJob() {
-            WrappedTask<T> job = ChunkBuilder.this.buildQueue.poll();
+            WrappedTask<T> job = ChunkBuilder.this.buildQueue.poll(this.id);
 
             if (job == null) {
-                synchronized (ChunkBuilder.this.jobNotifier) {
-                    try {
-                        ChunkBuilder.this.jobNotifier.wait();
-                    } catch (InterruptedException e) {
-                        LOGGER.error("ChunkBuilder Thread interrupted", e);
-                    }
+                this.idle = true;
+
+                // Check again after advertising as idle, so that a task scheduled in between isn't missed
+                job = ChunkBuilder.this.buildQueue.poll(this.id);
+
+                if (job == null) {
+                    // If this worker was woken up after polling, the permit is already available and this returns
+                    // immediately
+                    LockSupport.park(this);
                 }
+
+                this.idle = false;
             }
 
             return job;
@@ -350,10 +657,16 @@ public class ChunkBuilder<T extends ChunkGraphicsState> {
     private static class WrappedTask<T extends ChunkGraphicsState> implements CancellationSource {
         private final ChunkRenderBuildTask<T> task;
         private final CompletableFuture<ChunkBuildResult<T>> future;
+        private final boolean blocking;
+
+        // The counter which the task is counted in while it is queued, which decides the budget it counts against
+        private final AtomicInteger queuedCounter;
 
-        private WrappedTask(ChunkRenderBuildTask<T> task) {
+        private WrappedTask(ChunkRenderBuildTask<T> task, boolean blocking, AtomicInteger queuedCounter) {
             this.task = task;
             this.future = new CompletableFuture<>();
+            this.blocking = blocking;
+            this.queuedCounter = queuedCounter;
         }
 
         @Override
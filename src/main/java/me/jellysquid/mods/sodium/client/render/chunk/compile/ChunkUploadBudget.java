@@ -0,0 +1,63 @@
+package me.jellysquid.mods.sodium.client.render.chunk.compile;
+
+/**
+ * Limits the amount of mesh data and time which can be spent uploading chunk build results within a single frame. The
+ * first upload after {@link ChunkUploadBudget#begin()} is always permitted, so that progress is made even when a single
+ * mesh is larger than the entire budget.
+ */
+public class ChunkUploadBudget {
+    private final long maxBytes;
+    private final long maxNanos;
+
+    private long startTime;
+    private long usedBytes;
+
+    /**
+     * @param maxBytes The maximum number of bytes of mesh data which can be uploaded per frame
+     * @param maxNanos The maximum number of nanoseconds which can be spent uploading per frame
+     */
+    public ChunkUploadBudget(long maxBytes, long maxNanos) {
+        this.maxBytes = maxBytes;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * Creates a budget which is never exhausted.
+     */
+    public static ChunkUploadBudget unlimited() {
+        return new ChunkUploadBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Resets the budget at the start of a frame.
+     */
+    public void begin() {
+        this.startTime = System.nanoTime();
+        this.usedBytes = 0;
+    }
+
+    /**
+     * Records that the given number of bytes will be uploaded.
+     */
+    public void consume(long bytes) {
+        this.usedBytes += bytes;
+    }
+
+    /**
+     * @return True if no more uploads should be performed this frame
+     */
+    public boolean isExhausted() {
+        if (this.usedBytes == 0) {
+            return false;
+        }
+
+        return this.usedBytes >= this.maxBytes || (System.nanoTime() - this.startTime) >= this.maxNanos;
+    }
+
+    /**
+     * @return The number of bytes which can still be uploaded before the budget is exhausted
+     */
+    public long getRemainingBytes() {
+        return Math.max(0L, this.maxBytes - this.usedBytes);
+    }
+}
@@ -21,4 +21,11 @@ public class ChunkModelVertexTransformer extends AbstractVertexTransformer<Model
     public void writeQuad(float x, float y, float z, int color, float u, float v, int light) {
         this.delegate.writeQuad(x + this.offset.x, y + this.offset.y, z + this.offset.z, color, u, v, light);
     }
+
+    @Override
+    public void writeTiledQuad(float x, float y, float z, int color, float u, float v, int light,
+                               int tileU, int tileV, float spriteWidth, float spriteHeight) {
+        this.delegate.writeTiledQuad(x + this.offset.x, y + this.offset.y, z + this.offset.z, color, u, v, light,
+                tileU, tileV, spriteWidth, spriteHeight);
+    }
 }
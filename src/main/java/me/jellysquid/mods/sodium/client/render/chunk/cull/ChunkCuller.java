@@ -2,15 +2,42 @@ package me.jellysquid.mods.sodium.client.render.chunk.cull;
 
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.ActiveRenderInfo;
 import net.minecraft.client.renderer.chunk.SetVisibility;
+import net.minecraft.util.math.BlockPos;
 
 public interface ChunkCuller {
-    IntArrayList computeVisible(ActiveRenderInfo camera, FrustumExtended frustum, int frame, boolean spectator);
+    default IntArrayList computeVisible(ActiveRenderInfo camera, FrustumExtended frustum, int frame, boolean spectator) {
+        return this.computeVisible(camera.getBlockPosition(), frustum, frame, spectator, Minecraft.getInstance().smartCull);
+    }
+
+    /**
+     * Finds the visible sections from the given position. This doesn't depend on any client state, so it can also be
+     * used outside of the game.
+     * @param origin The block position of the camera
+     * @param smartCull True if sections hidden by the occlusion graph should be culled
+     * @return The ids of the visible sections
+     */
+    IntArrayList computeVisible(BlockPos origin, FrustumExtended frustum, int frame, boolean spectator, boolean smartCull);
 
     void onSectionStateChanged(int x, int y, int z, SetVisibility occlusionData);
     void onSectionLoaded(int x, int y, int z, int id);
     void onSectionUnloaded(int x, int y, int z);
 
     boolean isSectionVisible(int x, int y, int z);
+
+    /**
+     * @return False only if the last graph search proved that the section is hidden by the occlusion graph from
+     *         anywhere within the camera's section, regardless of the frustum. Cullers whose search is bounded by the
+     *         frustum can't tell those sections apart from sections which are only outside the frustum, so they always
+     *         return true.
+     */
+    boolean isSectionReachable(int x, int y, int z);
+
+    /**
+     * @return The number of sections which were visited by the graph search during the last call to
+     *         {@link ChunkCuller#computeVisible(BlockPos, FrustumExtended, int, boolean, boolean)}
+     */
+    int getVisitedNodeCount();
 }
@@ -5,11 +5,11 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2BooleanArrayMap;
 import it.unimi.dsi.fastutil.objects.Object2BooleanMap;
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.render.chunk.cull.ChunkCuller;
 import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+import me.jellysquid.mods.sodium.client.util.task.ParallelSlices;
 import me.jellysquid.mods.sodium.common.util.DirectionUtil;
-import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.ActiveRenderInfo;
 import net.minecraft.client.renderer.chunk.SetVisibility;
 import net.minecraft.util.Direction;
 import net.minecraft.util.math.BlockPos;
@@ -21,31 +21,152 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
+/**
+ * Finds the visible chunk sections by searching outwards from the camera through the faces of each section which are
+ * visible from one another.
+ *
+ * In incremental mode, the search ignores the frustum and its result is kept between frames. Each frame then only
+ * tests the sections which were reached against the frustum, which avoids searching the graph again when the camera
+ * is only rotated or moved within its current section. The search is only performed again once the camera enters
+ * another section, or once the graph changes in a way that could affect the sections which were reached.
+ *
+ * When parallel culling is enabled, the frustum tests of incremental mode are split between threads. Each thread only
+ * records the result for its own slice of the reached sections, and the visible sections are then collected in the
+ * order which they were reached, so the result does not depend on how the work was scheduled.
+ */
 public class ChunkGraphCuller implements ChunkCuller {
+    // The smallest number of sections which will be tested against the frustum by a single thread
+    private static final int MIN_SECTIONS_PER_SLICE = 1024;
+
     private final Long2ObjectMap<ChunkGraphNode> nodes = new Long2ObjectOpenHashMap<>();
 
     private final ChunkGraphIterationQueue visible = new ChunkGraphIterationQueue();
     private final Object2BooleanMap<BlockPos> blockStateCache = new Object2BooleanArrayMap<>();
     private final World world;
     private final int renderDistance;
+    private final boolean useIncrementalSearch;
+    private final boolean useParallelCulling;
+
+    // The ids of the sections which passed the frustum test in incremental mode
+    private final IntArrayList visibleIds = new IntArrayList();
+
+    // The result of the frustum test for each section in the queue, by their position in the queue
+    private boolean[] frustumCulled = new boolean[0];
 
     private FrustumExtended frustum;
     private boolean useOcclusionCulling;
 
     private int activeFrame = 0;
+    private int activeSearch = 0;
     private int centerChunkX, centerChunkY, centerChunkZ;
 
+    // True if the result of the last search can no longer be re-used in incremental mode
+    private boolean searchInvalidated = true;
+
+    private int visitedNodeCount;
+
     public ChunkGraphCuller(World world, int renderDistance) {
+        this(world, renderDistance, SodiumClientMod.options().advanced.useIncrementalGraphCulling,
+                SodiumClientMod.options().advanced.useParallelCulling);
+    }
+
+    public ChunkGraphCuller(World world, int renderDistance, boolean useIncrementalSearch, boolean useParallelCulling) {
         this.world = world;
         this.renderDistance = renderDistance;
+        this.useIncrementalSearch = useIncrementalSearch;
+        this.useParallelCulling = useParallelCulling;
     }
 
     @Override
-    public IntArrayList computeVisible(ActiveRenderInfo camera, FrustumExtended frustum, int frame, boolean spectator) {
-        this.initSearch(camera, frustum, frame, spectator);
+    public IntArrayList computeVisible(BlockPos origin, FrustumExtended frustum, int frame, boolean spectator, boolean smartCull) {
+        boolean useOcclusionCulling = this.shouldUseOcclusionCulling(origin, spectator, smartCull);
+
+        if (this.useIncrementalSearch) {
+            return this.computeVisibleIncremental(origin, frustum, frame, useOcclusionCulling);
+        }
+
+        this.initSearch(origin, frustum, frame, useOcclusionCulling);
+        this.search();
+
+        for (int i = 0; i < this.visible.size(); i++) {
+            this.visible.getNode(i)
+                    .setLastVisibleFrame(frame);
+        }
+
+        return this.visible.getOrderedIdList();
+    }
+
+    private IntArrayList computeVisibleIncremental(BlockPos origin, FrustumExtended frustum, int frame, boolean useOcclusionCulling) {
+        if (this.searchInvalidated || useOcclusionCulling != this.useOcclusionCulling ||
+                (origin.getX() >> 4) != this.centerChunkX || (origin.getY() >> 4) != this.centerChunkY ||
+                (origin.getZ() >> 4) != this.centerChunkZ) {
+            this.initSearch(origin, null, frame, useOcclusionCulling);
+            this.search();
+
+            this.searchInvalidated = false;
+        } else {
+            this.visitedNodeCount = 0;
+        }
+
+        this.activeFrame = frame;
+        this.frustum = frustum;
+
+        IntArrayList visibleIds = this.visibleIds;
+        visibleIds.clear();
 
         ChunkGraphIterationQueue queue = this.visible;
 
+        if (this.useParallelCulling) {
+            boolean[] culled = this.testFrustumParallel(queue, frustum);
+
+            for (int i = 0; i < queue.size(); i++) {
+                if (!culled[i]) {
+                    this.markVisible(queue.getNode(i), frame);
+                }
+            }
+        } else {
+            for (int i = 0; i < queue.size(); i++) {
+                ChunkGraphNode node = queue.getNode(i);
+
+                if (!node.isCulledByFrustum(frustum)) {
+                    this.markVisible(node, frame);
+                }
+            }
+        }
+
+        return visibleIds;
+    }
+
+    private void markVisible(ChunkGraphNode node, int frame) {
+        node.setLastVisibleFrame(frame);
+        this.visibleIds.add(node.getId());
+    }
+
+    /**
+     * Tests each section in the queue against the frustum, splitting the queue into slices which are tested in parallel.
+     * @return An array containing whether the section at each position in the queue is outside the frustum
+     */
+    private boolean[] testFrustumParallel(ChunkGraphIterationQueue queue, FrustumExtended frustum) {
+        int size = queue.size();
+
+        if (this.frustumCulled.length < size) {
+            this.frustumCulled = new boolean[Math.max(size, this.frustumCulled.length * 2)];
+        }
+
+        boolean[] culled = this.frustumCulled;
+
+        ParallelSlices.forEach(size, MIN_SECTIONS_PER_SLICE, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                culled[i] = queue.getNode(i).isCulledByFrustum(frustum);
+            }
+        });
+
+        return culled;
+    }
+
+    private void search() {
+        ChunkGraphIterationQueue queue = this.visible;
+
         for (int i = 0; i < queue.size(); i++) {
             ChunkGraphNode node = queue.getNode(i);
             Direction flow = queue.getDirection(i);
@@ -63,7 +184,7 @@ public class ChunkGraphCuller implements ChunkCuller {
             }
         }
 
-        return this.visible.getOrderedIdList();
+        this.visitedNodeCount = queue.size();
     }
 
     private boolean isWithinRenderDistance(ChunkGraphNode adj) {
@@ -81,16 +202,30 @@ public class ChunkGraphCuller implements ChunkCuller {
         return this.useOcclusionCulling && from != null && !node.isVisibleThrough(from, to);
     }
 
-    private void initSearch(ActiveRenderInfo camera, FrustumExtended frustum, int frame, boolean spectator) {
+    private boolean shouldUseOcclusionCulling(BlockPos origin, boolean spectator, boolean smartCull) {
+        if (!smartCull) {
+            return false;
+        }
+
+        // Spectators can see through the blocks they are inside of
+        return !(spectator && this.getNode(origin.getX() >> 4, origin.getY() >> 4, origin.getZ() >> 4) != null &&
+                this.world.getBlockState(origin).isSolidRender(this.world, origin));
+    }
+
+    /**
+     * Prepares a new search from the camera's position.
+     * @param frustum The frustum which sections must be within to be reached, or null to reach sections regardless of
+     *                the frustum
+     */
+    private void initSearch(BlockPos origin, FrustumExtended frustum, int frame, boolean useOcclusionCulling) {
         this.activeFrame = frame;
+        this.activeSearch++;
         this.frustum = frustum;
-        this.useOcclusionCulling = Minecraft.getInstance().smartCull;
+        this.useOcclusionCulling = useOcclusionCulling;
 
         this.blockStateCache.clear();
         this.visible.clear();
 
-        BlockPos origin = camera.getBlockPosition();
-
         int chunkX = origin.getX() >> 4;
         int chunkY = origin.getY() >> 4;
         int chunkZ = origin.getZ() >> 4;
@@ -103,11 +238,7 @@ public class ChunkGraphCuller implements ChunkCuller {
 
         if (rootNode != null) {
             rootNode.resetCullingState();
-            rootNode.setLastVisibleFrame(frame);
-
-            if (spectator && this.world.getBlockState(origin).isSolidRender(this.world, origin)) {
-                this.useOcclusionCulling = false;
-            }
+            rootNode.setLastSearch(this.activeSearch);
 
             this.visible.add(rootNode, null);
         } else {
@@ -119,12 +250,12 @@ public class ChunkGraphCuller implements ChunkCuller {
                 for (int z2 = -this.renderDistance; z2 <= this.renderDistance; ++z2) {
                     ChunkGraphNode node = this.getNode(chunkX + x2, chunkY, chunkZ + z2);
 
-                    if (node == null || node.isCulledByFrustum(frustum)) {
+                    if (node == null || (frustum != null && node.isCulledByFrustum(frustum))) {
                         continue;
                     }
 
                     node.resetCullingState();
-                    node.setLastVisibleFrame(frame);
+                    node.setLastSearch(this.activeSearch);
 
                     bestNodes.add(node);
                 }
@@ -140,15 +271,15 @@ public class ChunkGraphCuller implements ChunkCuller {
 
 
     private void bfsEnqueue(ChunkGraphNode parent, ChunkGraphNode node, Direction flow) {
-        if (node.getLastVisibleFrame() == this.activeFrame) {
+        if (node.getLastSearch() == this.activeSearch) {
             return;
         }
 
-        if (node.isCulledByFrustum(this.frustum)) {
+        if (this.frustum != null && node.isCulledByFrustum(this.frustum)) {
             return;
         }
 
-        node.setLastVisibleFrame(this.activeFrame);
+        node.setLastSearch(this.activeSearch);
         node.setCullingState(parent.getCullingState(), flow);
 
         this.visible.add(node, flow);
@@ -186,12 +317,20 @@ public class ChunkGraphCuller implements ChunkCuller {
         return this.nodes.get(SectionPos.asLong(x, y, z));
     }
 
+    /**
+     * @return True if the node was reached by the last search
+     */
+    private boolean wasReached(ChunkGraphNode node) {
+        return node != null && node.getLastSearch() == this.activeSearch;
+    }
+
     @Override
     public void onSectionStateChanged(int x, int y, int z, SetVisibility occlusionData) {
         ChunkGraphNode node = this.getNode(x, y, z);
 
-        if (node != null) {
-            node.setOcclusionData(occlusionData);
+        // The visibility of a node which wasn't reached can't affect which nodes were reached
+        if (node != null && node.setOcclusionData(occlusionData) && this.wasReached(node)) {
+            this.searchInvalidated = true;
         }
     }
 
@@ -201,10 +340,16 @@ public class ChunkGraphCuller implements ChunkCuller {
         ChunkGraphNode prev;
 
         if ((prev = this.nodes.put(SectionPos.asLong(x, y, z), node)) != null) {
+            this.searchInvalidated |= this.wasReached(prev);
             this.disconnectNeighborNodes(prev);
         }
 
         this.connectNeighborNodes(node);
+
+        // The new node might be reachable through any of its neighbors
+        for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
+            this.searchInvalidated |= this.wasReached(node.getConnectedNode(dir));
+        }
     }
 
     @Override
@@ -212,10 +357,22 @@ public class ChunkGraphCuller implements ChunkCuller {
         ChunkGraphNode node = this.nodes.remove(SectionPos.asLong(x, y, z));
 
         if (node != null) {
+            this.searchInvalidated |= this.wasReached(node);
             this.disconnectNeighborNodes(node);
         }
     }
 
+    @Override
+    public boolean isSectionReachable(int x, int y, int z) {
+        // Only the incremental search ignores the frustum, otherwise sections behind the camera are never reached
+        return !this.useIncrementalSearch || this.wasReached(this.getNode(x, y, z));
+    }
+
+    @Override
+    public int getVisitedNodeCount() {
+        return this.visitedNodeCount;
+    }
+
     @Override
     public boolean isSectionVisible(int x, int y, int z) {
         ChunkGraphNode render = this.getNode(x, y, z);
@@ -8,7 +8,7 @@ import net.minecraft.util.Direction;
 import net.minecraft.util.math.BlockPos;
 
 public class ChunkGraphNode {
-    private static final long DEFAULT_VISIBILITY_DATA = calculateVisibilityData(ChunkRenderData.EMPTY.getOcclusionData());
+    static final long DEFAULT_VISIBILITY_DATA = calculateVisibilityData(ChunkRenderData.EMPTY.getOcclusionData());
 
     private final ChunkGraphNode[] nodes = new ChunkGraphNode[DirectionUtil.ALL_DIRECTIONS.length];
 
@@ -16,6 +16,7 @@ public class ChunkGraphNode {
     private final int chunkX, chunkY, chunkZ;
 
     private int lastVisibleFrame = -1;
+    private int lastSearch = -1;
 
     private long visibilityData;
     private byte cullingState;
@@ -41,6 +42,17 @@ public class ChunkGraphNode {
         return this.lastVisibleFrame;
     }
 
+    public void setLastSearch(int search) {
+        this.lastSearch = search;
+    }
+
+    /**
+     * @return The id of the last graph search which reached this node
+     */
+    public int getLastSearch() {
+        return this.lastSearch;
+    }
+
     public int getChunkX() {
         return this.chunkX;
     }
@@ -57,11 +69,27 @@ public class ChunkGraphNode {
         this.nodes[dir.ordinal()] = node;
     }
 
-    public void setOcclusionData(SetVisibility occlusionData) {
-        this.visibilityData = calculateVisibilityData(occlusionData);
+    /**
+     * Updates the visibility data of this node from the given occlusion data.
+     * @return True if the visibility between any two faces of the node changed, otherwise false
+     */
+    public boolean setOcclusionData(SetVisibility occlusionData) {
+        long visibilityData = calculateVisibilityData(occlusionData);
+
+        if (this.visibilityData == visibilityData) {
+            return false;
+        }
+
+        this.visibilityData = visibilityData;
+
+        return true;
     }
 
-    private static long calculateVisibilityData(SetVisibility occlusionData) {
+    /**
+     * Packs the visibility between each pair of faces into a bit field, where the bit at ((from << 3) + to) is set if
+     * the face {@code to} is visible from the face {@code from}.
+     */
+    static long calculateVisibilityData(SetVisibility occlusionData) {
         long visibilityData = 0;
 
         for (Direction from : DirectionUtil.ALL_DIRECTIONS) {
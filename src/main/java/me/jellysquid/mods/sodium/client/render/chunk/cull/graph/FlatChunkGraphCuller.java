@@ -0,0 +1,466 @@
+package me.jellysquid.mods.sodium.client.render.chunk.cull.graph;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
+import me.jellysquid.mods.sodium.client.render.chunk.cull.ChunkCuller;
+import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+import me.jellysquid.mods.sodium.client.util.task.ParallelSlices;
+import net.minecraft.client.renderer.chunk.SetVisibility;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+
+/**
+ * Performs the same search as {@link ChunkGraphCuller}, but stores the graph in flat arrays of primitives instead of a
+ * hash map of linked nodes. This allows the search to run over integer indices without any hashing or pointer chasing.
+ *
+ * Columns are stored in a circular array which is large enough to hold every column the client can have loaded, where
+ * each column is placed at its coordinates modulo the width of the array. The sections of all columns are laid out
+ * one layer after another, so the index of a section is ((y * width) + z) * width + x in array coordinates.
+ *
+ * Directions are referred to by their ordinal, where opposite directions differ only in their lowest bit.
+ *
+ * When parallel culling is enabled, every section within the render distance is tested against the frustum before the
+ * search begins, with rows of columns being split between threads. Each section is only ever written to by the thread
+ * which owns its column, and the search itself remains single-threaded, so the result is identical to testing the
+ * sections as they are reached.
+ */
+public class FlatChunkGraphCuller implements ChunkCuller {
+    private static final int COLUMN_HEIGHT = 16;
+
+    private static final int DIRECTION_COUNT = 6;
+    private static final int DOWN = 0, UP = 1, NORTH = 2, SOUTH = 3, WEST = 4, EAST = 5;
+
+    private static final int ABSENT = -1;
+    private static final int NO_DIRECTION = -1;
+
+    // The smallest number of rows of columns which will be tested against the frustum by a single thread
+    private static final int MIN_ROWS_PER_SLICE = 4;
+
+    private final World world;
+    private final int renderDistance;
+    private final boolean useParallelCulling;
+
+    // The number of columns along the X and Z axes of the array
+    private final int width;
+    // The number of sections in a single layer of the array
+    private final int area;
+
+    // The coordinates of the column stored at each position in a layer, which are only valid if the column is loaded
+    private final int[] columnX, columnZ;
+    private final boolean[] columnLoaded;
+
+    // The render id of each section, or ABSENT if the section isn't loaded
+    private final int[] ids;
+    // The visibility between the faces of each section, packed as by ChunkGraphNode
+    private final long[] visibility;
+    // The directions which the search has already travelled in to reach each section
+    private final byte[] cullingState;
+    // The last search which reached each section
+    private final int[] lastSearch;
+    // The last search in which each section was found to be outside the frustum
+    private final int[] lastFrustumCulled;
+    private final int[] lastVisibleFrame;
+
+    private int[] queue = new int[4096];
+    private byte[] queueFlow = new byte[4096];
+    private int queueSize;
+
+    private final IntArrayList visible = new IntArrayList();
+
+    private FrustumExtended frustum;
+    private boolean useOcclusionCulling;
+
+    // True if every section within the render distance has been tested against the frustum for the active search
+    private boolean frustumPrepassed;
+
+    private int activeFrame = 0;
+    private int activeSearch = 0;
+    private int centerChunkX, centerChunkZ;
+
+    public FlatChunkGraphCuller(World world, int renderDistance) {
+        this(world, renderDistance, SodiumClientMod.options().advanced.useParallelCulling);
+    }
+
+    public FlatChunkGraphCuller(World world, int renderDistance, boolean useParallelCulling) {
+        this.world = world;
+        this.renderDistance = renderDistance;
+        this.useParallelCulling = useParallelCulling;
+
+        // This matches the range of columns which the client's chunk cache can hold around the player
+        this.width = ((Math.max(2, renderDistance) + 3) * 2) + 1;
+        this.area = this.width * this.width;
+
+        this.columnX = new int[this.area];
+        this.columnZ = new int[this.area];
+        this.columnLoaded = new boolean[this.area];
+
+        int sections = this.area * COLUMN_HEIGHT;
+
+        this.ids = new int[sections];
+        this.visibility = new long[sections];
+        this.cullingState = new byte[sections];
+        this.lastSearch = new int[sections];
+        this.lastFrustumCulled = new int[sections];
+        this.lastVisibleFrame = new int[sections];
+
+        Arrays.fill(this.ids, ABSENT);
+        Arrays.fill(this.lastSearch, -1);
+        Arrays.fill(this.lastFrustumCulled, -1);
+        Arrays.fill(this.lastVisibleFrame, -1);
+    }
+
+    @Override
+    public IntArrayList computeVisible(BlockPos origin, FrustumExtended frustum, int frame, boolean spectator, boolean smartCull) {
+        this.initSearch(origin, frustum, frame, spectator, smartCull);
+
+        int[] ids = this.ids;
+        long[] visibility = this.visibility;
+        byte[] cullingState = this.cullingState;
+
+        for (int i = 0; i < this.queueSize; i++) {
+            int index = this.queue[i];
+            int flow = this.queueFlow[i];
+
+            int column = index % this.area;
+            int y = index / this.area;
+
+            int x = this.columnX[column];
+            int z = this.columnZ[column];
+
+            byte state = cullingState[index];
+            long sectionVisibility = visibility[index];
+
+            for (int dir = 0; dir < DIRECTION_COUNT; dir++) {
+                if ((state & (1 << dir)) != 0) {
+                    continue;
+                }
+
+                if (this.useOcclusionCulling && flow != NO_DIRECTION && (sectionVisibility & (1L << ((flow << 3) + dir))) == 0L) {
+                    continue;
+                }
+
+                int adj = this.getAdjacentIndex(index, column, x, y, z, dir);
+
+                if (adj != ABSENT && ids[adj] != ABSENT) {
+                    this.bfsEnqueue(index, adj, dir ^ 1);
+                }
+            }
+        }
+
+        IntArrayList visible = this.visible;
+        visible.clear();
+
+        for (int i = 0; i < this.queueSize; i++) {
+            int index = this.queue[i];
+
+            this.lastVisibleFrame[index] = frame;
+            visible.add(ids[index]);
+        }
+
+        return visible;
+    }
+
+    /**
+     * @return The index of the section adjacent to the given section in the given direction, or ABSENT if it isn't
+     *         loaded or lies outside the render distance
+     */
+    private int getAdjacentIndex(int index, int column, int x, int y, int z, int dir) {
+        switch (dir) {
+            case DOWN:
+                return y > 0 ? index - this.area : ABSENT;
+            case UP:
+                return y < COLUMN_HEIGHT - 1 ? index + this.area : ABSENT;
+            case NORTH:
+                return this.getAdjacentColumnIndex(index, column, x, z - 1);
+            case SOUTH:
+                return this.getAdjacentColumnIndex(index, column, x, z + 1);
+            case WEST:
+                return this.getAdjacentColumnIndex(index, column, x - 1, z);
+            case EAST:
+                return this.getAdjacentColumnIndex(index, column, x + 1, z);
+            default:
+                throw new IllegalArgumentException("Invalid direction: " + dir);
+        }
+    }
+
+    private int getAdjacentColumnIndex(int index, int column, int x, int z) {
+        if (Math.abs(x - this.centerChunkX) > this.renderDistance || Math.abs(z - this.centerChunkZ) > this.renderDistance) {
+            return ABSENT;
+        }
+
+        int adjColumn = this.getColumnIndex(x, z);
+
+        if (!this.isColumnLoaded(adjColumn, x, z)) {
+            return ABSENT;
+        }
+
+        return index - column + adjColumn;
+    }
+
+    private void bfsEnqueue(int parent, int index, int flow) {
+        if (this.lastSearch[index] == this.activeSearch || this.lastFrustumCulled[index] == this.activeSearch) {
+            return;
+        }
+
+        if (!this.frustumPrepassed && this.isCulledByFrustum(index)) {
+            // Remember the result, as the section may be reached again through its other neighbors
+            this.lastFrustumCulled[index] = this.activeSearch;
+            return;
+        }
+
+        this.lastSearch[index] = this.activeSearch;
+        this.cullingState[index] = (byte) (this.cullingState[parent] | (1 << flow));
+
+        this.enqueue(index, flow);
+    }
+
+    private void enqueue(int index, int flow) {
+        int i = this.queueSize++;
+
+        if (i == this.queue.length) {
+            this.queue = Arrays.copyOf(this.queue, i * 2);
+            this.queueFlow = Arrays.copyOf(this.queueFlow, i * 2);
+        }
+
+        this.queue[i] = index;
+        this.queueFlow[i] = (byte) flow;
+    }
+
+    private boolean isCulledByFrustum(int index) {
+        if (this.frustumPrepassed) {
+            return this.lastFrustumCulled[index] == this.activeSearch;
+        }
+
+        int column = index % this.area;
+
+        float x = this.columnX[column] << 4;
+        float y = (index / this.area) << 4;
+        float z = this.columnZ[column] << 4;
+
+        return !this.frustum.fastAabbTest(x, y, z, x + 16.0f, y + 16.0f, z + 16.0f);
+    }
+
+    /**
+     * Tests every loaded section within the render distance against the frustum, marking the sections which are
+     * outside of it as culled for the active search. Columns are tested as a whole first, so that most of the columns
+     * outside the frustum only need to be tested once.
+     */
+    private void prepassFrustum() {
+        int diameter = (this.renderDistance * 2) + 1;
+
+        ParallelSlices.forEach(diameter, MIN_ROWS_PER_SLICE, (start, end) -> {
+            for (int row = start; row < end; row++) {
+                int z = this.centerChunkZ - this.renderDistance + row;
+
+                for (int x = this.centerChunkX - this.renderDistance; x <= this.centerChunkX + this.renderDistance; x++) {
+                    int column = this.getColumnIndex(x, z);
+
+                    if (this.isColumnLoaded(column, x, z)) {
+                        this.prepassColumn(column, x, z);
+                    }
+                }
+            }
+        });
+    }
+
+    private void prepassColumn(int column, int chunkX, int chunkZ) {
+        FrustumExtended frustum = this.frustum;
+
+        float x = chunkX << 4;
+        float z = chunkZ << 4;
+
+        boolean columnVisible = frustum.fastAabbTest(x, 0.0f, z, x + 16.0f, COLUMN_HEIGHT * 16.0f, z + 16.0f);
+
+        for (int y = 0; y < COLUMN_HEIGHT; y++) {
+            int index = (y * this.area) + column;
+
+            if (!columnVisible || !frustum.fastAabbTest(x, y << 4, z, x + 16.0f, (y << 4) + 16.0f, z + 16.0f)) {
+                this.lastFrustumCulled[index] = this.activeSearch;
+            }
+        }
+    }
+
+    private void initSearch(BlockPos origin, FrustumExtended frustum, int frame, boolean spectator, boolean smartCull) {
+        this.activeFrame = frame;
+        this.activeSearch++;
+        this.frustum = frustum;
+        this.useOcclusionCulling = smartCull;
+
+        this.queueSize = 0;
+
+        int chunkX = origin.getX() >> 4;
+        int chunkY = origin.getY() >> 4;
+        int chunkZ = origin.getZ() >> 4;
+
+        this.centerChunkX = chunkX;
+        this.centerChunkZ = chunkZ;
+
+        this.frustumPrepassed = false;
+
+        if (this.useParallelCulling) {
+            this.prepassFrustum();
+            this.frustumPrepassed = true;
+        }
+
+        int rootIndex = this.getIndex(chunkX, chunkY, chunkZ);
+
+        if (rootIndex != ABSENT) {
+            this.cullingState[rootIndex] = 0;
+            this.lastSearch[rootIndex] = this.activeSearch;
+
+            if (spectator && this.world.getBlockState(origin).isSolidRender(this.world, origin)) {
+                this.useOcclusionCulling = false;
+            }
+
+            this.enqueue(rootIndex, NO_DIRECTION);
+        } else {
+            chunkY = MathHelper.clamp(origin.getY() >> 4, 0, COLUMN_HEIGHT - 1);
+
+            IntArrayList bestIndices = new IntArrayList();
+
+            for (int x2 = -this.renderDistance; x2 <= this.renderDistance; ++x2) {
+                for (int z2 = -this.renderDistance; z2 <= this.renderDistance; ++z2) {
+                    int index = this.getIndex(chunkX + x2, chunkY, chunkZ + z2);
+
+                    if (index == ABSENT || this.isCulledByFrustum(index)) {
+                        continue;
+                    }
+
+                    this.cullingState[index] = 0;
+                    this.lastSearch[index] = this.activeSearch;
+
+                    bestIndices.add(index);
+                }
+            }
+
+            IntArrays.mergeSort(bestIndices.elements(), 0, bestIndices.size(), (a, b) ->
+                    Double.compare(this.getSquaredDistance(a, origin), this.getSquaredDistance(b, origin)));
+
+            for (int i = 0; i < bestIndices.size(); i++) {
+                this.enqueue(bestIndices.getInt(i), NO_DIRECTION);
+            }
+        }
+    }
+
+    /**
+     * @return The squared distance from the center of the section to the center of the block position
+     */
+    private double getSquaredDistance(int index, BlockPos pos) {
+        int column = index % this.area;
+
+        double xDist = (pos.getX() + 0.5D) - ((this.columnX[column] << 4) + 8.0D);
+        double yDist = (pos.getY() + 0.5D) - (((index / this.area) << 4) + 8.0D);
+        double zDist = (pos.getZ() + 0.5D) - ((this.columnZ[column] << 4) + 8.0D);
+
+        return (xDist * xDist) + (yDist * yDist) + (zDist * zDist);
+    }
+
+    private int getColumnIndex(int x, int z) {
+        return (Math.floorMod(z, this.width) * this.width) + Math.floorMod(x, this.width);
+    }
+
+    private boolean isColumnLoaded(int column, int x, int z) {
+        return this.columnLoaded[column] && this.columnX[column] == x && this.columnZ[column] == z;
+    }
+
+    /**
+     * @return The index of the loaded section at the given coordinates, or ABSENT if there is none
+     */
+    private int getIndex(int x, int y, int z) {
+        if (y < 0 || y >= COLUMN_HEIGHT) {
+            return ABSENT;
+        }
+
+        int column = this.getColumnIndex(x, z);
+
+        if (!this.isColumnLoaded(column, x, z)) {
+            return ABSENT;
+        }
+
+        int index = (y * this.area) + column;
+
+        return this.ids[index] != ABSENT ? index : ABSENT;
+    }
+
+    @Override
+    public void onSectionStateChanged(int x, int y, int z, SetVisibility occlusionData) {
+        int index = this.getIndex(x, y, z);
+
+        if (index != ABSENT) {
+            this.visibility[index] = ChunkGraphNode.calculateVisibilityData(occlusionData);
+        }
+    }
+
+    @Override
+    public void onSectionLoaded(int x, int y, int z, int id) {
+        if (y < 0 || y >= COLUMN_HEIGHT) {
+            return;
+        }
+
+        int column = this.getColumnIndex(x, z);
+
+        if (!this.isColumnLoaded(column, x, z)) {
+            // Replace any column which was left in this slot, as it can no longer be within range of the player
+            for (int y2 = 0; y2 < COLUMN_HEIGHT; y2++) {
+                this.ids[(y2 * this.area) + column] = ABSENT;
+            }
+
+            this.columnX[column] = x;
+            this.columnZ[column] = z;
+            this.columnLoaded[column] = true;
+        }
+
+        int index = (y * this.area) + column;
+
+        this.ids[index] = id;
+        this.visibility[index] = ChunkGraphNode.DEFAULT_VISIBILITY_DATA;
+        this.lastVisibleFrame[index] = -1;
+    }
+
+    @Override
+    public void onSectionUnloaded(int x, int y, int z) {
+        int index = this.getIndex(x, y, z);
+
+        if (index == ABSENT) {
+            return;
+        }
+
+        this.ids[index] = ABSENT;
+
+        int column = index % this.area;
+
+        for (int y2 = 0; y2 < COLUMN_HEIGHT; y2++) {
+            if (this.ids[(y2 * this.area) + column] != ABSENT) {
+                return;
+            }
+        }
+
+        this.columnLoaded[column] = false;
+    }
+
+    @Override
+    public boolean isSectionVisible(int x, int y, int z) {
+        int index = this.getIndex(x, y, z);
+
+        if (index == ABSENT) {
+            return false;
+        }
+
+        return this.lastVisibleFrame[index] == this.activeFrame;
+    }
+
+    @Override
+    public boolean isSectionReachable(int x, int y, int z) {
+        // The search never enters sections outside the frustum, so it can't prove that any section is hidden
+        return true;
+    }
+
+    @Override
+    public int getVisitedNodeCount() {
+        return this.queueSize;
+    }
+}
@@ -12,11 +12,23 @@ public class ChunkMeshData {
 
     private final EnumMap<ModelQuadFacing, BufferSlice> parts = new EnumMap<>(ModelQuadFacing.class);
     private VertexData vertexData;
+    private ChunkMeshSortData sortData;
 
     public void setVertexData(VertexData vertexData) {
         this.vertexData = vertexData;
     }
 
+    public void setSortData(ChunkMeshSortData sortData) {
+        this.sortData = sortData;
+    }
+
+    /**
+     * @return The state needed to re-sort this mesh's quads without rebuilding it, or null if the mesh can't be sorted
+     */
+    public ChunkMeshSortData getSortData() {
+        return this.sortData;
+    }
+
     public void setModelSlice(ModelQuadFacing facing, BufferSlice slice) {
         this.parts.put(facing, slice);
     }
@@ -0,0 +1,45 @@
+package me.jellysquid.mods.sodium.client.render.chunk.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The state retained for a translucent mesh after it has been uploaded, which allows its quads to be sorted again for
+ * a new camera position without rebuilding the chunk. Instances are never modified after creation, so they can be
+ * safely read by worker threads while the main thread holds onto them.
+ */
+public class ChunkMeshSortData {
+    /**
+     * The vertex data of the mesh, in the order which it was last sorted to.
+     */
+    public final ByteBuffer vertexData;
+
+    /**
+     * The center of each quad in the vertex data as (x, y, z) triplets in model space, in the same order as the quads.
+     */
+    public final float[] centroids;
+
+    /**
+     * The position of the camera relative to the render's origin when the mesh was last sorted.
+     */
+    public final float cameraX, cameraY, cameraZ;
+
+    public ChunkMeshSortData(ByteBuffer vertexData, float[] centroids, float cameraX, float cameraY, float cameraZ) {
+        this.vertexData = vertexData;
+        this.centroids = centroids;
+        this.cameraX = cameraX;
+        this.cameraY = cameraY;
+        this.cameraZ = cameraZ;
+    }
+
+    /**
+     * @return The squared distance between the given camera position, relative to the render's origin, and the
+     *         position which the mesh was last sorted from
+     */
+    public float getSquaredCameraDistance(float x, float y, float z) {
+        float xDist = x - this.cameraX;
+        float yDist = y - this.cameraY;
+        float zDist = z - this.cameraZ;
+
+        return (xDist * xDist) + (yDist * yDist) + (zDist * zDist);
+    }
+}
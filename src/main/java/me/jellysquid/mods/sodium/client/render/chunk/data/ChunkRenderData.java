@@ -88,6 +88,65 @@ public class ChunkRenderData {
         return this.facesWithData;
     }
 
+    /**
+     * Creates a copy of this render data with the meshes of some render passes replaced. All other state is shared
+     * with this object. This is used when only some meshes of a chunk have changed, such as after re-sorting its
+     * translucent geometry.
+     * @param replacements The new meshes for each render pass which should be replaced
+     */
+    public ChunkRenderData withMeshes(Map<BlockRenderPass, ChunkMeshData> replacements) {
+        ChunkRenderData data = new ChunkRenderData();
+        data.globalBlockEntities = this.globalBlockEntities;
+        data.blockEntities = this.blockEntities;
+        data.translucentBlocks = this.translucentBlocks;
+        data.occlusionData = this.occlusionData;
+        data.meshes = new EnumMap<>(this.meshes);
+        data.meshes.putAll(replacements);
+        data.bounds = this.bounds;
+        data.animatedSprites = this.animatedSprites;
+        data.updateMeshStatistics();
+
+        return data;
+    }
+
+    /**
+     * Creates a copy of this render data with its occlusion data replaced. All other state, including the meshes, is
+     * shared with this object. This is used to update the visibility graph of a chunk without rebuilding its meshes.
+     * @param occlusionData The new occlusion data of the chunk
+     */
+    public ChunkRenderData withOcclusionData(SetVisibility occlusionData) {
+        ChunkRenderData data = new ChunkRenderData();
+        data.globalBlockEntities = this.globalBlockEntities;
+        data.blockEntities = this.blockEntities;
+        data.translucentBlocks = this.translucentBlocks;
+        data.occlusionData = occlusionData;
+        data.meshes = this.meshes;
+        data.bounds = this.bounds;
+        data.animatedSprites = this.animatedSprites;
+        data.isEmpty = this.isEmpty;
+        data.meshByteSize = this.meshByteSize;
+        data.facesWithData = this.facesWithData;
+
+        return data;
+    }
+
+    private void updateMeshStatistics() {
+        int facesWithData = 0;
+        int size = 0;
+
+        for (ChunkMeshData meshData : this.meshes.values()) {
+            size += meshData.getVertexDataSize();
+
+            for (Map.Entry<ModelQuadFacing, BufferSlice> entry : meshData.getSlices()) {
+                facesWithData |= 1 << entry.getKey().ordinal();
+            }
+        }
+
+        this.isEmpty = this.globalBlockEntities.isEmpty() && this.blockEntities.isEmpty() && facesWithData == 0;
+        this.meshByteSize = size;
+        this.facesWithData = facesWithData;
+    }
+
     public static class Builder {
         private final List<TileEntity> globalBlockEntities = new ArrayList<>();
         private final List<TileEntity> blockEntities = new ArrayList<>();
@@ -150,21 +209,7 @@ public class ChunkRenderData {
             data.meshes = this.meshes;
             data.bounds = this.bounds;
             data.animatedSprites = new ObjectArrayList<>(this.animatedSprites);
-
-            int facesWithData = 0;
-            int size = 0;
-
-            for (ChunkMeshData meshData : this.meshes.values()) {
-                size += meshData.getVertexDataSize();
-
-                for (Map.Entry<ModelQuadFacing, BufferSlice> entry : meshData.getSlices()) {
-                    facesWithData |= 1 << entry.getKey().ordinal();
-                }
-            }
-
-            data.isEmpty = this.globalBlockEntities.isEmpty() && this.blockEntities.isEmpty() && facesWithData == 0;
-            data.meshByteSize = size;
-            data.facesWithData = facesWithData;
+            data.updateMeshStatistics();
 
             return data;
         }
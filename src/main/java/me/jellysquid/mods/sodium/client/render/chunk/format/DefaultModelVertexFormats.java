@@ -1,9 +1,11 @@
 package me.jellysquid.mods.sodium.client.render.chunk.format;
 
 import me.jellysquid.mods.sodium.client.render.chunk.format.hfp.HFPModelVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.format.hfp.HFPTiledModelVertexType;
 import me.jellysquid.mods.sodium.client.render.chunk.format.sfp.SFPModelVertexType;
 
 public class DefaultModelVertexFormats {
     public static final HFPModelVertexType MODEL_VERTEX_HFP = new HFPModelVertexType();
+    public static final HFPTiledModelVertexType MODEL_VERTEX_HFP_TILED = new HFPTiledModelVertexType();
     public static final SFPModelVertexType MODEL_VERTEX_SFP = new SFPModelVertexType();
 }
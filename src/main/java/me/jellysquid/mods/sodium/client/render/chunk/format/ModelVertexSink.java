@@ -1,6 +1,7 @@
 package me.jellysquid.mods.sodium.client.render.chunk.format;
 
 import me.jellysquid.mods.sodium.client.model.vertex.VertexSink;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
 
 public interface ModelVertexSink extends VertexSink {
     /**
@@ -14,4 +15,28 @@ public interface ModelVertexSink extends VertexSink {
      * @param light The packed light-map coordinates of the vertex
      */
     void writeQuad(float x, float y, float z, int color, float u, float v, int light);
+
+    /**
+     * Writes a vertex of a quad whose texture is repeated across its surface. The texture coordinates of every vertex
+     * of such a quad point to the same corner of the sprite, and the tile coordinates specify how many times the sprite
+     * has been repeated along each axis of the texture at this vertex.
+     *
+     * This is only supported by vertex formats which support texture tiling.
+     * @param x The x-position of the vertex
+     * @param y The y-position of the vertex
+     * @param z The z-position of the vertex
+     * @param color The ABGR-packed color of the vertex
+     * @param u The u-texture of the sprite's corner
+     * @param v The v-texture of the sprite's corner
+     * @param light The packed light-map coordinates of the vertex
+     * @param tileU The number of times the sprite has been repeated along the u-axis at this vertex
+     * @param tileV The number of times the sprite has been repeated along the v-axis at this vertex
+     * @param spriteWidth The width of the sprite in texture coordinates
+     * @param spriteHeight The height of the sprite in texture coordinates
+     * @see ChunkVertexType#supportsTextureTiling()
+     */
+    default void writeTiledQuad(float x, float y, float z, int color, float u, float v, int light,
+                                int tileU, int tileV, float spriteWidth, float spriteHeight) {
+        throw new UnsupportedOperationException("Vertex format does not support texture tiling");
+    }
 }
@@ -0,0 +1,67 @@
+package me.jellysquid.mods.sodium.client.render.chunk.format.hfp;
+
+import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferView;
+import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferWriterNio;
+import me.jellysquid.mods.sodium.client.render.chunk.format.DefaultModelVertexFormats;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexUtil;
+
+import java.nio.ByteBuffer;
+
+public class HFPTiledModelVertexBufferWriterNio extends VertexBufferWriterNio implements ModelVertexSink {
+    public HFPTiledModelVertexBufferWriterNio(VertexBufferView backingBuffer) {
+        super(backingBuffer, DefaultModelVertexFormats.MODEL_VERTEX_HFP_TILED);
+    }
+
+    @Override
+    public void writeQuad(float x, float y, float z, int color, float u, float v, int light) {
+        this.writeQuadInternal(
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(x),
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(y),
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(z),
+                (short) 0,
+                color,
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(u),
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(v),
+                (short) 0,
+                (short) 0,
+                ModelVertexUtil.encodeLightMapTexCoord(light)
+        );
+    }
+
+    @Override
+    public void writeTiledQuad(float x, float y, float z, int color, float u, float v, int light,
+                               int tileU, int tileV, float spriteWidth, float spriteHeight) {
+        this.writeQuadInternal(
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(x),
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(y),
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(z),
+                HFPTiledModelVertexType.encodeTile(tileU, tileV),
+                color,
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(u),
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(v),
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(spriteWidth),
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(spriteHeight),
+                ModelVertexUtil.encodeLightMapTexCoord(light)
+        );
+    }
+
+    private void writeQuadInternal(short x, short y, short z, short tile, int color, short u, short v,
+                                   short spriteWidth, short spriteHeight, int light) {
+        int i = this.writeOffset;
+
+        ByteBuffer buffer = this.byteBuffer;
+        buffer.putShort(i, x);
+        buffer.putShort(i + 2, y);
+        buffer.putShort(i + 4, z);
+        buffer.putShort(i + 6, tile);
+        buffer.putInt(i + 8, color);
+        buffer.putShort(i + 12, u);
+        buffer.putShort(i + 14, v);
+        buffer.putShort(i + 16, spriteWidth);
+        buffer.putShort(i + 18, spriteHeight);
+        buffer.putInt(i + 20, light);
+
+        this.advance();
+    }
+}
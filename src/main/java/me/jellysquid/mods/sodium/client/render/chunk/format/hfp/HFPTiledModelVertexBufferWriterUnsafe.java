@@ -0,0 +1,66 @@
+package me.jellysquid.mods.sodium.client.render.chunk.format.hfp;
+
+import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferView;
+import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferWriterUnsafe;
+import me.jellysquid.mods.sodium.client.render.chunk.format.DefaultModelVertexFormats;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexUtil;
+
+public class HFPTiledModelVertexBufferWriterUnsafe extends VertexBufferWriterUnsafe implements ModelVertexSink {
+    public HFPTiledModelVertexBufferWriterUnsafe(VertexBufferView backingBuffer) {
+        super(backingBuffer, DefaultModelVertexFormats.MODEL_VERTEX_HFP_TILED);
+    }
+
+    @Override
+    public void writeQuad(float x, float y, float z, int color, float u, float v, int light) {
+        this.writeQuadInternal(
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(x),
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(y),
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(z),
+                (short) 0,
+                color,
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(u),
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(v),
+                (short) 0,
+                (short) 0,
+                ModelVertexUtil.encodeLightMapTexCoord(light)
+        );
+    }
+
+    @Override
+    public void writeTiledQuad(float x, float y, float z, int color, float u, float v, int light,
+                               int tileU, int tileV, float spriteWidth, float spriteHeight) {
+        this.writeQuadInternal(
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(x),
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(y),
+                ModelVertexUtil.denormalizeVertexPositionFloatAsShort(z),
+                HFPTiledModelVertexType.encodeTile(tileU, tileV),
+                color,
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(u),
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(v),
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(spriteWidth),
+                ModelVertexUtil.denormalizeVertexTextureFloatAsShort(spriteHeight),
+                ModelVertexUtil.encodeLightMapTexCoord(light)
+        );
+    }
+
+    @SuppressWarnings("SuspiciousNameCombination")
+    private void writeQuadInternal(short x, short y, short z, short tile, int color, short u, short v,
+                                   short spriteWidth, short spriteHeight, int light) {
+        long i = this.writePointer;
+
+        UNSAFE.putShort(i, x);
+        UNSAFE.putShort(i + 2, y);
+        UNSAFE.putShort(i + 4, z);
+        UNSAFE.putShort(i + 6, tile);
+        UNSAFE.putInt(i + 8, color);
+        UNSAFE.putShort(i + 12, u);
+        UNSAFE.putShort(i + 14, v);
+        UNSAFE.putShort(i + 16, spriteWidth);
+        UNSAFE.putShort(i + 18, spriteHeight);
+        UNSAFE.putInt(i + 20, light);
+
+        this.advance();
+    }
+
+}
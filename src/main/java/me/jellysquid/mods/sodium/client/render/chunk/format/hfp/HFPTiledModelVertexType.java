@@ -0,0 +1,76 @@
+package me.jellysquid.mods.sodium.client.render.chunk.format.hfp;
+
+import com.mojang.blaze3d.vertex.IVertexBuilder;
+import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexAttributeFormat;
+import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexFormat;
+import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferView;
+import me.jellysquid.mods.sodium.client.model.vertex.type.BlittableVertexType;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkMeshAttribute;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
+
+/**
+ * A variant of {@link HFPModelVertexType} which allows the texture of a quad to be repeated across its surface, so
+ * that neighboring faces of identical blocks can be merged into a single quad.
+ *
+ * The padding after the position of each vertex is used to store its packed tile coordinates, and the texture
+ * coordinates are followed by the size of the sprite. Quads without a repeated texture use a sprite size of zero, in
+ * which case the shader uses their texture coordinates as-is.
+ */
+public class HFPTiledModelVertexType implements ChunkVertexType {
+    public static final GlVertexFormat<ChunkMeshAttribute> VERTEX_FORMAT = GlVertexFormat.builder(ChunkMeshAttribute.class, 24)
+            .addElement(ChunkMeshAttribute.POSITION, 0, GlVertexAttributeFormat.UNSIGNED_SHORT, 4, false)
+            .addElement(ChunkMeshAttribute.COLOR, 8, GlVertexAttributeFormat.UNSIGNED_BYTE, 4, true)
+            .addElement(ChunkMeshAttribute.TEXTURE, 12, GlVertexAttributeFormat.UNSIGNED_SHORT, 4, false)
+            .addElement(ChunkMeshAttribute.LIGHT, 20, GlVertexAttributeFormat.UNSIGNED_SHORT, 2, true)
+            .build();
+
+    // The tile coordinates of a vertex are packed as (v * TILE_STRIDE) + u
+    public static final int TILE_STRIDE = 32;
+
+    // The largest number of times a sprite can be repeated along each axis of a quad
+    public static final int MAX_TILES = TILE_STRIDE - 1;
+
+    @Override
+    public ModelVertexSink createFallbackWriter(IVertexBuilder consumer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ModelVertexSink createBufferWriter(VertexBufferView buffer, boolean direct) {
+        return direct ? new HFPTiledModelVertexBufferWriterUnsafe(buffer) : new HFPTiledModelVertexBufferWriterNio(buffer);
+    }
+
+    @Override
+    public BlittableVertexType<ModelVertexSink> asBlittable() {
+        return this;
+    }
+
+    @Override
+    public GlVertexFormat<ChunkMeshAttribute> getCustomVertexFormat() {
+        return VERTEX_FORMAT;
+    }
+
+    @Override
+    public float getModelScale() {
+        return HFPModelVertexType.MODEL_SCALE;
+    }
+
+    @Override
+    public float getTextureScale() {
+        return HFPModelVertexType.TEXTURE_SCALE;
+    }
+
+    @Override
+    public boolean supportsTextureTiling() {
+        return true;
+    }
+
+    static short encodeTile(int tileU, int tileV) {
+        if (tileU < 0 || tileV < 0 || tileU > MAX_TILES || tileV > MAX_TILES) {
+            throw new IllegalArgumentException("Tile coordinates out of range: " + tileU + ", " + tileV);
+        }
+
+        return (short) ((tileV * TILE_STRIDE) + tileU);
+    }
+}
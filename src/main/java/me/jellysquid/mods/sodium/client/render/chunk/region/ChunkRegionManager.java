@@ -2,6 +2,7 @@ package me.jellysquid.mods.sodium.client.render.chunk.region;
 
 import it.unimi.dsi.fastutil.longs.Long2ReferenceOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import me.jellysquid.mods.sodium.client.gl.arena.GlBufferArena;
 import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkGraphicsState;
 import me.jellysquid.mods.sodium.client.util.MathUtil;
@@ -75,4 +76,41 @@ public class ChunkRegionManager<T extends ChunkGraphicsState> {
     public int getAllocatedRegionCount() {
         return this.regions.size();
     }
+
+    /**
+     * @return The first region whose arena should be compacted, or null if there are none
+     */
+    public ChunkRegion<T> findFragmentedRegion() {
+        for (ChunkRegion<T> region : this.regions.values()) {
+            if (region.getBufferArena().shouldCompact()) {
+                return region;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return A summary of the memory usage and fragmentation of all region arenas, for the debug overlay
+     */
+    public String getArenaStatistics() {
+        long capacity = 0L;
+        long used = 0L;
+        long fragmented = 0L;
+        long freeRanges = 0L;
+
+        for (ChunkRegion<T> region : this.regions.values()) {
+            GlBufferArena arena = region.getBufferArena();
+
+            capacity += arena.getCapacity();
+            used += arena.getUsedBytes();
+            fragmented += arena.getFragmentedBytes();
+            freeRanges += arena.getFreeRangeCount();
+        }
+
+        int fragmentedPercent = capacity > 0 ? (int) ((fragmented * 100L) / capacity) : 0;
+
+        return String.format("Arena Memory: %s/%s MB (%s%% fragmented, %s free ranges)", used / 1024 / 1024,
+                capacity / 1024 / 1024, fragmentedPercent, freeRanges);
+    }
 }
@@ -15,7 +15,9 @@ import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkMeshAttribute;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.vector.Matrix4f;
 
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
 
 public abstract class ChunkRenderShaderBackend<T extends ChunkGraphicsState>
         implements ChunkRenderBackend<T> {
@@ -32,11 +34,17 @@ public abstract class ChunkRenderShaderBackend<T extends ChunkGraphicsState>
     }
 
     private ChunkProgram createShader(RenderDevice device, ChunkFogMode fogMode, GlVertexFormat<ChunkMeshAttribute> vertexFormat) {
+        List<String> defines = new ArrayList<>(fogMode.getDefines());
+
+        if (this.vertexType.supportsTextureTiling()) {
+            defines.add("USE_TEXTURE_TILING");
+        }
+
         GlShader vertShader = ShaderLoader.loadShader(device, ShaderType.VERTEX,
-                new ResourceLocation("sodium", "chunk_gl20.v.glsl"), fogMode.getDefines());
+                new ResourceLocation("sodium", "chunk_gl20.v.glsl"), defines);
 
         GlShader fragShader = ShaderLoader.loadShader(device, ShaderType.FRAGMENT,
-                new ResourceLocation("sodium", "chunk_gl20.f.glsl"), fogMode.getDefines());
+                new ResourceLocation("sodium", "chunk_gl20.f.glsl"), defines);
 
         try {
             return GlProgram.builder(new ResourceLocation("sodium", "chunk_shader"))
@@ -0,0 +1,111 @@
+package me.jellysquid.mods.sodium.client.render.chunk.tasks;
+
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.common.util.RenderTypeLookupUtil;
+import net.minecraft.block.BlockRenderType;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.EmptyBlockReader;
+
+import java.util.List;
+
+/**
+ * Packs everything a chunk rebuild needs to know about a block state before it can decide which work to perform for
+ * the block into a single integer, so that it only needs to be computed once for each distinct block state of a
+ * section instead of once for every block.
+ *
+ * The lowest byte holds the layers in which the block's model is rendered and the second byte holds the layers in
+ * which its fluid is rendered, with each bit being the index of the layer in {@link #LAYERS}.
+ */
+final class BlockRenderFlags {
+    static final RenderType[] LAYERS;
+
+    private static final int FLUID_LAYERS_SHIFT = 8;
+    private static final int LAYERS_MASK = 0xFF;
+
+    // Set once the flags have been computed, so that zero can be used to mark flags which haven't been yet
+    static final int COMPUTED = 1 << 16;
+
+    static final int AIR = 1 << 17;
+    static final int HAS_TILE_ENTITY = 1 << 18;
+
+    // The block always occludes its neighbors, regardless of its position in the world
+    static final int OPAQUE = 1 << 19;
+
+    // The block's shape depends on the world, so whether it is opaque needs to be checked at every position
+    static final int DYNAMIC_SHAPE = 1 << 20;
+
+    // The block can be rendered in one of the translucent passes, so the chunk's translucent geometry needs sorting
+    static final int SORTED = 1 << 21;
+
+    static {
+        List<RenderType> layers = RenderType.chunkBufferLayers();
+
+        if (layers.size() > Integer.bitCount(LAYERS_MASK)) {
+            throw new IllegalStateException("Too many chunk render layers: " + layers.size());
+        }
+
+        LAYERS = layers.toArray(new RenderType[0]);
+    }
+
+    private BlockRenderFlags() {
+
+    }
+
+    static int compute(BlockState state) {
+        if (state.isAir()) {
+            return COMPUTED | AIR;
+        }
+
+        int flags = COMPUTED;
+
+        if (state.hasTileEntity()) {
+            flags |= HAS_TILE_ENTITY;
+        }
+
+        if (state.getBlock().hasDynamicShape()) {
+            flags |= DYNAMIC_SHAPE;
+        } else if (state.isSolidRender(EmptyBlockReader.INSTANCE, BlockPos.ZERO)) {
+            // Without a dynamic shape, the result is cached by the block state and doesn't depend on the world
+            flags |= OPAQUE;
+        }
+
+        for (BlockRenderPass pass : BlockRenderPass.TRANSLUCENTS) {
+            if (RenderTypeLookupUtil.canRenderInLayer(state, pass.getLayer())) {
+                flags |= SORTED;
+                break;
+            }
+        }
+
+        FluidState fluidState = state.getFluidState();
+        boolean hasModel = state.getRenderShape() == BlockRenderType.MODEL;
+
+        for (int i = 0; i < LAYERS.length; i++) {
+            RenderType layer = LAYERS[i];
+
+            if (!fluidState.isEmpty() && RenderTypeLookupUtil.canRenderInLayer(fluidState, layer)) {
+                flags |= (1 << i) << FLUID_LAYERS_SHIFT;
+            }
+
+            if (hasModel && RenderTypeLookupUtil.canRenderInLayer(state, layer)) {
+                flags |= 1 << i;
+            }
+        }
+
+        return flags;
+    }
+
+    static int getBlockLayers(int flags) {
+        return flags & LAYERS_MASK;
+    }
+
+    static int getFluidLayers(int flags) {
+        return (flags >> FLUID_LAYERS_SHIFT) & LAYERS_MASK;
+    }
+
+    static boolean has(int flags, int flag) {
+        return (flags & flag) != 0;
+    }
+}
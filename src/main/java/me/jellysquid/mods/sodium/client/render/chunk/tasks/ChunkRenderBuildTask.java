@@ -1,6 +1,7 @@
 package me.jellysquid.mods.sodium.client.render.chunk.tasks;
 
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkGraphicsState;
+import me.jellysquid.mods.sodium.client.render.chunk.ChunkRenderContainer;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
 import me.jellysquid.mods.sodium.client.render.pipeline.context.ChunkRenderCacheLocal;
@@ -33,8 +34,14 @@ public abstract class ChunkRenderBuildTask<T extends ChunkGraphicsState> {
                                                      CancellationSource cancellationSource);
 
     /**
-     * Called on the main render thread when the task's execution returns. The implementation should release any
-     * resources it's still holding onto at this point.
+     * @return The chunk render which this task is building, used by the scheduler for prioritization
+     */
+    public abstract ChunkRenderContainer<T> getRender();
+
+    /**
+     * Called exactly once after the task has finished executing, or after it was cancelled before it could execute.
+     * This may happen on a worker thread. The implementation should release any resources it's still holding onto at
+     * this point.
      */
     public abstract void releaseResources();
 }
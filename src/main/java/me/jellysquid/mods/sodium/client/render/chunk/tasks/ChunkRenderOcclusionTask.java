@@ -0,0 +1,92 @@
+package me.jellysquid.mods.sodium.client.render.chunk.tasks;
+
+import me.jellysquid.mods.sodium.client.render.chunk.ChunkGraphicsState;
+import me.jellysquid.mods.sodium.client.render.chunk.ChunkRenderContainer;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.render.pipeline.context.ChunkRenderCacheLocal;
+import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
+import me.jellysquid.mods.sodium.client.world.cloned.ClonedChunkSection;
+import me.jellysquid.mods.sodium.client.world.cloned.palette.ClonedPalette;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.renderer.chunk.VisGraph;
+import net.minecraft.util.BitArray;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.EmptyBlockReader;
+
+/**
+ * Computes the occlusion data of a chunk without rebuilding any of its meshes. This only needs to look at the blocks of
+ * the chunk section itself, and whether each block is opaque is only computed once for each entry in the section's
+ * palette, which makes it much cheaper than a full rebuild.
+ *
+ * The result keeps the existing meshes of the render, and is discarded if the render's data is replaced before the
+ * result is processed. Blocks are tested without access to their neighbors, so the occlusion data is only an
+ * approximation for the few blocks whose shape depends on the world. It will be replaced by the exact data once the
+ * chunk is rebuilt.
+ */
+public class ChunkRenderOcclusionTask<T extends ChunkGraphicsState> extends ChunkRenderBuildTask<T> {
+    private static final BlockRenderPass[] NO_PASSES = new BlockRenderPass[0];
+
+    private static final byte UNKNOWN = 0, TRANSPARENT = 1, OPAQUE = 2;
+
+    private final ChunkRenderContainer<T> render;
+    private final ChunkRenderData data;
+    private final ClonedChunkSection section;
+
+    public ChunkRenderOcclusionTask(ChunkRenderContainer<T> render, ClonedChunkSection section) {
+        this.render = render;
+        this.data = render.getData();
+        this.section = section;
+    }
+
+    @Override
+    public ChunkBuildResult<T> performBuild(ChunkRenderCacheLocal cache, ChunkBuildBuffers buffers, CancellationSource cancellationSource) {
+        BitArray blockData = this.section.getBlockData();
+        ClonedPalette<BlockState> palette = this.section.getBlockPalette();
+
+        // The opacity of each palette entry, which is computed the first time the entry is encountered
+        byte[] opacity = new byte[1 << blockData.getBits()];
+
+        VisGraph occluder = new VisGraph();
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+
+        for (int i = 0; i < blockData.getSize(); i++) {
+            int id = blockData.get(i);
+            byte state = opacity[id];
+
+            int x = i & 15;
+            int y = i >> 8;
+            int z = (i >> 4) & 15;
+
+            if (state == UNKNOWN) {
+                pos.set(x, y, z);
+
+                state = palette.get(id).isSolidRender(EmptyBlockReader.INSTANCE, pos) ? OPAQUE : TRANSPARENT;
+                opacity[id] = state;
+            }
+
+            if (state == OPAQUE) {
+                occluder.setOpaque(pos.set(x, y, z));
+            }
+        }
+
+        if (cancellationSource.isCancelled()) {
+            return null;
+        }
+
+        return new ChunkBuildResult<>(this.render, this.data.withOcclusionData(occluder.resolve()), NO_PASSES, this.data);
+    }
+
+    @Override
+    public ChunkRenderContainer<T> getRender() {
+        return this.render;
+    }
+
+    @Override
+    public void releaseResources() {
+        this.section.getBackingCache()
+                .release(this.section);
+    }
+}
@@ -1,5 +1,6 @@
 package me.jellysquid.mods.sodium.client.render.chunk.tasks;
 
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkGraphicsState;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkRenderContainer;
@@ -9,20 +10,23 @@ import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderBounds;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.render.pipeline.BlockFaceMerger;
 import me.jellysquid.mods.sodium.client.render.pipeline.context.ChunkRenderCacheLocal;
 import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
 import me.jellysquid.mods.sodium.client.world.WorldSlice;
 import me.jellysquid.mods.sodium.client.world.cloned.ChunkRenderContext;
-import me.jellysquid.mods.sodium.common.util.RenderTypeLookupUtil;
-import net.minecraft.block.BlockRenderType;
+import me.jellysquid.mods.sodium.client.world.cloned.ClonedChunkSection;
+import me.jellysquid.mods.sodium.client.world.cloned.palette.ClonedPalette;
+import me.jellysquid.mods.sodium.common.util.DirectionUtil;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.chunk.VisGraph;
 import net.minecraft.client.renderer.model.IBakedModel;
 import net.minecraft.client.renderer.tileentity.TileEntityRenderer;
 import net.minecraft.client.renderer.tileentity.TileEntityRendererDispatcher;
-import net.minecraft.fluid.FluidState;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.BitArray;
+import net.minecraft.util.Direction;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.vector.Vector3d;
 import net.minecraftforge.client.ForgeHooksClient;
@@ -33,6 +37,10 @@ import net.minecraftforge.client.ForgeHooksClient;
  *
  * This task takes a slice of the world from the thread it is created on. Since these slices require rather large
  * array allocations, they are pooled to ensure that the garbage collector doesn't become overloaded.
+ *
+ * Blocks are read from the palette of the chunk section being rebuilt, so everything which only depends on the block
+ * state (its render layers, fluid, tile entity and opacity) is computed once for each distinct block state in the
+ * section. Air is skipped entirely, and only the layers a block can actually be rendered in are visited.
  */
 public class ChunkRenderRebuildTask<T extends ChunkGraphicsState> extends ChunkRenderBuildTask<T> {
 
@@ -42,15 +50,19 @@ public class ChunkRenderRebuildTask<T extends ChunkGraphicsState> extends ChunkR
     private final ChunkRenderContainer<T> render;
     private final Vector3d camera;
     private final BlockPos offset;
+    private final int version;
 
     private final boolean translucencySorting;
+    private final boolean cullEnclosedBlocks;
     private final ChunkRenderContext context;
 
-    public ChunkRenderRebuildTask(ChunkRenderContainer<T> render, ChunkRenderContext context, BlockPos offset, Vector3d camera) {
+    public ChunkRenderRebuildTask(ChunkRenderContainer<T> render, ChunkRenderContext context, BlockPos offset, Vector3d camera, int version) {
         this.render = render;
         this.offset = offset;
+        this.version = version;
         this.camera = camera;
         this.translucencySorting = SodiumClientMod.options().advanced.translucencySorting;
+        this.cullEnclosedBlocks = SodiumClientMod.options().advanced.cullEnclosedBlocks;
         this.context = context;
     }
 
@@ -73,6 +85,14 @@ public class ChunkRenderRebuildTask<T extends ChunkGraphicsState> extends ChunkR
         BlockPos.Mutable pos = new BlockPos.Mutable();
         BlockPos renderOffset = this.offset;
 
+        ClonedChunkSection section = this.context.getOriginSection();
+        BitArray blockData = section.getBlockData();
+        ClonedPalette<BlockState> palette = section.getBlockPalette();
+
+        // The render flags of each palette entry, which are computed the first time the entry is encountered
+        int[] paletteFlags = new int[1 << blockData.getBits()];
+        Reference2IntOpenHashMap<BlockState> neighborFlags = new Reference2IntOpenHashMap<>();
+
         boolean shouldSortBackwards = false;
 
         for (int relY = 0; relY < CHUNK_BUILD_SIZE; relY++) {
@@ -81,23 +101,36 @@ public class ChunkRenderRebuildTask<T extends ChunkGraphicsState> extends ChunkR
             }
             for (int relZ = 0; relZ < CHUNK_BUILD_SIZE; relZ++) {
                 for (int relX = 0; relX < CHUNK_BUILD_SIZE; relX++) {
-                    BlockState state = slice.getBlockState(baseX + relX, baseY + relY, baseZ + relZ, null);
-
-                    if (this.translucencySorting && !shouldSortBackwards) {
-                        for (BlockRenderPass pass : BlockRenderPass.TRANSLUCENTS) {
-                            if (RenderTypeLookupUtil.canRenderInLayer(state, pass.getLayer())) {
-                                shouldSortBackwards = true;
-                                break;
-                            }
-                        }
+                    int id = blockData.get(getBlockIndex(relX, relY, relZ));
+                    int flags = getFlags(paletteFlags, id, palette);
+
+                    if (BlockRenderFlags.has(flags, BlockRenderFlags.AIR)) {
+                        continue;
+                    }
+
+                    if (this.translucencySorting && BlockRenderFlags.has(flags, BlockRenderFlags.SORTED)) {
+                        shouldSortBackwards = true;
                     }
 
-                    setupBlockRender(cache, buffers, renderData, slice, occluder, bounds, pos, renderOffset, state, relX, relY, relZ,
-                            relX+baseX, relY+baseY, relZ+baseZ);
+                    if (this.cullEnclosedBlocks && BlockRenderFlags.has(flags, BlockRenderFlags.OPAQUE) &&
+                            this.isEnclosed(slice, blockData, palette, paletteFlags, neighborFlags, relX, relY, relZ)) {
+                        // Nothing inside this block can be seen, but it still occludes and may have a fluid or tile entity.
+                        // This also drops any quads of the model which don't have a cull face, which is why it is opt-in.
+                        flags &= ~BlockRenderFlags.getBlockLayers(flags);
+                    }
+
+                    setupBlockRender(cache, buffers, renderData, slice, occluder, bounds, pos, renderOffset, palette.get(id), flags,
+                            relX, relY, relZ, relX+baseX, relY+baseY, relZ+baseZ);
                 }
             }
         }
 
+        BlockFaceMerger faceMerger = cache.getFaceMerger();
+
+        if (faceMerger != null) {
+            faceMerger.flush(buffers, baseX - renderOffset.getX(), baseY - renderOffset.getY(), baseZ - renderOffset.getZ());
+        }
+
         render.setRebuildableForTranslucents(shouldSortBackwards);
 
         for (BlockRenderPass pass : BlockRenderPass.VALUES) {
@@ -113,27 +146,67 @@ public class ChunkRenderRebuildTask<T extends ChunkGraphicsState> extends ChunkR
         renderData.setOcclusionData(occluder.resolve());
         renderData.setBounds(bounds.build(this.render.getChunkPos()));
 
-        return new ChunkBuildResult<>(this.render, renderData.build());
+        return new ChunkBuildResult<>(this.render, renderData.build(), this.version);
     }
 
 
 
-    private void setupBlockRender(ChunkRenderCacheLocal cache, ChunkBuildBuffers buffers, ChunkRenderData.Builder renderData, WorldSlice slice,
-                                  VisGraph occluder, ChunkRenderBounds.Builder bounds, BlockPos.Mutable pos, BlockPos offset, BlockState blockState,
-                                  int relX, int relY, int relZ, int x, int y, int z) {
-        if (blockState.isAir()) {
-            return;
+    private static int getBlockIndex(int x, int y, int z) {
+        return y << 8 | z << 4 | x;
+    }
+
+    private static int getFlags(int[] paletteFlags, int id, ClonedPalette<BlockState> palette) {
+        int flags = paletteFlags[id];
+
+        if (flags == 0) {
+            flags = paletteFlags[id] = BlockRenderFlags.compute(palette.get(id));
         }
 
+        return flags;
+    }
+
+    /**
+     * @return True if every neighbor of the block is opaque regardless of its position, in which case no part of the
+     * block can be seen. Neighbors outside the section are looked up through the world slice.
+     */
+    private boolean isEnclosed(WorldSlice slice, BitArray blockData, ClonedPalette<BlockState> palette, int[] paletteFlags,
+                               Reference2IntOpenHashMap<BlockState> neighborFlags, int x, int y, int z) {
+        for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
+            int adjX = x + dir.getStepX();
+            int adjY = y + dir.getStepY();
+            int adjZ = z + dir.getStepZ();
+
+            int flags;
+
+            if (((adjX | adjY | adjZ) & ~(CHUNK_BUILD_SIZE - 1)) == 0) {
+                flags = getFlags(paletteFlags, blockData.get(getBlockIndex(adjX, adjY, adjZ)), palette);
+            } else {
+                BlockState state = slice.getBlockState(this.render.getOriginX() + adjX, this.render.getOriginY() + adjY,
+                        this.render.getOriginZ() + adjZ, null);
+
+                flags = neighborFlags.computeIntIfAbsent(state, BlockRenderFlags::compute);
+            }
+
+            if (!BlockRenderFlags.has(flags, BlockRenderFlags.OPAQUE)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void setupBlockRender(ChunkRenderCacheLocal cache, ChunkBuildBuffers buffers, ChunkRenderData.Builder renderData, WorldSlice slice,
+                                  VisGraph occluder, ChunkRenderBounds.Builder bounds, BlockPos.Mutable pos, BlockPos offset, BlockState blockState,
+                                  int flags, int relX, int relY, int relZ, int x, int y, int z) {
         pos.set(x, y, z);
         buffers.setRenderOffset(x - offset.getX(), y - offset.getY(), z - offset.getZ());
 
-        // TODO: don't create a new BlockPos, just use coordinates
-        if (blockState.isSolidRender(slice, pos)) {
+        if (BlockRenderFlags.has(flags, BlockRenderFlags.OPAQUE) ||
+                (BlockRenderFlags.has(flags, BlockRenderFlags.DYNAMIC_SHAPE) && blockState.isSolidRender(slice, pos))) {
             occluder.setOpaque(pos);
         }
 
-        if (blockState.hasTileEntity()) {
+        if (BlockRenderFlags.has(flags, BlockRenderFlags.HAS_TILE_ENTITY)) {
             TileEntity entity = slice.getBlockEntity(pos);
 
             if (entity != null) {
@@ -147,22 +220,35 @@ public class ChunkRenderRebuildTask<T extends ChunkGraphicsState> extends ChunkR
             }
         }
 
-        for (RenderType layer : RenderType.chunkBufferLayers()) {
+        int blockLayers = BlockRenderFlags.getBlockLayers(flags);
+        int fluidLayers = BlockRenderFlags.getFluidLayers(flags);
+
+        if ((blockLayers | fluidLayers) == 0) {
+            return;
+        }
+
+        for (int i = 0; i < BlockRenderFlags.LAYERS.length; i++) {
+            int bit = 1 << i;
+
+            if (((blockLayers | fluidLayers) & bit) == 0) {
+                continue;
+            }
+
+            RenderType layer = BlockRenderFlags.LAYERS[i];
             ForgeHooksClient.setRenderLayer(layer);
-            // Fluids
-            FluidState fluidState = blockState.getFluidState();
 
-            if (!fluidState.isEmpty() && RenderTypeLookupUtil.canRenderInLayer(fluidState, layer)) {
+            // Fluids
+            if ((fluidLayers & bit) != 0) {
                 if (layer == RenderType.translucent() || layer == RenderType.tripwire()) {
                     renderData.addTranslucentBlock(pos.immutable());
                 }
 
-                if (cache.getFluidRenderer().render(slice, fluidState, pos, buffers.get(layer))) {
+                if (cache.getFluidRenderer().render(slice, blockState.getFluidState(), pos, buffers.get(layer))) {
                     bounds.addBlock(relX, relY, relZ);
                 }
             }
 
-            if (blockState.getRenderShape() != BlockRenderType.MODEL || !RenderTypeLookupUtil.canRenderInLayer(blockState, layer)) {
+            if ((blockLayers & bit) == 0) {
                 continue;
             }
 
@@ -183,6 +269,11 @@ public class ChunkRenderRebuildTask<T extends ChunkGraphicsState> extends ChunkR
         ForgeHooksClient.setRenderLayer(null);
     }
 
+    @Override
+    public ChunkRenderContainer<T> getRender() {
+        return this.render;
+    }
+
     @Override
     public void releaseResources() {
         this.context.releaseResources();
@@ -0,0 +1,73 @@
+package me.jellysquid.mods.sodium.client.render.chunk.tasks;
+
+import me.jellysquid.mods.sodium.client.render.chunk.ChunkGraphicsState;
+import me.jellysquid.mods.sodium.client.render.chunk.ChunkRenderContainer;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.render.pipeline.context.ChunkRenderCacheLocal;
+import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.vector.Vector3d;
+
+import java.util.EnumMap;
+
+/**
+ * Re-sorts the translucent meshes of a chunk for a new camera position, re-using the vertex data and quad centroids
+ * which were kept from when the chunk was last built. This is much cheaper than rebuilding the chunk, as no blocks
+ * need to be rendered again.
+ *
+ * The result only replaces the meshes of the translucent render passes, and is discarded if the chunk's render data is
+ * replaced before the result is uploaded.
+ */
+public class ChunkRenderResortTask<T extends ChunkGraphicsState> extends ChunkRenderBuildTask<T> {
+    private final ChunkRenderContainer<T> render;
+    private final ChunkRenderData data;
+    private final Vector3d camera;
+    private final BlockPos offset;
+
+    public ChunkRenderResortTask(ChunkRenderContainer<T> render, Vector3d camera) {
+        this.render = render;
+        this.data = render.getData();
+        this.camera = camera;
+        this.offset = render.getRenderOrigin();
+    }
+
+    @Override
+    public ChunkBuildResult<T> performBuild(ChunkRenderCacheLocal cache, ChunkBuildBuffers buffers, CancellationSource cancellationSource) {
+        float x = (float) this.camera.x - this.offset.getX();
+        float y = (float) this.camera.y - this.offset.getY();
+        float z = (float) this.camera.z - this.offset.getZ();
+
+        EnumMap<BlockRenderPass, ChunkMeshData> meshes = new EnumMap<>(BlockRenderPass.class);
+
+        for (BlockRenderPass pass : BlockRenderPass.TRANSLUCENTS) {
+            if (cancellationSource.isCancelled()) {
+                return null;
+            }
+
+            ChunkMeshData mesh = this.data.getMesh(pass);
+
+            if (mesh.getSortData() != null) {
+                meshes.put(pass, buffers.sortMesh(mesh, x, y, z));
+            }
+        }
+
+        BlockRenderPass[] passes = meshes.keySet()
+                .toArray(new BlockRenderPass[0]);
+
+        return new ChunkBuildResult<>(this.render, this.data.withMeshes(meshes), passes, this.data);
+    }
+
+    @Override
+    public ChunkRenderContainer<T> getRender() {
+        return this.render;
+    }
+
+    @Override
+    public void releaseResources() {
+
+    }
+}
@@ -0,0 +1,418 @@
+package me.jellysquid.mods.sodium.client.render.pipeline;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.jellysquid.mods.sodium.client.model.quad.ModelQuadView;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFacing;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.ChunkModelBuffers;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.util.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Collects the full-cube faces of a chunk section while it is being meshed, and then greedily merges neighboring faces
+ * which lie on the same plane into larger quads. Faces can only be merged if they use the same sprite in the same
+ * orientation, and if they have the same color and light at every vertex, which makes the merged quad look identical
+ * to the faces it replaces. The sprite is then repeated across the merged quad by the chunk shader.
+ *
+ * Faces which can't be collected are rendered as usual by the caller. This requires a vertex format which supports
+ * texture tiling.
+ */
+public class BlockFaceMerger {
+    private static final int SIZE = 16;
+
+    // The tolerance used when checking whether a vertex lies on the corner of a block or sprite
+    private static final float EPSILON = 1.0e-3f;
+
+    // The tolerance used when checking whether a face covers its whole sprite, relative to the size of the sprite.
+    // Baked quads are slightly shrunk towards the center of their sprite to avoid texture bleeding.
+    private static final float SPRITE_COVERAGE = 0.98f;
+
+    // The axes (x = 0, y = 1, z = 2) which make up the plane of each face, indexed by direction, and the axis along
+    // which the planes are stacked
+    private static final int[] AXIS_A = new int[] { 0, 0, 0, 0, 2, 2 };
+    private static final int[] AXIS_B = new int[] { 2, 2, 1, 1, 1, 1 };
+    private static final int[] AXIS_DEPTH = new int[] { 1, 1, 2, 2, 0, 0 };
+
+    // The texture axis follows the first or second axis of the face's plane, in the same or opposite direction
+    private static final int MAP_A = 0, MAP_A_FLIPPED = 1, MAP_B = 2, MAP_B_FLIPPED = 3;
+
+    // The identifier of the face in each cell of each plane, or zero if the cell is empty, indexed by direction
+    private final int[][] cells = new int[Direction.values().length][SIZE * SIZE * SIZE];
+
+    // The planes of each direction which contain at least one face
+    private final int[] usedPlanes = new int[Direction.values().length];
+
+    private final Object2IntOpenHashMap<Face> faceIds = new Object2IntOpenHashMap<>();
+    private final ObjectArrayList<Face> faces = new ObjectArrayList<>();
+
+    private final int[] corners = new int[4];
+    private final float[] position = new float[3];
+
+    /**
+     * Attempts to collect a face of the block at the given position in the chunk section. The face is not collected
+     * if it doesn't exactly cover a side of the block with a single un-rotated sprite, or if another face has already
+     * been collected for the same side of the block.
+     *
+     * @param buffers The buffers the face would have been rendered into
+     * @param dir The side of the block the face belongs to
+     * @param x The x-coordinate of the block relative to the chunk section
+     * @param y The y-coordinate of the block relative to the chunk section
+     * @param z The z-coordinate of the block relative to the chunk section
+     * @param quad The face to collect
+     * @param color The ABGR-packed color of every vertex of the face
+     * @param light The packed light-map coordinates of every vertex of the face
+     * @return True if the face was collected, otherwise the caller must render it
+     */
+    public boolean add(ChunkModelBuffers buffers, Direction dir, int x, int y, int z, ModelQuadView quad, int color, int light) {
+        TextureAtlasSprite sprite = quad.getSprite();
+
+        if (sprite == null) {
+            return false;
+        }
+
+        int facing = dir.ordinal();
+        float plane = dir.getAxisDirection() == Direction.AxisDirection.POSITIVE ? 1.0f : 0.0f;
+
+        int cornerMask = 0;
+
+        for (int i = 0; i < 4; i++) {
+            this.position[0] = quad.getX(i);
+            this.position[1] = quad.getY(i);
+            this.position[2] = quad.getZ(i);
+
+            int ca = toUnit(this.position[AXIS_A[facing]]);
+            int cb = toUnit(this.position[AXIS_B[facing]]);
+
+            if (ca < 0 || cb < 0 || Math.abs(this.position[AXIS_DEPTH[facing]] - plane) > EPSILON) {
+                return false;
+            }
+
+            int corner = ca | (cb << 1);
+            cornerMask |= 1 << corner;
+
+            this.corners[i] = corner;
+        }
+
+        // Every vertex must lie on a different corner of the block's side
+        if (cornerMask != 0b1111) {
+            return false;
+        }
+
+        float minU = Float.POSITIVE_INFINITY, maxU = Float.NEGATIVE_INFINITY;
+        float minV = Float.POSITIVE_INFINITY, maxV = Float.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < 4; i++) {
+            minU = Math.min(minU, quad.getTexU(i));
+            maxU = Math.max(maxU, quad.getTexU(i));
+            minV = Math.min(minV, quad.getTexV(i));
+            maxV = Math.max(maxV, quad.getTexV(i));
+        }
+
+        float width = maxU - minU;
+        float height = maxV - minV;
+
+        if (width < (sprite.getU1() - sprite.getU0()) * SPRITE_COVERAGE ||
+                height < (sprite.getV1() - sprite.getV0()) * SPRITE_COVERAGE) {
+            return false;
+        }
+
+        int mapU = this.findMapping(quad, minU, width, true);
+        int mapV = this.findMapping(quad, minV, height, false);
+
+        // The texture axes must follow different axes of the block's side
+        if (mapU < 0 || mapV < 0 || (mapU >> 1) == (mapV >> 1)) {
+            return false;
+        }
+
+        int[] cells = this.cells[facing];
+        int depth = getCoordinate(facing, AXIS_DEPTH, x, y, z);
+        int index = getCellIndex(depth, getCoordinate(facing, AXIS_A, x, y, z), getCoordinate(facing, AXIS_B, x, y, z));
+
+        if (cells[index] != 0) {
+            return false;
+        }
+
+        int packedCorners = this.corners[0] | (this.corners[1] << 2) | (this.corners[2] << 4) | (this.corners[3] << 6);
+
+        cells[index] = this.getFaceId(new Face(buffers, sprite, minU, minV, width, height, color, light,
+                packedCorners, mapU | (mapV << 2)));
+
+        this.usedPlanes[facing] |= 1 << depth;
+
+        return true;
+    }
+
+    /**
+     * Merges all collected faces and writes the resulting quads into their buffers. The collector is reset afterwards.
+     *
+     * @param buffers The buffers which contain the render offset of the chunk section
+     * @param offsetX The x-offset of the chunk section's origin from the mesh's origin
+     * @param offsetY The y-offset of the chunk section's origin from the mesh's origin
+     * @param offsetZ The z-offset of the chunk section's origin from the mesh's origin
+     */
+    public void flush(ChunkBuildBuffers buffers, int offsetX, int offsetY, int offsetZ) {
+        buffers.setRenderOffset(offsetX, offsetY, offsetZ);
+
+        for (int facing = 0; facing < this.cells.length; facing++) {
+            int[] cells = this.cells[facing];
+            int planes = this.usedPlanes[facing];
+
+            while (planes != 0) {
+                int depth = Integer.numberOfTrailingZeros(planes);
+                planes &= planes - 1;
+
+                for (int b = 0; b < SIZE; b++) {
+                    for (int a = 0; a < SIZE; a++) {
+                        int id = cells[getCellIndex(depth, a, b)];
+
+                        if (id == 0) {
+                            continue;
+                        }
+
+                        int width = 1;
+
+                        while (a + width < SIZE && cells[getCellIndex(depth, a + width, b)] == id) {
+                            width++;
+                        }
+
+                        int height = 1;
+
+                        while (b + height < SIZE && isRowFilled(cells, id, depth, a, b + height, width)) {
+                            height++;
+                        }
+
+                        for (int j = 0; j < height; j++) {
+                            Arrays.fill(cells, getCellIndex(depth, a, b + j), getCellIndex(depth, a + width, b + j), 0);
+                        }
+
+                        this.writeQuad(this.faces.get(id - 1), facing, depth, a, b, width, height);
+                    }
+                }
+            }
+
+            this.usedPlanes[facing] = 0;
+        }
+
+        this.faceIds.clear();
+        this.faces.clear();
+    }
+
+    /**
+     * Discards all collected faces, such as when the chunk section being meshed was cancelled.
+     */
+    public void reset() {
+        for (int facing = 0; facing < this.cells.length; facing++) {
+            int planes = this.usedPlanes[facing];
+
+            while (planes != 0) {
+                int depth = Integer.numberOfTrailingZeros(planes);
+                planes &= planes - 1;
+
+                Arrays.fill(this.cells[facing], getCellIndex(depth, 0, 0), getCellIndex(depth + 1, 0, 0), 0);
+            }
+
+            this.usedPlanes[facing] = 0;
+        }
+
+        this.faceIds.clear();
+        this.faces.clear();
+    }
+
+    private void writeQuad(Face face, int facing, int depth, int a, int b, int width, int height) {
+        Direction dir = Direction.from3DDataValue(facing);
+        ModelVertexSink sink = face.buffers.getSink(ModelQuadFacing.fromDirection(dir));
+        sink.ensureCapacity(4);
+
+        float plane = depth + (dir.getAxisDirection() == Direction.AxisDirection.POSITIVE ? 1.0f : 0.0f);
+
+        for (int i = 0; i < 4; i++) {
+            int corner = (face.corners >> (i * 2)) & 0b11;
+
+            int ca = corner & 1;
+            int cb = corner >> 1;
+
+            this.position[AXIS_A[facing]] = a + (ca * width);
+            this.position[AXIS_B[facing]] = b + (cb * height);
+            this.position[AXIS_DEPTH[facing]] = plane;
+
+            int tileU = getTile(face.mapping & 0b11, ca, cb, width, height);
+            int tileV = getTile(face.mapping >> 2, ca, cb, width, height);
+
+            sink.writeTiledQuad(this.position[0], this.position[1], this.position[2], face.color, face.minU, face.minV,
+                    face.light, tileU, tileV, face.width, face.height);
+        }
+
+        sink.flush();
+    }
+
+    private int getFaceId(Face face) {
+        int id = this.faceIds.getInt(face);
+
+        if (id == 0) {
+            this.faces.add(face);
+            id = this.faces.size();
+
+            this.faceIds.put(face, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Finds which axis of the block's side a texture axis follows, by checking that the texture coordinate of every
+     * vertex is on the near edge of the sprite exactly when the vertex is on the near edge of the side.
+     *
+     * @return The mapping of the texture axis, or -1 if the texture axis doesn't follow either axis of the side
+     */
+    private int findMapping(ModelQuadView quad, float min, float size, boolean u) {
+        int tiles = 0;
+
+        for (int i = 0; i < 4; i++) {
+            float coord = ((u ? quad.getTexU(i) : quad.getTexV(i)) - min) / size;
+            int tile = toUnit(coord);
+
+            if (tile < 0) {
+                return -1;
+            }
+
+            tiles |= tile << i;
+        }
+
+        int alongA = 0, alongB = 0;
+
+        for (int i = 0; i < 4; i++) {
+            alongA |= (this.corners[i] & 1) << i;
+            alongB |= (this.corners[i] >> 1) << i;
+        }
+
+        if (tiles == alongA) {
+            return MAP_A;
+        } else if (tiles == (~alongA & 0b1111)) {
+            return MAP_A_FLIPPED;
+        } else if (tiles == alongB) {
+            return MAP_B;
+        } else if (tiles == (~alongB & 0b1111)) {
+            return MAP_B_FLIPPED;
+        }
+
+        return -1;
+    }
+
+    private static boolean isRowFilled(int[] cells, int id, int depth, int a, int b, int width) {
+        for (int i = 0; i < width; i++) {
+            if (cells[getCellIndex(depth, a + i, b)] != id) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int getTile(int mapping, int ca, int cb, int width, int height) {
+        switch (mapping) {
+            case MAP_A:
+                return ca * width;
+            case MAP_A_FLIPPED:
+                return (1 - ca) * width;
+            case MAP_B:
+                return cb * height;
+            case MAP_B_FLIPPED:
+                return (1 - cb) * height;
+            default:
+                throw new IllegalArgumentException("Invalid mapping: " + mapping);
+        }
+    }
+
+    private static int getCoordinate(int facing, int[] axes, int x, int y, int z) {
+        switch (axes[facing]) {
+            case 0:
+                return x;
+            case 1:
+                return y;
+            default:
+                return z;
+        }
+    }
+
+    private static int getCellIndex(int depth, int a, int b) {
+        return (depth << 8) | (b << 4) | a;
+    }
+
+    /**
+     * @return 0 or 1 if the value is close enough to either, otherwise -1
+     */
+    private static int toUnit(float value) {
+        if (Math.abs(value) <= EPSILON) {
+            return 0;
+        } else if (Math.abs(value - 1.0f) <= EPSILON) {
+            return 1;
+        }
+
+        return -1;
+    }
+
+    private static class Face {
+        private final ChunkModelBuffers buffers;
+        private final TextureAtlasSprite sprite;
+
+        private final float minU, minV, width, height;
+        private final int color, light;
+
+        // The corner of the block's side which each vertex lies on, packed as two bits per vertex
+        private final int corners;
+
+        // The mapping of the u- and v-axes of the texture, packed as two bits per axis
+        private final int mapping;
+
+        private Face(ChunkModelBuffers buffers, TextureAtlasSprite sprite, float minU, float minV, float width, float height,
+                     int color, int light, int corners, int mapping) {
+            this.buffers = buffers;
+            this.sprite = sprite;
+            this.minU = minU;
+            this.minV = minV;
+            this.width = width;
+            this.height = height;
+            this.color = color;
+            this.light = light;
+            this.corners = corners;
+            this.mapping = mapping;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Face)) {
+                return false;
+            }
+
+            Face other = (Face) o;
+
+            return this.buffers == other.buffers && this.sprite == other.sprite &&
+                    Float.compare(this.minU, other.minU) == 0 && Float.compare(this.minV, other.minV) == 0 &&
+                    Float.compare(this.width, other.width) == 0 && Float.compare(this.height, other.height) == 0 &&
+                    this.color == other.color && this.light == other.light &&
+                    this.corners == other.corners && this.mapping == other.mapping;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(this.buffers);
+            result = 31 * result + System.identityHashCode(this.sprite);
+            result = 31 * result + Float.floatToIntBits(this.minU);
+            result = 31 * result + Float.floatToIntBits(this.minV);
+            result = 31 * result + this.color;
+            result = 31 * result + this.light;
+            result = 31 * result + this.corners;
+            result = 31 * result + this.mapping;
+
+            return result;
+        }
+    }
+}
@@ -18,6 +18,7 @@ import me.jellysquid.mods.sodium.client.world.biome.BlockColorsExtended;
 import me.jellysquid.mods.sodium.common.util.DirectionUtil;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.color.IBlockColor;
 import net.minecraft.client.renderer.model.BakedQuad;
 import net.minecraft.client.renderer.model.IBakedModel;
@@ -26,6 +27,7 @@ import net.minecraft.util.Direction;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.vector.Vector3d;
 import net.minecraft.world.IBlockDisplayReader;
+import net.minecraftforge.client.MinecraftForgeClient;
 import net.minecraftforge.client.model.ModelDataManager;
 import net.minecraftforge.client.model.data.EmptyModelData;
 import net.minecraftforge.client.model.data.IModelData;
@@ -47,11 +49,19 @@ public class BlockRenderer {
 
     private final boolean useAmbientOcclusion;
 
+    // Collects faces which can be merged with their neighbors, or null if faces should never be merged
+    private final BlockFaceMerger faceMerger;
+
     public BlockRenderer(Minecraft client, LightPipelineProvider lighters, BiomeColorBlender biomeColorBlender) {
+        this(client, lighters, biomeColorBlender, null);
+    }
+
+    public BlockRenderer(Minecraft client, LightPipelineProvider lighters, BiomeColorBlender biomeColorBlender, BlockFaceMerger faceMerger) {
         this.blockColors = (BlockColorsExtended) client.getBlockColors();
         this.biomeColorBlender = biomeColorBlender;
 
         this.lighters = lighters;
+        this.faceMerger = faceMerger;
 
         this.occlusionCache = new BlockOcclusionCache();
         this.useAmbientOcclusion = Minecraft.useAmbientOcclusion();
@@ -71,6 +81,12 @@ public class BlockRenderer {
 
         boolean rendered = false;
 
+        // Only the faces of opaque full cubes in the solid layer are merged, as the faces of any other block may be seen
+        // through or blended with what lies behind them. Emissive blocks are excluded as well, as they are lit
+        // independently of the light around them.
+        boolean mergeable = this.faceMerger != null && MinecraftForgeClient.getRenderLayer() == RenderType.solid() &&
+                offset.equals(Vector3d.ZERO) && state.isSolidRender(world, pos) && !state.emissiveRendering(world, pos);
+
         for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
             this.random.setSeed(seed);
 
@@ -81,7 +97,10 @@ public class BlockRenderer {
             }
 
             if (!cull || this.occlusionCache.shouldDrawSide(state, world, pos, dir)) {
-                this.renderQuadList(world, state, pos, lighter, offset, buffers, sided, ModelQuadFacing.fromDirection(dir));
+                // Faces can't be merged if they are layered on top of another face, as their draw order would change
+                Direction mergeDir = mergeable && sided.size() == 1 ? dir : null;
+
+                this.renderQuadList(world, state, pos, lighter, offset, buffers, sided, ModelQuadFacing.fromDirection(dir), mergeDir);
 
                 rendered = true;
             }
@@ -92,7 +111,7 @@ public class BlockRenderer {
         List<BakedQuad> all = model.getQuads(state, null, this.random, modelData);
 
         if (!all.isEmpty()) {
-            this.renderQuadList(world, state, pos, lighter, offset, buffers, all, ModelQuadFacing.UNASSIGNED);
+            this.renderQuadList(world, state, pos, lighter, offset, buffers, all, ModelQuadFacing.UNASSIGNED, null);
 
             rendered = true;
         }
@@ -101,7 +120,7 @@ public class BlockRenderer {
     }
 
     private void renderQuadList(IBlockDisplayReader world, BlockState state, BlockPos pos, LightPipeline lighter, Vector3d offset,
-                                ChunkModelBuffers buffers, List<BakedQuad> quads, ModelQuadFacing facing) {
+                                ChunkModelBuffers buffers, List<BakedQuad> quads, ModelQuadFacing facing, Direction mergeDir) {
             IBlockColor colorizer = null;
 
         ModelVertexSink sink = buffers.getSink(facing);
@@ -119,14 +138,15 @@ public class BlockRenderer {
                 colorizer = this.blockColors.getColorProvider(state);
             }
 
-            this.renderQuad(world, state, pos, sink, offset, colorizer, quad, light, renderData);
+            this.renderQuad(world, state, pos, buffers, sink, offset, colorizer, quad, light, renderData, mergeDir);
         }
 
         sink.flush();
     }
 
-    private void renderQuad(IBlockDisplayReader world, BlockState state, BlockPos pos, ModelVertexSink sink, Vector3d offset,
-                IBlockColor colorProvider, BakedQuad bakedQuad, QuadLightData light, ChunkRenderData.Builder renderData) {
+    private void renderQuad(IBlockDisplayReader world, BlockState state, BlockPos pos, ChunkModelBuffers buffers, ModelVertexSink sink,
+                Vector3d offset, IBlockColor colorProvider, BakedQuad bakedQuad, QuadLightData light, ChunkRenderData.Builder renderData,
+                Direction mergeDir) {
         ModelQuadView src = (ModelQuadView) bakedQuad;
 
         ModelQuadOrientation order = ModelQuadOrientation.orient(light.br);
@@ -137,6 +157,12 @@ public class BlockRenderer {
             colors = this.biomeColorBlender.getColors(colorProvider, world, state, pos, src);
         }
 
+        if (mergeDir != null && this.mergeQuad(buffers, pos, src, colors, light, mergeDir)) {
+            renderData.addSprite(src.getSprite());
+
+            return;
+        }
+
         for (int dstIndex = 0; dstIndex < 4; dstIndex++) {
             int srcIndex = order.getVertexIndex(dstIndex);
 
@@ -161,6 +187,23 @@ public class BlockRenderer {
         }
     }
 
+    /**
+     * Passes the quad to the face merger if every vertex of the quad has the same color and light.
+     * @return True if the quad was collected by the face merger and should not be rendered
+     */
+    private boolean mergeQuad(ChunkModelBuffers buffers, BlockPos pos, ModelQuadView src, int[] colors, QuadLightData light, Direction dir) {
+        int color = ColorABGR.mul(colors != null ? colors[0] : 0xFFFFFFFF, light.br[0]);
+        int lm = light.lm[0];
+
+        for (int i = 1; i < 4; i++) {
+            if (ColorABGR.mul(colors != null ? colors[i] : 0xFFFFFFFF, light.br[i]) != color || light.lm[i] != lm) {
+                return false;
+            }
+        }
+
+        return this.faceMerger.add(buffers, dir, pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15, src, color, lm);
+    }
+
     private LightMode getLightingMode(BlockState state, IBakedModel model) {
         if (this.useAmbientOcclusion && model.useAmbientOcclusion() && state.getLightEmission() == 0) {
             return LightMode.SMOOTH;
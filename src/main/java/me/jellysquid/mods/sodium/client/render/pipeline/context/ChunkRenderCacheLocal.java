@@ -1,34 +1,53 @@
 package me.jellysquid.mods.sodium.client.render.pipeline.context;
 
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.model.light.LightPipelineProvider;
 import me.jellysquid.mods.sodium.client.model.light.cache.ArrayLightDataCache;
+import me.jellysquid.mods.sodium.client.model.light.cache.SectionLightDataCache;
+import me.jellysquid.mods.sodium.client.model.light.data.LightDataAccess;
 import me.jellysquid.mods.sodium.client.model.quad.blender.BiomeColorBlender;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.pipeline.BlockFaceMerger;
 import me.jellysquid.mods.sodium.client.render.pipeline.BlockRenderer;
 import me.jellysquid.mods.sodium.client.render.pipeline.ChunkRenderCache;
 import me.jellysquid.mods.sodium.client.render.pipeline.FluidRenderer;
 import me.jellysquid.mods.sodium.client.world.WorldSlice;
+import me.jellysquid.mods.sodium.client.world.biome.BiomeColorColumnCache;
 import me.jellysquid.mods.sodium.client.world.cloned.ChunkRenderContext;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.BlockModelShapes;
 import net.minecraft.world.World;
 
 public class ChunkRenderCacheLocal extends ChunkRenderCache {
-    private final ArrayLightDataCache lightDataCache;
+    // The light data cache of this builder, or null if light data is shared between builders
+    private final ArrayLightDataCache localLightDataCache;
 
     private final BlockRenderer blockRenderer;
     private final FluidRenderer fluidRenderer;
+    private final BlockFaceMerger faceMerger;
 
     private final BlockModelShapes blockModels;
     private final WorldSlice worldSlice;
 
-    public ChunkRenderCacheLocal(Minecraft client, World world) {
-        this.worldSlice = new WorldSlice(world);
-        this.lightDataCache = new ArrayLightDataCache(this.worldSlice);
+    public ChunkRenderCacheLocal(Minecraft client, World world, ChunkVertexType vertexType, BiomeColorColumnCache biomeColorColumnCache) {
+        this.worldSlice = new WorldSlice(world, biomeColorColumnCache);
 
-        LightPipelineProvider lightPipelineProvider = new LightPipelineProvider(this.lightDataCache);
+        LightDataAccess lightDataCache;
+
+        if (SodiumClientMod.options().advanced.useSharedLightDataCache) {
+            lightDataCache = new SectionLightDataCache(this.worldSlice);
+            this.localLightDataCache = null;
+        } else {
+            lightDataCache = this.localLightDataCache = new ArrayLightDataCache(this.worldSlice);
+        }
+
+        LightPipelineProvider lightPipelineProvider = new LightPipelineProvider(lightDataCache);
         BiomeColorBlender biomeColorBlender = this.createBiomeColorBlender();
 
-        this.blockRenderer = new BlockRenderer(client, lightPipelineProvider, biomeColorBlender);
+        // Merged faces can only be drawn if the vertex format is able to repeat their textures
+        this.faceMerger = vertexType.supportsTextureTiling() ? new BlockFaceMerger() : null;
+
+        this.blockRenderer = new BlockRenderer(client, lightPipelineProvider, biomeColorBlender, this.faceMerger);
         this.fluidRenderer = new FluidRenderer(client, lightPipelineProvider, biomeColorBlender);
 
         this.blockModels = client.getModelManager().getBlockModelShaper();
@@ -46,8 +65,21 @@ public class ChunkRenderCacheLocal extends ChunkRenderCache {
         return this.fluidRenderer;
     }
 
+    /**
+     * @return The collector of faces which can be merged, or null if faces are not merged
+     */
+    public BlockFaceMerger getFaceMerger() {
+        return this.faceMerger;
+    }
+
     public void init(ChunkRenderContext context) {
-        this.lightDataCache.reset(context.getOrigin());
+        if (this.localLightDataCache != null) {
+            this.localLightDataCache.reset(context.getOrigin());
+        }
+
+        if (this.faceMerger != null) {
+            this.faceMerger.reset();
+        }
         this.worldSlice.copyData(context);
     }
 
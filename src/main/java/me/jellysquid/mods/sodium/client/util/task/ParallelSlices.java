@@ -0,0 +1,74 @@
+package me.jellysquid.mods.sodium.client.util.task;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a range of indices into slices which are processed in parallel on the common fork-join pool, blocking the
+ * calling thread until every slice has been processed.
+ *
+ * No ordering is guaranteed between slices, so callers are expected to only write to the outputs belonging to the
+ * indices of their own slice. Results which need to be in order can then be merged by the calling thread afterwards,
+ * which keeps the outcome the same regardless of how the work was scheduled.
+ */
+public class ParallelSlices {
+    /**
+     * Processes the indices in the range [0, count) by slices of at least the given number of indices. If the range
+     * is too small to be split, or if the common pool has no parallelism, the range is processed on the calling thread.
+     *
+     * @param count The number of indices to process
+     * @param minSliceSize The smallest number of indices that will be processed by a single slice
+     * @param consumer The function which processes each slice
+     */
+    public static void forEach(int count, int minSliceSize, SliceConsumer consumer) {
+        if (minSliceSize < 1) {
+            throw new IllegalArgumentException("Slice size must be at least one");
+        }
+
+        if (count <= 0) {
+            return;
+        }
+
+        if (count <= minSliceSize || ForkJoinPool.getCommonPoolParallelism() <= 1) {
+            consumer.accept(0, count);
+        } else {
+            ForkJoinPool.commonPool()
+                    .invoke(new SliceAction(consumer, 0, count, minSliceSize));
+        }
+    }
+
+    public interface SliceConsumer {
+        /**
+         * Processes the indices in the range [start, end).
+         */
+        void accept(int start, int end);
+    }
+
+    private static class SliceAction extends RecursiveAction {
+        private final SliceConsumer consumer;
+        private final int start, end;
+        private final int minSliceSize;
+
+        private SliceAction(SliceConsumer consumer, int start, int end, int minSliceSize) {
+            this.consumer = consumer;
+            this.start = start;
+            this.end = end;
+            this.minSliceSize = minSliceSize;
+        }
+
+        @Override
+        protected void compute() {
+            int length = this.end - this.start;
+
+            if (length <= this.minSliceSize * 2) {
+                this.consumer.accept(this.start, this.end);
+                return;
+            }
+
+            int mid = this.start + (length >>> 1);
+
+            invokeAll(new SliceAction(this.consumer, this.start, mid, this.minSliceSize),
+                    new SliceAction(this.consumer, mid, this.end, this.minSliceSize));
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package me.jellysquid.mods.sodium.client.util.task;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A set of per-worker job queues which hand out the most urgent job first. Each worker's queue is a binary heap
+ * guarded by its own lock, so a worker taking a job from its own queue only ever contends with workers stealing from
+ * it or with new jobs being added to it.
+ *
+ * Priorities are cached in the heaps. When the state which they are computed from changes (such as the position of
+ * the camera), {@link WorkStealingQueue#invalidatePriorities()} must be called, after which each queue re-evaluates
+ * the priorities of its jobs once, the next time it is accessed.
+ *
+ * A worker only steals when its own queue is empty, in which case it takes the most urgent job at the head of any
+ * other queue. New jobs are always given to the worker with the fewest queued jobs, so the most urgent jobs are
+ * spread between the workers and picked up soon by their owners.
+ *
+ * @param <E> The type of job held by this queue
+ */
+public class WorkStealingQueue<E> {
+    private final WorkerQueue<E>[] queues;
+    private final ToDoubleFunction<E> priority;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    // Incremented whenever the priorities of queued jobs may have changed
+    private final AtomicInteger priorityVersion = new AtomicInteger();
+
+    /**
+     * @param workers The number of workers which will be polling this queue
+     * @param priority The function used to evaluate the priority of a job, where lower values are more urgent
+     */
+    @SuppressWarnings("unchecked")
+    public WorkStealingQueue(int workers, ToDoubleFunction<E> priority) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least one");
+        }
+
+        this.queues = new WorkerQueue[workers];
+        this.priority = priority;
+
+        for (int i = 0; i < workers; i++) {
+            this.queues[i] = new WorkerQueue<>();
+        }
+    }
+
+    /**
+     * Adds the job to the queue of the least-loaded worker.
+     * @return The index of the worker which the job was given to
+     */
+    public int add(E job) {
+        int target = 0;
+        int targetSize = Integer.MAX_VALUE;
+
+        for (int i = 0; i < this.queues.length; i++) {
+            int size = this.queues[i].size;
+
+            if (size < targetSize) {
+                target = i;
+                targetSize = size;
+            }
+        }
+
+        this.queues[target].add(job, this.priority, this.priorityVersion.get());
+        this.size.incrementAndGet();
+
+        return target;
+    }
+
+    /**
+     * Takes the most urgent job from the given worker's own queue, or if that queue is empty, steals the most urgent
+     * job at the head of any other worker's queue.
+     * @param worker The index of the worker which is polling
+     * @return The job to perform, or null if all queues are empty
+     */
+    public E poll(int worker) {
+        int version = this.priorityVersion.get();
+
+        E job = this.queues[worker].poll(this.priority, version);
+
+        if (job == null) {
+            job = this.steal(worker, version);
+        }
+
+        if (job != null) {
+            this.size.decrementAndGet();
+        }
+
+        return job;
+    }
+
+    private E steal(int worker, int version) {
+        while (this.size.get() > 0) {
+            WorkerQueue<E> best = null;
+            double bestPriority = 0.0D;
+
+            for (int i = 1; i < this.queues.length; i++) {
+                WorkerQueue<E> queue = this.queues[(worker + i) % this.queues.length];
+
+                // Skip empty queues without taking their locks
+                if (queue.size == 0) {
+                    continue;
+                }
+
+                double priority = queue.peekPriority(this.priority, version);
+
+                if (!Double.isNaN(priority) && (best == null || priority < bestPriority)) {
+                    best = queue;
+                    bestPriority = priority;
+                }
+            }
+
+            if (best == null) {
+                return null;
+            }
+
+            // The owner or another thief may have emptied the queue in the meantime, in which case the search is repeated
+            E job = best.poll(this.priority, version);
+
+            if (job != null) {
+                return job;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Marks the priorities of all queued jobs as outdated, so that they are evaluated again before the next job is
+     * selected from each queue.
+     */
+    public void invalidatePriorities() {
+        this.priorityVersion.incrementAndGet();
+    }
+
+    /**
+     * Removes all jobs from every worker's queue, passing each of them to the consumer.
+     */
+    public void drain(Consumer<E> consumer) {
+        for (WorkerQueue<E> queue : this.queues) {
+            E job;
+
+            while ((job = queue.pollAny()) != null) {
+                this.size.decrementAndGet();
+
+                consumer.accept(job);
+            }
+        }
+    }
+
+    /**
+     * @return The total number of jobs queued across all workers
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /**
+     * A binary min-heap of jobs keyed by their priority at the time the heap was last re-evaluated.
+     */
+    private static class WorkerQueue<E> {
+        private Object[] jobs = new Object[16];
+        private double[] priorities = new double[16];
+
+        // Only written while holding the lock, but read without it to find the least-loaded and non-empty queues
+        private volatile int size;
+
+        // The priority version which the cached priorities were computed for
+        private int version;
+
+        public synchronized void add(E job, ToDoubleFunction<E> priority, int version) {
+            this.update(priority, version);
+
+            int size = this.size;
+
+            if (size == this.jobs.length) {
+                this.jobs = Arrays.copyOf(this.jobs, size * 2);
+                this.priorities = Arrays.copyOf(this.priorities, size * 2);
+            }
+
+            this.size = size + 1;
+            this.siftUp(size, job, priority.applyAsDouble(job));
+        }
+
+        /**
+         * @return The priority of the most urgent job in this queue, or NaN if the queue is empty
+         */
+        public synchronized double peekPriority(ToDoubleFunction<E> priority, int version) {
+            this.update(priority, version);
+
+            return this.size == 0 ? Double.NaN : this.priorities[0];
+        }
+
+        public synchronized E poll(ToDoubleFunction<E> priority, int version) {
+            if (this.size == 0) {
+                return null;
+            }
+
+            this.update(priority, version);
+
+            return this.removeAt(0);
+        }
+
+        public synchronized E pollAny() {
+            return this.size == 0 ? null : this.removeAt(this.size - 1);
+        }
+
+        /**
+         * Re-evaluates the priority of every job and restores the heap order if the priorities have been invalidated.
+         */
+        private void update(ToDoubleFunction<E> priority, int version) {
+            if (this.version == version) {
+                return;
+            }
+
+            this.version = version;
+
+            int size = this.size;
+
+            for (int i = 0; i < size; i++) {
+                this.priorities[i] = priority.applyAsDouble(this.getJob(i));
+            }
+
+            for (int i = (size >>> 1) - 1; i >= 0; i--) {
+                this.siftDown(i, this.getJob(i), this.priorities[i]);
+            }
+        }
+
+        private E removeAt(int index) {
+            E job = this.getJob(index);
+
+            int last = this.size - 1;
+
+            Object lastJob = this.jobs[last];
+            double lastPriority = this.priorities[last];
+
+            this.jobs[last] = null;
+            this.size = last;
+
+            if (index < last) {
+                //noinspection unchecked
+                this.siftDown(index, (E) lastJob, lastPriority);
+            }
+
+            return job;
+        }
+
+        private void siftUp(int index, E job, double priority) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+
+                if (this.priorities[parent] <= priority) {
+                    break;
+                }
+
+                this.set(index, this.jobs[parent], this.priorities[parent]);
+                index = parent;
+            }
+
+            this.set(index, job, priority);
+        }
+
+        private void siftDown(int index, E job, double priority) {
+            int size = this.size;
+            int half = size >>> 1;
+
+            while (index < half) {
+                int child = (index << 1) + 1;
+                int right = child + 1;
+
+                if (right < size && this.priorities[right] < this.priorities[child]) {
+                    child = right;
+                }
+
+                if (priority <= this.priorities[child]) {
+                    break;
+                }
+
+                this.set(index, this.jobs[child], this.priorities[child]);
+                index = child;
+            }
+
+            this.set(index, job, priority);
+        }
+
+        private void set(int index, Object job, double priority) {
+            this.jobs[index] = job;
+            this.priorities[index] = priority;
+        }
+
+        @SuppressWarnings("unchecked")
+        private E getJob(int index) {
+            return (E) this.jobs[index];
+        }
+    }
+}
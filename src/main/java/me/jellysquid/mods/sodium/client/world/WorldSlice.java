@@ -1,8 +1,10 @@
 package me.jellysquid.mods.sodium.client.world;
 
 import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.world.biome.BiomeCache;
 import me.jellysquid.mods.sodium.client.world.biome.BiomeColorCache;
+import me.jellysquid.mods.sodium.client.world.biome.BiomeColorColumnCache;
 import me.jellysquid.mods.sodium.client.world.cloned.ChunkRenderContext;
 import me.jellysquid.mods.sodium.client.world.cloned.ClonedChunkSection;
 import me.jellysquid.mods.sodium.client.world.cloned.ClonedChunkSectionCache;
@@ -40,6 +42,13 @@ import java.util.Map;
  *
  * You should use object pooling with this type to avoid huge allocations as instances of this class contain many large
  * arrays.
+ *
+ * When direct block access is enabled, block states are read straight from the palette and packed data of each cloned
+ * section instead of first being unpacked into a dense array. Sections containing a single block state (such as those
+ * entirely filled with air or stone) are answered without reading their packed data at all.
+ *
+ * When a shared biome color cache is given, the blended colors of the origin column are taken from it instead of being
+ * blended again for every section in the column. Colors outside the origin column are still blended by this slice.
  */
 public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReader {
     // The number of blocks on each axis in a section.
@@ -62,6 +71,9 @@ public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReade
     // The number of sections on each axis of this slice.
     private static final int SECTION_LENGTH = 1 + (NEIGHBOR_CHUNK_RADIUS * 2);
 
+    // The number of blocks on each axis of the sections copied by this slice.
+    private static final int SECTION_BLOCK_SPAN = SECTION_LENGTH * SECTION_BLOCK_LENGTH;
+
     // The size of the lookup tables used for mapping values to coordinate int pairs. The lookup table size is always
     // a power of two so that multiplications can be replaced with simple bit shifts in hot code paths.
     private static final int TABLE_LENGTH = MathHelper.smallestEncompassingPowerOfTwo(SECTION_LENGTH);
@@ -75,6 +87,9 @@ public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReade
     // The world this slice has copied data from
     private final World world;
 
+    // True if block states are read directly from the cloned sections instead of being unpacked
+    private final boolean useDirectBlockAccess;
+
     // The data arrays for this slice
     // These are allocated once and then re-used when the slice is released back to an object pool
     private final BlockState[] blockStates;
@@ -99,6 +114,15 @@ public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReade
     // for vertex color blending
     private BiomeColorCache prevColorCache;
 
+    // The blended colors shared between all sections of each column, or null if colors are only blended by this slice
+    private final BiomeColorColumnCache biomeColorColumnCache;
+
+    // The blended colors of the origin column for each color resolver type, taken from the shared cache
+    private final Map<ColorResolver, int[]> columnColors = new Reference2ObjectOpenHashMap<>();
+
+    private ColorResolver prevColumnColorResolver;
+    private int[] prevColumnColors;
+
     // The starting point from which this slice captures blocks
     private int baseX, baseY, baseZ;
 
@@ -107,7 +131,8 @@ public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReade
 
     private ChunkRenderContext context;
 
-    public static ChunkRenderContext prepare(World world, SectionPos origin, ClonedChunkSectionCache sectionCache) {
+    public static ChunkRenderContext prepare(World world, SectionPos origin, ClonedChunkSectionCache sectionCache,
+                                             BiomeColorColumnCache biomeColorColumnCache) {
         Chunk chunk = world.getChunk(origin.getX(), origin.getZ());
         ChunkSection section = chunk.getSections()[origin.getY()];
 
@@ -145,11 +170,15 @@ public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReade
             }
         }
 
-        return new ChunkRenderContext(origin, sections, volume);
+        int biomeColorRevision = biomeColorColumnCache != null ? biomeColorColumnCache.getRevision(origin.getX(), origin.getZ()) : 0;
+
+        return new ChunkRenderContext(origin, sections, volume, biomeColorRevision);
     }
 
-    public WorldSlice(World world) {
+    public WorldSlice(World world, BiomeColorColumnCache biomeColorColumnCache) {
         this.world = world;
+        this.biomeColorColumnCache = biomeColorColumnCache;
+        this.useDirectBlockAccess = SodiumClientMod.options().advanced.useDirectBlockAccess;
 
         this.sections = new ClonedChunkSection[SECTION_TABLE_ARRAY_SIZE];
         //this.blockStatesArrays = new BlockState[SECTION_TABLE_ARRAY_SIZE][];
@@ -178,6 +207,11 @@ public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReade
 
         this.biomeColorCaches.clear();
 
+        this.prevColumnColors = null;
+        this.prevColumnColorResolver = null;
+
+        this.columnColors.clear();
+
         this.baseX = (this.origin.getX() - NEIGHBOR_CHUNK_RADIUS) << 4;
         this.baseY = (this.origin.getY() - NEIGHBOR_CHUNK_RADIUS) << 4;
         this.baseZ = (this.origin.getZ() - NEIGHBOR_CHUNK_RADIUS) << 4;
@@ -189,7 +223,9 @@ public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReade
 
                     this.biomeCaches[idx].reset();
 
-                    this.unpackBlockData(null/*this.blockStatesArrays[idx]*/, this.sections[idx], context.getVolume());
+                    if (!this.useDirectBlockAccess) {
+                        this.unpackBlockData(null/*this.blockStatesArrays[idx]*/, this.sections[idx], context.getVolume());
+                    }
                 }
             }
         }
@@ -267,6 +303,10 @@ public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReade
             return Blocks.VOID_AIR.defaultBlockState();
         }
 
+        if (this.useDirectBlockAccess) {
+            return this.getBlockStateDirect(x, y, z, pos);
+        }
+
         // Some mods such as Inspirations that modifies block colors traverse around the current BlockPos to look for
         // neighboring blocks.  While traversing, they may move out of this current slice's range causing an out of bounds
         // error.  When this happens, we can default to the World's getBlockState
@@ -285,6 +325,41 @@ public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReade
                 [getLocalBlockIndex(relX & 15, relY & 15, relZ & 15)];*/
     }
 
+    private BlockState getBlockStateDirect(int x, int y, int z, BlockPos pos) {
+        int relX = x - this.baseX;
+        int relY = y - this.baseY;
+        int relZ = z - this.baseZ;
+
+        // Mods may look at blocks outside the sections copied by this slice, see above
+        if (relX < 0 || relY < 0 || relZ < 0 || relX >= SECTION_BLOCK_SPAN || relY >= SECTION_BLOCK_SPAN || relZ >= SECTION_BLOCK_SPAN) {
+            return this.world.getBlockState(pos == null ? new BlockPos(x, y, z) : pos);
+        }
+
+        ClonedChunkSection section = this.sections[getLocalSectionIndex(relX >> 4, relY >> 4, relZ >> 4)];
+        BlockState uniform = section.getUniformBlockState();
+
+        if (uniform != null) {
+            return uniform;
+        }
+
+        return section.getBlockState(relX & 15, relY & 15, relZ & 15);
+    }
+
+    /**
+     * @return The copy of the chunk section containing the given block, or null if the block is outside this slice
+     */
+    public ClonedChunkSection getSection(int x, int y, int z) {
+        int relX = x - this.baseX;
+        int relY = y - this.baseY;
+        int relZ = z - this.baseZ;
+
+        if (relX < 0 || relY < 0 || relZ < 0 || relX >= SECTION_BLOCK_SPAN || relY >= SECTION_BLOCK_SPAN || relZ >= SECTION_BLOCK_SPAN) {
+            return null;
+        }
+
+        return this.sections[getLocalSectionIndex(relX >> 4, relY >> 4, relZ >> 4)];
+    }
+
     /*public BlockState getBlockStateRelative(int x, int y, int z) {
         return this.blockStatesArrays[getLocalSectionIndex(x >> 4, y >> 4, z >> 4)]
                 [getLocalBlockIndex(x & 15, y & 15, z & 15)];
@@ -325,6 +400,43 @@ public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReade
 
     @Override
     public int getBlockTint(BlockPos pos, ColorResolver resolver) {
+        if (this.biomeColorColumnCache != null && (pos.getX() >> 4) == this.origin.getX() && (pos.getZ() >> 4) == this.origin.getZ()) {
+            return this.getColumnColors(resolver)[(pos.getZ() & 15) << 4 | (pos.getX() & 15)];
+        }
+
+        return this.getBiomeColorCache(resolver).getBlendedColor(pos);
+    }
+
+    private int[] getColumnColors(ColorResolver resolver) {
+        if (this.prevColumnColorResolver == resolver) {
+            return this.prevColumnColors;
+        }
+
+        int[] colors = this.columnColors.get(resolver);
+
+        if (colors == null) {
+            int x = this.origin.getX();
+            int z = this.origin.getZ();
+            int revision = this.context.getBiomeColorRevision();
+
+            colors = this.biomeColorColumnCache.getColors(x, z, revision, resolver);
+
+            if (colors == null) {
+                colors = this.getBiomeColorCache(resolver).getOriginColumnColors();
+
+                this.biomeColorColumnCache.putColors(x, z, revision, resolver, colors);
+            }
+
+            this.columnColors.put(resolver, colors);
+        }
+
+        this.prevColumnColorResolver = resolver;
+        this.prevColumnColors = colors;
+
+        return colors;
+    }
+
+    private BiomeColorCache getBiomeColorCache(ColorResolver resolver) {
         BiomeColorCache cache;
 
         if (this.prevColorResolver == resolver) {
@@ -340,7 +452,7 @@ public class WorldSlice implements IBlockDisplayReader, BiomeManager.IBiomeReade
             this.prevColorCache = cache;
         }
 
-        return cache.getBlendedColor(pos);
+        return cache;
     }
 
     @Override
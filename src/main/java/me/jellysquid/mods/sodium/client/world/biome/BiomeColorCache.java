@@ -64,6 +64,26 @@ public class BiomeColorCache {
         return color;
     }
 
+    /**
+     * Blends the colors of every block in the origin column of the slice. As biomes are sampled at the same height for
+     * every section, the result is the same for every section in the column.
+     * @return The blended colors indexed by {@code z << 4 | x}
+     */
+    public int[] getOriginColumnColors() {
+        int[] colors = new int[16 * 16];
+
+        int originX = this.blendedColorsMinX + 2;
+        int originZ = this.blendedColorsMinZ + 2;
+
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                colors[z << 4 | x] = this.calculateBlendedColor(originX + x, originZ + z);
+            }
+        }
+
+        return colors;
+    }
+
     private int calculateBlendedColor(int posX, int posZ) {
         if (this.radius == 0) {
             return this.getColor(posX, posZ);
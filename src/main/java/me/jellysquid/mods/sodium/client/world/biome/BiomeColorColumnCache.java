@@ -0,0 +1,97 @@
+package me.jellysquid.mods.sodium.client.world.biome;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.level.ColorResolver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares the blended biome colors of each chunk column between the rebuilds of every section in the column and between
+ * all chunk build workers. Biomes are sampled at the same height for every section of a column (see
+ * {@link BiomeColorCache}), so the colors of a column only need to be blended once for each color resolver.
+ *
+ * The colors near the edges of a column depend on the biomes of its neighbors, so the colors of a column become outdated
+ * whenever the column or one of its neighbors is loaded. When that happens, the column is given a new revision. Slices
+ * capture the revision of their column on the main thread when they are prepared, and only use or replace colors which
+ * were computed for the same or an older revision. This ensures that a slice never mixes colors computed from biome data
+ * other than its own, even if a worker finishes blending a column after it has been invalidated.
+ */
+public class BiomeColorColumnCache {
+    // The revision of each column, only accessed on the main thread
+    private final Long2IntOpenHashMap revisions = new Long2IntOpenHashMap();
+    private int nextRevision = 1;
+
+    private final Map<Long, Column> columns = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the current revision of the column's colors. This must only be called on the main thread.
+     */
+    public int getRevision(int x, int z) {
+        return this.revisions.get(ChunkPos.asLong(x, z));
+    }
+
+    /**
+     * Invalidates the colors of the column and its neighbors after the column has been loaded. This must only be called
+     * on the main thread.
+     */
+    public void onChunkAdded(int x, int z) {
+        int revision = this.nextRevision++;
+
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                long key = ChunkPos.asLong(x + dx, z + dz);
+
+                this.revisions.put(key, revision);
+                this.columns.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Drops the colors of the column after it has been unloaded. This must only be called on the main thread.
+     */
+    public void onChunkRemoved(int x, int z) {
+        long key = ChunkPos.asLong(x, z);
+
+        this.revisions.remove(key);
+        this.columns.remove(key);
+    }
+
+    /**
+     * @return The blended colors of the column indexed by {@code z << 4 | x}, or null if they haven't been computed for
+     *         the given revision yet
+     */
+    public int[] getColors(int x, int z, int revision, ColorResolver resolver) {
+        Column column = this.columns.get(ChunkPos.asLong(x, z));
+
+        if (column == null || column.revision != revision) {
+            return null;
+        }
+
+        return column.colors.get(resolver);
+    }
+
+    /**
+     * Shares the blended colors of the column which were computed for the given revision, unless the colors have since
+     * been computed for a newer revision.
+     */
+    public void putColors(int x, int z, int revision, ColorResolver resolver, int[] colors) {
+        Column column = this.columns.compute(ChunkPos.asLong(x, z), (key, prev) ->
+                prev == null || prev.revision < revision ? new Column(revision) : prev);
+
+        if (column.revision == revision) {
+            column.colors.putIfAbsent(resolver, colors);
+        }
+    }
+
+    private static class Column {
+        private final int revision;
+        private final Map<ColorResolver, int[]> colors = new ConcurrentHashMap<>();
+
+        private Column(int revision) {
+            this.revision = revision;
+        }
+    }
+}
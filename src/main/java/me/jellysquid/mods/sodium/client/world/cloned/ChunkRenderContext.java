@@ -7,11 +7,13 @@ public class ChunkRenderContext {
     private final SectionPos origin;
     private final ClonedChunkSection[] sections;
     private final MutableBoundingBox volume;
+    private final int biomeColorRevision;
 
-    public ChunkRenderContext(SectionPos origin, ClonedChunkSection[] sections, MutableBoundingBox volume) {
+    public ChunkRenderContext(SectionPos origin, ClonedChunkSection[] sections, MutableBoundingBox volume, int biomeColorRevision) {
         this.origin = origin;
         this.sections = sections;
         this.volume = volume;
+        this.biomeColorRevision = biomeColorRevision;
     }
 
     public ClonedChunkSection[] getSections() {
@@ -22,10 +24,32 @@ public class ChunkRenderContext {
         return this.origin;
     }
 
+    /**
+     * @return The copy of the chunk section being rendered
+     * @throws IllegalStateException If the origin section was not copied into this context
+     */
+    public ClonedChunkSection getOriginSection() {
+        for (ClonedChunkSection section : this.sections) {
+            if (section != null && section.getPosition().equals(this.origin)) {
+                return section;
+            }
+        }
+
+        throw new IllegalStateException("Origin section was not copied: " + this.origin);
+    }
+
     public MutableBoundingBox getVolume() {
         return this.volume;
     }
 
+    /**
+     * @return The revision of the origin column's shared biome colors at the time the sections were copied
+     * @see me.jellysquid.mods.sodium.client.world.biome.BiomeColorColumnCache
+     */
+    public int getBiomeColorRevision() {
+        return this.biomeColorRevision;
+    }
+
     public void releaseResources() {
         for (ClonedChunkSection section : sections) {
             if (section != null) {
@@ -1,5 +1,7 @@
 package me.jellysquid.mods.sodium.client.world.cloned;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import me.jellysquid.mods.sodium.client.world.cloned.palette.ClonedPalette;
 import me.jellysquid.mods.sodium.client.world.cloned.palette.ClonedPaletteFallback;
@@ -23,72 +25,147 @@ import net.minecraft.world.chunk.NibbleArray;
 
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
-
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An immutable snapshot of a chunk section's block states, block entities, light data and biomes, which can be shared
+ * between any number of world slices.
+ *
+ * Each snapshot remembers the section it was copied from along with the section's modification count at that time.
+ * This allows the snapshot to be re-used for as long as the section hasn't been modified, without needing to be
+ * notified of changes. The light data arrays are replaced by the light engine when they are modified instead of being
+ * changed in-place, so they are compared by identity.
+ *
+ * Since a snapshot is replaced whenever its blocks or light change, it also holds the packed light data computed for
+ * its blocks by chunk builders, which is shared by the rebuilds of all neighboring chunks.
+ */
 public class ClonedChunkSection {
     private static final LightType[] LIGHT_TYPES = LightType.values();
     private static final ChunkSection EMPTY_SECTION = new ChunkSection(0);
 
+    private static final int BLOCK_COUNT = 16 * 16 * 16;
+
+    // The bytes retained by the packed light data once it has been allocated
+    static final int PACKED_LIGHT_DATA_BYTES = BLOCK_COUNT * Long.BYTES;
+
+    private static final AtomicLong NEXT_BLOCK_DATA_ID = new AtomicLong(1L);
+
     private final AtomicInteger referenceCount = new AtomicInteger(0);
     private final ClonedChunkSectionCache backingCache;
 
-    private final Long2ObjectOpenHashMap<TileEntity> blockEntities;
+    private final SectionPos pos;
+
+    // The chunk and section which this snapshot was copied from, and the section's modification count at that time
+    private final Chunk sourceChunk;
+    private final ChunkSection sourceSection;
+    private final int sourceModificationCount;
+
+    // Identifies the copy of the block data held by this snapshot, which is shared with snapshots that only refresh the
+    // light data
+    private final long blockDataId;
+
+    private final Long2ObjectMap<TileEntity> blockEntities;
     private final NibbleArray[] lightDataArrays;
-    private final World world;
 
-    private SectionPos pos;
+    private final BitArray blockStateData;
+    private final ClonedPalette<BlockState> blockStatePalette;
+
+    private final BiomeContainer biomeData;
+
+    // The block state of every block in the section, or null if the section contains more than one block state
+    private final BlockState uniformBlockState;
 
-    private BitArray blockStateData;
-    private ClonedPalette<BlockState> blockStatePalette;
+    // The approximate number of bytes retained by this snapshot which aren't shared with the world, not including the
+    // packed light data
+    private final int copiedBytes;
 
-    private BiomeContainer biomeData;
+    // The packed light data of each block, which is allocated through the backing cache the first time a chunk builder
+    // needs it
+    private volatile AtomicLongArray packedLightData;
 
-    ClonedChunkSection(ClonedChunkSectionCache backingCache, World world) {
+    private ClonedChunkSection(ClonedChunkSectionCache backingCache, SectionPos pos, Chunk sourceChunk,
+                               ChunkSection sourceSection, int sourceModificationCount, long blockDataId,
+                               Long2ObjectMap<TileEntity> blockEntities, NibbleArray[] lightDataArrays,
+                               BitArray blockStateData, ClonedPalette<BlockState> blockStatePalette,
+                               BlockState uniformBlockState, BiomeContainer biomeData) {
         this.backingCache = backingCache;
-        this.world = world;
-        this.blockEntities = new Long2ObjectOpenHashMap<>(8);
-        this.lightDataArrays = new NibbleArray[LIGHT_TYPES.length];
+        this.pos = pos;
+        this.sourceChunk = sourceChunk;
+        this.sourceSection = sourceSection;
+        this.sourceModificationCount = sourceModificationCount;
+        this.blockDataId = blockDataId;
+        this.blockEntities = blockEntities;
+        this.lightDataArrays = lightDataArrays;
+        this.blockStateData = blockStateData;
+        this.blockStatePalette = blockStatePalette;
+        this.uniformBlockState = uniformBlockState;
+        this.biomeData = biomeData;
+        this.copiedBytes = estimateCopiedBytes(blockStateData, blockStatePalette, blockEntities);
     }
 
-    public void init(SectionPos pos) {
+    /**
+     * Copies the current state of the section at the given position into a new snapshot.
+     */
+    static ClonedChunkSection create(ClonedChunkSectionCache backingCache, World world, SectionPos pos) {
         Chunk chunk = world.getChunk(pos.getX(), pos.getZ());
 
         if (chunk == null) {
             throw new RuntimeException("Couldn't retrieve chunk at " + pos.chunk());
         }
 
-        ChunkSection section = getChunkSection(chunk, pos);
+        ChunkSection source = getChunkSection(chunk, pos);
+        ChunkSection section = ChunkSection.isEmpty(source) ? EMPTY_SECTION : source;
 
-        if (ChunkSection.isEmpty(section)) {
-            section = EMPTY_SECTION;
-        }
+        PalettedContainerExtended<BlockState> container = PalettedContainerExtended.cast(section.getStates());
 
-        this.pos = pos;
+        BitArray blockData = copyBlockData(container);
+        ClonedPalette<BlockState> palette = copyPalette(container);
 
-        PalettedContainerExtended<BlockState> container = PalettedContainerExtended.cast(section.getStates());;
+        return new ClonedChunkSection(backingCache, pos, chunk, source, getModificationCount(source),
+                NEXT_BLOCK_DATA_ID.getAndIncrement(), copyBlockEntities(chunk, pos), getLightDataArrays(world, pos),
+                blockData, palette, findUniformBlockState(blockData, palette), chunk.getBiomes());
+    }
 
-        this.blockStateData = copyBlockData(container);
-        this.blockStatePalette = copyPalette(container);
+    /**
+     * Creates a snapshot which shares the block data of this snapshot, but with the current light data of the world.
+     */
+    ClonedChunkSection withCurrentLightData(World world) {
+        return new ClonedChunkSection(this.backingCache, this.pos, this.sourceChunk, this.sourceSection,
+                this.sourceModificationCount, this.blockDataId, this.blockEntities, getLightDataArrays(world, this.pos),
+                this.blockStateData, this.blockStatePalette, this.uniformBlockState, this.biomeData);
+    }
 
-        for (LightType type : LIGHT_TYPES) {
-            this.lightDataArrays[type.ordinal()] = world.getLightEngine()
-                    .getLayerListener(type)
-                    .getDataLayerData(pos);
-        }
+    /**
+     * @return True if the blocks of the section haven't been modified since this snapshot was taken
+     */
+    boolean isBlockDataCurrent(World world) {
+        Chunk chunk = world.getChunk(this.pos.getX(), this.pos.getZ());
 
-        this.biomeData = chunk.getBiomes();
+        if (chunk != this.sourceChunk) {
+            return false;
+        }
 
-        MutableBoundingBox box = new MutableBoundingBox(pos.minBlockX(), pos.minBlockY(), pos.minBlockZ(),
-                pos.maxBlockX(), pos.maxBlockY(), pos.maxBlockZ());
+        ChunkSection section = getChunkSection(chunk, this.pos);
 
-        this.blockEntities.clear();
+        return section == this.sourceSection && getModificationCount(section) == this.sourceModificationCount;
+    }
 
-        for (Map.Entry<BlockPos, TileEntity> entry : chunk.getBlockEntities().entrySet()) {
-            BlockPos entityPos = entry.getKey();
+    /**
+     * @return True if the light data of this snapshot is the same as the light data currently held by the world
+     */
+    boolean isLightDataCurrent(World world) {
+        for (LightType type : LIGHT_TYPES) {
+            NibbleArray array = world.getLightEngine()
+                    .getLayerListener(type)
+                    .getDataLayerData(this.pos);
 
-            if (box.isInside(entityPos)) {
-                this.blockEntities.put(BlockPos.asLong(entityPos.getX() & 15, entityPos.getY() & 15, entityPos.getZ() & 15), entry.getValue());
+            if (array != this.lightDataArrays[type.ordinal()]) {
+                return false;
             }
         }
+
+        return true;
     }
 
     public BlockState getBlockState(int x, int y, int z) {
@@ -113,6 +190,13 @@ public class ClonedChunkSection {
         return this.blockEntities.get(BlockPos.asLong(x, y, z));
     }
 
+    /**
+     * @return The block state of every block in the section, or null if the section contains more than one block state
+     */
+    public BlockState getUniformBlockState() {
+        return this.uniformBlockState;
+    }
+
     public BitArray getBlockData() {
         return this.blockStateData;
     }
@@ -125,6 +209,156 @@ public class ClonedChunkSection {
         return this.pos;
     }
 
+    /**
+     * @return The approximate number of bytes of memory which are kept alive by this snapshot. Light data and block
+     *         entities are shared with the world, so only the references to them are counted.
+     */
+    /**
+     * Returns an identifier for the block data of this snapshot, which is never zero. Snapshots with the same identifier
+     * contain the same blocks, though snapshots with different identifiers may do so as well.
+     */
+    public long getBlockDataId() {
+        return this.blockDataId;
+    }
+
+    /**
+     * @return The approximate number of bytes retained by this snapshot, including the packed light data only if it has
+     * been allocated
+     */
+    public int getRetainedBytes() {
+        return this.packedLightData == null ? this.copiedBytes : this.copiedBytes + PACKED_LIGHT_DATA_BYTES;
+    }
+
+    /**
+     * Returns the light data of each block in this snapshot, as packed by
+     * {@link me.jellysquid.mods.sodium.client.model.light.data.LightDataAccess}. The light data is computed lazily by
+     * the chunk builders, so entries are zero until they have been computed. As both the blocks and the light of a
+     * snapshot never change, every chunk builder will compute the same value for an entry.
+     *
+     * @return The packed light data of each block, indexed by {@code y << 8 | z << 4 | x}
+     */
+    public AtomicLongArray getPackedLightData() {
+        AtomicLongArray data = this.packedLightData;
+
+        if (data == null) {
+            // The cache needs to account for the allocation, so it has to happen while holding the cache's lock
+            this.backingCache.allocatePackedLightData(this);
+            data = this.packedLightData;
+        }
+
+        return data;
+    }
+
+    /**
+     * Allocates the packed light data if that hasn't happened yet. This must only be called by the backing cache while
+     * holding its lock.
+     * @return True if the data was allocated by this call
+     */
+    boolean allocatePackedLightData() {
+        if (this.packedLightData != null) {
+            return false;
+        }
+
+        this.packedLightData = new AtomicLongArray(BLOCK_COUNT);
+
+        return true;
+    }
+
+    private static int estimateCopiedBytes(BitArray blockStateData, ClonedPalette<BlockState> blockStatePalette,
+                                             Long2ObjectMap<TileEntity> blockEntities) {
+        // Object headers and the fields of this snapshot
+        int bytes = 128;
+
+        bytes += blockStateData.getRaw().length * Long.BYTES;
+
+        if (blockStatePalette instanceof ClonedPalleteArray) {
+            bytes += ((ClonedPalleteArray<BlockState>) blockStatePalette).size() * Integer.BYTES;
+        }
+
+        // Each entry of the hash map holds a key and a reference
+        bytes += blockEntities.size() * (Long.BYTES + Integer.BYTES) * 2;
+
+        return bytes;
+    }
+
+    private static int getModificationCount(ChunkSection section) {
+        return section == null ? 0 : PalettedContainerExtended.cast(section.getStates()).getModificationCount();
+    }
+
+    private static NibbleArray[] getLightDataArrays(World world, SectionPos pos) {
+        NibbleArray[] arrays = new NibbleArray[LIGHT_TYPES.length];
+
+        for (LightType type : LIGHT_TYPES) {
+            arrays[type.ordinal()] = world.getLightEngine()
+                    .getLayerListener(type)
+                    .getDataLayerData(pos);
+        }
+
+        return arrays;
+    }
+
+    private static Long2ObjectMap<TileEntity> copyBlockEntities(Chunk chunk, SectionPos pos) {
+        Map<BlockPos, TileEntity> chunkBlockEntities = chunk.getBlockEntities();
+
+        if (chunkBlockEntities.isEmpty()) {
+            return Long2ObjectMaps.emptyMap();
+        }
+
+        MutableBoundingBox box = new MutableBoundingBox(pos.minBlockX(), pos.minBlockY(), pos.minBlockZ(),
+                pos.maxBlockX(), pos.maxBlockY(), pos.maxBlockZ());
+
+        Long2ObjectOpenHashMap<TileEntity> blockEntities = new Long2ObjectOpenHashMap<>(8);
+
+        for (Map.Entry<BlockPos, TileEntity> entry : chunkBlockEntities.entrySet()) {
+            BlockPos entityPos = entry.getKey();
+
+            if (box.isInside(entityPos)) {
+                blockEntities.put(BlockPos.asLong(entityPos.getX() & 15, entityPos.getY() & 15, entityPos.getZ() & 15), entry.getValue());
+            }
+        }
+
+        return blockEntities;
+    }
+
+    /**
+     * Checks whether every entry of the block data refers to the same palette entry. Entries never span multiple words
+     * of the packed array, so a uniform array consists of identical words, apart from the unused bits of the last word.
+     */
+    private static BlockState findUniformBlockState(BitArray blockData, ClonedPalette<BlockState> palette) {
+        long[] words = blockData.getRaw();
+        int bits = blockData.getBits();
+
+        if (words.length == 0) {
+            return null;
+        }
+
+        int id = blockData.get(0);
+        int valuesPerWord = Long.SIZE / bits;
+
+        long pattern = 0L;
+
+        for (int i = 0; i < valuesPerWord; i++) {
+            pattern |= (long) id << (i * bits);
+        }
+
+        int last = words.length - 1;
+
+        for (int i = 0; i < last; i++) {
+            if (words[i] != pattern) {
+                return null;
+            }
+        }
+
+        int remainingBits = (blockData.getSize() - (last * valuesPerWord)) * bits;
+        long mask = remainingBits >= Long.SIZE ? -1L : (1L << remainingBits) - 1L;
+
+        if ((words[last] & mask) != (pattern & mask)) {
+            return null;
+        }
+
+        return palette.get(id);
+    }
+
     private static ClonedPalette<BlockState> copyPalette(PalettedContainerExtended<BlockState> container) {
         IPalette<BlockState> palette = container.getPalette();
 
@@ -163,14 +397,27 @@ public class ClonedChunkSection {
         return section;
     }
 
-    public void acquireReference() {
-        this.referenceCount.incrementAndGet();
+    /**
+     * @return True if this is the only reference to the snapshot
+     */
+    public boolean acquireReference() {
+        return this.referenceCount.incrementAndGet() == 1;
     }
 
+    /**
+     * @return True if no references to the snapshot remain
+     */
     public boolean releaseReference() {
         return this.referenceCount.decrementAndGet() <= 0;
     }
 
+    /**
+     * @return True if any world slice is still holding a reference to this snapshot
+     */
+    public boolean isInUse() {
+        return this.referenceCount.get() > 0;
+    }
+
     public ClonedChunkSectionCache getBackingCache() {
         return this.backingCache;
     }
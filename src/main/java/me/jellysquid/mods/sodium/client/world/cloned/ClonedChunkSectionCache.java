@@ -1,71 +1,141 @@
 package me.jellysquid.mods.sodium.client.world.cloned;
 
+import it.unimi.dsi.fastutil.longs.Long2ReferenceLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ReferenceMap;
-import it.unimi.dsi.fastutil.longs.Long2ReferenceOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import net.minecraft.util.math.SectionPos;
 import net.minecraft.world.World;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
-
+/**
+ * Holds the most recent snapshot of each chunk section, so that sections which haven't changed can be shared between
+ * world slices instead of being copied again for every rebuild. A snapshot is only replaced once the section it was
+ * copied from has been modified. If only the light data of a section has changed, the new snapshot shares the block
+ * data of the previous one.
+ *
+ * The cache is bounded by the approximate number of bytes retained by its snapshots. Once the limit is exceeded, the
+ * least recently acquired snapshots are evicted first. Snapshots which are still in use by a world slice are skipped
+ * over, as they are about to be used again by neighboring rebuilds anyways. Evicting a snapshot only removes it from
+ * the cache, so any slices holding onto it can continue to use it. As in-use snapshots can't be evicted, the cache only
+ * exceeds its limit by the bytes of the snapshots which are in use.
+ *
+ * Sections are acquired on the main thread, but may be released by worker threads, so all access is synchronized.
+ */
 public class ClonedChunkSectionCache {
+    private static final long BYTES_PER_MIB = 1024L * 1024L;
+
     private final World world;
 
-    private final ConcurrentLinkedQueue<ClonedChunkSection> inactivePool = new ConcurrentLinkedQueue<>();
-    private final Long2ReferenceMap<ClonedChunkSection> byPosition = new Long2ReferenceOpenHashMap<>();
+    // Ordered from the least to the most recently acquired snapshot
+    private final Long2ReferenceLinkedOpenHashMap<ClonedChunkSection> byPosition = new Long2ReferenceLinkedOpenHashMap<>();
+
+    private final long maxRetainedBytes;
+    private long retainedBytes;
+
+    // The bytes retained by the snapshots in the cache which are currently in use, and so can't be evicted
+    private long pinnedBytes;
+
+    private long hits, lightRefreshes, misses, evictions;
 
     public ClonedChunkSectionCache(World world) {
         this.world = world;
+        this.maxRetainedBytes = Math.max(1, SodiumClientMod.options().advanced.sectionCacheSizeMiB) * BYTES_PER_MIB;
     }
 
-    public ClonedChunkSection acquire(int x, int y, int z) {
+    public synchronized ClonedChunkSection acquire(int x, int y, int z) {
         long key = SectionPos.asLong(x, y, z);
-        ClonedChunkSection section = this.byPosition.get(key);
-
-        if (section != null) {
-            this.inactivePool.remove(section);
+        ClonedChunkSection section = this.byPosition.getAndMoveToLast(key);
+
+        if (section != null && section.isBlockDataCurrent(this.world)) {
+            if (section.isLightDataCurrent(this.world)) {
+                this.hits++;
+            } else {
+                // Other slices may still be using the previous snapshot, so it can't be modified
+                section = this.replace(key, section, section.withCurrentLightData(this.world));
+                this.lightRefreshes++;
+            }
         } else {
-            section = this.createSection(x, y, z);
+            section = this.replace(key, section, ClonedChunkSection.create(this, this.world, SectionPos.of(x, y, z)));
+            this.misses++;
         }
 
-        section.acquireReference();
+        if (section.acquireReference()) {
+            this.pinnedBytes += section.getRetainedBytes();
+        }
+
+        this.evict();
 
         return section;
     }
 
-    private ClonedChunkSection createSection(int x, int y, int z) {
-        ClonedChunkSection section;
-
-        if (!this.inactivePool.isEmpty()) {
-            section = this.inactivePool.remove();
+    private ClonedChunkSection replace(long key, ClonedChunkSection prev, ClonedChunkSection section) {
+        if (prev != null) {
+            this.retainedBytes -= prev.getRetainedBytes();
 
-            this.byPosition.remove(section.getPosition().asLong());
-        } else {
-            section = this.allocate();
+            // Slices using the previous snapshot keep it alive, but it no longer counts towards the cache
+            if (prev.isInUse()) {
+                this.pinnedBytes -= prev.getRetainedBytes();
+            }
         }
 
-        SectionPos pos = SectionPos.of(x, y, z);
-        section.init(pos);
-
-        this.byPosition.put(pos.asLong(), section);
+        this.byPosition.putAndMoveToLast(key, section);
+        this.retainedBytes += section.getRetainedBytes();
 
         return section;
     }
 
-    public void invalidate(int x, int y, int z) {
-        this.byPosition.remove(SectionPos.asLong(x, y, z));
+    /**
+     * Evicts the least recently acquired snapshots which aren't in use until the cache is within its size limit. Snapshots
+     * which are in use keep their place, and the search stops as soon as the remaining bytes are all in use, so this
+     * never walks over the cache more than once.
+     */
+    private void evict() {
+        ObjectIterator<Long2ReferenceMap.Entry<ClonedChunkSection>> it = this.byPosition.long2ReferenceEntrySet()
+                .fastIterator();
+
+        while (this.retainedBytes > this.maxRetainedBytes && this.retainedBytes > this.pinnedBytes && it.hasNext()) {
+            ClonedChunkSection section = it.next().getValue();
+
+            if (section.isInUse()) {
+                continue;
+            }
+
+            it.remove();
+
+            this.retainedBytes -= section.getRetainedBytes();
+            this.evictions++;
+        }
     }
 
-    public void release(ClonedChunkSection section) {
-        if (section.releaseReference()) {
-            this.tryReclaim(section);
+    /**
+     * Allocates the packed light data of a snapshot, which was acquired from this cache, and adds it to the bytes
+     * retained by the cache if the snapshot is still cached.
+     */
+    synchronized void allocatePackedLightData(ClonedChunkSection section) {
+        if (!section.allocatePackedLightData() || this.byPosition.get(section.getPosition().asLong()) != section) {
+            return;
+        }
+
+        this.retainedBytes += ClonedChunkSection.PACKED_LIGHT_DATA_BYTES;
+
+        if (section.isInUse()) {
+            this.pinnedBytes += ClonedChunkSection.PACKED_LIGHT_DATA_BYTES;
         }
     }
 
-    private ClonedChunkSection allocate() {
-        return new ClonedChunkSection(this, this.world);
+    public synchronized void release(ClonedChunkSection section) {
+        if (section.releaseReference() && this.byPosition.get(section.getPosition().asLong()) == section) {
+            this.pinnedBytes -= section.getRetainedBytes();
+        }
     }
 
-    private void tryReclaim(ClonedChunkSection section) {
-        this.inactivePool.add(section);
+    public synchronized String getDebugString() {
+        long total = this.hits + this.lightRefreshes + this.misses;
+
+        return String.format("Section Cache: %s/%s hits, %s light-only (%.1f%%), %s/%s MiB (%s MiB in use), %s evicted",
+                this.hits, total, this.lightRefreshes,
+                total == 0 ? 0.0D : (this.hits + this.lightRefreshes) * 100.0D / total,
+                this.retainedBytes / BYTES_PER_MIB, this.maxRetainedBytes / BYTES_PER_MIB,
+                this.pinnedBytes / BYTES_PER_MIB, this.evictions);
     }
 }
@@ -17,4 +17,9 @@ public interface PalettedContainerExtended<T> {
     T getDefaultValue();
 
     int getPaletteSize();
+
+    /**
+     * @return A counter which is incremented whenever the contents of the container are modified
+     */
+    int getModificationCount();
 }
@@ -19,4 +19,11 @@ public class ClonedPalleteArray<K> implements ClonedPalette<K> {
 
         return value;
     }
+
+    /**
+     * @return The number of entries in the palette's array, including any unused entries
+     */
+    public int size() {
+        return this.array.length;
+    }
 }
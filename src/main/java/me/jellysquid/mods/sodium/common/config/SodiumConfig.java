@@ -5,7 +5,9 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -23,6 +25,7 @@ public class SodiumConfig {
     private static final String DISABLE_LITHIUM_OPTION_TRIMMED = "mixin.ai=";
 
     private final Map<String, Option> options = new HashMap<>();
+    private final Map<String, List<String>> dependencies = new HashMap<>();
 
     private SodiumConfig() {
         // Defines the default rules which can be configured by the user or other mods.
@@ -50,6 +53,7 @@ public class SodiumConfig {
         this.addMixinRule("cached_hashcode", true);
 
         this.addMixinRule("chunk", true);
+        this.addMixinRule("chunk.collision_bitmaps", true);
         this.addMixinRule("chunk.count_oversized_blocks", true);
         this.addMixinRule("chunk.entity_class_groups", true);
         this.addMixinRule("chunk.no_locking", true);
@@ -67,8 +71,10 @@ public class SodiumConfig {
         this.addMixinRule("entity.fast_suffocation_check", true);
         this.addMixinRule("entity.gravity_check_block_below", true);
         this.addMixinRule("entity.inactive_navigations", true);
+        this.addMixinRule("entity.parallel_ticking", false);
         this.addMixinRule("entity.replace_entitytype_predicates", true);
         this.addMixinRule("entity.skip_fire_check", true);
+        this.addMixinRule("entity.spatial_index", false);
         this.addMixinRule("entity.stream_entity_collisions_lazily", true);
 
         this.addMixinRule("gen", true);
@@ -131,6 +137,10 @@ public class SodiumConfig {
         this.addMixinRule("features.render_layer", true);
         this.addMixinRule("features.texture_tracking", true);
         this.addMixinRule("features.world_ticking", true);
+
+        // Entity island workers look up chunks through the snapshot in ServerChunkManagerMixin. Without it, they would
+        // wait for the server thread to load the chunk while the server thread waits for them to finish.
+        this.addRuleDependency("entity.parallel_ticking", "world.chunk_access");
     }
 
     /**
@@ -147,6 +157,21 @@ public class SodiumConfig {
         }
     }
 
+    /**
+     * Defines that a Mixin rule can only be enabled while another rule is, as its mixins rely on those of the other rule.
+     * @throws IllegalStateException If either rule has not been defined
+     * @param mixin The name of the mixin package which depends on the other rule
+     * @param dependency The name of the mixin package which must be enabled for the first rule to be enabled
+     */
+    private void addRuleDependency(String mixin, String dependency) {
+        if (!this.options.containsKey(getMixinRuleName(mixin)) || !this.options.containsKey(getMixinRuleName(dependency))) {
+            throw new IllegalStateException("Mixin rule dependency between undefined rules: " + mixin + " -> " + dependency);
+        }
+
+        this.dependencies.computeIfAbsent(mixin, key -> new ArrayList<>())
+                .add(dependency);
+    }
+
     private void readProperties(Properties props) {
         for (Map.Entry<Object, Object> entry : props.entrySet()) {
             String key = (String) entry.getKey();
@@ -220,6 +245,47 @@ public class SodiumConfig {
 //        }
     }
 
+    /**
+     * Disables every rule which depends on another rule that has been disabled, either directly or through one of the
+     * packages containing it. This runs until nothing changes, so that rules depending on those are disabled as well.
+     */
+    private void applyDependencies() {
+        boolean changed;
+
+        do {
+            changed = false;
+
+            for (Map.Entry<String, List<String>> entry : this.dependencies.entrySet()) {
+                String mixin = entry.getKey();
+
+                if (!this.isMixinRuleEnabled(mixin)) {
+                    continue;
+                }
+
+                for (String dependency : entry.getValue()) {
+                    if (!this.isMixinRuleEnabled(dependency)) {
+                        Option option = this.options.get(getMixinRuleName(mixin));
+
+                        LOGGER.warn("Option '{}' requires option '{}' to be enabled, disabling it", option.getName(),
+                                getMixinRuleName(dependency));
+
+                        option.setEnabled(false, option.isUserDefined());
+
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        } while (changed);
+    }
+
+    private boolean isMixinRuleEnabled(String mixin) {
+        // The trailing separator makes the rule itself the last one checked
+        Option option = this.getEffectiveOptionForMixin(mixin + ".");
+
+        return option != null && option.isEnabled();
+    }
+
     /**
      * Returns the effective option for the specified class name. This traverses the package path of the given mixin
      * and checks each root for configuration rules. If a configuration rule disables a package, all mixins located in
@@ -300,6 +366,7 @@ public class SodiumConfig {
         SodiumConfig config = new SodiumConfig();
         config.readProperties(props);
         config.applyModOverrides();
+        config.applyDependencies();
 
         return config;
     }
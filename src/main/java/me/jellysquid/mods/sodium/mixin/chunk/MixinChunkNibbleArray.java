@@ -1,20 +1,63 @@
 package me.jellysquid.mods.sodium.mixin.chunk;
 
 import me.jellysquid.mods.phosphor.common.chunk.light.IReadonly;
+import me.jellysquid.mods.phosphor.common.chunk.light.UniformNibbleArrayAccess;
 import net.minecraft.world.chunk.NibbleArray;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Overwrite;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.Arrays;
 
 /**
  * An optimized implementation of ChunkNibbleArray which uses bit-banging instead of a conditional to select
  * the right bit index of a nibble.
+ *
+ * Vanilla already leaves the data array unallocated until a non-zero value is written. This extends that to arrays in
+ * which every value is the same, such as the sky light of open air (all 15) or of solid stone (all 0). Arrays copied
+ * from saved chunks or light packets are checked for a single value and drop their data array if they have one. The
+ * data array is only allocated again once a different value is written, so unmodified sections stay compact, even
+ * while the light storage shares them between its double-buffered maps. Read-only arrays which are created from a
+ * uniform array inherit its value directly, rather than copying its data.
  */
 @Mixin(NibbleArray.class)
-public abstract class MixinChunkNibbleArray implements IReadonly {
+public abstract class MixinChunkNibbleArray implements IReadonly, UniformNibbleArrayAccess {
+    private static final int DATA_LENGTH = 2048;
+
     @Shadow
     protected byte[] data;
 
+    // The value of every nibble while the data array is unallocated
+    @Unique
+    private byte uniformValue;
+
+    @Inject(method = "<init>([B)V", at = @At("RETURN"))
+    private void init(byte[] data, CallbackInfo ci) {
+        // Subclasses may interpret the data array differently, so only plain arrays are made uniform
+        if ((Object) this.getClass() != NibbleArray.class || data.length != DATA_LENGTH) {
+            return;
+        }
+
+        byte packed = data[0];
+
+        if ((packed & 15) != ((packed >>> 4) & 15)) {
+            return;
+        }
+
+        for (int i = 1; i < DATA_LENGTH; i++) {
+            if (data[i] != packed) {
+                return;
+            }
+        }
+
+        this.uniformValue = (byte) (packed & 15);
+        this.data = null;
+    }
+
     /**
      * @reason Avoid an additional branch.
      * @author JellySquid
@@ -24,7 +67,7 @@ public abstract class MixinChunkNibbleArray implements IReadonly {
         byte[] arr = this.data;
 
         if (arr == null) {
-            return 0;
+            return this.uniformValue;
         }
 
         int byteIdx = idx >> 1;
@@ -46,7 +89,11 @@ public abstract class MixinChunkNibbleArray implements IReadonly {
         byte[] arr = this.data;
 
         if (arr == null) {
-            this.data = (arr = new byte[2048]);
+            if ((value & 15) == this.uniformValue) {
+                return;
+            }
+
+            this.data = (arr = this.createUniformData());
         }
 
         int byteIdx = idx >> 1;
@@ -56,8 +103,75 @@ public abstract class MixinChunkNibbleArray implements IReadonly {
                 | ((value & 15) << shift));
     }
 
+    /**
+     * Callers may write into the returned array of a new array to initialize it, so arrays of zeroes still allocate
+     * their data array as in vanilla. Arrays with another uniform value only exist after being copied from saved or
+     * received data and are only read from, so they return a filled copy instead of giving up their compact form.
+     *
+     * @reason Keep uniform arrays compact while they are serialized
+     * @author JellySquid
+     */
+    @Overwrite
+    public byte[] getData() {
+        if (this.data == null) {
+            if (this.uniformValue == 0) {
+                this.data = new byte[DATA_LENGTH];
+            } else {
+                return this.createUniformData();
+            }
+        }
+
+        return this.data;
+    }
+
+    /**
+     * @reason Keep copies of uniform arrays uniform
+     * @author JellySquid
+     */
+    @Overwrite
+    public NibbleArray copy() {
+        if (this.data == null) {
+            NibbleArray copy = new NibbleArray();
+            ((MixinChunkNibbleArray) (Object) copy).uniformValue = this.uniformValue;
+
+            return copy;
+        }
+
+        return new NibbleArray(this.data.clone());
+    }
+
+    /**
+     * @reason Uniform arrays are only empty if their value is zero
+     * @author JellySquid
+     */
+    @Overwrite
+    public boolean isEmpty() {
+        return this.data == null && this.uniformValue == 0;
+    }
+
+    @Unique
+    private byte[] createUniformData() {
+        byte[] arr = new byte[DATA_LENGTH];
+
+        if (this.uniformValue != 0) {
+            Arrays.fill(arr, (byte) (this.uniformValue | (this.uniformValue << 4)));
+        }
+
+        return arr;
+    }
+
     @Override
     public boolean isReadonly() {
         return false;
     }
+
+    @Override
+    public boolean isUniform() {
+        return this.data == null;
+    }
+
+    @Override
+    public int getUniformValue() {
+        return this.uniformValue;
+    }
 }
@@ -0,0 +1,11 @@
+package me.jellysquid.mods.sodium.mixin.chunk.collision_bitmaps;
+
+import net.minecraft.block.AbstractBlock;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+@Mixin(AbstractBlock.class)
+public interface AbstractBlockAccessor {
+    @Accessor("hasCollision")
+    boolean getHasCollision();
+}
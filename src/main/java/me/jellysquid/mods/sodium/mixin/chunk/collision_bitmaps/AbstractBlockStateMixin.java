@@ -0,0 +1,36 @@
+package me.jellysquid.mods.sodium.mixin.chunk.collision_bitmaps;
+
+import me.jellysquid.mods.lithium.common.entity.movement.SectionCollisionBitmap;
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+
+@Mixin(AbstractBlock.AbstractBlockState.class)
+public abstract class AbstractBlockStateMixin implements SectionCollisionBitmap.CollisionTypeHolder {
+    @Shadow
+    protected abstract BlockState asState();
+
+    @Shadow
+    public abstract Block getBlock();
+
+    // The collision type plus one, or zero if it hasn't been computed yet
+    @Unique
+    private byte collisionType;
+
+    @Override
+    public int getCollisionType() {
+        int type = this.collisionType - 1;
+
+        if (type < 0) {
+            // Computing the type more than once on different threads is harmless, as the result is always the same
+            type = SectionCollisionBitmap.computeCollisionType(this.asState(), ((AbstractBlockAccessor) this.getBlock()).getHasCollision());
+
+            this.collisionType = (byte) (type + 1);
+        }
+
+        return type;
+    }
+}
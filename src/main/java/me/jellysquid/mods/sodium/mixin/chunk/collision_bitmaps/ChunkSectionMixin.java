@@ -0,0 +1,79 @@
+package me.jellysquid.mods.sodium.mixin.chunk.collision_bitmaps;
+
+import me.jellysquid.mods.lithium.common.entity.movement.SectionCollisionBitmap;
+import net.minecraft.block.BlockState;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.palette.PalettedContainer;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Keeps the collision bit-fields of a chunk section up to date with its blocks. The bit-fields are only built once a
+ * collision test first reaches the section, and are then updated along with every block change.
+ */
+@Mixin(ChunkSection.class)
+public class ChunkSectionMixin implements SectionCollisionBitmap.Provider {
+    @Shadow
+    @Final
+    private PalettedContainer<BlockState> states;
+
+    // Volatile as entities ticked in parallel may build the bit-fields off the server thread
+    @Unique
+    private volatile SectionCollisionBitmap collisionBitmap;
+
+    @Inject(method = "setBlockState(IIILnet/minecraft/block/BlockState;Z)Lnet/minecraft/block/BlockState;", at = @At("RETURN"))
+    private void updateCollisionBitmap(int x, int y, int z, BlockState state, boolean lock, CallbackInfoReturnable<BlockState> cir) {
+        if (this.collisionBitmap != null) {
+            this.collisionBitmap.set(x, y, z, state);
+        }
+    }
+
+    /**
+     * The block counts are only recalculated after the block states were replaced as a whole, so the bit-fields need to
+     * be rebuilt as well.
+     */
+    @Inject(method = "recalcBlockCounts", at = @At("HEAD"))
+    private void invalidateCollisionBitmap(CallbackInfo ci) {
+        this.collisionBitmap = null;
+    }
+
+    /**
+     * Client worlds replace the block states of a section when it is read from a packet, which vanilla doesn't follow up
+     * with recalculating the block counts.
+     */
+    @OnlyIn(Dist.CLIENT)
+    @Inject(method = "read", at = @At("RETURN"), require = 0)
+    private void invalidateCollisionBitmapAfterRead(PacketBuffer buf, CallbackInfo ci) {
+        this.collisionBitmap = null;
+    }
+
+    @Override
+    public SectionCollisionBitmap getCollisionBitmap() {
+        SectionCollisionBitmap bitmap = this.collisionBitmap;
+
+        if (bitmap == null) {
+            bitmap = new SectionCollisionBitmap();
+
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        bitmap.set(x, y, z, this.states.get(x, y, z));
+                    }
+                }
+            }
+
+            this.collisionBitmap = bitmap;
+        }
+
+        return bitmap;
+    }
+}
@@ -0,0 +1,17 @@
+package me.jellysquid.mods.sodium.mixin.entity.parallel_ticking;
+
+import me.jellysquid.mods.lithium.common.entity.parallel.EntityExtended;
+import net.minecraft.entity.Entity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+@Mixin(Entity.class)
+public class EntityMixin implements EntityExtended {
+    @Shadow
+    protected boolean isInsidePortal;
+
+    @Override
+    public boolean isInsidePortal() {
+        return this.isInsidePortal;
+    }
+}
@@ -0,0 +1,17 @@
+package me.jellysquid.mods.sodium.mixin.entity.parallel_ticking;
+
+import me.jellysquid.mods.lithium.common.entity.parallel.ItemEntityExtended;
+import net.minecraft.entity.item.ItemEntity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+@Mixin(ItemEntity.class)
+public class ItemEntityMixin implements ItemEntityExtended {
+    @Shadow
+    private int age;
+
+    @Override
+    public int getItemAge() {
+        return this.age;
+    }
+}
@@ -0,0 +1,52 @@
+package me.jellysquid.mods.sodium.mixin.entity.parallel_ticking;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import me.jellysquid.mods.lithium.common.entity.parallel.EntityIslandTicker;
+import net.minecraft.entity.Entity;
+import net.minecraft.world.server.ServerWorld;
+import org.objectweb.asm.Opcodes;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Ticks the isolated entities of the world in parallel right before the serial entity tick loop, which then only
+ * moves these entities between chunks. See {@link EntityIslandTicker} for which entities are ticked this way.
+ */
+@Mixin(ServerWorld.class)
+public abstract class ServerWorldMixin {
+    @Shadow
+    @Final
+    private Int2ObjectMap<Entity> entitiesById;
+
+    @Shadow
+    public abstract void updateChunkPos(Entity entity);
+
+    private EntityIslandTicker islandTicker;
+
+    @Inject(method = "tick", at = @At(value = "FIELD", target = "Lnet/minecraft/world/server/ServerWorld;tickingEntities:Z", opcode = Opcodes.PUTFIELD, ordinal = 0, shift = At.Shift.AFTER))
+    private void tickIslands(BooleanSupplier hasTimeLeft, CallbackInfo ci) {
+        if (this.islandTicker == null) {
+            this.islandTicker = new EntityIslandTicker((ServerWorld) (Object) this);
+        }
+
+        this.islandTicker.tickIslands(this.entitiesById.values());
+    }
+
+    @Redirect(method = "tick", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/server/ServerWorld;guardEntityTick(Ljava/util/function/Consumer;Lnet/minecraft/entity/Entity;)V"))
+    private void guardEntityTick(ServerWorld world, Consumer<Entity> consumer, Entity entity) {
+        if (this.islandTicker.wasTickedInParallel(entity)) {
+            // [VanillaCopy] ServerWorld#tickNonPassenger, the rest of which has already been done
+            this.updateChunkPos(entity);
+        } else {
+            world.guardEntityTick(consumer, entity);
+        }
+    }
+}
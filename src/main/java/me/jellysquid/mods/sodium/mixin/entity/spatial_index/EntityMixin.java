@@ -0,0 +1,61 @@
+package me.jellysquid.mods.sodium.mixin.entity.spatial_index;
+
+import me.jellysquid.mods.lithium.common.entity.index.EntitySpatialIndex;
+import me.jellysquid.mods.lithium.common.entity.index.EntitySpatialIndexProvider;
+import me.jellysquid.mods.lithium.common.entity.index.SpatialIndexedEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.world.World;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(Entity.class)
+public class EntityMixin implements SpatialIndexedEntity {
+    @Shadow
+    public World level;
+
+    @Unique
+    private boolean spatiallyIndexed;
+
+    @Unique
+    private long spatialIndexCell;
+
+    /**
+     * Keep the entity's cell in the spatial index up to date. Every change to an entity's position or size passes
+     * through here.
+     */
+    @Inject(method = "setBoundingBox", at = @At("RETURN"))
+    private void onBoundingBoxChanged(AxisAlignedBB box, CallbackInfo ci) {
+        if (this.spatiallyIndexed) {
+            EntitySpatialIndex index = EntitySpatialIndexProvider.getEntitySpatialIndex(this.level);
+
+            if (index != null) {
+                index.onEntityMoved((Entity) (Object) this);
+            }
+        }
+    }
+
+    @Override
+    public boolean isSpatiallyIndexed() {
+        return this.spatiallyIndexed;
+    }
+
+    @Override
+    public void setSpatiallyIndexed(boolean indexed) {
+        this.spatiallyIndexed = indexed;
+    }
+
+    @Override
+    public long getSpatialIndexCell() {
+        return this.spatialIndexCell;
+    }
+
+    @Override
+    public void setSpatialIndexCell(long cell) {
+        this.spatialIndexCell = cell;
+    }
+}
@@ -0,0 +1,34 @@
+package me.jellysquid.mods.sodium.mixin.entity.spatial_index;
+
+import me.jellysquid.mods.lithium.common.entity.index.EntitySpatialIndex;
+import me.jellysquid.mods.lithium.common.entity.index.EntitySpatialIndexProvider;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.ClassInheritanceMultiMap;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.server.ServerWorld;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ServerWorld.class)
+public class ServerWorldMixin {
+    /**
+     * Entities are not removed from the sections of a chunk when it is unloaded, so they need to be removed from the
+     * spatial index here.
+     */
+    @Inject(method = "unload", at = @At("HEAD"))
+    private void onChunkUnloaded(Chunk chunk, CallbackInfo ci) {
+        EntitySpatialIndex index = EntitySpatialIndexProvider.getEntitySpatialIndex(this);
+
+        if (index == null) {
+            return;
+        }
+
+        for (ClassInheritanceMultiMap<Entity> section : chunk.getEntitySections()) {
+            for (Entity entity : section) {
+                index.onEntityRemoved(entity);
+            }
+        }
+    }
+}
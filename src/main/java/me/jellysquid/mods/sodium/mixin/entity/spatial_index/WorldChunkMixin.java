@@ -0,0 +1,41 @@
+package me.jellysquid.mods.sodium.mixin.entity.spatial_index;
+
+import me.jellysquid.mods.lithium.common.entity.index.EntitySpatialIndex;
+import me.jellysquid.mods.lithium.common.entity.index.EntitySpatialIndexProvider;
+import net.minecraft.entity.Entity;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Adds entities to the spatial index of the world while they are stored in the entity sections of a chunk.
+ */
+@Mixin(Chunk.class)
+public class WorldChunkMixin {
+    @Shadow
+    @Final
+    private World level;
+
+    @Inject(method = "addEntity", at = @At(value = "INVOKE", target = "Lnet/minecraft/util/ClassInheritanceMultiMap;add(Ljava/lang/Object;)Z"))
+    private void onEntityAdded(Entity entity, CallbackInfo ci) {
+        EntitySpatialIndex index = EntitySpatialIndexProvider.getEntitySpatialIndex(this.level);
+
+        if (index != null) {
+            index.onEntityAdded(entity);
+        }
+    }
+
+    @Inject(method = "removeEntity(Lnet/minecraft/entity/Entity;I)V", at = @At(value = "INVOKE", target = "Lnet/minecraft/util/ClassInheritanceMultiMap;remove(Ljava/lang/Object;)Z"))
+    private void onEntityRemoved(Entity entity, int section, CallbackInfo ci) {
+        EntitySpatialIndex index = EntitySpatialIndexProvider.getEntitySpatialIndex(this.level);
+
+        if (index != null) {
+            index.onEntityRemoved(entity);
+        }
+    }
+}
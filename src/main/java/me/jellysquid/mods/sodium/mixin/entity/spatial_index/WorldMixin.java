@@ -0,0 +1,57 @@
+package me.jellysquid.mods.sodium.mixin.entity.spatial_index;
+
+import com.google.common.collect.Lists;
+import me.jellysquid.mods.lithium.common.entity.index.EntitySpatialIndex;
+import me.jellysquid.mods.lithium.common.entity.index.EntitySpatialIndexProvider;
+import net.minecraft.entity.Entity;
+import net.minecraft.profiler.IProfiler;
+import net.minecraft.util.RegistryKey;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.world.DimensionType;
+import net.minecraft.world.World;
+import net.minecraft.world.storage.ISpawnWorldInfo;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Extends server worlds with an {@link EntitySpatialIndex}, which answers the unfiltered entity box queries used for
+ * entity pushing and collisions.
+ */
+@Mixin(World.class)
+public class WorldMixin implements EntitySpatialIndexProvider {
+    private EntitySpatialIndex entitySpatialIndex;
+
+    @Inject(method = "<init>", at = @At("RETURN"))
+    private void init(ISpawnWorldInfo worldInfo, RegistryKey<World> dimension, final DimensionType dimensionType, Supplier<IProfiler> profiler, boolean isRemote, boolean isDebug, long seed, CallbackInfo ci) {
+        if (!isRemote) {
+            this.entitySpatialIndex = new EntitySpatialIndex();
+        }
+    }
+
+    @Inject(method = "getEntities(Lnet/minecraft/entity/Entity;Lnet/minecraft/util/math/AxisAlignedBB;Ljava/util/function/Predicate;)Ljava/util/List;", at = @At("HEAD"), cancellable = true)
+    private void getEntitiesFromIndex(Entity except, AxisAlignedBB box, Predicate<? super Entity> predicate, CallbackInfoReturnable<List<Entity>> cir) {
+        if (this.entitySpatialIndex == null) {
+            return;
+        }
+
+        List<Entity> entities = Lists.newArrayList();
+
+        if (this.entitySpatialIndex.getEntities((World) (Object) this, except, box, predicate, entities)) {
+            ((World) (Object) this).getProfiler().incrementCounter("getEntities");
+
+            cir.setReturnValue(entities);
+        }
+    }
+
+    @Override
+    public EntitySpatialIndex getEntitySpatialIndex() {
+        return this.entitySpatialIndex;
+    }
+}
@@ -1,12 +1,18 @@
 package me.jellysquid.mods.sodium.mixin.features.chunk_rendering;
 
 import me.jellysquid.mods.sodium.client.world.cloned.PalettedContainerExtended;
+import net.minecraft.network.PacketBuffer;
 import net.minecraft.util.BitArray;
 import net.minecraft.util.palette.IPalette;
 import net.minecraft.util.palette.PalettedContainer;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Mixin(PalettedContainer.class)
 public class MixinPalettedContainer<T> implements PalettedContainerExtended<T> {
@@ -23,6 +29,24 @@ public class MixinPalettedContainer<T> implements PalettedContainerExtended<T> {
     @Final
     private T defaultValue;
 
+    @Unique
+    private int modificationCount;
+
+    @Inject(method = "getAndSet(ILjava/lang/Object;)Ljava/lang/Object;", at = @At("HEAD"))
+    private void onGetAndSet(int index, T value, CallbackInfoReturnable<T> cir) {
+        this.modificationCount++;
+    }
+
+    @Inject(method = "set(ILjava/lang/Object;)V", at = @At("HEAD"))
+    private void onSet(int index, T value, CallbackInfo ci) {
+        this.modificationCount++;
+    }
+
+    @Inject(method = "read(Lnet/minecraft/network/PacketBuffer;)V", at = @At("HEAD"))
+    private void onRead(PacketBuffer buf, CallbackInfo ci) {
+        this.modificationCount++;
+    }
+
     @Override
     public BitArray getDataArray() {
         return this.storage;
@@ -42,4 +66,9 @@ public class MixinPalettedContainer<T> implements PalettedContainerExtended<T> {
     public int getPaletteSize() {
         return this.bits;
     }
+
+    @Override
+    public int getModificationCount() {
+        return this.modificationCount;
+    }
 }
@@ -70,6 +70,12 @@ public abstract class MixinDebugHud {
         strings.add("Chunk Renderer: " + backend.getRendererName());
         strings.addAll(backend.getDebugStrings());
 
+        String sectionCache = SodiumWorldRenderer.getInstance().getSectionCacheDebugString();
+
+        if (sectionCache != null) {
+            strings.add(sectionCache);
+        }
+
         return strings;
     }
 
@@ -1,6 +1,7 @@
 package me.jellysquid.mods.sodium.mixin.world.chunk_access;
 
 import com.mojang.datafixers.util.Either;
+import me.jellysquid.mods.lithium.common.entity.parallel.EntityIslandTicker;
 import me.jellysquid.mods.lithium.common.world.chunk.ChunkHolderExtended;
 import net.minecraft.util.Util;
 import net.minecraft.util.math.ChunkPos;
@@ -62,6 +63,11 @@ public abstract class ServerChunkManagerMixin {
     @Shadow
     @Final
     private Thread mainThread;
+
+    @Shadow
+    @Final
+    private ServerWorld level;
+
     private long time;
 
     @Inject(method = "runDistanceManagerUpdates()Z", at = @At("HEAD"))
@@ -111,6 +117,19 @@ public abstract class ServerChunkManagerMixin {
     }
 
     private IChunk getChunkOffThread(int x, int z, ChunkStatus status, boolean create) {
+        EntityIslandTicker ticker = EntityIslandTicker.getWorkerTicker(this.level);
+
+        // Entities ticked in parallel read their chunks from a snapshot, as the server thread is busy waiting for them
+        if (ticker != null) {
+            IChunk chunk = ticker.getSnapshotChunk(x, z);
+
+            if (chunk != null || !create) {
+                return chunk;
+            }
+
+            return ticker.callOnServerThread(() -> this.getChunk(x, z, status, create));
+        }
+
         return CompletableFuture.supplyAsync(() -> this.getChunk(x, z, status, create), this.mainThreadProcessor).join();
     }
 
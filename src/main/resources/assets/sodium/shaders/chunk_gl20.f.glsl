@@ -1,9 +1,18 @@
 #version 110
 
+#ifdef USE_TEXTURE_TILING
+#extension GL_ARB_shader_texture_lod : enable
+#endif
+
 varying vec4 v_Color; // The interpolated vertex color
 varying vec2 v_TexCoord; // The interpolated block texture coordinates
 varying vec2 v_LightCoord; // The interpolated light map texture coordinates
 
+#ifdef USE_TEXTURE_TILING
+varying vec2 v_TileCoord; // The number of times the sprite has been repeated along each axis
+varying vec2 v_SpriteSize; // The size of the sprite, or zero if the texture is not repeated
+#endif
+
 uniform sampler2D u_BlockTex; // The block texture sampler
 uniform sampler2D u_LightTex; // The light map texture sampler
 
@@ -33,8 +42,24 @@ float getFogFactor() {
 #endif
 
 void main() {
+#ifdef USE_TEXTURE_TILING
+    // Wrap around the sprite for quads which repeat it, the offset is always zero for other quads
+    vec2 texCoord = v_TexCoord + (fract(v_TileCoord) * v_SpriteSize);
+
+#ifdef GL_ARB_shader_texture_lod
+    // The wrapped coordinates jump back at the edge of each tile, which would make the implicit derivatives select the
+    // coarsest mip level there, so the gradients are taken from the coordinates before wrapping instead
+    vec2 unwrappedCoord = v_TexCoord + (v_TileCoord * v_SpriteSize);
+
+    vec4 sampleBlockTex = texture2DGradARB(u_BlockTex, texCoord, dFdx(unwrappedCoord), dFdy(unwrappedCoord));
+#else
+    // Faces are only merged without this extension when mipmaps are disabled, see SodiumWorldRenderer
+    vec4 sampleBlockTex = texture2D(u_BlockTex, texCoord);
+#endif
+#else
     // Block texture sample
     vec4 sampleBlockTex = texture2D(u_BlockTex, v_TexCoord);
+#endif
 
     // Fixes https://github.com/spoorn/sodium-forge/issues/36
     if (sampleBlockTex.a < 0.1)
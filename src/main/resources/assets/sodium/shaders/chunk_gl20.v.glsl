@@ -1,13 +1,27 @@
 #version 110
-attribute vec3 a_Pos; // The position of the vertex
 attribute vec4 a_Color; // The color of the vertex
-attribute vec2 a_TexCoord; // The block texture coordinate of the vertex
 attribute vec2 a_LightCoord; // The light map texture coordinate of the vertex
 
+#ifdef USE_TEXTURE_TILING
+attribute vec4 a_Pos; // The position of the vertex, followed by its packed tile coordinates
+attribute vec4 a_TexCoord; // The block texture coordinate of the vertex, followed by the size of its sprite
+#else
+attribute vec3 a_Pos; // The position of the vertex
+attribute vec2 a_TexCoord; // The block texture coordinate of the vertex
+#endif
+
 varying vec4 v_Color;
 varying vec2 v_TexCoord;
 varying vec2 v_LightCoord;
 
+#ifdef USE_TEXTURE_TILING
+varying vec2 v_TileCoord; // The number of times the sprite has been repeated along each axis
+varying vec2 v_SpriteSize; // The size of the sprite, or zero if the texture is not repeated
+
+// Must match HFPTiledModelVertexType.TILE_STRIDE
+const float TILE_STRIDE = 32.0;
+#endif
+
 #ifdef USE_FOG
 varying float v_FragDistance;
 #endif
@@ -23,7 +37,7 @@ void main() {
     // Translates the vertex position around the position of the camera
     // This can be used to calculate the distance of the vertex from the camera without needing to
     // transform it into model-view space with a matrix, which is much slower.
-    vec3 pos = (a_Pos * u_ModelScale) + d_ModelOffset.xyz;
+    vec3 pos = (a_Pos.xyz * u_ModelScale) + d_ModelOffset.xyz;
 
 #ifdef USE_FOG
     v_FragDistance = length(pos);
@@ -34,7 +48,14 @@ void main() {
 
     // Pass the color and texture coordinates to the fragment shader
     v_Color = a_Color;
-    v_TexCoord = a_TexCoord * u_TextureScale;
+    v_TexCoord = a_TexCoord.xy * u_TextureScale;
     v_LightCoord = a_LightCoord;
+
+#ifdef USE_TEXTURE_TILING
+    float tileV = floor(a_Pos.w / TILE_STRIDE);
+
+    v_TileCoord = vec2(a_Pos.w - (tileV * TILE_STRIDE), tileV);
+    v_SpriteSize = a_TexCoord.zw * u_TextureScale;
+#endif
 }
 
@@ -0,0 +1,378 @@
+package me.jellysquid.mods.lithium.common.entity.parallel;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.util.math.AxisAlignedBB;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs a small simulation of item piles and the mobs collecting them twice from the same seed, once ticking every
+ * entity serially and once ticking the islands found by {@link EntityIslandBuilder} on a pool of threads before the
+ * serial loop, in the same way as {@link EntityIslandTicker}. Items move, fall and merge with nearby items, mobs walk
+ * towards the nearest item they can see and pick up the items they touch, and some piles lie in water and are ticked
+ * serially.
+ */
+public class EntityIslandBuilderTest {
+    private static final int CELL_SHIFT = 4;
+    private static final int MAX_REGION_CELLS = 64;
+
+    private static final double MOVEMENT_MARGIN = 0.5D;
+    private static final double MERGE_RANGE = 0.5D;
+
+    private static final double MOB_SPEED = 0.2D;
+    private static final double MOB_SIGHT = 8.0D;
+
+    private static final double GROUND_Y = 64.0D;
+
+    private static final int TICKS = 60;
+
+    @Test
+    public void parallelTickingMatchesSerialTicking() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            for (long seed = 0; seed < 4; seed++) {
+                List<SimEntity> serial = createWorld(seed);
+                List<SimEntity> parallel = createWorld(seed);
+
+                int tickedInParallel = 0;
+
+                for (int tick = 0; tick < TICKS; tick++) {
+                    tickSerially(serial, new ReferenceOpenHashSet<>());
+                    tickedInParallel += tickIslands(parallel, pool);
+                }
+
+                assertEquals(describe(serial), describe(parallel), "World state differs for seed " + seed);
+
+                // Make sure that the simulation actually exercises what it is meant to check
+                assertTrue(tickedInParallel > TICKS * 100, "Only " + tickedInParallel + " entities were ticked in parallel");
+                assertTrue(serial.stream().anyMatch(entity -> entity instanceof SimItem && entity.removed));
+                assertTrue(serial.stream().anyMatch(entity -> entity instanceof SimMob && ((SimMob) entity).collected > 0));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void blockerKeepsJoinedRegionsOutOfIslands() {
+        EntityIslandBuilder builder = new EntityIslandBuilder(CELL_SHIFT, MAX_REGION_CELLS);
+
+        assertTrue(builder.add(new AxisAlignedBB(0, 0, 0, 1, 1, 1), false));
+        assertTrue(builder.add(new AxisAlignedBB(100, 0, 0, 101, 1, 1), false));
+        assertTrue(builder.add(new AxisAlignedBB(20, 0, 0, 21, 1, 1), false));
+        assertTrue(builder.add(new AxisAlignedBB(101, 0, 0, 102, 1, 1), false));
+
+        // Joins the first and third region, and their island with it
+        assertTrue(builder.add(new AxisAlignedBB(0, 0, 0, 21, 1, 1), true));
+
+        List<IntArrayList> islands = builder.build();
+
+        assertEquals(1, islands.size());
+        assertEquals(new IntArrayList(new int[] { 1, 3 }), islands.get(0));
+    }
+
+    @Test
+    public void rejectsLargeAndNonFiniteRegions() {
+        EntityIslandBuilder builder = new EntityIslandBuilder(CELL_SHIFT, MAX_REGION_CELLS);
+
+        assertFalse(builder.add(new AxisAlignedBB(0, 0, 0, 100, 100, 100), false));
+        assertFalse(builder.add(new AxisAlignedBB(0, 0, 0, Double.NaN, 1, 1), false));
+        assertFalse(builder.add(new AxisAlignedBB(0, 0, 0, Double.POSITIVE_INFINITY, 1, 1), true));
+
+        assertTrue(builder.build().isEmpty());
+    }
+
+    /**
+     * Visits every entity which hasn't been removed or ticked yet in order, like the entity loop of ServerWorld#tick
+     */
+    private static void tickSerially(List<SimEntity> entities, ReferenceOpenHashSet<SimEntity> ticked) {
+        for (SimEntity entity : entities) {
+            if (!entity.removed && !ticked.contains(entity)) {
+                entity.tick(entities);
+            }
+        }
+    }
+
+    /**
+     * Ticks the islands on the pool and then the remaining entities serially, as {@link EntityIslandTicker} does.
+     * @return The number of entities ticked in parallel
+     */
+    private static int tickIslands(List<SimEntity> entities, ForkJoinPool pool) {
+        EntityIslandBuilder builder = new EntityIslandBuilder(CELL_SHIFT, MAX_REGION_CELLS);
+        List<SimEntity> nodes = new ArrayList<>();
+
+        for (SimEntity entity : entities) {
+            if (entity.removed) {
+                continue;
+            }
+
+            boolean isolated = entity instanceof SimItem && !((SimItem) entity).wet;
+
+            assertTrue(builder.add(entity.getTickRegion().inflate(MERGE_RANGE), !isolated));
+
+            nodes.add(entity);
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        ReferenceOpenHashSet<SimEntity> ticked = new ReferenceOpenHashSet<>();
+
+        for (IntArrayList island : builder.build()) {
+            List<SimEntity> members = new ArrayList<>();
+
+            for (int i = 0; i < island.size(); i++) {
+                members.add(nodes.get(island.getInt(i)));
+            }
+
+            ticked.addAll(members);
+            tasks.add(pool.submit(() -> tickSerially(members, new ReferenceOpenHashSet<>())));
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        tickSerially(entities, ticked);
+
+        return ticked.size();
+    }
+
+    private static List<SimEntity> createWorld(long seed) {
+        Random random = new Random(seed);
+        List<SimEntity> entities = new ArrayList<>();
+
+        for (int pile = 0; pile < 64; pile++) {
+            double x = random.nextInt(512) - 256;
+            double z = random.nextInt(512) - 256;
+
+            boolean wet = pile % 4 == 0;
+
+            for (int i = 0; i < 12; i++) {
+                entities.add(new SimItem(x + random.nextDouble() * 3.0D, GROUND_Y + random.nextDouble() * 2.0D,
+                        z + random.nextDouble() * 3.0D, random.nextInt(2), wet, random));
+            }
+
+            // Some piles have a mob wandering nearby, which may or may not be close enough to see them
+            if (pile % 3 == 0) {
+                entities.add(new SimMob(x + random.nextDouble() * 24.0D - 12.0D, GROUND_Y,
+                        z + random.nextDouble() * 24.0D - 12.0D, random.nextLong()));
+            }
+        }
+
+        // Spread the mobs through the list, so that they are ticked between the items of other piles
+        List<SimEntity> shuffled = new ArrayList<>(entities);
+        Collections.shuffle(shuffled, random);
+
+        return shuffled;
+    }
+
+    private static List<String> describe(List<SimEntity> entities) {
+        List<String> states = new ArrayList<>();
+
+        for (SimEntity entity : entities) {
+            states.add(entity.describe());
+        }
+
+        return states;
+    }
+
+    private abstract static class SimEntity {
+        protected final double width, height;
+
+        protected double x, y, z;
+        protected boolean removed;
+
+        protected SimEntity(double x, double y, double z, double width, double height) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.width = width;
+            this.height = height;
+        }
+
+        protected AxisAlignedBB getBoundingBox() {
+            double r = this.width / 2.0D;
+
+            return new AxisAlignedBB(this.x - r, this.y, this.z - r, this.x + r, this.y + this.height, this.z + r);
+        }
+
+        /**
+         * @return The region in which the entity could read or modify other entities during its next tick
+         */
+        protected abstract AxisAlignedBB getTickRegion();
+
+        protected abstract void tick(List<SimEntity> world);
+
+        protected String describe() {
+            return this.getClass().getSimpleName() + "[" + this.x + ", " + this.y + ", " + this.z + ", removed=" + this.removed;
+        }
+    }
+
+    private static class SimItem extends SimEntity {
+        private final int type;
+        private final boolean wet;
+
+        private double motionX, motionY, motionZ;
+        private int count = 1;
+
+        private SimItem(double x, double y, double z, int type, boolean wet, Random random) {
+            super(x, y, z, 0.25D, 0.25D);
+
+            this.type = type;
+            this.wet = wet;
+
+            this.motionX = (random.nextDouble() - 0.5D) * 0.2D;
+            this.motionZ = (random.nextDouble() - 0.5D) * 0.2D;
+        }
+
+        @Override
+        protected AxisAlignedBB getTickRegion() {
+            return this.getBoundingBox().inflate(Math.abs(this.motionX) + MOVEMENT_MARGIN,
+                    Math.abs(this.motionY) + MOVEMENT_MARGIN, Math.abs(this.motionZ) + MOVEMENT_MARGIN);
+        }
+
+        @Override
+        protected void tick(List<SimEntity> world) {
+            this.motionY -= 0.04D;
+
+            this.x += this.motionX;
+            this.y += this.motionY;
+            this.z += this.motionZ;
+
+            if (this.y <= GROUND_Y) {
+                this.y = GROUND_Y;
+                this.motionY = 0.0D;
+                this.motionX *= 0.6D;
+                this.motionZ *= 0.6D;
+            }
+
+            this.motionX *= 0.98D;
+            this.motionY *= 0.98D;
+            this.motionZ *= 0.98D;
+
+            // Like ItemEntity#mergeWithNeighbours, where the larger stack takes in the smaller one
+            AxisAlignedBB range = this.getBoundingBox().inflate(MERGE_RANGE, 0.0D, MERGE_RANGE);
+
+            for (SimEntity entity : world) {
+                if (entity == this || entity.removed || !(entity instanceof SimItem)) {
+                    continue;
+                }
+
+                SimItem other = (SimItem) entity;
+
+                if (other.type != this.type || !other.getBoundingBox().intersects(range)) {
+                    continue;
+                }
+
+                if (other.count > this.count) {
+                    other.count += this.count;
+                    this.removed = true;
+
+                    return;
+                }
+
+                this.count += other.count;
+                other.removed = true;
+            }
+        }
+
+        @Override
+        protected String describe() {
+            return super.describe() + ", count=" + this.count + "]";
+        }
+    }
+
+    private static class SimMob extends SimEntity {
+        private final Random random;
+
+        private int collected;
+
+        private SimMob(double x, double y, double z, long seed) {
+            super(x, y, z, 0.6D, 1.8D);
+
+            this.random = new Random(seed);
+        }
+
+        @Override
+        protected AxisAlignedBB getTickRegion() {
+            double reach = MOB_SPEED + MOVEMENT_MARGIN + MOB_SIGHT;
+
+            return this.getBoundingBox().inflate(reach);
+        }
+
+        @Override
+        protected void tick(List<SimEntity> world) {
+            AxisAlignedBB sight = this.getBoundingBox().inflate(MOB_SIGHT);
+
+            SimEntity target = null;
+            double targetDistance = Double.MAX_VALUE;
+
+            for (SimEntity entity : world) {
+                if (entity.removed || !(entity instanceof SimItem) || !entity.getBoundingBox().intersects(sight)) {
+                    continue;
+                }
+
+                double distance = this.distanceToSqr(entity);
+
+                if (distance < targetDistance) {
+                    target = entity;
+                    targetDistance = distance;
+                }
+            }
+
+            double dx, dz;
+
+            if (target != null) {
+                dx = target.x - this.x;
+                dz = target.z - this.z;
+            } else {
+                dx = this.random.nextDouble() - 0.5D;
+                dz = this.random.nextDouble() - 0.5D;
+            }
+
+            double length = Math.sqrt(dx * dx + dz * dz);
+
+            if (length > MOB_SPEED) {
+                dx *= MOB_SPEED / length;
+                dz *= MOB_SPEED / length;
+            }
+
+            this.x += dx;
+            this.z += dz;
+
+            // Like MobEntity#aiStep, picking up the items touching the mob
+            AxisAlignedBB pickup = this.getBoundingBox().inflate(1.0D, 0.0D, 1.0D);
+
+            for (SimEntity entity : world) {
+                if (!entity.removed && entity instanceof SimItem && entity.getBoundingBox().intersects(pickup)) {
+                    this.collected += ((SimItem) entity).count;
+                    entity.removed = true;
+                }
+            }
+        }
+
+        private double distanceToSqr(SimEntity entity) {
+            double dx = entity.x - this.x;
+            double dy = entity.y - this.y;
+            double dz = entity.z - this.z;
+
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        @Override
+        protected String describe() {
+            return super.describe() + ", collected=" + this.collected + "]";
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package me.jellysquid.mods.phosphor.common.util.chunk.light;
+
+import me.jellysquid.mods.phosphor.common.chunk.light.UniformNibbleArrayAccess;
+import net.minecraft.world.chunk.NibbleArray;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SkyLightChunkNibbleArrayTest {
+    @Test
+    public void inheritsUniformValueWithoutCopyingData() {
+        SkyLightChunkNibbleArray lightmap = new SkyLightChunkNibbleArray(new TestLightmap(15));
+
+        assertTrue(lightmap.isUniform());
+        assertEquals(15, lightmap.getUniformValue());
+        assertFalse(lightmap.isEmpty());
+
+        assertEveryValue(lightmap, 15);
+    }
+
+    @Test
+    public void returnsFilledDataWithoutExposingSharedData() {
+        SkyLightChunkNibbleArray lightmap = new SkyLightChunkNibbleArray(new TestLightmap(15));
+
+        byte[] data = lightmap.getData();
+
+        assertEquals(2048, data.length);
+
+        for (byte b : data) {
+            assertEquals((byte) 0xFF, b);
+        }
+
+        // Writing to the returned array must not change this or any other lightmap which inherited the same value
+        data[0] = 0;
+
+        assertEquals(15, lightmap.get(0, 0, 0));
+        assertEquals(15, new SkyLightChunkNibbleArray(new TestLightmap(15)).get(0, 0, 0));
+
+        assertEveryValue(lightmap.copy(), 15);
+    }
+
+    @Test
+    public void passesUniformValueDownChainedLightmaps() {
+        SkyLightChunkNibbleArray above = new SkyLightChunkNibbleArray(new TestLightmap(7));
+        SkyLightChunkNibbleArray below = new SkyLightChunkNibbleArray(above);
+
+        assertTrue(below.isUniform());
+        assertEquals(7, below.getUniformValue());
+
+        assertEveryValue(below, 7);
+    }
+
+    @Test
+    public void inheritsBottomLayerOfNonUniformLightmap() {
+        byte[] data = new byte[2048];
+        new Random(42).nextBytes(data);
+
+        NibbleArray source = new NibbleArray(data.clone());
+        SkyLightChunkNibbleArray lightmap = new SkyLightChunkNibbleArray(new TestLightmap(data));
+
+        assertFalse(lightmap.isUniform());
+
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    assertEquals(source.get(x, 0, z), lightmap.get(x, y, z));
+                }
+            }
+        }
+    }
+
+    private static void assertEveryValue(NibbleArray array, int value) {
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    assertEquals(value, array.get(x, y, z));
+                }
+            }
+        }
+    }
+
+    /**
+     * Stands in for a lightmap with the uniform storage of the nibble array mixin, which isn't applied in tests. The
+     * data of a uniform lightmap can't be requested, as inheriting it should never need a filled copy.
+     */
+    private static class TestLightmap extends NibbleArray implements UniformNibbleArrayAccess {
+        private final int uniformValue;
+
+        private TestLightmap(int uniformValue) {
+            this.uniformValue = uniformValue;
+        }
+
+        private TestLightmap(byte[] data) {
+            super(data);
+
+            this.uniformValue = -1;
+        }
+
+        @Override
+        public byte[] getData() {
+            if (this.isUniform()) {
+                throw new AssertionError("The data of a uniform lightmap was copied");
+            }
+
+            return super.getData();
+        }
+
+        @Override
+        public boolean isUniform() {
+            return this.uniformValue >= 0;
+        }
+
+        @Override
+        public int getUniformValue() {
+            return this.uniformValue;
+        }
+    }
+}
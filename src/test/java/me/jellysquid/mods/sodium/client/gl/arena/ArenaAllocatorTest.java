@@ -0,0 +1,172 @@
+package me.jellysquid.mods.sodium.client.gl.arena;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ArenaAllocatorTest {
+    @Test
+    public void allocatesFromTheStart() {
+        ArenaAllocator arena = new ArenaAllocator(100);
+
+        assertEquals(0, arena.allocate(10));
+        assertEquals(10, arena.allocate(20));
+        assertEquals(30, arena.getUsedBytes());
+        assertEquals(30, arena.getHighWaterMark());
+        assertEquals(-1, arena.allocate(71));
+        assertEquals(30, arena.allocate(70));
+        assertEquals(0, arena.getFreeBytes());
+    }
+
+    @Test
+    public void picksTheSmallestFittingFreeRange() {
+        ArenaAllocator arena = new ArenaAllocator(100);
+
+        int a = arena.allocate(30);
+        arena.allocate(10);
+        int b = arena.allocate(10);
+        arena.allocate(10);
+
+        // Leaves holes of 30 bytes at 0 and 10 bytes at 40, along with 40 bytes at the end
+        arena.free(a, 30);
+        arena.free(b, 10);
+
+        assertEquals(3, arena.getFreeRangeCount());
+        assertEquals(40, arena.getFragmentedBytes());
+
+        assertEquals(40, arena.allocate(8));
+        assertEquals(0, arena.allocate(25));
+        assertEquals(60, arena.allocate(35));
+    }
+
+    @Test
+    public void mergesNeighbouringFreeRanges() {
+        ArenaAllocator arena = new ArenaAllocator(100);
+
+        int a = arena.allocate(20);
+        int b = arena.allocate(20);
+        int c = arena.allocate(20);
+
+        arena.free(a, 20);
+        arena.free(c, 20);
+        assertEquals(2, arena.getFreeRangeCount());
+
+        // Freeing the range in between joins everything into one range
+        arena.free(b, 20);
+        assertEquals(1, arena.getFreeRangeCount());
+        assertEquals(100, arena.getLargestFreeRange());
+        assertEquals(0, arena.getHighWaterMark());
+        assertEquals(0, arena.allocate(100));
+    }
+
+    @Test
+    public void rejectsOverlappingFrees() {
+        ArenaAllocator arena = new ArenaAllocator(100);
+
+        arena.allocate(50);
+
+        assertThrows(IllegalArgumentException.class, () -> arena.free(40, 20));
+        assertThrows(IllegalArgumentException.class, () -> arena.free(60, 10));
+        assertThrows(IllegalArgumentException.class, () -> arena.allocate(0));
+
+        // A rejected free must not change the arena
+        assertEquals(1, arena.getFreeRangeCount());
+        assertEquals(50, arena.getLargestFreeRange());
+    }
+
+    @Test
+    public void growMergesWithTheFreeEnd() {
+        ArenaAllocator arena = new ArenaAllocator(100);
+
+        arena.allocate(90);
+        arena.grow(200);
+
+        assertEquals(1, arena.getFreeRangeCount());
+        assertEquals(110, arena.getLargestFreeRange());
+        assertEquals(90, arena.allocate(110));
+
+        assertThrows(IllegalArgumentException.class, () -> arena.grow(100));
+    }
+
+    @Test
+    public void resetKeepsOnlyThePackedPrefix() {
+        ArenaAllocator arena = new ArenaAllocator(100);
+
+        arena.allocate(10);
+        arena.free(arena.allocate(10), 10);
+        arena.allocate(30);
+
+        arena.reset(100, 40);
+
+        assertEquals(40, arena.getUsedBytes());
+        assertEquals(0, arena.getFragmentedBytes());
+        assertEquals(40, arena.allocate(60));
+    }
+
+    @Test
+    public void matchesReferenceModelUnderRandomWorkload() {
+        final int capacity = 4096;
+
+        ArenaAllocator arena = new ArenaAllocator(capacity);
+        boolean[] occupied = new boolean[capacity];
+        List<int[]> live = new ArrayList<>();
+        Random random = new Random(1234L);
+
+        for (int step = 0; step < 20000; step++) {
+            if (live.isEmpty() || random.nextInt(3) != 0) {
+                int length = 1 + random.nextInt(64);
+                int offset = arena.allocate(length);
+
+                if (offset < 0) {
+                    // Only refuse when there really is no run of free space large enough
+                    assertTrue(getLongestFreeRun(occupied) < length);
+                    continue;
+                }
+
+                for (int i = offset; i < offset + length; i++) {
+                    assertFalse(occupied[i], "Allocation overlaps a live range");
+                    occupied[i] = true;
+                }
+
+                live.add(new int[] { offset, length });
+            } else {
+                int[] range = live.remove(random.nextInt(live.size()));
+                arena.free(range[0], range[1]);
+
+                for (int i = range[0]; i < range[0] + range[1]; i++) {
+                    occupied[i] = false;
+                }
+            }
+
+            int used = 0;
+
+            for (boolean b : occupied) {
+                if (b) {
+                    used++;
+                }
+            }
+
+            assertEquals(used, arena.getUsedBytes());
+            assertEquals(getLongestFreeRun(occupied), arena.getLargestFreeRange());
+        }
+    }
+
+    private static int getLongestFreeRun(boolean[] occupied) {
+        int longest = 0;
+        int run = 0;
+
+        for (boolean b : occupied) {
+            run = b ? 0 : run + 1;
+            longest = Math.max(longest, run);
+        }
+
+        return longest;
+    }
+}
@@ -0,0 +1,160 @@
+package me.jellysquid.mods.sodium.client.gl.arena;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StagingRingAllocatorTest {
+    @Test
+    public void allocatesSequentiallyUntilFull() {
+        StagingRingAllocator<String> ring = new StagingRingAllocator<>(100);
+
+        assertEquals(0, ring.allocate(40));
+        assertEquals(40, ring.allocate(40));
+        assertEquals(-1, ring.allocate(40));
+        assertEquals(80, ring.allocate(20));
+        assertEquals(100, ring.getUsedBytes());
+        assertEquals(-1, ring.allocate(1));
+    }
+
+    @Test
+    public void rejectsInvalidSizes() {
+        StagingRingAllocator<String> ring = new StagingRingAllocator<>(100);
+
+        assertEquals(-1, ring.allocate(0));
+        assertEquals(-1, ring.allocate(101));
+        assertEquals(0, ring.getUsedBytes());
+
+        assertThrows(IllegalArgumentException.class, () -> new StagingRingAllocator<String>(0));
+    }
+
+    @Test
+    public void reusesSpaceOnlyAfterFenceIsSignaled() {
+        StagingRingAllocator<String> ring = new StagingRingAllocator<>(100);
+        Set<String> signaled = new HashSet<>();
+        List<String> released = new ArrayList<>();
+
+        ring.allocate(60);
+        ring.fence("a");
+        ring.allocate(40);
+        ring.fence("b");
+
+        assertEquals(-1, ring.allocate(10));
+
+        // Nothing has been signaled yet, so nothing can be released
+        ring.reclaim(signaled::contains, released::add);
+        assertTrue(released.isEmpty());
+        assertEquals(-1, ring.allocate(10));
+
+        signaled.add("a");
+        ring.reclaim(signaled::contains, released::add);
+
+        assertEquals(1, released.size());
+        assertEquals("a", released.get(0));
+        assertEquals(40, ring.getUsedBytes());
+        assertEquals(0, ring.allocate(60));
+    }
+
+    @Test
+    public void releasesFencesInSubmissionOrder() {
+        StagingRingAllocator<String> ring = new StagingRingAllocator<>(100);
+        Set<String> signaled = new HashSet<>();
+        List<String> released = new ArrayList<>();
+
+        ring.allocate(30);
+        ring.fence("a");
+        ring.allocate(30);
+        ring.fence("b");
+
+        // A later fence can't release its range before an earlier one
+        signaled.add("b");
+        ring.reclaim(signaled::contains, released::add);
+        assertTrue(released.isEmpty());
+        assertEquals(60, ring.getUsedBytes());
+
+        signaled.add("a");
+        ring.reclaim(signaled::contains, released::add);
+
+        assertEquals(2, released.size());
+        assertEquals("a", released.get(0));
+        assertEquals("b", released.get(1));
+        assertEquals(0, ring.getUsedBytes());
+    }
+
+    @Test
+    public void skipsSpaceAtEndInsteadOfWrapping() {
+        StagingRingAllocator<String> ring = new StagingRingAllocator<>(100);
+
+        ring.allocate(70);
+        ring.fence("a");
+        ring.reclaim(fence -> true, fence -> { });
+
+        // 30 bytes are left before the end of the ring, which isn't enough, so the allocation starts over at zero
+        assertEquals(0, ring.allocate(50));
+        assertEquals(80, ring.getUsedBytes());
+
+        // The skipped space is only released along with the allocation which caused it to be skipped
+        ring.fence("b");
+        ring.reclaim(fence -> true, fence -> { });
+        assertEquals(0, ring.getUsedBytes());
+        assertEquals(50, ring.allocate(50));
+    }
+
+    @Test
+    public void refusesAllocationsWhichWouldOverlapTheTail() {
+        StagingRingAllocator<String> ring = new StagingRingAllocator<>(100);
+
+        ring.allocate(20);
+        ring.fence("a");
+        ring.allocate(70);
+        ring.reclaim(fence -> true, fence -> { });
+
+        // The first 20 bytes are free, but the padding to the end plus the allocation exceeds the ring
+        assertEquals(-1, ring.allocate(30));
+
+        // Filling the end exactly lets the next allocation re-use the released space at the start
+        assertEquals(90, ring.allocate(10));
+        assertEquals(0, ring.allocate(20));
+        assertEquals(-1, ring.allocate(1));
+    }
+
+    @Test
+    public void tracksUnfencedAllocations() {
+        StagingRingAllocator<String> ring = new StagingRingAllocator<>(100);
+
+        assertFalse(ring.hasUnfencedAllocations());
+        assertThrows(IllegalStateException.class, () -> ring.fence("a"));
+
+        ring.allocate(10);
+        assertTrue(ring.hasUnfencedAllocations());
+
+        ring.fence("a");
+        assertFalse(ring.hasUnfencedAllocations());
+    }
+
+    @Test
+    public void resetReleasesEverything() {
+        StagingRingAllocator<String> ring = new StagingRingAllocator<>(100);
+        List<String> released = new ArrayList<>();
+
+        ring.allocate(50);
+        ring.fence("a");
+        ring.allocate(50);
+        ring.fence("b");
+
+        ring.reset(released::add);
+
+        assertEquals(2, released.size());
+        assertEquals(0, ring.getUsedBytes());
+        assertFalse(ring.hasUnfencedAllocations());
+        assertEquals(0, ring.allocate(100));
+    }
+}
@@ -0,0 +1,185 @@
+package me.jellysquid.mods.sodium.client.util.task;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WorkStealingQueueTest {
+    @Test
+    public void takesOwnJobsBeforeStealing() {
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(2, Integer::doubleValue);
+
+        // Jobs are handed to the least-loaded worker, so these alternate between both queues
+        int farWorker = queue.add(100);
+        int nearWorker = queue.add(1);
+
+        assertTrue(farWorker != nearWorker);
+
+        // The worker holding the far job takes it first, and only steals the near job once its own queue is empty
+        assertEquals(100, queue.poll(farWorker));
+        assertEquals(1, queue.poll(farWorker));
+        assertNull(queue.poll(farWorker));
+        assertNull(queue.poll(nearWorker));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void stealsMostUrgentHead() {
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(3, Integer::doubleValue);
+
+        // Each worker receives one job in turn, so worker 0 holds 50 and 3, worker 1 holds 7 and worker 2 holds 9
+        queue.add(50);
+        queue.add(7);
+        queue.add(9);
+        queue.add(3);
+
+        assertEquals(7, queue.poll(1));
+
+        // Once its own queue is empty, worker 1 takes the most urgent job at the head of the other queues
+        assertEquals(3, queue.poll(1));
+        assertEquals(9, queue.poll(1));
+        assertEquals(50, queue.poll(1));
+        assertNull(queue.poll(1));
+    }
+
+    @Test
+    public void ordersManyJobsByPriority() {
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(1, Integer::doubleValue);
+
+        List<Integer> jobs = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            jobs.add(i);
+        }
+
+        Collections.shuffle(jobs, new Random(1234L));
+        jobs.forEach(queue::add);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, queue.poll(0));
+        }
+
+        assertNull(queue.poll(0));
+    }
+
+    @Test
+    public void prefersOwnQueueOnTies() {
+        WorkStealingQueue<String> queue = new WorkStealingQueue<>(2, job -> 5.0D);
+
+        int first = queue.add("a");
+        int second = queue.add("b");
+
+        assertEquals("b", queue.poll(second));
+        assertEquals("a", queue.poll(second));
+        assertEquals(0, queue.size());
+        assertNull(queue.poll(first));
+    }
+
+    @Test
+    public void followsPriorityChangesAfterInvalidation() {
+        double[] origin = { 0.0D };
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(3, job -> Math.abs(job - origin[0]));
+
+        // The jobs are spread across the workers in turn, so worker 0 holds 0, 30 and 60
+        for (int i = 0; i < 9; i++) {
+            queue.add(i * 10);
+        }
+
+        origin[0] = 80.0D;
+
+        // Priorities are cached until they are invalidated
+        assertEquals(0, queue.poll(0));
+
+        queue.invalidatePriorities();
+
+        assertEquals(60, queue.poll(0));
+        assertEquals(70, queue.poll(1));
+        assertEquals(80, queue.poll(2));
+        assertEquals(5, queue.size());
+    }
+
+    @Test
+    public void handsOutEveryJobOnceUnderContention() throws InterruptedException {
+        int workers = 4;
+        int jobsPerProducer = 20000;
+
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(workers, Integer::doubleValue);
+        AtomicIntegerArray taken = new AtomicIntegerArray(jobsPerProducer * 2);
+        AtomicInteger remaining = new AtomicInteger(jobsPerProducer * 2);
+
+        List<Thread> threads = new ArrayList<>();
+
+        for (int producer = 0; producer < 2; producer++) {
+            int offset = producer * jobsPerProducer;
+
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < jobsPerProducer; i++) {
+                    queue.add(offset + i);
+
+                    if (i % 1000 == 0) {
+                        queue.invalidatePriorities();
+                    }
+                }
+            }));
+        }
+
+        for (int worker = 0; worker < workers; worker++) {
+            int id = worker;
+
+            threads.add(new Thread(() -> {
+                while (remaining.get() > 0) {
+                    Integer job = queue.poll(id);
+
+                    if (job != null) {
+                        taken.incrementAndGet(job);
+                        remaining.decrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join(30000);
+        }
+
+        for (int i = 0; i < taken.length(); i++) {
+            assertEquals(1, taken.get(i), "Job " + i + " was taken the wrong number of times");
+        }
+
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void drainsEveryQueue() {
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(4, Integer::doubleValue);
+
+        for (int i = 0; i < 10; i++) {
+            queue.add(i);
+        }
+
+        int[] sum = { 0 };
+        queue.drain(job -> sum[0] += job);
+
+        assertEquals(45, sum[0]);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void rejectsZeroWorkers() {
+        assertThrows(IllegalArgumentException.class, () -> new WorkStealingQueue<Integer>(0, Integer::doubleValue));
+    }
+}